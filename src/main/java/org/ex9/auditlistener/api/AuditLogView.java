@@ -0,0 +1,32 @@
+package org.ex9.auditlistener.api;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Audit-лог в ответе API.
+ * @author Краковцев Артём
+ */
+public record AuditLogView(Long id,
+                           String messageId,
+                           String eventId,
+                           String eventType,
+                           String methodName,
+                           String args,
+                           String result,
+                           String error,
+                           String logLevel,
+                           OffsetDateTime timestamp,
+                           String kafkaTopic,
+                           Integer kafkaPartition,
+                           Long kafkaOffset) {
+
+    public static AuditLogView of(AuditLogEntity entity) {
+        return new AuditLogView(entity.getId(), entity.getMessageId(), entity.getEventId(), entity.getEventType(),
+                entity.getMethodName(), entity.getArgs(), entity.getResult(), entity.getError(),
+                entity.getLogLevel(), entity.getTimestamp(), entity.getKafkaTopic(), entity.getKafkaPartition(),
+                entity.getKafkaOffset());
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.ex9.auditlistener.api;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.service.DeadLetterReplayService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Административный REST API для сообщений, попавших в DLT.
+ * @author Краковцев Артём
+ */
+@RestController
+@RequestMapping("/api/admin/dead-letters")
+@RequiredArgsConstructor
+public class DeadLetterController {
+
+    private final DeadLetterReplayService deadLetterReplayService;
+
+    /** Результат возврата сообщений. */
+    public record ReplayResult(int replayed) {
+    }
+
+    /**
+     * Возвращает сообщения из DLT в основной топик логов, начиная с самых старых.
+     *
+     * @param limit максимальное число сообщений
+     */
+    @PostMapping("/replay")
+    public ReplayResult replay(@RequestParam(defaultValue = "100") int limit) {
+        return new ReplayResult(deadLetterReplayService.replay(limit));
+    }
+
+    /**
+     * Некорректное число сообщений.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ProblemDetail badRequest(IllegalArgumentException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+}
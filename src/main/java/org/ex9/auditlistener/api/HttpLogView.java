@@ -0,0 +1,31 @@
+package org.ex9.auditlistener.api;
+
+import org.ex9.auditlistener.model.HttpLogEntity;
+
+import java.time.OffsetDateTime;
+
+/**
+ * HTTP-лог в ответе API. Сжатые тела запроса и ответа возвращаются распакованными.
+ * @author Краковцев Артём
+ */
+public record HttpLogView(Long id,
+                          String messageId,
+                          OffsetDateTime timestamp,
+                          String direction,
+                          String method,
+                          Integer statusCode,
+                          String url,
+                          String requestBody,
+                          String responseBody,
+                          String kafkaTopic,
+                          Integer kafkaPartition,
+                          Long kafkaOffset) {
+
+    public static HttpLogView of(HttpLogEntity entity) {
+        return new HttpLogView(entity.getId(), entity.getMessageId(), entity.getTimestamp(), entity.getDirection(),
+                entity.getMethod(), entity.getStatusCode(), entity.getUrl(), entity.decodeRequestBody(),
+                entity.decodeResponseBody(), entity.getKafkaTopic(), entity.getKafkaPartition(),
+                entity.getKafkaOffset());
+    }
+
+}
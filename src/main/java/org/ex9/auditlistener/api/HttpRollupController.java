@@ -0,0 +1,42 @@
+package org.ex9.auditlistener.api;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.rollup.HttpRollupAggregator;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST API агрегатов HTTP-логов в реальном времени.
+ * <p>
+ * Возвращает окна, которые ещё находятся в памяти ({@link HttpRollupAggregator}); более
+ * ранние окна уже записаны в таблицу {@code http_log_rollups}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@RestController
+@RequestMapping("/api/rollups")
+@RequiredArgsConstructor
+public class HttpRollupController {
+
+    private final HttpRollupAggregator httpRollupAggregator;
+
+    /**
+     * Возвращает агрегаты HTTP-логов от новых окон к старым.
+     *
+     * @param method HTTP-метод
+     * @param route  нормализованный URL, например {@code /api/users/{id}}
+     */
+    @GetMapping("/http")
+    public List<HttpRollupView> httpRollups(
+            @RequestParam(required = false) String method,
+            @RequestParam(required = false) String route) {
+        return httpRollupAggregator.snapshot(method, route).stream()
+                .map(HttpRollupView::of)
+                .toList();
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.ex9.auditlistener.api;
+
+import org.HdrHistogram.Histogram;
+import org.ex9.auditlistener.rollup.HttpRollup;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Агрегат HTTP-логов в ответе API: гистограммы размеров тел представлены перцентилями.
+ * @author Краковцев Артём
+ */
+public record HttpRollupView(OffsetDateTime bucketStart,
+                             int bucketSeconds,
+                             String method,
+                             String route,
+                             long requests,
+                             long status1xx,
+                             long status2xx,
+                             long status3xx,
+                             long status4xx,
+                             long status5xx,
+                             long statusOther,
+                             Sizes requestBytes,
+                             Sizes responseBytes) {
+
+    /**
+     * Размеры тел в байтах.
+     */
+    public record Sizes(long total, long p50, long p95, long p99, long max) {
+
+        static Sizes of(long total, Histogram histogram) {
+            return new Sizes(total, histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(95),
+                    histogram.getValueAtPercentile(99), histogram.getMaxValue());
+        }
+
+    }
+
+    public static HttpRollupView of(HttpRollup rollup) {
+        return new HttpRollupView(rollup.bucketStart(), rollup.bucketSeconds(), rollup.method(), rollup.route(),
+                rollup.requests(), rollup.status1xx(), rollup.status2xx(), rollup.status3xx(), rollup.status4xx(),
+                rollup.status5xx(), rollup.statusOther(),
+                Sizes.of(rollup.requestBytes(), rollup.requestSizes()),
+                Sizes.of(rollup.responseBytes(), rollup.responseSizes()));
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.ex9.auditlistener.api;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.ex9.auditlistener.repository.AuditLogFilter;
+import org.ex9.auditlistener.repository.HttpLogFilter;
+import org.ex9.auditlistener.repository.LogSearchHit;
+import org.ex9.auditlistener.service.LogPage;
+import org.ex9.auditlistener.service.LogQueryService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * REST API для просмотра сохранённых логов.
+ * <p>
+ * Выдача упорядочена от новых записей к старым. Для получения следующей страницы
+ * передайте значение {@code nextCursor} из ответа в параметре {@code cursor};
+ * остальные параметры запроса должны совпадать с первым запросом.
+ * </p>
+ * <p>
+ * Границы интервала принимаются в тех же форматах, что и время событий ({@link TimestampParser}).
+ * </p>
+ * <p>
+ * Полнотекстовый поиск ({@code /search}) возвращает записи по убыванию релевантности без
+ * продолжения выдачи; строка поиска {@code q} — слова, фразы в кавычках, {@code OR} и {@code -слово}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@RestController
+@RequestMapping("/api/logs")
+@RequiredArgsConstructor
+public class LogQueryController {
+
+    private final LogQueryService logQueryService;
+    private final TimestampParser timestampParser;
+
+    /**
+     * Возвращает страницу Audit-логов.
+     *
+     * @param from       начало интервала, включительно
+     * @param to         конец интервала, не включительно
+     * @param eventId    корреляционный идентификатор события
+     * @param methodName полное имя метода
+     * @param logLevel   уровень логирования
+     * @param cursor     курсор следующей страницы
+     * @param limit      размер страницы
+     */
+    @GetMapping("/audit")
+    public LogPage<AuditLogView> auditLogs(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String eventId,
+            @RequestParam(required = false) String methodName,
+            @RequestParam(required = false) String logLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        AuditLogFilter filter = new AuditLogFilter(timestamp(from), timestamp(to), eventId, methodName, logLevel);
+        return logQueryService.findAuditLogs(filter, cursor, limit)
+                .map(AuditLogView::of);
+    }
+
+    /**
+     * Возвращает страницу HTTP-логов.
+     *
+     * @param from       начало интервала, включительно
+     * @param to         конец интервала, не включительно
+     * @param urlPrefix  начало URL запроса
+     * @param statusCode код статуса ответа
+     * @param cursor     курсор следующей страницы
+     * @param limit      размер страницы
+     */
+    @GetMapping("/http")
+    public LogPage<HttpLogView> httpLogs(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String urlPrefix,
+            @RequestParam(required = false) Integer statusCode,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        HttpLogFilter filter = new HttpLogFilter(timestamp(from), timestamp(to), urlPrefix, statusCode);
+        return logQueryService.findHttpLogs(filter, cursor, limit)
+                .map(HttpLogView::of);
+    }
+
+    /**
+     * Ищет Audit-логи по аргументам, результату и ошибке метода.
+     *
+     * @param q     строка поиска
+     * @param from  начало интервала, включительно; по умолчанию {@code audit.query.search-window} до конца
+     * @param to    конец интервала, не включительно
+     * @param limit максимальное число записей
+     */
+    @GetMapping("/audit/search")
+    public List<LogSearchHit<AuditLogView>> searchAuditLogs(
+            @RequestParam String q,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "50") int limit) {
+        return logQueryService.searchAuditLogs(q, timestamp(from), timestamp(to), limit).stream()
+                .map(hit -> hit.map(AuditLogView::of))
+                .toList();
+    }
+
+    /**
+     * Ищет HTTP-логи по телам запроса и ответа.
+     *
+     * @param q     строка поиска
+     * @param from  начало интервала, включительно; по умолчанию {@code audit.query.search-window} до конца
+     * @param to    конец интервала, не включительно
+     * @param limit максимальное число записей
+     */
+    @GetMapping("/http/search")
+    public List<LogSearchHit<HttpLogView>> searchHttpLogs(
+            @RequestParam String q,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "50") int limit) {
+        return logQueryService.searchHttpLogs(q, timestamp(from), timestamp(to), limit).stream()
+                .map(hit -> hit.map(HttpLogView::of))
+                .toList();
+    }
+
+    private OffsetDateTime timestamp(String value) {
+        if (value == null) {
+            return null;
+        }
+        OffsetDateTime timestamp = timestampParser.parse(value);
+        if (timestamp == null) {
+            throw new IllegalArgumentException("Invalid timestamp: " + value);
+        }
+        return timestamp;
+    }
+
+    /**
+     * Некорректные границы интервала, курсор или размер страницы.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ProblemDetail badRequest(IllegalArgumentException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+}
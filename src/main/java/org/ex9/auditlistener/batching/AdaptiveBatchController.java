@@ -0,0 +1,169 @@
+package org.ex9.auditlistener.batching;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подбирает размер пакета записи и интервал накопления пакета по наблюдаемой задержке записи (AIMD).
+ * <p>
+ * Listener'ы сообщают о каждом записанном пакете: его размер, длительность записи вместе
+ * с фиксацией транзакции и число сообщений, ожидающих записи после него. Решения:
+ * <ul>
+ *     <li>сглаженная задержка выше {@code audit.kafka.adaptive.target-latency} или ошибка записи —
+ *     размер пакета умножается на {@code decrease-factor};</li>
+ *     <li>пакет заполнен и задержка в норме — размер растёт на {@code batch-step};</li>
+ *     <li>ожидающих сообщений не меньше размера пакета — интервал накопления уменьшается вдвое,
+ *     чтобы быстрее разобрать очередь;</li>
+ *     <li>пакет не заполнен, очереди нет и задержка в норме — интервал растёт на
+ *     {@code flush-interval-step}: при низкой нагрузке пакеты успевают набраться.</li>
+ * </ul>
+ * Размер ограничен {@code min-batch-size}..{@code max-batch-size}, интервал —
+ * {@code min-flush-interval}..{@code max-flush-interval}. Начальный размер — {@code audit.kafka.batch.size},
+ * начальный интервал — нижняя граница.
+ * </p>
+ * <p>
+ * Отключается свойством {@code audit.kafka.adaptive.enabled=false}: тогда listener'ы
+ * используют статические настройки своих режимов.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class AdaptiveBatchController {
+
+    /** Вес нового наблюдения в сглаженной задержке. */
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    private final boolean enabled;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int batchStep;
+    private final double decreaseFactor;
+    private final long targetLatencyNanos;
+    private final long minFlushIntervalMs;
+    private final long maxFlushIntervalMs;
+    private final long flushIntervalStepMs;
+
+    private volatile int batchSize;
+    private volatile long flushIntervalMs;
+    private double latencyNanos = Double.NaN;
+    private long increases;
+    private long decreases;
+
+    public AdaptiveBatchController(@Value("${audit.kafka.adaptive.enabled:true}") boolean enabled,
+                                   @Value("${audit.kafka.batch.size:500}") int initialBatchSize,
+                                   @Value("${audit.kafka.adaptive.min-batch-size:50}") int minBatchSize,
+                                   @Value("${audit.kafka.adaptive.max-batch-size:2000}") int maxBatchSize,
+                                   @Value("${audit.kafka.adaptive.batch-step:50}") int batchStep,
+                                   @Value("${audit.kafka.adaptive.decrease-factor:0.5}") double decreaseFactor,
+                                   @Value("${audit.kafka.adaptive.target-latency:200ms}") Duration targetLatency,
+                                   @Value("${audit.kafka.adaptive.min-flush-interval:0ms}") Duration minFlushInterval,
+                                   @Value("${audit.kafka.adaptive.max-flush-interval:500ms}") Duration maxFlushInterval,
+                                   @Value("${audit.kafka.adaptive.flush-interval-step:20ms}") Duration flushIntervalStep) {
+        if (minBatchSize <= 0 || minBatchSize > maxBatchSize) {
+            throw new IllegalArgumentException("audit.kafka.adaptive.min-batch-size must be in [1, max-batch-size]");
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("audit.kafka.adaptive.decrease-factor must be in (0, 1)");
+        }
+        if (minFlushInterval.compareTo(maxFlushInterval) > 0) {
+            throw new IllegalArgumentException("audit.kafka.adaptive.min-flush-interval must not exceed max-flush-interval");
+        }
+        this.enabled = enabled;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.batchStep = batchStep;
+        this.decreaseFactor = decreaseFactor;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.minFlushIntervalMs = minFlushInterval.toMillis();
+        this.maxFlushIntervalMs = maxFlushInterval.toMillis();
+        this.flushIntervalStepMs = flushIntervalStep.toMillis();
+        this.batchSize = Math.clamp(initialBatchSize, minBatchSize, maxBatchSize);
+        this.flushIntervalMs = minFlushIntervalMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Текущий размер пакета записи. */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /** Верхняя граница размера пакета: столько сообщений имеет смысл выбирать за один poll. */
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Текущий интервал накопления пакета, мс. */
+    public long flushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    /**
+     * Учитывает записанный пакет.
+     *
+     * @param size         число сообщений в пакете
+     * @param elapsedNanos длительность записи пакета вместе с фиксацией транзакции
+     * @param backlog      число сообщений, ожидающих записи после этого пакета
+     * @param saved        {@code false}, если пакет не удалось записать в БД
+     */
+    public synchronized void record(int size, long elapsedNanos, int backlog, boolean saved) {
+        if (!enabled) {
+            return;
+        }
+        int current = batchSize;
+        if (!saved) {
+            decrease(current, "write failed");
+            return;
+        }
+        latencyNanos = Double.isNaN(latencyNanos)
+                ? elapsedNanos
+                : latencyNanos + LATENCY_WEIGHT * (elapsedNanos - latencyNanos);
+        boolean slow = latencyNanos > targetLatencyNanos;
+        if (slow) {
+            decrease(current, "latency above target");
+        } else if (size >= current && current < maxBatchSize) {
+            batchSize = Math.min(maxBatchSize, current + batchStep);
+            increases++;
+            log.debug("Batch size increased to {}", batchSize);
+        }
+
+        long interval = flushIntervalMs;
+        if (backlog >= batchSize) {
+            flushIntervalMs = Math.max(minFlushIntervalMs, interval / 2);
+        } else if (!slow && size < current) {
+            flushIntervalMs = Math.min(maxFlushIntervalMs, interval + flushIntervalStepMs);
+        }
+    }
+
+    private void decrease(int current, String reason) {
+        // сглаживание начинается заново: прежние наблюдения относятся к большим пакетам
+        latencyNanos = Double.NaN;
+        if (current <= minBatchSize) {
+            return;
+        }
+        batchSize = Math.max(minBatchSize, (int) (current * decreaseFactor));
+        decreases++;
+        log.debug("Batch size decreased to {}: {}", batchSize, reason);
+    }
+
+    /** Сглаженная задержка записи пакета, мс; {@code 0}, пока нет наблюдений. */
+    public synchronized double latencyMs() {
+        return Double.isNaN(latencyNanos) ? 0 : latencyNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public synchronized long increases() {
+        return increases;
+    }
+
+    public synchronized long decreases() {
+        return decreases;
+    }
+
+}
@@ -0,0 +1,179 @@
+package org.ex9.auditlistener.codec;
+
+import com.github.luben.zstd.Zstd;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Кодек тел HTTP-запросов и ответов.
+ * <p>
+ * При {@code audit.http-body.storage=compressed} тела, размер которых в UTF-8 не меньше
+ * {@code audit.http-body.compression-threshold} байт, сжимаются zstd и сохраняются в колонки
+ * {@code bytea} ({@code request_body_data}, {@code response_body_data}). Первый байт сжатого
+ * значения — маркер кодека, остальное — данные кодека. Небольшие тела, а также тела,
+ * которые не удалось уменьшить, остаются в текстовых колонках. Для сжатых тел дополнительно
+ * выделяются слова для полнотекстового поиска ({@link SearchTerms}).
+ * </p>
+ * <p>
+ * Независимо от режима тело может быть обрезано до {@code audit.http-body.max-length}
+ * символов (0 — без ограничения).
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class HttpBodyCodec {
+
+    /** Маркер данных, сжатых zstd. */
+    public static final byte ZSTD = 1;
+
+    /** Суффикс, которым помечается обрезанное тело. */
+    public static final String TRUNCATION_MARKER = "...[truncated]";
+
+    private final boolean compress;
+    private final int compressionThreshold;
+    private final int compressionLevel;
+    private final int maxLength;
+
+    public HttpBodyCodec(@Value("${audit.http-body.storage:text}") String storage,
+                         @Value("${audit.http-body.compression-threshold:1024}") int compressionThreshold,
+                         @Value("${audit.http-body.compression-level:3}") int compressionLevel,
+                         @Value("${audit.http-body.max-length:0}") int maxLength) {
+        this.compress = switch (storage.toLowerCase()) {
+            case "text" -> false;
+            case "compressed" -> true;
+            default -> throw new IllegalArgumentException("Unsupported audit.http-body.storage: " + storage);
+        };
+        this.compressionThreshold = compressionThreshold;
+        this.compressionLevel = compressionLevel;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Представление тела для записи в базу данных: заполнено ровно одно из полей {@code text}
+     * и {@code data} либо ни одного.
+     *
+     * @param text  несжатое тело для текстовой колонки
+     * @param data  сжатое тело с маркером кодека для колонки {@code bytea}
+     * @param terms слова сжатого тела для полнотекстового поиска, см. {@link SearchTerms}
+     */
+    public record Encoded(String text, byte[] data, String terms) {
+
+        private static final Encoded EMPTY = new Encoded(null, null, null);
+
+        private static Encoded text(String text) {
+            return new Encoded(text, null, null);
+        }
+
+    }
+
+    /**
+     * Подготавливает тело к сохранению: обрезает по максимальной длине и при необходимости сжимает.
+     *
+     * @param body тело запроса или ответа, может быть {@code null}
+     * @return представление тела для записи
+     */
+    public Encoded encode(String body) {
+        if (body == null) {
+            return Encoded.EMPTY;
+        }
+        String value = truncate(body);
+        // символ занимает в UTF-8 не более трёх байт: заведомо короткие тела не переводим в байты
+        if (!compress || value.length() * 3L < compressionThreshold) {
+            return Encoded.text(value);
+        }
+
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < compressionThreshold) {
+            return Encoded.text(value);
+        }
+        byte[] compressed = compress(raw, 0, raw.length);
+        return compressed == null ? Encoded.text(value) : new Encoded(null, compressed, SearchTerms.of(value));
+    }
+
+    /**
+     * То же для тела, которое передано в UTF-8 без декодирования: крупное тело сжимается
+     * прямо из исходных байт, в {@link String} декодируются только тела для текстовой колонки.
+     *
+     * @param body тело запроса или ответа в UTF-8, может быть {@code null}
+     * @return представление тела для записи
+     */
+    public Encoded encode(Utf8Slice body) {
+        if (body == null) {
+            return Encoded.EMPTY;
+        }
+        // символов не больше, чем байт: без ограничения длины обрезать заведомо нечего,
+        // иначе обрезка по символам выполняется над строкой
+        if (maxLength > 0 && body.length() > maxLength) {
+            return encode(body.toString());
+        }
+        if (!compress || body.length() < compressionThreshold) {
+            return Encoded.text(body.toString());
+        }
+        byte[] compressed = compress(body.array(), body.offset(), body.length());
+        return compressed == null ? Encoded.text(body.toString()) : new Encoded(null, compressed, SearchTerms.of(body));
+    }
+
+    /**
+     * Сжимает тело zstd и добавляет маркер кодека.
+     *
+     * @return сжатое значение или {@code null}, если сжатие не удалось или не уменьшило размер
+     */
+    private byte[] compress(byte[] raw, int offset, int length) {
+        byte[] compressed = new byte[(int) Zstd.compressBound(length) + 1];
+        long size = Zstd.compressByteArray(compressed, 1, compressed.length - 1, raw, offset, length, compressionLevel);
+        if (Zstd.isError(size)) {
+            log.warn("zstd compression failed: {}, storing body as text", Zstd.getErrorName(size));
+            return null;
+        }
+        if (size + 1 >= length) {
+            return null;
+        }
+        compressed[0] = ZSTD;
+        return Arrays.copyOf(compressed, (int) size + 1);
+    }
+
+    /**
+     * Восстанавливает тело из сохранённого представления.
+     *
+     * @param text значение текстовой колонки
+     * @param data значение колонки {@code bytea}
+     * @return тело запроса или ответа, либо {@code null}, если оно не сохранялось
+     */
+    public static String decode(String text, byte[] data) {
+        if (data == null) {
+            return text;
+        }
+        if (data.length == 0 || data[0] != ZSTD) {
+            throw new IllegalStateException("Unknown HTTP body codec marker: "
+                    + (data.length == 0 ? "<empty>" : data[0]));
+        }
+        long size = Zstd.getFrameContentSize(data, 1, data.length - 1);
+        if (Zstd.isError(size) || size < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Corrupted zstd frame in HTTP body");
+        }
+        byte[] raw = new byte[(int) size];
+        long decompressed = Zstd.decompressByteArray(raw, 0, raw.length, data, 1, data.length - 1);
+        if (Zstd.isError(decompressed)) {
+            throw new IllegalStateException("Failed to decompress HTTP body: " + Zstd.getErrorName(decompressed));
+        }
+        return new String(raw, 0, (int) decompressed, StandardCharsets.UTF_8);
+    }
+
+    private String truncate(String body) {
+        if (maxLength <= 0 || body.length() <= maxLength) {
+            return body;
+        }
+        int end = maxLength;
+        if (Character.isHighSurrogate(body.charAt(end - 1))) {
+            end--;
+        }
+        log.debug("HTTP body truncated from {} to {} characters", body.length(), end);
+        return body.substring(0, end) + TRUNCATION_MARKER;
+    }
+
+}
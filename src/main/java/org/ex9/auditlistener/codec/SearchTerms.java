@@ -0,0 +1,126 @@
+package org.ex9.auditlistener.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Слова тела для полнотекстового поиска по телам, которые хранятся сжатыми.
+ * <p>
+ * Сжатое тело недоступно функциям БД, поэтому для него сохраняются различные слова тела
+ * через пробел в столбце {@code search_terms}, из которого вместе с текстовыми телами
+ * строится {@code search_vector}. Слова разделяются только символами, которые и разборщик
+ * {@code to_tsvector} считает разделителями (пробельные символы, кавычки, скобки JSON и запятая),
+ * поэтому лексемы совпадают с лексемами несжатого тела, а повторяющиеся ключи JSON сохраняются
+ * один раз. Длина результата ограничена {@link #MAX_LENGTH}, как и текст, из которого
+ * БД строит {@code search_vector}.
+ * </p>
+ * @author Краковцев Артём
+ */
+public final class SearchTerms {
+
+    /** Максимальная длина текста в символах, по которому строится {@code search_vector}. */
+    public static final int MAX_LENGTH = 256 * 1024;
+
+    private SearchTerms() {
+    }
+
+    /**
+     * Различные слова тела через пробел.
+     *
+     * @param body тело, может быть {@code null}
+     * @return слова или {@code null}, если слов нет
+     */
+    public static String of(String body) {
+        if (body == null) {
+            return null;
+        }
+        Collector collector = new Collector(body.length());
+        int start = -1;
+        for (int i = 0; i <= body.length() && !collector.full(); i++) {
+            boolean separator = i == body.length() || isSeparator(body.charAt(i));
+            if (separator && start >= 0) {
+                collector.add(body.substring(start, i));
+                start = -1;
+            } else if (!separator && start < 0) {
+                start = i;
+            }
+        }
+        return collector.result();
+    }
+
+    /**
+     * То же для тела в UTF-8: разделители — символы ASCII, которые не встречаются внутри
+     * многобайтовых последовательностей, поэтому слова выделяются без декодирования всего тела.
+     *
+     * @param body тело в UTF-8, может быть {@code null}
+     * @return слова или {@code null}, если слов нет
+     */
+    public static String of(Utf8Slice body) {
+        if (body == null) {
+            return null;
+        }
+        byte[] array = body.array();
+        int end = body.offset() + body.length();
+        Collector collector = new Collector(body.length());
+        int start = -1;
+        for (int i = body.offset(); i <= end && !collector.full(); i++) {
+            boolean separator = i == end || isSeparator((char) (array[i] & 0xFF));
+            if (separator && start >= 0) {
+                collector.add(new String(array, start, i - start, StandardCharsets.UTF_8));
+                start = -1;
+            } else if (!separator && start < 0) {
+                start = i;
+            }
+        }
+        return collector.result();
+    }
+
+    /**
+     * Объединяет слова тел запроса и ответа.
+     *
+     * @return слова или {@code null}, если слов нет ни в одном теле
+     */
+    public static String join(String requestTerms, String responseTerms) {
+        if (requestTerms == null) {
+            return responseTerms;
+        }
+        return responseTerms == null ? requestTerms : requestTerms + ' ' + responseTerms;
+    }
+
+    private static boolean isSeparator(char c) {
+        return switch (c) {
+            case ' ', '\t', '\n', '\r', '"', '{', '}', '[', ']', ',' -> true;
+            default -> false;
+        };
+    }
+
+    private static final class Collector {
+
+        private final Set<String> seen = new HashSet<>();
+        private final StringBuilder terms;
+
+        Collector(int bodyLength) {
+            this.terms = new StringBuilder(Math.min(bodyLength, MAX_LENGTH) / 4);
+        }
+
+        void add(String term) {
+            if (term.length() + terms.length() + 1 > MAX_LENGTH || !seen.add(term)) {
+                return;
+            }
+            if (!terms.isEmpty()) {
+                terms.append(' ');
+            }
+            terms.append(term);
+        }
+
+        boolean full() {
+            return terms.length() >= MAX_LENGTH - 1;
+        }
+
+        String result() {
+            return terms.isEmpty() ? null : terms.toString();
+        }
+    }
+
+}
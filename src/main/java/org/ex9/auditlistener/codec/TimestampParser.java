@@ -0,0 +1,246 @@
+package org.ex9.auditlistener.codec;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Разбор времени события, приведённого к UTC.
+ * <p>
+ * Принимает ISO-8601 {@code yyyy-MM-dd'T'HH:mm[:ss[.fffffffff]][Z|±HH[:mm]|±HHmm]}
+ * (вместо {@code T} допускается пробел) и миллисекунды от эпохи Unix. Время без смещения
+ * относится к зоне {@code audit.timestamp.default-zone}.
+ * </p>
+ * <p>
+ * Разбор выполняется без исключений и почти без выделения памяти: некорректное значение
+ * даёт {@code null}, а дата последнего значения запоминается, поэтому поток событий
+ * одного дня не разбирает и не проверяет дату повторно.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class TimestampParser {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int DATE_LENGTH = 10;
+    private static final int MAX_EPOCH_MILLI_DIGITS = 18;
+
+    /** Последняя разобранная дата ISO-значения. */
+    private record DateCache(String prefix, long epochDay) {
+    }
+
+    /** Последняя дата результата в UTC. */
+    private record UtcDate(long epochDay, LocalDate date) {
+    }
+
+    private final ZoneRules defaultZoneRules;
+    private final int defaultOffset;
+
+    private volatile DateCache dateCache = new DateCache("1970-01-01", 0);
+    private volatile UtcDate utcDate = new UtcDate(0, LocalDate.EPOCH);
+
+    public TimestampParser(@Value("${audit.timestamp.default-zone:UTC}") ZoneId defaultZone) {
+        this.defaultZoneRules = defaultZone.getRules();
+        this.defaultOffset = defaultZoneRules.isFixedOffset()
+                ? defaultZoneRules.getOffset(LocalDateTime.MIN).getTotalSeconds()
+                : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Разбирает время события.
+     *
+     * @param text ISO-8601 или миллисекунды от эпохи Unix, может быть {@code null}
+     * @return время в UTC или {@code null}, если значение отсутствует или не распознано
+     */
+    public OffsetDateTime parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        return text.length() >= DATE_LENGTH && text.charAt(4) == '-' ? parseIso(text) : parseEpochMilli(text);
+    }
+
+    /**
+     * Разбирает время события, подставляя запасное значение вместо отсутствующего или некорректного.
+     *
+     * @param text             ISO-8601 или миллисекунды от эпохи Unix, может быть {@code null}
+     * @param fallbackEpochMilli запасное время в миллисекундах от эпохи Unix, например время сообщения
+     *                         Kafka; отрицательное значение означает текущее время
+     * @return время в UTC
+     */
+    public OffsetDateTime parse(String text, long fallbackEpochMilli) {
+        OffsetDateTime timestamp = parse(text);
+        if (timestamp != null) {
+            return timestamp;
+        }
+        if (text != null) {
+            log.warn("Invalid timestamp: {}, using message time", text);
+        }
+        return ofEpochMilli(fallbackEpochMilli >= 0 ? fallbackEpochMilli : System.currentTimeMillis());
+    }
+
+    private OffsetDateTime parseIso(String text) {
+        int length = text.length();
+        long epochDay = epochDay(text);
+        if (epochDay == Long.MIN_VALUE || length < 16) {
+            return null;
+        }
+        char separator = text.charAt(10);
+        if (separator != 'T' && separator != 't' && separator != ' ' || text.charAt(13) != ':') {
+            return null;
+        }
+        int hour = twoDigits(text, 11);
+        int minute = twoDigits(text, 14);
+        int second = 0;
+        int nano = 0;
+        int position = 16;
+        if (position < length && text.charAt(position) == ':') {
+            second = twoDigits(text, position + 1);
+            position += 3;
+            if (position < length && (text.charAt(position) == '.' || text.charAt(position) == ',')) {
+                int start = ++position;
+                while (position < length && position - start < 9 && isDigit(text.charAt(position))) {
+                    nano = nano * 10 + text.charAt(position++) - '0';
+                }
+                if (position == start) {
+                    return null;
+                }
+                for (int i = position - start; i < 9; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        long localSecond = epochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+        int offset;
+        if (position == length) {
+            offset = defaultOffset != Integer.MIN_VALUE ? defaultOffset : zoneOffset(localSecond, nano);
+        } else {
+            char sign = text.charAt(position);
+            if (sign == 'Z' || sign == 'z') {
+                offset = 0;
+                position++;
+            } else if (sign == '+' || sign == '-') {
+                int offsetHours = twoDigits(text, position + 1);
+                int offsetMinutes = 0;
+                position += 3;
+                if (position < length) {
+                    if (text.charAt(position) == ':') {
+                        position++;
+                    }
+                    offsetMinutes = twoDigits(text, position);
+                    position += 2;
+                }
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return null;
+                }
+                offset = (sign == '-' ? -1 : 1) * (offsetHours * 3600 + offsetMinutes * 60);
+            } else {
+                return null;
+            }
+            if (position != length) {
+                return null;
+            }
+        }
+        return ofEpochSecond(localSecond - offset, nano);
+    }
+
+    private OffsetDateTime parseEpochMilli(String text) {
+        int length = text.length();
+        int start = text.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > MAX_EPOCH_MILLI_DIGITS) {
+            return null;
+        }
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return null;
+            }
+            value = value * 10 + c - '0';
+        }
+        return ofEpochMilli(start == 0 ? value : -value);
+    }
+
+    /**
+     * Номер дня {@code yyyy-MM-dd} в начале строки или {@link Long#MIN_VALUE}, если дата некорректна.
+     */
+    private long epochDay(String text) {
+        DateCache cached = dateCache;
+        if (text.startsWith(cached.prefix())) {
+            return cached.epochDay();
+        }
+        if (text.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int century = twoDigits(text, 0);
+        int yearOfCentury = twoDigits(text, 2);
+        int year = century * 100 + yearOfCentury;
+        int month = twoDigits(text, 5);
+        int day = twoDigits(text, 8);
+        if (century < 0 || yearOfCentury < 0 || month < 1|| month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        dateCache = new DateCache(text.substring(0, DATE_LENGTH), epochDay);
+        return epochDay;
+    }
+
+    private int zoneOffset(long localSecond, int nano) {
+        return defaultZoneRules.getOffset(LocalDateTime.ofEpochSecond(localSecond, nano, ZoneOffset.UTC))
+                .getTotalSeconds();
+    }
+
+    private OffsetDateTime ofEpochMilli(long epochMilli) {
+        return ofEpochSecond(Math.floorDiv(epochMilli, 1000), (int) Math.floorMod(epochMilli, 1000) * 1_000_000);
+    }
+
+    private OffsetDateTime ofEpochSecond(long epochSecond, int nano) {
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        long secondOfDay = Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        UtcDate cached = utcDate;
+        if (cached.epochDay() != epochDay) {
+            cached = new UtcDate(epochDay, LocalDate.ofEpochDay(epochDay));
+            utcDate = cached;
+        }
+        LocalTime time = LocalTime.ofNanoOfDay(secondOfDay * 1_000_000_000L + nano);
+        return OffsetDateTime.of(LocalDateTime.of(cached.date(), time), ZoneOffset.UTC);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /** Двузначное число с позиции {@code index} или отрицательное значение, если это не цифры. */
+    private static int twoDigits(String text, int index) {
+        if (index + 2 > text.length()) {
+            return -1;
+        }
+        char high = text.charAt(index);
+        char low = text.charAt(index + 1);
+        if (!isDigit(high) || !isDigit(low)) {
+            return -1;
+        }
+        return (high - '0') * 10 + low - '0';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+}
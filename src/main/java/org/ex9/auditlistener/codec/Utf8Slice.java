@@ -0,0 +1,54 @@
+package org.ex9.auditlistener.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Фрагмент массива байт с текстом в UTF-8 — строковое значение, ещё не декодированное в {@link String}.
+ * <p>
+ * Может ссылаться на массив исходного сообщения без копирования, поэтому массив не должен
+ * изменяться, пока фрагмент используется.
+ * </p>
+ *
+ * @param array  исходный массив
+ * @param offset начало текста в массиве
+ * @param length длина текста в байтах
+ * @author Краковцев Артём
+ */
+public record Utf8Slice(byte[] array, int offset, int length) {
+
+    /**
+     * Декодирует текст.
+     */
+    @Override
+    public String toString() {
+        return new String(array, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Возвращает длину строки в UTF-8 без её кодирования.
+     *
+     * @param value строка, {@code null} считается пустой
+     * @return длина в байтах
+     */
+    public static int encodedLength(CharSequence value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = value.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                bytes += 2;
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // суррогатная пара — 4 байта на две char
+                    i++;
+                }
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+}
@@ -1,21 +1,36 @@
 package org.ex9.auditlistener.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.ex9.auditlistener.batching.AdaptiveBatchController;
+import org.ex9.auditlistener.listener.RetryTopics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.transaction.KafkaTransactionManager;
 import org.springframework.util.backoff.FixedBackOff;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -25,6 +40,14 @@ import java.util.UUID;
  * Содержит настройки производителя и потребителя сообщений, включая параметры
  * идемпотентности, транзакций и управления обработкой ошибок.
  * </p>
+ * <p>
+ * Сообщения, которые не удалось обработать, не повторяются на месте и не задерживают партицию:
+ * они перекладываются в топики повторов, а затем в DLT ({@link RetryTopics}).
+ * </p>
+ * <p>
+ * В режиме {@code routed} Audit- и HTTP-логи читаются из разных топиков контейнерами
+ * с отдельными фабриками и настройками {@code audit.kafka.routing.<тип>.*}.
+ * </p>
  * @author Краковцев Артём
  */
 @Configuration
@@ -32,38 +55,109 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class KafkaConfig {
 
+    private final MeterRegistry meterRegistry;
+    private final RetryTopics retryTopics;
+    private final AdaptiveBatchController adaptiveBatchController;
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String kafkaBootstrapServers;
 
+    @Value("${audit.kafka.concurrency:1}")
+    private int concurrency;
+
+    @Value("${audit.kafka.batch.size:500}")
+    private int batchSize;
+
+    @Value("${audit.kafka.batch.linger-ms:50}")
+    private int batchLingerMs;
+
+    @Value("${audit.kafka.batch.min-bytes:65536}")
+    private int batchMinBytes;
+
+    @Value("${audit.kafka.parallel.max-poll-records:500}")
+    private int parallelMaxPollRecords;
+
+    @Value("${audit.kafka.buffer.max-poll-records:500}")
+    private int bufferMaxPollRecords;
+
+    @Value("${audit.kafka.retry.partitions:1}")
+    private int retryPartitions;
+
+    @Value("${audit.kafka.routing.audit.concurrency:1}")
+    private int auditTopicConcurrency;
+
+    @Value("${audit.kafka.routing.audit.batch-size:100}")
+    private int auditTopicBatchSize;
+
+    @Value("${audit.kafka.routing.audit.linger-ms:10}")
+    private int auditTopicLingerMs;
+
+    @Value("${audit.kafka.routing.audit.min-bytes:1}")
+    private int auditTopicMinBytes;
+
+    @Value("${audit.kafka.routing.http.concurrency:3}")
+    private int httpTopicConcurrency;
+
+    @Value("${audit.kafka.routing.http.batch-size:1000}")
+    private int httpTopicBatchSize;
+
+    @Value("${audit.kafka.routing.http.linger-ms:100}")
+    private int httpTopicLingerMs;
+
+    @Value("${audit.kafka.routing.http.min-bytes:262144}")
+    private int httpTopicMinBytes;
+
     /**
      * Создает бин фабрики consumer с EOS настройками.
      */
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, byte[]> consumerFactory() {
+        Map<String, Object> props = consumerProps();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
+
+        return instrumentedConsumerFactory(props);
+    }
+
+    /**
+     * Создаёт фабрику consumer, публикующую метрики клиента Kafka в Micrometer
+     * (в том числе {@code kafka.consumer.fetch.manager.records.lag} по каждой партиции).
+     */
+    private ConsumerFactory<String, byte[]> instrumentedConsumerFactory(Map<String, Object> props) {
+        DefaultKafkaConsumerFactory<String, byte[]> factory = new DefaultKafkaConsumerFactory<>(props);
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
+    }
+
+    /**
+     * Общие настройки consumer: EOS, ручная фиксация смещений.
+     * Значение сообщения не декодируется в строку: JSON и двоичные форматы разбираются прямо из байт
+     * ({@link org.ex9.auditlistener.listener.LogEventParser#parse(org.apache.kafka.clients.consumer.ConsumerRecord)}).
+     */
+    private Map<String, Object> consumerProps() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "audit-log-group");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
         props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
         props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 300000);
         props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
-        return new DefaultKafkaConsumerFactory<>(props);
+        return props;
     }
 
     /**
      * Создает бин фабрики producer с поддержкой транзакций.
+     * Значения публикуются как есть: в топики повторов и DLT попадают исходные байты сообщения.
      */
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, byte[]> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaBootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
 
         configProps.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, "audit-listener-tx-" + UUID.randomUUID());
@@ -79,7 +173,7 @@ public class KafkaConfig {
      * Создает бин менеджера транзакций для Kafka.
      */
     @Bean("kafkaTransactionManager")
-    public KafkaTransactionManager kafkaTransactionManager(ProducerFactory<String, String> producerFactory) {
+    public KafkaTransactionManager kafkaTransactionManager(ProducerFactory<String, byte[]> producerFactory) {
         return new KafkaTransactionManager(producerFactory);
     }
 
@@ -87,21 +181,109 @@ public class KafkaConfig {
      * Создает бин фабрики container listener с соответсвующей фабрикой consumer.
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory(
-            ConsumerFactory<String, String> consumerFactory,
-            KafkaTransactionManager kafkaTransactionManager) {
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> consumerFactory,
+            KafkaTransactionManager kafkaTransactionManager,
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
 
-        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
 
         factory.setConsumerFactory(consumerFactory);
         factory.getContainerProperties().setKafkaAwareTransactionManager(kafkaTransactionManager);
         factory.getContainerProperties().setSyncCommits(true);
-        factory.setConcurrency(1);
+        factory.setConcurrency(concurrency);
+        factory.setCommonErrorHandler(errorHandler(deadLetterPublishingRecoverer));
+        factory.setAfterRollbackProcessor(afterRollbackProcessor(deadLetterPublishingRecoverer, kafkaTemplate));
+
+        factory.getContainerProperties().setIdleEventInterval(60000L);
+        factory.getContainerProperties().setPollTimeout(3000);
+
+        return factory;
+    }
+
+    /**
+     * Создает бин фабрики container listener для пакетного режима.
+     * <p>
+     * За один poll выбирается до {@code audit.kafka.batch.size} сообщений. Брокер задерживает
+     * ответ на fetch до {@code audit.kafka.batch.linger-ms} мс, пока не наберётся
+     * {@code audit.kafka.batch.min-bytes} байт, что позволяет накапливать пакет при низкой нагрузке.
+     * Если включён {@link AdaptiveBatchController}, за poll выбирается до его верхней границы
+     * размера пакета: размер пакета записи в этих пределах listener подбирает сам.
+     * </p>
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> batchKafkaListenerContainerFactory(
+            KafkaTransactionManager kafkaTransactionManager,
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+
+        int maxPollRecords = adaptiveBatchController.isEnabled()
+                ? Math.max(batchSize, adaptiveBatchController.maxBatchSize())
+                : batchSize;
+        return transactionalBatchFactory(concurrency, maxPollRecords, batchLingerMs, batchMinBytes,
+                kafkaTransactionManager, kafkaTemplate, deadLetterPublishingRecoverer);
+    }
+
+    /**
+     * Создает бин фабрики container listener топика Audit-логов в режиме {@code routed}.
+     * <p>
+     * Пакетный транзакционный контейнер, как в режиме {@code batch}, со своими настройками
+     * {@code audit.kafka.routing.audit.*}: небольшие пакеты и короткое ожидание fetch, чтобы
+     * Audit-события сохранялись с малой задержкой.
+     * </p>
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> auditTopicKafkaListenerContainerFactory(
+            KafkaTransactionManager kafkaTransactionManager,
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        return transactionalBatchFactory(auditTopicConcurrency, auditTopicBatchSize, auditTopicLingerMs,
+                auditTopicMinBytes, kafkaTransactionManager, kafkaTemplate, deadLetterPublishingRecoverer);
+    }
+
+    /**
+     * Создает бин фабрики container listener топика HTTP-логов в режиме {@code routed}.
+     * <p>
+     * Настройки {@code audit.kafka.routing.http.*}: больше потоков и крупные пакеты с накоплением
+     * на стороне брокера под большой поток объёмных сообщений.
+     * </p>
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> httpTopicKafkaListenerContainerFactory(
+            KafkaTransactionManager kafkaTransactionManager,
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        return transactionalBatchFactory(httpTopicConcurrency, httpTopicBatchSize, httpTopicLingerMs,
+                httpTopicMinBytes, kafkaTransactionManager, kafkaTemplate, deadLetterPublishingRecoverer);
+    }
 
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
-                new FixedBackOff(1000L, 3)); // 3 попытки с интервалом 1 сек
-        factory.setCommonErrorHandler(errorHandler);
+    /**
+     * Пакетная фабрика контейнеров с транзакцией Kafka: за poll выбирается до {@code maxPollRecords}
+     * сообщений, брокер задерживает ответ на fetch до {@code lingerMs} мс, пока не наберётся
+     * {@code minBytes} байт. Обработчики ошибок создаются для каждой фабрики свои.
+     */
+    private ConcurrentKafkaListenerContainerFactory<String, byte[]> transactionalBatchFactory(
+            int concurrency, int maxPollRecords, int lingerMs, int minBytes,
+            KafkaTransactionManager kafkaTransactionManager,
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        Map<String, Object> props = consumerProps();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, minBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, lingerMs);
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(instrumentedConsumerFactory(props));
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setKafkaAwareTransactionManager(kafkaTransactionManager);
+        factory.getContainerProperties().setSyncCommits(true);
+        factory.setConcurrency(concurrency);
+        factory.setCommonErrorHandler(errorHandler(deadLetterPublishingRecoverer));
+        factory.setAfterRollbackProcessor(afterRollbackProcessor(deadLetterPublishingRecoverer, kafkaTemplate));
 
         factory.getContainerProperties().setIdleEventInterval(60000L);
         factory.getContainerProperties().setPollTimeout(3000);
@@ -109,11 +291,160 @@ public class KafkaConfig {
         return factory;
     }
 
+    /**
+     * Создает бин фабрики container listener для параллельного режима.
+     * <p>
+     * Контейнер не транзакционный и сам смещения не фиксирует ({@link ContainerProperties.AckMode#MANUAL}):
+     * listener фиксирует их через consumer после обработки, только до первого
+     * необработанного сообщения каждой партиции.
+     * </p>
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> parallelKafkaListenerContainerFactory(
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        Map<String, Object> props = consumerProps();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, parallelMaxPollRecords);
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(instrumentedConsumerFactory(props));
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setSyncCommits(true);
+        factory.setConcurrency(concurrency);
+        factory.setCommonErrorHandler(errorHandler(deadLetterPublishingRecoverer));
+
+        factory.getContainerProperties().setIdleEventInterval(60000L);
+        factory.getContainerProperties().setPollTimeout(3000);
+
+        return factory;
+    }
+
+    /**
+     * Создает бин фабрики container listener для режима с буфером отложенной записи.
+     * <p>
+     * Контейнер не транзакционный и сам смещения не фиксирует ({@link ContainerProperties.AckMode#MANUAL}):
+     * потоки записи подтверждают poll после его записи, а контейнер фиксирует смещения
+     * в потоке consumer перед следующим poll.
+     * </p>
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> bufferedKafkaListenerContainerFactory(
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        Map<String, Object> props = consumerProps();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, bufferMaxPollRecords);
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(instrumentedConsumerFactory(props));
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setSyncCommits(true);
+        factory.setConcurrency(concurrency);
+        factory.setCommonErrorHandler(errorHandler(deadLetterPublishingRecoverer));
+
+        factory.getContainerProperties().setIdleEventInterval(60000L);
+        factory.getContainerProperties().setPollTimeout(3000);
+
+        return factory;
+    }
+
+    /**
+     * Создает бин фабрики container listener для топиков повторов.
+     * <p>
+     * Контейнер не транзакционный, смещения фиксируются вручную после обработки сообщения.
+     * Пока не наступил момент повтора, listener откладывает сообщение через
+     * {@link org.springframework.kafka.support.Acknowledgment#nack}: consumer приостанавливается,
+     * не блокируя поток и не нарушая {@code max.poll.interval.ms}.
+     * </p>
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> retryKafkaListenerContainerFactory(
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        Map<String, Object> props = consumerProps();
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "audit-log-retry-group");
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+
+        factory.setConsumerFactory(instrumentedConsumerFactory(props));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setSyncCommits(true);
+        factory.setCommonErrorHandler(errorHandler(deadLetterPublishingRecoverer));
+
+        factory.getContainerProperties().setPollTimeout(3000);
+
+        return factory;
+    }
+
+    /**
+     * Создает бин публикации необработанных сообщений в топики повторов и DLT.
+     * <p>
+     * Сообщение публикуется с исходными ключом и значением; {@link DeadLetterPublishingRecoverer}
+     * добавляет заголовки с исходными топиком, партицией, смещением и описанием ошибки,
+     * а здесь добавляется {@link RetryTopics#DUE_AT_HEADER}. Внутри транзакции контейнера
+     * публикация выполняется в ней, в нетранзакционных контейнерах — без транзакции.
+     * </p>
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(ProducerFactory<String, byte[]> producerFactory) {
+        KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(producerFactory);
+        template.setAllowNonTransactional(true);
+
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(template,
+                (consumerRecord, exception) ->
+                        new TopicPartition(retryTopics.destination(consumerRecord, exception), -1));
+        // в DLT остаются топик, партиция и смещение из основного топика, а не из последнего топика повторов
+        recoverer.setAppendOriginalHeaders(false);
+        recoverer.setHeadersFunction((consumerRecord, exception) -> {
+            long dueAt = System.currentTimeMillis()
+                    + retryTopics.delay(retryTopics.destination(consumerRecord, exception)).toMillis();
+            return new RecordHeaders().add(RetryTopics.DUE_AT_HEADER,
+                    Long.toString(dueAt).getBytes(StandardCharsets.UTF_8));
+        });
+        return recoverer;
+    }
+
+    /**
+     * Создает бин топиков повторов и DLT (создаются при старте, если их нет).
+     */
+    @Bean
+    public KafkaAdmin.NewTopics retryTopicsDeclaration() {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String topic : retryTopics.retryTopics()) {
+            topics.add(TopicBuilder.name(topic).partitions(retryPartitions).build());
+        }
+        topics.add(TopicBuilder.name(retryTopics.deadLetterTopic()).partitions(retryPartitions).build());
+        return new KafkaAdmin.NewTopics(topics.toArray(NewTopic[]::new));
+    }
+
+    /**
+     * Обработчик ошибок нетранзакционных контейнеров: сообщение сразу, без блокирующих повторов,
+     * перекладывается в топик повторов, и его смещение фиксируется.
+     */
+    private DefaultErrorHandler errorHandler(DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(deadLetterPublishingRecoverer, new FixedBackOff(0L, 0L));
+        errorHandler.setCommitRecovered(true);
+        return errorHandler;
+    }
+
+    /**
+     * То же для транзакционных контейнеров: после отката сообщение публикуется в топик повторов
+     * в новой транзакции вместе с фиксацией его смещения.
+     */
+    private DefaultAfterRollbackProcessor<String, byte[]> afterRollbackProcessor(
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer, KafkaTemplate<String, byte[]> kafkaTemplate) {
+        return new DefaultAfterRollbackProcessor<>(deadLetterPublishingRecoverer, new FixedBackOff(0L, 0L),
+                kafkaTemplate, true);
+    }
+
     /**
      * Создает бин kafka шаблона.
      */
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate(ProducerFactory<String, String> producerFactory) {
+    public KafkaTemplate<String, byte[]> kafkaTemplate(ProducerFactory<String, byte[]> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
 
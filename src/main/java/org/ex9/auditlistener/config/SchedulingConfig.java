@@ -0,0 +1,13 @@
+package org.ex9.auditlistener.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Включает выполнение периодических задач ({@code @Scheduled}).
+ * @author Краковцев Артём
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,132 @@
+package org.ex9.auditlistener.dedup;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.ex9.auditlistener.repository.AuditLogRepository;
+import org.ex9.auditlistener.repository.HttpLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Отсев повторно доставленных сообщений перед обращением к БД.
+ * <p>
+ * Для Audit- и HTTP-логов ведутся отдельные {@link MessageIdFilter}. Сообщения из кэша
+ * последних сохранённых идентификаторов отбрасываются без обращения к БД; остальные
+ * повторы отсекаются при вставке ({@code ON CONFLICT DO NOTHING}). Идентификатор попадает
+ * в фильтр только после фиксации транзакции, в которой сообщение было сохранено.
+ * </p>
+ * <p>
+ * При старте фильтры заполняются идентификаторами последних сохранённых записей
+ * (не более {@code audit.dedup.recent-size}).
+ * Отключается свойством {@code audit.dedup.enabled=false}: тогда повторы отсекаются только в БД.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class MessageDeduplicator {
+
+    private final AuditLogRepository auditLogRepository;
+    private final HttpLogRepository httpLogRepository;
+    private final boolean enabled;
+    private final int warmupLimit;
+    private final int recentSize;
+    private final MessageIdFilter auditFilter;
+    private final MessageIdFilter httpFilter;
+
+    public MessageDeduplicator(AuditLogRepository auditLogRepository,
+                               HttpLogRepository httpLogRepository,
+                               @Value("${audit.dedup.enabled:true}") boolean enabled,
+                               @Value("${audit.dedup.recent-size:10000}") int recentSize,
+                               @Value("${audit.dedup.warmup-limit:10000}") int warmupLimit) {
+        this.auditLogRepository = auditLogRepository;
+        this.httpLogRepository = httpLogRepository;
+        this.enabled = enabled;
+        this.warmupLimit = warmupLimit;
+        this.recentSize = recentSize;
+        this.auditFilter = new MessageIdFilter(recentSize);
+        this.httpFilter = new MessageIdFilter(recentSize);
+    }
+
+    /**
+     * Заполняет фильтры идентификаторами последних сохранённых логов.
+     */
+    @PostConstruct
+    public void warmUp() {
+        if (!enabled || warmupLimit <= 0) {
+            return;
+        }
+        Limit limit = Limit.of(Math.min(warmupLimit, recentSize));
+        List<String> auditIds = auditLogRepository.findRecentMessageIds(limit);
+        List<String> httpIds = httpLogRepository.findRecentMessageIds(limit);
+        // идентификаторы идут от новых к старым: последними в кэш должны попасть самые новые
+        auditIds.reversed().forEach(auditFilter::put);
+        httpIds.reversed().forEach(httpFilter::put);
+        log.info("Dedup filters warmed up: audit={}, http={}", auditIds.size(), httpIds.size());
+    }
+
+    /**
+     * Проверяет по кэшу последних идентификаторов, что Audit-лог точно уже сохранён.
+     * Обращения к БД не выполняет.
+     */
+    public boolean isRecentAudit(String messageId) {
+        return isRecent(auditFilter, messageId);
+    }
+
+    /**
+     * Проверяет по кэшу последних идентификаторов, что HTTP-лог точно уже сохранён.
+     * Обращения к БД не выполняет.
+     */
+    public boolean isRecentHttp(String messageId) {
+        return isRecent(httpFilter, messageId);
+    }
+
+    /**
+     * Запоминает сохранённые Audit-логи после фиксации текущей транзакции.
+     */
+    public void markAuditSaved(Collection<String> messageIds) {
+        markSaved(auditFilter, messageIds);
+    }
+
+    /**
+     * Запоминает сохранённые HTTP-логи после фиксации текущей транзакции.
+     */
+    public void markHttpSaved(Collection<String> messageIds) {
+        markSaved(httpFilter, messageIds);
+    }
+
+    public MessageIdFilter.Stats auditStats() {
+        return auditFilter.stats();
+    }
+
+    public MessageIdFilter.Stats httpStats() {
+        return httpFilter.stats();
+    }
+
+    private boolean isRecent(MessageIdFilter filter, String messageId) {
+        return enabled && messageId != null && filter.isRecent(messageId);
+    }
+
+    private void markSaved(MessageIdFilter filter, Collection<String> messageIds) {
+        if (!enabled || messageIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messageIds.forEach(filter::put);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageIds.forEach(filter::put);
+            }
+        });
+    }
+
+}
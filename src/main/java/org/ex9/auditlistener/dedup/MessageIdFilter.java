@@ -0,0 +1,71 @@
+package org.ex9.auditlistener.dedup;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш последних сохранённых {@code messageId}.
+ * <p>
+ * LRU-кэш фиксированного размера: идентификатор, найденный в кэше, точно уже сохранялся;
+ * отсутствие в кэше ничего не гарантирует, такие повторы отсекаются при вставке в БД.
+ * Класс потокобезопасен.
+ * </p>
+ * @author Краковцев Артём
+ */
+public class MessageIdFilter {
+
+    /** Снимок счётчиков фильтра. */
+    public record Stats(long checks, long duplicates, int size) {
+    }
+
+    private final Map<String, Boolean> recent;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * @param capacity размер кэша
+     */
+    public MessageIdFilter(int capacity) {
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Проверяет, есть ли идентификатор в кэше.
+     *
+     * @param messageId идентификатор сообщения
+     * @return {@code true}, если идентификатор точно добавлялся
+     */
+    public boolean isRecent(String messageId) {
+        checks.increment();
+        if (recent.containsKey(messageId)) {
+            duplicates.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Запоминает идентификатор.
+     *
+     * @param messageId идентификатор сообщения
+     */
+    public void put(String messageId) {
+        recent.put(messageId, Boolean.TRUE);
+    }
+
+    /**
+     * Возвращает текущие значения счётчиков и число идентификаторов в кэше.
+     */
+    public Stats stats() {
+        return new Stats(checks.sum(), duplicates.sum(), recent.size());
+    }
+
+}
@@ -0,0 +1,221 @@
+package org.ex9.auditlistener.dictionary;
+
+import lombok.extern.log4j.Log4j2;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Словарь повторяющихся значений столбцов логов ({@code log_dictionary}).
+ * <p>
+ * Вместо текста в строках логов хранятся целочисленные ссылки на словарь. Соответствие
+ * значения идентификатору кэшируется в памяти и заполняется лениво: отсутствующие в кэше
+ * значения пакета ищутся и при необходимости добавляются в словарь одним запросом на вид
+ * значения ({@code INSERT ... ON CONFLICT DO NOTHING}). Вставка идёт в транзакции сохранения
+ * логов, поэтому идентификатор попадает в кэш только после её фиксации: откат не оставит
+ * в кэше ссылку на несуществующую запись.
+ * </p>
+ * <p>
+ * Размер кэша каждого вида ограничен {@code audit.dictionary.cache-size}; значения сверх
+ * него по-прежнему разрешаются, но через запрос к БД.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class LogDictionary {
+
+    /** Вид значения; хранится в {@code log_dictionary.kind}. */
+    public enum Kind {
+        EVENT_TYPE, METHOD_NAME, LOG_LEVEL, HTTP_METHOD, DIRECTION, URL_TEMPLATE;
+
+        /** Значение столбца {@code kind}. */
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** Уникальный индекс словаря построен по {@code (kind, md5(value))}: длинный шаблон URL не помещается в ключ. */
+    private static final String SELECT_SQL = "SELECT d.value, d.id FROM unnest(?::text[]) AS v(value) "
+            + "JOIN log_dictionary d ON d.kind = ? AND md5(d.value) = md5(v.value) AND d.value = v.value";
+
+    /** Значения сортируются, чтобы параллельные транзакции блокировали новые ключи в одном порядке. */
+    private static final String INSERT_SQL = "INSERT INTO log_dictionary (kind, value) "
+            + "SELECT ?, value FROM unnest(?::text[]) AS value ORDER BY value "
+            + "ON CONFLICT (kind, md5(value)) DO NOTHING RETURNING value, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int cacheSize;
+    private final Map<Kind, Map<String, Integer>> cache = new EnumMap<>(Kind.class);
+
+    public LogDictionary(JdbcTemplate jdbcTemplate,
+                         @Value("${audit.dictionary.cache-size:100000}") int cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheSize = cacheSize;
+        for (Kind kind : Kind.values()) {
+            cache.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Заполняет ссылки на словарь в Audit-логах, добавляя в словарь новые значения.
+     */
+    public void encodeAuditLogs(List<AuditLogEntity> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> types = resolve(Kind.EVENT_TYPE, auditLogs, AuditLogEntity::getEventType);
+        Map<String, Integer> methods = resolve(Kind.METHOD_NAME, auditLogs, AuditLogEntity::getMethodName);
+        Map<String, Integer> levels = resolve(Kind.LOG_LEVEL, auditLogs, AuditLogEntity::getLogLevel);
+        for (AuditLogEntity auditLog : auditLogs) {
+            auditLog.setEventTypeId(idOf(types, auditLog.getEventType()));
+            auditLog.setMethodNameId(idOf(methods, auditLog.getMethodName()));
+            auditLog.setLogLevelId(idOf(levels, auditLog.getLogLevel()));
+        }
+    }
+
+    /**
+     * Заполняет ссылки на словарь в HTTP-логах, разбивая URL на шаблон, параметры и запрос
+     * ({@link UrlTemplate}) и добавляя в словарь новые значения.
+     */
+    public void encodeHttpLogs(List<HttpLogEntity> httpLogs) {
+        if (httpLogs.isEmpty()) {
+            return;
+        }
+        List<String> templates = new ArrayList<>(httpLogs.size());
+        for (HttpLogEntity httpLog : httpLogs) {
+            UrlTemplate.Parts url = UrlTemplate.split(httpLog.getUrl());
+            templates.add(url.template());
+            httpLog.setUrlParams(url.params());
+            httpLog.setUrlQuery(url.query());
+        }
+        Map<String, Integer> methods = resolve(Kind.HTTP_METHOD, httpLogs, HttpLogEntity::getMethod);
+        Map<String, Integer> directions = resolve(Kind.DIRECTION, httpLogs, HttpLogEntity::getDirection);
+        Map<String, Integer> templateIds = resolve(Kind.URL_TEMPLATE, templates, Function.identity());
+        for (int i = 0; i < httpLogs.size(); i++) {
+            HttpLogEntity httpLog = httpLogs.get(i);
+            httpLog.setMethodId(idOf(methods, httpLog.getMethod()));
+            httpLog.setDirectionId(idOf(directions, httpLog.getDirection()));
+            httpLog.setUrlTemplateId(templateIds.get(templates.get(i)));
+        }
+    }
+
+    /**
+     * Возвращает идентификатор значения, не добавляя его в словарь.
+     *
+     * @return идентификатор или {@code null}, если значения в словаре нет
+     */
+    public Integer find(Kind kind, String value) {
+        Integer id = cache.get(kind).get(value);
+        if (id != null) {
+            return id;
+        }
+        Map<String, Integer> found = select(kind, List.of(value));
+        cacheAll(kind, found);
+        return found.get(value);
+    }
+
+    private <T> Map<String, Integer> resolve(Kind kind, Collection<T> items, Function<T, String> value) {
+        Map<String, Integer> kindCache = cache.get(kind);
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = null;
+        for (T item : items) {
+            String v = value.apply(item);
+            if (v == null || ids.containsKey(v)) {
+                continue;
+            }
+            Integer id = kindCache.get(v);
+            if (id != null) {
+                ids.put(v, id);
+            } else {
+                if (missing == null) {
+                    missing = new TreeSet<>();
+                }
+                missing.add(v);
+            }
+        }
+        if (missing == null) {
+            return ids;
+        }
+
+        Map<String, Integer> resolved = select(kind, missing);
+        missing.removeAll(resolved.keySet());
+        if (!missing.isEmpty()) {
+            resolved.putAll(insert(kind, missing));
+            missing.removeAll(resolved.keySet());
+        }
+        if (!missing.isEmpty()) {
+            // значение добавила параллельная транзакция, зафиксированная после начала вставки
+            resolved.putAll(select(kind, missing));
+            missing.removeAll(resolved.keySet());
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Failed to resolve " + kind.key() + " values: " + missing);
+        }
+        log.debug("Resolved {} new {} values", resolved.size(), kind.key());
+        ids.putAll(resolved);
+        cacheAfterCommit(kind, resolved);
+        return ids;
+    }
+
+    private Map<String, Integer> select(Kind kind, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query(SELECT_SQL, rs -> {
+            ids.put(rs.getString(1), rs.getInt(2));
+        }, values.toArray(String[]::new), kind.key());
+        return ids;
+    }
+
+    private Map<String, Integer> insert(Kind kind, Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query(INSERT_SQL, rs -> {
+            ids.put(rs.getString(1), rs.getInt(2));
+        }, kind.key(), values.toArray(String[]::new));
+        return ids;
+    }
+
+    private void cacheAfterCommit(Kind kind, Map<String, Integer> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cacheAll(kind, ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheAll(kind, ids);
+            }
+        });
+    }
+
+    private void cacheAll(Kind kind, Map<String, Integer> ids) {
+        Map<String, Integer> kindCache = cache.get(kind);
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            if (kindCache.size() >= cacheSize) {
+                break;
+            }
+            kindCache.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static Integer idOf(Map<String, Integer> ids, String value) {
+        return value == null ? null : Objects.requireNonNull(ids.get(value), value);
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.ex9.auditlistener.dictionary;
+
+/**
+ * Распознавание сегментов пути URL, похожих на идентификаторы.
+ * <p>
+ * Такой сегмент заменяется заполнителем: {@link #ID} — число, {@link #UUID} — UUID,
+ * {@link #HEX} — шестнадцатеричная строка от {@value #MIN_HEX_LENGTH} символов.
+ * Правила общие для {@link UrlTemplate} (хранение URL) и
+ * {@link org.ex9.auditlistener.rollup.UrlNormalizer} (маршруты агрегатов). Их же повторяет
+ * функция БД {@code log_url_split}: при изменении правил её нужно обновить миграцией,
+ * иначе шаблоны, построенные в БД и в приложении, разойдутся.
+ * </p>
+ * @author Краковцев Артём
+ */
+public final class UrlSegment {
+
+    public static final String ID = "{id}";
+    public static final String UUID = "{uuid}";
+    public static final String HEX = "{hex}";
+
+    /** Минимальная длина шестнадцатеричного идентификатора. */
+    public static final int MIN_HEX_LENGTH = 16;
+
+    private static final int UUID_LENGTH = 36;
+
+    private UrlSegment() {
+    }
+
+    /**
+     * Возвращает заполнитель для сегмента {@code url[from, to)}.
+     *
+     * @return {@link #ID}, {@link #UUID}, {@link #HEX} или {@code null}, если сегмент
+     *         пустой или не похож на идентификатор
+     */
+    public static String placeholder(CharSequence url, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        boolean digits = true;
+        boolean hex = true;
+        for (int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            digits &= c >= '0' && c <= '9';
+            hex &= isHexDigit(c);
+        }
+        if (digits) {
+            return ID;
+        }
+        if (isUuid(url, from, to)) {
+            return UUID;
+        }
+        return hex && to - from >= MIN_HEX_LENGTH ? HEX : null;
+    }
+
+    private static boolean isUuid(CharSequence url, int from, int to) {
+        if (to - from != UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = url.charAt(from + i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : !isHexDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHexDigit(char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+}
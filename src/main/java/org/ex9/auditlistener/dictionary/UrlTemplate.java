@@ -0,0 +1,111 @@
+package org.ex9.auditlistener.dictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбиение URL на шаблон пути, значения параметров пути и строку запроса — без потерь.
+ * <p>
+ * URL делится по {@code /}; сегменты-идентификаторы заменяются в шаблоне заполнителями
+ * ({@link UrlSegment}), а их значения по порядку переносятся в параметры. Строка запроса
+ * и фрагмент (начиная с первого {@code ?} или {@code #}) хранятся отдельно. Например,
+ * {@code https://host/api/users/42/orders?page=2} — это шаблон
+ * {@code https://host/api/users/{id}/orders}, параметры {@code [42]} и запрос {@code ?page=2}.
+ * </p>
+ * <p>
+ * Путь, уже содержащий {@code {}, не шаблонизируется, чтобы {@link #join} восстанавливал
+ * его однозначно. Те же правила повторяет функция БД {@code log_url_split}.
+ * </p>
+ * @author Краковцев Артём
+ */
+public final class UrlTemplate {
+
+    private static final String[] PLACEHOLDERS = {UrlSegment.ID, UrlSegment.UUID, UrlSegment.HEX};
+
+    /**
+     * Части URL.
+     *
+     * @param template шаблон пути
+     * @param params   значения заполнителей по порядку, {@code null} если их нет
+     * @param query    строка запроса с {@code ?} и/или фрагмент с {@code #}, {@code null} если их нет
+     */
+    public record Parts(String template, String[] params, String query) {
+    }
+
+    private UrlTemplate() {
+    }
+
+    /**
+     * Разбивает URL на части.
+     *
+     * @param url URL, не {@code null}
+     */
+    public static Parts split(String url) {
+        int end = url.length();
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        String path = url.substring(0, end);
+        String query = end < url.length() ? url.substring(end) : null;
+        if (path.indexOf('{') >= 0) {
+            return new Parts(path, null, query);
+        }
+
+        StringBuilder template = new StringBuilder(path.length());
+        List<String> params = new ArrayList<>(2);
+        int segment = 0;
+        while (true) {
+            int next = path.indexOf('/', segment);
+            int segmentEnd = next < 0 ? path.length() : next;
+            String placeholder = UrlSegment.placeholder(path, segment, segmentEnd);
+            if (placeholder == null) {
+                template.append(path, segment, segmentEnd);
+            } else {
+                template.append(placeholder);
+                params.add(path.substring(segment, segmentEnd));
+            }
+            if (next < 0) {
+                break;
+            }
+            template.append('/');
+            segment = next + 1;
+        }
+        return new Parts(template.toString(), params.isEmpty() ? null : params.toArray(String[]::new), query);
+    }
+
+    /**
+     * Восстанавливает URL из частей.
+     */
+    public static String join(String template, String[] params, String query) {
+        StringBuilder url = new StringBuilder(template.length() + 32);
+        int from = 0;
+        if (params != null) {
+            for (String param : params) {
+                int at = -1;
+                String placeholder = null;
+                for (String candidate : PLACEHOLDERS) {
+                    int index = template.indexOf(candidate, from);
+                    if (index >= 0 && (at < 0 || index < at)) {
+                        at = index;
+                        placeholder = candidate;
+                    }
+                }
+                if (placeholder == null) {
+                    break;
+                }
+                url.append(template, from, at).append(param);
+                from = at + placeholder.length();
+            }
+        }
+        url.append(template, from, template.length());
+        if (query != null) {
+            url.append(query);
+        }
+        return url.toString();
+    }
+
+}
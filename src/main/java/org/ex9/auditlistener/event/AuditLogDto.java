@@ -5,7 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 
 /**
  * DTO для передачи данных о событии логирования.
@@ -42,6 +42,6 @@ public class AuditLogDto implements LogDto {
 
     /** Время события. По умолчанию текущая дата и время. */
     @Builder.Default
-    private String timestamp = LocalDateTime.now().toString();
+    private String timestamp = OffsetDateTime.now().toString();
 
 }
@@ -1,11 +1,15 @@
 package org.ex9.auditlistener.event;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.ex9.auditlistener.codec.Utf8Slice;
 
-import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 
 /**
  * DTO для передачи данных об HTTP событии.
@@ -21,7 +25,7 @@ public class HttpLogDto implements LogDto {
 
     /** Время запроса. */
     @Builder.Default
-    private String timestamp = LocalDateTime.now().toString();
+    private String timestamp = OffsetDateTime.now().toString();
 
     /** Направление запроса (Incoming/Outgoing). */
     private String direction;
@@ -41,5 +45,36 @@ public class HttpLogDto implements LogDto {
     /** Тело ответа. */
     private String responseBody;
 
+    /** Тело запроса в UTF-8, если парсер передал его без декодирования. */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Utf8Slice rawRequestBody;
+
+    /** Тело ответа в UTF-8, если парсер передал его без декодирования. */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Utf8Slice rawResponseBody;
+
+    /**
+     * Возвращает тело запроса, при необходимости декодируя {@link #rawRequestBody}.
+     */
+    public String getRequestBody() {
+        if (requestBody == null && rawRequestBody != null) {
+            requestBody = rawRequestBody.toString();
+        }
+        return requestBody;
+    }
+
+    /**
+     * Возвращает тело ответа, при необходимости декодируя {@link #rawResponseBody}.
+     */
+    public String getResponseBody() {
+        if (responseBody == null && rawResponseBody != null) {
+            responseBody = rawResponseBody.toString();
+        }
+        return responseBody;
+    }
 
 }
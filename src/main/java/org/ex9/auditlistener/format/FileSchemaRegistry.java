@@ -0,0 +1,66 @@
+package org.ex9.auditlistener.format;
+
+import com.fasterxml.jackson.dataformat.avro.AvroSchema;
+import lombok.extern.log4j.Log4j2;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр схем Avro из файлов {@code <id>.avsc} в каталоге {@code audit.kafka.format.avro.schema-location}
+ * ({@code classpath:} или {@code file:}).
+ * <p>
+ * Локальная замена реестра схем для разработки, тестов и установок без него: производитель
+ * записывает в заголовок сообщения тот же идентификатор, под которым схема лежит в каталоге.
+ * В {@code classpath:avro/} поставляются схемы Audit-лога ({@code 1.avsc}) и HTTP-лога
+ * ({@code 2.avsc}). Прочитанные схемы кешируются.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+@ConditionalOnProperty(name = "audit.kafka.format.avro.registry", havingValue = "file", matchIfMissing = true)
+public class FileSchemaRegistry implements SchemaRegistry {
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final Map<Integer, AvroSchema> schemas = new ConcurrentHashMap<>();
+
+    public FileSchemaRegistry(ResourceLoader resourceLoader,
+                              @Value("${audit.kafka.format.avro.schema-location:classpath:avro/}") String location) {
+        this.resourceLoader = resourceLoader;
+        this.location = location.endsWith("/") ? location : location + "/";
+    }
+
+    @Override
+    public AvroSchema schema(int id) {
+        return schemas.computeIfAbsent(id, this::load);
+    }
+
+    private AvroSchema load(int id) {
+        Resource resource = resourceLoader.getResource(location + id + ".avsc");
+        if (!resource.exists()) {
+            throw new IllegalArgumentException("Unknown Avro schema id " + id + " in " + location);
+        }
+        try (InputStream input = resource.getInputStream()) {
+            Schema schema = new Schema.Parser().parse(input);
+            log.info("Loaded Avro schema {} ({}) from {}", id, schema.getFullName(), resource);
+            return new AvroSchema(schema);
+        } catch (AvroRuntimeException e) {
+            throw new IllegalArgumentException("Invalid Avro schema " + resource, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.ex9.auditlistener.format;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.avro.AvroSchema;
+import lombok.extern.log4j.Log4j2;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр схем Avro с REST API Confluent Schema Registry ({@code GET /schemas/ids/{id}})
+ * по адресу {@code audit.kafka.format.avro.registry-url}.
+ * <p>
+ * Схема по идентификатору неизменна, поэтому полученные схемы кешируются без срока: реестр
+ * запрашивается один раз на схему. Неизвестный идентификатор — ошибка сообщения
+ * ({@link IllegalArgumentException}); недоступность реестра — {@link IllegalStateException},
+ * и сообщение уходит в повторы.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+@ConditionalOnProperty(name = "audit.kafka.format.avro.registry", havingValue = "http")
+public class HttpSchemaRegistry implements SchemaRegistry {
+
+    private static final int NOT_FOUND = 404;
+
+    private final ObjectMapper objectMapper;
+    private final String url;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final Map<Integer, AvroSchema> schemas = new ConcurrentHashMap<>();
+
+    public HttpSchemaRegistry(ObjectMapper objectMapper,
+                              @Value("${audit.kafka.format.avro.registry-url}") String url,
+                              @Value("${audit.kafka.format.avro.registry-timeout:5s}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public AvroSchema schema(int id) {
+        return schemas.computeIfAbsent(id, this::fetch);
+    }
+
+    private AvroSchema fetch(int id) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/schemas/ids/" + id))
+                .timeout(timeout)
+                .header("Accept", "application/vnd.schemaregistry.v1+json, application/json")
+                .GET()
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException("Schema registry " + url + " is unavailable", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching Avro schema " + id, e);
+        }
+        if (response.statusCode() == NOT_FOUND) {
+            throw new IllegalArgumentException("Unknown Avro schema id " + id + " in " + url);
+        }
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Schema registry " + url + " returned " + response.statusCode()
+                    + " for schema " + id);
+        }
+        try {
+            JsonNode body = objectMapper.readTree(response.body());
+            Schema schema = new Schema.Parser().parse(body.path("schema").asText());
+            log.info("Fetched Avro schema {} ({}) from {}", id, schema.getFullName(), url);
+            return new AvroSchema(schema);
+        } catch (IOException | AvroRuntimeException e) {
+            throw new IllegalArgumentException("Invalid Avro schema " + id + " from " + url, e);
+        }
+    }
+
+}
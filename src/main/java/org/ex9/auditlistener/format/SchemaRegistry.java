@@ -0,0 +1,26 @@
+package org.ex9.auditlistener.format;
+
+import com.fasterxml.jackson.dataformat.avro.AvroSchema;
+
+/**
+ * Реестр схем Avro: схема, которой производитель записал сообщение, по её идентификатору
+ * из заголовка сообщения ({@link WireFormat#AVRO}).
+ * <p>
+ * Реализация выбирается настройкой {@code audit.kafka.format.avro.registry}: {@code http} —
+ * реестр схем с REST API Confluent ({@link HttpSchemaRegistry}), {@code file} — схемы из файлов
+ * ({@link FileSchemaRegistry}), локальная замена реестра для разработки и тестов.
+ * </p>
+ * @author Краковцев Артём
+ */
+public interface SchemaRegistry {
+
+    /**
+     * Схема записи по идентификатору.
+     *
+     * @param id идентификатор схемы
+     * @return схема
+     * @throws IllegalArgumentException если схемы с таким идентификатором нет или она некорректна
+     */
+    AvroSchema schema(int id);
+
+}
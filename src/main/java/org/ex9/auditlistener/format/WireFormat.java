@@ -0,0 +1,105 @@
+package org.ex9.auditlistener.format;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Формат сообщения с логом в Kafka.
+ * <p>
+ * Формат задаёт производитель заголовком {@value #HEADER} (или {@value #SPRING_HEADER},
+ * как его называет Spring Messaging) со значением типа содержимого. Сообщение без заголовка
+ * считается JSON, поэтому производители переходят на двоичные форматы по одному.
+ * </p>
+ * @author Краковцев Артём
+ */
+public enum WireFormat {
+
+    /** JSON в UTF-8. */
+    JSON("application/json"),
+    /** Двоичный JSON Jackson Smile. */
+    SMILE("application/x-jackson-smile"),
+    /** CBOR (RFC 8949). */
+    CBOR("application/cbor"),
+    /**
+     * Avro binary с заголовком реестра схем: нулевой байт и 4-байтовый идентификатор схемы
+     * ({@link SchemaRegistry}), как в формате Confluent.
+     */
+    AVRO("application/vnd.apache.avro+binary");
+
+    /** Заголовок Kafka с типом содержимого. */
+    public static final String HEADER = "content-type";
+
+    /** Тот же заголовок в именовании Spring Messaging. */
+    public static final String SPRING_HEADER = "contentType";
+
+    private final String contentType;
+
+    WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /** Основной тип содержимого формата. */
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     * Заголовок с типом содержимого сообщения.
+     *
+     * @return заголовок или {@code null}, если его нет
+     */
+    public static Header header(Headers headers) {
+        Header header = headers.lastHeader(HEADER);
+        return header != null ? header : headers.lastHeader(SPRING_HEADER);
+    }
+
+    /**
+     * Формат сообщения по заголовку типа содержимого.
+     *
+     * @return формат, {@link #JSON}, если заголовка нет
+     * @throws IllegalArgumentException если тип содержимого не поддерживается
+     */
+    public static WireFormat of(Headers headers) {
+        Header header = header(headers);
+        if (header == null || header.value() == null) {
+            return JSON;
+        }
+        return fromContentType(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Формат по типу содержимого. Параметры ({@code ; charset=...}) и регистр не учитываются,
+     * значение может быть в кавычках, как его записывает {@code DefaultKafkaHeaderMapper}.
+     * Кроме основных типов принимаются {@code application/*+json}, {@code application/smile},
+     * {@code application/avro} и {@code avro/binary}.
+     *
+     * @throws IllegalArgumentException если тип содержимого не поддерживается
+     */
+    public static WireFormat fromContentType(String value) {
+        String type = value.strip();
+        if (type.length() > 1 && type.startsWith("\"") && type.endsWith("\"")) {
+            type = type.substring(1, type.length() - 1);
+        }
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters);
+        }
+        type = type.strip().toLowerCase(Locale.ROOT);
+        return switch (type) {
+            case "application/json", "text/json" -> JSON;
+            case "application/x-jackson-smile", "application/smile" -> SMILE;
+            case "application/cbor" -> CBOR;
+            case "application/vnd.apache.avro+binary", "application/avro", "avro/binary" -> AVRO;
+            default -> {
+                if (type.startsWith("application/") && type.endsWith("+json")) {
+                    yield JSON;
+                }
+                throw new IllegalArgumentException("Unsupported content type: " + value);
+            }
+        };
+    }
+
+}
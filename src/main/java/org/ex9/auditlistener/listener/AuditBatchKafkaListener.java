@@ -0,0 +1,93 @@
+package org.ex9.auditlistener.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.batching.AdaptiveBatchController;
+import org.ex9.auditlistener.service.LogBatchService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Пакетный Kafka Listener для логов.
+ * <p>
+ * Получает все сообщения одного poll, разделяет их на Audit- и HTTP-логи
+ * и сохраняет пакетом в одной транзакции через {@link LogBatchService}.
+ * Смещения фиксируются в транзакции Kafka после успешного сохранения пакета.
+ * </p>
+ * <p>
+ * Если включён {@link AdaptiveBatchController}, poll разбивается на пакеты его текущего размера,
+ * каждый в своей транзакции БД, а его интервал накопления задаёт паузу контейнера между poll
+ * ({@code idleBetweenPolls}): при низкой нагрузке брокер успевает накопить больший пакет.
+ * Смещения по-прежнему фиксируются один раз за poll; пакеты, сохранённые до сбоя, при повторной
+ * доставке отсекаются проверкой {@code messageId}.
+ * </p>
+ * <p>
+ * Используется в режиме {@code audit.kafka.mode=batch}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+@ConditionalOnProperty(name = "audit.kafka.mode", havingValue = "batch")
+public class AuditBatchKafkaListener {
+
+    static final String LISTENER_ID = "audit-log-batch-listener";
+
+    private final LogBatchProcessor logBatchProcessor;
+    private final AdaptiveBatchController adaptiveBatchController;
+    private final KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    /**
+     * Обрабатывает пакет сообщений Kafka с логами.
+     * <p>
+     * Сообщения, которые не удалось разобрать или сохранить, перекладываются в DLT или топик
+     * повторов ({@link LogBatchProcessor#process(List)}) в транзакции Kafka контейнера
+     * вместе с фиксацией смещений пакета.
+     * </p>
+     *
+     * @param records сообщения Kafka
+     */
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = "${audit.kafka.topic:audit-log}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void handleBatch(List<ConsumerRecord<String, byte[]>> records) {
+        log.debug("Processing batch of {} messages", records.size());
+        if (!adaptiveBatchController.isEnabled()) {
+            logBatchProcessor.process(records);
+            return;
+        }
+        int from = 0;
+        while (from < records.size()) {
+            int to = Math.min(records.size(), from + adaptiveBatchController.batchSize());
+            long start = System.nanoTime();
+            boolean saved = logBatchProcessor.process(records.subList(from, to));
+            adaptiveBatchController.record(to - from, System.nanoTime() - start, records.size() - to, saved);
+            from = to;
+        }
+        applyFlushInterval();
+    }
+
+    /**
+     * Переносит интервал накопления в паузу между poll. Контейнер читает её перед каждым poll,
+     * поэтому значение задаётся дочерним контейнерам, каждый из которых ведёт свой consumer.
+     */
+    private void applyFlushInterval() {
+        MessageListenerContainer container = kafkaListenerEndpointRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        long interval = adaptiveBatchController.flushIntervalMs();
+        container.getContainerProperties().setIdleBetweenPolls(interval);
+        if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent) {
+            concurrent.getContainers().forEach(child -> child.getContainerProperties().setIdleBetweenPolls(interval));
+        }
+    }
+
+}
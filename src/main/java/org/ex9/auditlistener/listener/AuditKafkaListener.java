@@ -1,19 +1,13 @@
 package org.ex9.auditlistener.listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.ex9.auditlistener.event.AuditLogDto;
 import org.ex9.auditlistener.event.HttpLogDto;
-import org.ex9.auditlistener.event.LogDto;
-import org.ex9.auditlistener.service.AuditLogService;
-import org.ex9.auditlistener.service.HttpLogService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Kafka Listener для получения и обработки сообщений логов.
@@ -22,70 +16,41 @@ import org.springframework.transaction.annotation.Transactional;
  * в {@link AuditLogDto} или {@link HttpLogDto} и передает
  * на сохранение в соответствующий сервис.
  * </p>
+ * <p>
+ * Используется в режиме {@code audit.kafka.mode=record} (по умолчанию).
+ * </p>
  * @author Краковцев Артём
  */
 @Service
 @RequiredArgsConstructor
 @Log4j2
+@ConditionalOnProperty(name = "audit.kafka.mode", havingValue = "record", matchIfMissing = true)
 public class AuditKafkaListener {
 
-    private final AuditLogService auditLogService;
-    private final HttpLogService httpLogService;
-    private final ObjectMapper objectMapper;
+    private final LogRecordProcessor logRecordProcessor;
 
     /**
      * Обрабатывает сообщение Kafka с логами.
      * <p>
      * Определяет тип лога (Audit или HTTP) по содержимому и передаёт в соответствующий сервис для сохранения.
+     * Если обработка не удалась, сообщение перекладывается в топик повторов ({@link RetryTopics}).
+     * </p>
+     * <p>
+     * Транзакцию БД открывает сервис сохранения, а не listener: при недоступной БД ошибка
+     * открытия транзакции возникает внутри {@link LogRecordProcessor}, и сообщение уходит
+     * в {@link org.ex9.auditlistener.spill.SpillLog}, а не откатывает обработку.
      * </p>
      *
      * @param consumerRecord сообщение Kafka
      */
     @KafkaListener(topics = "${audit.kafka.topic:audit-log}", containerFactory = "kafkaListenerContainerFactory")
-    @Transactional("transactionManager")
-    public void handle(ConsumerRecord<String, String> consumerRecord) {
-        String event = consumerRecord.value();
-
+    public void handle(ConsumerRecord<String, byte[]> consumerRecord) {
         log.debug("Processing message from topic: {}, partition: {}, offset: {}",
                 consumerRecord.topic(),
                 consumerRecord.partition(),
                 consumerRecord.offset());
 
-        try {
-            JsonNode jsonNode = objectMapper.readTree(event);
-            LogDto logDto = parseEvent(jsonNode, event);
-
-            if (logDto instanceof HttpLogDto httpLogDto) {
-                httpLogService.saveHttpLog(httpLogDto, consumerRecord);
-                log.info("HTTP log processed successfully: method={}, url={}",
-                        httpLogDto.getMethod(), httpLogDto.getUrl());
-            } else if (logDto instanceof AuditLogDto auditLogDto) {
-                auditLogService.saveAuditLog(auditLogDto, consumerRecord);
-                log.warn("Audit message already processed: eventId={}", auditLogDto.getId());
-            }
-            else {
-                log.warn("Unknown log type received: {}", logDto.getClass().getSimpleName());
-            }
-        } catch (JsonProcessingException e) {
-            log.error("Error parsing JSON message: {}", event, e);
-            throw new RuntimeException("Failed to parse audit message", e);
-        } catch (Exception e) {
-            log.error("Error processing message from partition: {}",event, e);
-            throw new RuntimeException("Failed to process audit message", e);
-        }
-    }
-
-    /**
-     * Определяет тип лога (Audit или HTTP) по jsonNode
-     */
-    private LogDto parseEvent(JsonNode jsonNode, String event) throws JsonProcessingException {
-        if (jsonNode.has("id") && jsonNode.has("methodName") && jsonNode.has("logLevel")) {
-            return objectMapper.readValue(event, AuditLogDto.class);
-        } else if (jsonNode.has("direction") && jsonNode.has("method") && jsonNode.has("statusCode")) {
-            return objectMapper.readValue(event, HttpLogDto.class);
-        } else {
-            throw new IllegalArgumentException("Cannot parse log type from message: " + event);
-        }
+        logRecordProcessor.process(consumerRecord);
     }
 
 }
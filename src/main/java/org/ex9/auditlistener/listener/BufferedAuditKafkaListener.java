@@ -0,0 +1,306 @@
+package org.ex9.auditlistener.listener;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.batching.AdaptiveBatchController;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kafka Listener с буфером отложенной записи (write-behind).
+ * <p>
+ * Listener только помещает сообщения poll в ограниченный кольцевой буфер
+ * ({@code audit.kafka.buffer.capacity}) и сразу возвращает управление контейнеру, поэтому
+ * медленная запись в БД не задерживает poll и не нарушает {@code max.poll.interval.ms}.
+ * Буфер разбирают {@code audit.kafka.buffer.flushers} потоков записи пакетами до
+ * {@code audit.kafka.buffer.flush-size} сообщений через {@link LogBatchProcessor}.
+ * </p>
+ * <p>
+ * Когда в буфере набирается {@code audit.kafka.buffer.high-watermark} сообщений, контейнер
+ * приостанавливает выборку из своих партиций, оставаясь в группе, и возобновляет её, когда
+ * буфер опустеет до {@code audit.kafka.buffer.low-watermark}. Смещения poll подтверждаются
+ * только после записи всех его сообщений и всех предыдущих poll; подтверждения фиксируются
+ * контейнером в потоке consumer.
+ * </p>
+ * <p>
+ * Если включён {@link AdaptiveBatchController}, размер пакета записи задаёт он, а поток записи
+ * ждёт заполнения пакета не дольше его интервала накопления; задержка записи и заполненность
+ * буфера передаются ему после каждого пакета.
+ * </p>
+ * <p>
+ * Гарантия доставки — «хотя бы один раз»: сообщения, записанные, но не подтверждённые
+ * к перебалансировке или остановке, доставляются повторно и отсекаются проверкой {@code messageId}.
+ * Если не удаётся ни записать пакет, ни переложить его в топик повторов, запись пакета
+ * повторяется каждые {@code audit.kafka.buffer.retry-backoff}, а буфер тем временем
+ * заполняется и приостанавливает выборку.
+ * </p>
+ * <p>
+ * Используется в режиме {@code audit.kafka.mode=buffered}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "audit.kafka.mode", havingValue = "buffered")
+public class BufferedAuditKafkaListener {
+
+    static final String LISTENER_ID = "audit-log-buffered-listener";
+
+    private static final long IDLE_POLL_MS = 100;
+
+    /** Сообщение в буфере и poll, в котором оно получено. */
+    private record Entry(ConsumerRecord<String, byte[]> consumerRecord, Poll poll) {
+    }
+
+    /** Сообщения одного poll, ещё не записанные в БД. */
+    private static final class Poll {
+
+        private final Acknowledgment acknowledgment;
+        private final AtomicInteger remaining;
+
+        private Poll(Acknowledgment acknowledgment, int size) {
+            this.acknowledgment = acknowledgment;
+            this.remaining = new AtomicInteger(size);
+        }
+
+    }
+
+    private final LogBatchProcessor logBatchProcessor;
+    private final AdaptiveBatchController adaptiveBatchController;
+    private final KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+    private final BlockingQueue<Entry> buffer;
+    private final Deque<Poll> pending = new ArrayDeque<>();
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final int flushSize;
+    private final int flusherCount;
+    private final Duration retryBackoff;
+    private final Object backpressureLock = new Object();
+
+    private ExecutorService flushers;
+    private boolean paused;
+    private volatile boolean running;
+
+    public BufferedAuditKafkaListener(LogBatchProcessor logBatchProcessor,
+                                      AdaptiveBatchController adaptiveBatchController,
+                                      KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry,
+                                      IngestionMetrics ingestionMetrics,
+                                      @Value("${audit.kafka.buffer.capacity:10000}") int capacity,
+                                      @Value("${audit.kafka.buffer.high-watermark:8000}") int highWatermark,
+                                      @Value("${audit.kafka.buffer.low-watermark:2000}") int lowWatermark,
+                                      @Value("${audit.kafka.buffer.max-poll-records:500}") int maxPollRecords,
+                                      @Value("${audit.kafka.concurrency:1}") int concurrency,
+                                      @Value("${audit.kafka.buffer.flush-size:500}") int flushSize,
+                                      @Value("${audit.kafka.buffer.flushers:2}") int flushers,
+                                      @Value("${audit.kafka.buffer.retry-backoff:1s}") Duration retryBackoff) {
+        if (lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("audit.kafka.buffer.low-watermark must be in [0, high-watermark)");
+        }
+        // до приостановки каждый consumer контейнера может добавить ещё по poll, и все они должны
+        // поместиться в буфер целиком, не блокируя consumer
+        if (highWatermark + (long) concurrency * maxPollRecords > capacity) {
+            throw new IllegalArgumentException(
+                    "audit.kafka.buffer.capacity must be at least high-watermark + concurrency * max-poll-records");
+        }
+        if (flushSize <= 0 || flushers <= 0) {
+            throw new IllegalArgumentException("audit.kafka.buffer.flush-size and flushers must be positive");
+        }
+        this.logBatchProcessor = logBatchProcessor;
+        this.adaptiveBatchController = adaptiveBatchController;
+        this.kafkaListenerEndpointRegistry = kafkaListenerEndpointRegistry;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.flushSize = flushSize;
+        this.flusherCount = flushers;
+        this.retryBackoff = retryBackoff;
+        ingestionMetrics.gaugeBuffer(buffer);
+    }
+
+    /**
+     * Запускает потоки записи.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        flushers = Executors.newFixedThreadPool(flusherCount, Thread.ofPlatform().name("audit-flusher-", 0).factory());
+        for (int i = 0; i < flusherCount; i++) {
+            flushers.execute(this::flushLoop);
+        }
+    }
+
+    /**
+     * Помещает сообщения poll в буфер.
+     *
+     * @param records        сообщения одного poll
+     * @param acknowledgment подтверждение смещений poll, вызывается после записи
+     */
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = "${audit.kafka.topic:audit-log}",
+            containerFactory = "bufferedKafkaListenerContainerFactory")
+    public void handleBatch(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        if (records.isEmpty()) {
+            return;
+        }
+        log.debug("Buffering batch of {} messages", records.size());
+
+        Poll poll = new Poll(acknowledgment, records.size());
+        synchronized (pending) {
+            pending.addLast(poll);
+        }
+        try {
+            for (ConsumerRecord<String, byte[]> consumerRecord : records) {
+                buffer.put(new Entry(consumerRecord, poll));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while buffering messages", e);
+        }
+        applyBackpressure();
+    }
+
+    private void flushLoop() {
+        List<Entry> chunk = new ArrayList<>();
+        while (running || !buffer.isEmpty()) {
+            try {
+                Entry first = buffer.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    chunk.add(first);
+                    fill(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            applyBackpressure();
+            if (chunk.isEmpty()) {
+                continue;
+            }
+            if (!flush(chunk)) {
+                return;
+            }
+            complete(chunk);
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Дополняет пакет из буфера до размера пакета записи, ожидая новых сообщений
+     * не дольше интервала накопления {@link AdaptiveBatchController}.
+     */
+    private void fill(List<Entry> chunk) throws InterruptedException {
+        boolean adaptive = adaptiveBatchController.isEnabled();
+        int limit = adaptive ? adaptiveBatchController.batchSize() : flushSize;
+        buffer.drainTo(chunk, limit - chunk.size());
+        if (!adaptive) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(adaptiveBatchController.flushIntervalMs());
+        while (chunk.size() < limit && running) {
+            Entry next = buffer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            chunk.add(next);
+            buffer.drainTo(chunk, limit - chunk.size());
+        }
+    }
+
+    /**
+     * Записывает пакет, повторяя попытки, пока они не удадутся или listener не остановится.
+     *
+     * @return {@code true}, если пакет записан или переложен в топики повторов
+     */
+    private boolean flush(List<Entry> chunk) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>(chunk.size());
+        chunk.forEach(entry -> records.add(entry.consumerRecord()));
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                boolean saved = logBatchProcessor.process(records);
+                adaptiveBatchController.record(records.size(), System.nanoTime() - start, buffer.size(), saved);
+                return true;
+            } catch (Exception e) {
+                adaptiveBatchController.record(records.size(), System.nanoTime() - start, buffer.size(), false);
+                log.error("Failed to flush {} buffered messages, retrying in {}", records.size(), retryBackoff, e);
+                if (!running) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(retryBackoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Подтверждает смещения poll, все сообщения которых и всех предыдущих poll записаны.
+     */
+    private void complete(List<Entry> chunk) {
+        for (Entry entry : chunk) {
+            entry.poll().remaining.decrementAndGet();
+        }
+        synchronized (pending) {
+            while (!pending.isEmpty() && pending.peekFirst().remaining.get() == 0) {
+                pending.pollFirst().acknowledgment.acknowledge();
+            }
+        }
+    }
+
+    /**
+     * Приостанавливает выборку выше верхней границы буфера и возобновляет ниже нижней.
+     * Контейнер применяет паузу перед следующим poll в потоке consumer.
+     */
+    private void applyBackpressure() {
+        synchronized (backpressureLock) {
+            int size = buffer.size();
+            if (!paused && size >= highWatermark) {
+                MessageListenerContainer container = kafkaListenerEndpointRegistry.getListenerContainer(LISTENER_ID);
+                if (container != null) {
+                    container.pause();
+                    paused = true;
+                    log.info("Write-behind buffer holds {} messages, consumption paused", size);
+                }
+            } else if (paused && size <= lowWatermark) {
+                kafkaListenerEndpointRegistry.getListenerContainer(LISTENER_ID).resume();
+                paused = false;
+                log.info("Write-behind buffer holds {} messages, consumption resumed", size);
+            }
+        }
+    }
+
+    /**
+     * Дописывает буфер и останавливает потоки записи. Контейнеры к этому моменту остановлены,
+     * поэтому смещения дописанных сообщений не фиксируются и они будут доставлены повторно.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (flushers != null) {
+            flushers.close();
+        }
+    }
+
+}
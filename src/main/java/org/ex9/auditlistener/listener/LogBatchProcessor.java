@@ -0,0 +1,168 @@
+package org.ex9.auditlistener.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.service.AuditLogService;
+import org.ex9.auditlistener.service.HttpLogService;
+import org.ex9.auditlistener.service.LogBatchService;
+import org.ex9.auditlistener.spill.SpillLog;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Обработка пакета сообщений с логами: разбор, разделение на Audit- и HTTP-логи
+ * и сохранение одной транзакцией через {@link LogBatchService}.
+ * <p>
+ * Используется listener'ами режимов {@code batch} и {@code buffered} и при переносе
+ * сообщений из {@link SpillLog}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class LogBatchProcessor {
+
+    private final AuditLogService auditLogService;
+    private final HttpLogService httpLogService;
+    private final LogBatchService logBatchService;
+    private final LogEventParser logEventParser;
+    private final IngestionMetrics ingestionMetrics;
+    private final DeadLetterPublishingRecoverer deadLetterPublishingRecoverer;
+    private final SpillLog spillLog;
+
+    /** Разобранные сообщения пакета. */
+    private record Batch(List<AuditLogEntity> auditLogs, List<HttpLogEntity> httpLogs,
+                         List<ConsumerRecord<String, byte[]>> parsed) {
+    }
+
+    /**
+     * Сохраняет пакет сообщений.
+     * <p>
+     * Сообщение, которое не удалось разобрать, сразу перекладывается в DLT, остальные сохраняются.
+     * Сообщение, которое не удалось преобразовать по другой причине (например, недоступен реестр
+     * схем Avro), перекладывается в первый топик повторов.
+     * Если БД недоступна и включён {@link SpillLog}, пакет дописывается в локальный журнал.
+     * Если не удалось сохранить пакет по другой причине, все его сообщения перекладываются
+     * в первый топик повторов ({@link RetryTopics}) и там обрабатываются по одному. Публикация
+     * выполняется в транзакции Kafka вызывающего контейнера, если она есть.
+     * </p>
+     *
+     * @param records сообщения Kafka
+     * @return {@code true}, если пакет сохранён в БД, {@code false}, если он дописан в журнал
+     * или переложен в топик повторов
+     * @throws RuntimeException если не удалось опубликовать сообщение в топик повторов или DLT
+     */
+    public boolean process(List<ConsumerRecord<String, byte[]>> records) {
+        Batch batch = map(records);
+        if (spillLog.isDatabaseDown() && spill(batch)) {
+            return false;
+        }
+        try {
+            logBatchService.saveBatch(batch.auditLogs(), batch.httpLogs());
+            return true;
+        } catch (Exception e) {
+            if (spillLog.spill(batch.parsed(), e)) {
+                countSpilled(batch);
+                return false;
+            }
+            recover(batch, e);
+            return false;
+        }
+    }
+
+    /**
+     * Сохраняет пакет сообщений из {@link SpillLog}.
+     * <p>
+     * В отличие от {@link #process(List)}, при недоступности БД пакет в журнал не дописывается:
+     * ошибка пробрасывается, и сообщения остаются в журнале до следующей попытки.
+     * </p>
+     *
+     * @param records сообщения Kafka из журнала
+     * @throws RuntimeException если БД недоступна или не удалось опубликовать сообщение в топик повторов
+     */
+    public void replay(List<ConsumerRecord<String, byte[]>> records) {
+        Batch batch = map(records);
+        try {
+            logBatchService.saveBatch(batch.auditLogs(), batch.httpLogs());
+        } catch (RuntimeException e) {
+            if (SpillLog.isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            recover(batch, e);
+        }
+    }
+
+    private Batch map(List<ConsumerRecord<String, byte[]>> records) {
+        List<AuditLogEntity> auditLogs = new ArrayList<>();
+        List<HttpLogEntity> httpLogs = new ArrayList<>();
+        List<ConsumerRecord<String, byte[]>> parsed = new ArrayList<>(records.size());
+
+        for (ConsumerRecord<String, byte[]> consumerRecord : records) {
+            try {
+                long parseStart = ingestionMetrics.start();
+                LogDto logDto = logEventParser.parse(consumerRecord);
+                ingestionMetrics.record(IngestionMetrics.Stage.PARSE, parseStart);
+
+                long mapStart = ingestionMetrics.start();
+                if (logDto instanceof HttpLogDto httpLogDto) {
+                    httpLogs.add(httpLogService.toEntity(httpLogDto, consumerRecord));
+                } else if (logDto instanceof AuditLogDto auditLogDto) {
+                    auditLogs.add(auditLogService.toEntity(auditLogDto, consumerRecord));
+                }
+                ingestionMetrics.record(IngestionMetrics.Stage.MAP, mapStart);
+                parsed.add(consumerRecord);
+            } catch (IOException | IllegalArgumentException e) {
+                ingestionMetrics.count(IngestionMetrics.Type.UNKNOWN, IngestionMetrics.Outcome.FAILED, 1);
+                log.error("Error parsing message from partition: {}, offset: {}",
+                        consumerRecord.partition(), consumerRecord.offset(), e);
+                deadLetterPublishingRecoverer.accept(consumerRecord,
+                        new UnparsableLogException("Failed to parse audit message", e));
+            } catch (RuntimeException e) {
+                recover(consumerRecord, e);
+            }
+        }
+        return new Batch(auditLogs, httpLogs, parsed);
+    }
+
+    private boolean spill(Batch batch) {
+        if (!spillLog.spill(batch.parsed())) {
+            return false;
+        }
+        countSpilled(batch);
+        return true;
+    }
+
+    private void countSpilled(Batch batch) {
+        ingestionMetrics.count(IngestionMetrics.Type.AUDIT, IngestionMetrics.Outcome.SPILLED, batch.auditLogs().size());
+        ingestionMetrics.count(IngestionMetrics.Type.HTTP, IngestionMetrics.Outcome.SPILLED, batch.httpLogs().size());
+    }
+
+    private void recover(Batch batch, Exception e) {
+        ingestionMetrics.count(IngestionMetrics.Type.AUDIT, IngestionMetrics.Outcome.FAILED, batch.auditLogs().size());
+        ingestionMetrics.count(IngestionMetrics.Type.HTTP, IngestionMetrics.Outcome.FAILED, batch.httpLogs().size());
+        log.error("Error saving batch of {} messages, sending them to retry topic", batch.parsed().size(), e);
+        for (ConsumerRecord<String, byte[]> consumerRecord : batch.parsed()) {
+            deadLetterPublishingRecoverer.accept(consumerRecord, e);
+        }
+    }
+
+    private void recover(ConsumerRecord<String, byte[]> consumerRecord, Exception e) {
+        ingestionMetrics.count(IngestionMetrics.Type.UNKNOWN, IngestionMetrics.Outcome.FAILED, 1);
+        log.error("Error mapping message from partition: {}, offset: {}, sending it to retry topic",
+                consumerRecord.partition(), consumerRecord.offset(), e);
+        deadLetterPublishingRecoverer.accept(consumerRecord, e);
+    }
+
+}
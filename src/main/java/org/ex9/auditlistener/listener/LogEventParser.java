@@ -0,0 +1,454 @@
+package org.ex9.auditlistener.listener;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.dataformat.avro.AvroFactory;
+import com.fasterxml.jackson.dataformat.avro.AvroParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.codec.Utf8Slice;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.ex9.auditlistener.format.SchemaRegistry;
+import org.ex9.auditlistener.format.WireFormat;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Преобразует сообщение из Kafka в {@link AuditLogDto} или {@link HttpLogDto}.
+ * <p>
+ * Сообщение читается потоково через {@link JsonParser} за один проход: значения полей
+ * сразу складываются в общий набор, а тип лога определяется по встреченным
+ * полям-признакам без построения промежуточного дерева {@code JsonNode}.
+ * Неизвестные поля пропускаются.
+ * </p>
+ * <p>
+ * Кроме JSON поддерживаются двоичные форматы {@link WireFormat}: Smile, CBOR и Avro. Формат
+ * задаётся заголовком типа содержимого сообщения; парсеры этих форматов выдают те же токены,
+ * что и JSON, поэтому сообщение так же за один проход разбирается прямо в DTO.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+public class LogEventParser {
+
+    private static final int ID = 1;
+    private static final int METHOD_NAME = 1 << 1;
+    private static final int LOG_LEVEL = 1 << 2;
+    private static final int DIRECTION = 1 << 3;
+    private static final int METHOD = 1 << 4;
+    private static final int STATUS_CODE = 1 << 5;
+
+    private static final int AUDIT_FIELDS = ID | METHOD_NAME | LOG_LEVEL;
+    private static final int HTTP_FIELDS = DIRECTION | METHOD | STATUS_CODE;
+
+    /** Нулевой байт и идентификатор схемы перед записью Avro. */
+    private static final int AVRO_HEADER_LENGTH = 5;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper avroMapper;
+    private final SchemaRegistry schemaRegistry;
+
+    public LogEventParser(ObjectMapper objectMapper, SchemaRegistry schemaRegistry) {
+        this.objectMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.avroMapper = objectMapper.copyWith(new AvroFactory());
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    /**
+     * Разбирает сообщение Kafka в формате из его заголовка типа содержимого
+     * ({@link WireFormat#of}); сообщение без заголовка — JSON ({@link #parse(byte[])}).
+     *
+     * @param consumerRecord сообщение Kafka
+     * @return DTO соответствующего типа
+     * @throws IOException если сообщение не соответствует своему формату
+     * @throws IllegalArgumentException если формат не поддерживается, схема Avro неизвестна,
+     *                                  тип лога не удалось определить или {@code statusCode} не целое число
+     */
+    public LogDto parse(ConsumerRecord<String, byte[]> consumerRecord) throws IOException {
+        WireFormat format = WireFormat.of(consumerRecord.headers());
+        byte[] event = consumerRecord.value();
+        if (format == WireFormat.JSON) {
+            return parse(event);
+        }
+        try (JsonParser parser = binaryParser(format, event)) {
+            LogDto logDto = read(parser, null);
+            if (logDto == null) {
+                throw new IllegalArgumentException("Cannot parse log type from " + format
+                        + " message of " + event.length + " bytes");
+            }
+            return logDto;
+        } catch (AvroRuntimeException e) {
+            throw new IllegalArgumentException("Invalid Avro message of " + event.length + " bytes", e);
+        }
+    }
+
+    /**
+     * Определяет тип лога (Audit или HTTP) по содержимому сообщения и десериализует его.
+     * <p>
+     * Audit-лог распознаётся по полям {@code id}, {@code methodName}, {@code logLevel},
+     * HTTP-лог — по полям {@code direction}, {@code method}, {@code statusCode}.
+     * </p>
+     * <p>
+     * Сообщение разбирается прямо из байт UTF-8. Тела HTTP-запроса и ответа не декодируются
+     * в строки, а передаются в DTO в UTF-8 ({@link HttpLogDto#getRawRequestBody()},
+     * {@link HttpLogDto#getRawResponseBody()}): без escape-последовательностей — фрагментами
+     * исходного массива.
+     * </p>
+     * <p>
+     * Если в сообщении нет {@code timestamp}, поле DTO остаётся {@code null}: при сохранении
+     * вместо него используется время сообщения Kafka.
+     * </p>
+     *
+     * @param event JSON-сообщение в UTF-8
+     * @return DTO соответствующего типа
+     * @throws IOException если сообщение не является корректным JSON
+     * @throws IllegalArgumentException если тип лога не удалось определить или {@code statusCode} не целое число
+     */
+    public LogDto parse(byte[] event) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(event)) {
+            LogDto logDto = read(parser, event);
+            if (logDto == null) {
+                throw new IllegalArgumentException("Cannot parse log type from message of " + event.length + " bytes");
+            }
+            return logDto;
+        }
+    }
+
+    /**
+     * То же для сообщения, уже декодированного в строку.
+     *
+     * @param event JSON-сообщение
+     * @return DTO соответствующего типа
+     * @throws IOException если сообщение не является корректным JSON
+     * @throws IllegalArgumentException если тип лога не удалось определить или {@code statusCode} не целое число
+     */
+    public LogDto parse(String event) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(event)) {
+            LogDto logDto = read(parser, null);
+            if (logDto == null) {
+                throw new IllegalArgumentException("Cannot parse log type from message of " + event.length() + " characters");
+            }
+            return logDto;
+        }
+    }
+
+    private JsonParser binaryParser(WireFormat format, byte[] event) throws IOException {
+        return switch (format) {
+            case SMILE -> smileMapper.createParser(event);
+            case CBOR -> cborMapper.createParser(event);
+            case AVRO -> avroParser(event);
+            case JSON -> objectMapper.createParser(event);
+        };
+    }
+
+    /**
+     * Парсер записи Avro со схемой из {@link SchemaRegistry} по идентификатору из заголовка
+     * сообщения. Запись читается схемой производителя: поля сопоставляются по именам,
+     * поэтому новые поля схемы пропускаются, а отсутствующие остаются {@code null}.
+     */
+    private JsonParser avroParser(byte[] event) throws IOException {
+        if (event.length < AVRO_HEADER_LENGTH || event[0] != 0) {
+            throw new IllegalArgumentException("Avro message of " + event.length + " bytes has no schema id header");
+        }
+        int schemaId = ByteBuffer.wrap(event, 1, Integer.BYTES).getInt();
+        AvroParser parser = (AvroParser) avroMapper.createParser(event, AVRO_HEADER_LENGTH,
+                event.length - AVRO_HEADER_LENGTH);
+        parser.setSchema(schemaRegistry.schema(schemaId));
+        return parser;
+    }
+
+    private LogDto read(JsonParser parser, byte[] source) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+
+        Fields fields = new Fields();
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (fieldName) {
+                case "messageId" -> fields.messageId = readText(parser);
+                case "id" -> {
+                    fields.id = readText(parser);
+                    fields.seen |= ID;
+                }
+                case "type" -> fields.type = readText(parser);
+                case "methodName" -> {
+                    fields.methodName = readText(parser);
+                    fields.seen |= METHOD_NAME;
+                }
+                case "args" -> fields.args = parser.currentToken() == JsonToken.VALUE_NULL
+                        ? null
+                        : parser.readValueAs(Object[].class);
+                case "result" -> fields.result = readText(parser);
+                case "error" -> fields.error = readText(parser);
+                case "logLevel" -> {
+                    fields.logLevel = readText(parser);
+                    fields.seen |= LOG_LEVEL;
+                }
+                case "timestamp" -> fields.timestamp = readText(parser);
+                case "direction" -> {
+                    fields.direction = readText(parser);
+                    fields.seen |= DIRECTION;
+                }
+                case "method" -> {
+                    fields.method = readText(parser);
+                    fields.seen |= METHOD;
+                }
+                case "statusCode" -> {
+                    fields.statusCode = readStatusCode(parser);
+                    fields.seen |= STATUS_CODE;
+                }
+                case "url" -> fields.url = readText(parser);
+                case "requestBody" -> {
+                    fields.rawRequestBody = readRaw(parser, source);
+                    if (fields.rawRequestBody == null) {
+                        fields.requestBody = readText(parser);
+                    }
+                }
+                case "responseBody" -> {
+                    fields.rawResponseBody = readRaw(parser, source);
+                    if (fields.rawResponseBody == null) {
+                        fields.responseBody = readText(parser);
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if ((fields.seen & AUDIT_FIELDS) == AUDIT_FIELDS) {
+            return fields.toAuditLog();
+        } else if ((fields.seen & HTTP_FIELDS) == HTTP_FIELDS) {
+            return fields.toHttpLog();
+        }
+        return null;
+    }
+
+    /**
+     * Читает строковое значение. Как и при обычной десериализации, скалярные значения
+     * приводятся к строке, а объекты и массивы считаются ошибкой.
+     */
+    private static String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw MismatchedInputException.from(parser, String.class,
+                    "Cannot deserialize value of type `java.lang.String` from " + token);
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Читает код ответа HTTP: целое число или строку с целым числом. Другие значения
+     * не заменяются нулём, а считаются ошибкой: иначе сообщение сохранилось бы с кодом 0.
+     */
+    private static int readStatusCode(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+            return parser.getIntValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Integer.parseInt(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("statusCode is not an integer", e);
+            }
+        }
+        throw new IllegalArgumentException("statusCode is not an integer: " + token);
+    }
+
+    /**
+     * Читает строковое значение в UTF-8, не декодируя его в {@link String}. Значение без
+     * escape-последовательностей возвращается фрагментом исходного массива, остальные —
+     * копией с раскрытыми последовательностями. Сам парсер такое значение не декодирует:
+     * на следующем токене он его только пропускает.
+     *
+     * @return значение или {@code null}, если его нужно читать через {@link #readText}
+     */
+    private static Utf8Slice readRaw(JsonParser parser, byte[] source) {
+        if (source == null || parser.currentToken() != JsonToken.VALUE_STRING) {
+            return null;
+        }
+        // позиция токена строки — открывающая кавычка
+        int start = (int) parser.currentTokenLocation().getByteOffset() + 1;
+        int escape = start;
+        while (escape < source.length && source[escape] != '"' && source[escape] != '\\') {
+            escape++;
+        }
+        if (escape == source.length) {
+            return null;
+        }
+        if (source[escape] == '"') {
+            return new Utf8Slice(source, start, escape - start);
+        }
+        return unescape(source, start, escape);
+    }
+
+    /**
+     * Раскрывает escape-последовательности JSON в байтах UTF-8. Результат не длиннее исходного
+     * значения: шесть байт последовательности {@code uXXXX} дают в UTF-8 не больше трёх,
+     * суррогатная пара из двенадцати — четыре.
+     *
+     * @param escape позиция первой обратной косой черты
+     * @return значение или {@code null}, если последовательность некорректна (ошибку сообщит парсер)
+     */
+    private static Utf8Slice unescape(byte[] source, int start, int escape) {
+        int end = escape;
+        while (end < source.length && source[end] != '"') {
+            end += source[end] == '\\' ? 2 : 1;
+        }
+        if (end >= source.length) {
+            return null;
+        }
+
+        byte[] value = new byte[end - start];
+        int length = escape - start;
+        System.arraycopy(source, start, value, 0, length);
+        int i = escape;
+        while (i < end) {
+            byte b = source[i++];
+            if (b != '\\') {
+                value[length++] = b;
+                continue;
+            }
+            switch (source[i++]) {
+                case '"' -> value[length++] = '"';
+                case '\\' -> value[length++] = '\\';
+                case '/' -> value[length++] = '/';
+                case 'b' -> value[length++] = '\b';
+                case 'f' -> value[length++] = '\f';
+                case 'n' -> value[length++] = '\n';
+                case 'r' -> value[length++] = '\r';
+                case 't' -> value[length++] = '\t';
+                case 'u' -> {
+                    int c = hex4(source, i, end);
+                    if (c < 0) {
+                        return null;
+                    }
+                    i += 4;
+                    if (Character.isHighSurrogate((char) c) && i + 1 < end
+                            && source[i] == '\\' && source[i + 1] == 'u') {
+                        int low = hex4(source, i + 2, end);
+                        if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                            c = Character.toCodePoint((char) c, (char) low);
+                            i += 6;
+                        }
+                    }
+                    length = putUtf8(value, length, c);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return new Utf8Slice(value, 0, length);
+    }
+
+    private static int hex4(byte[] source, int from, int end) {
+        if (from + 4 > end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < from + 4; i++) {
+            int digit = Character.digit(source[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /** Кодирует символ в UTF-8; одиночный суррогат, как и {@link String#getBytes}, заменяется на {@code ?}. */
+    private static int putUtf8(byte[] target, int position, int codePoint) {
+        if (codePoint < 0x80) {
+            target[position++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            target[position++] = (byte) (0xC0 | codePoint >> 6);
+            target[position++] = (byte) (0x80 | codePoint & 0x3F);
+        } else if (Character.isSurrogate((char) codePoint) && codePoint <= 0xFFFF) {
+            target[position++] = '?';
+        } else if (codePoint < 0x10000) {
+            target[position++] = (byte) (0xE0 | codePoint >> 12);
+            target[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+            target[position++] = (byte) (0x80 | codePoint & 0x3F);
+        } else {
+            target[position++] = (byte) (0xF0 | codePoint >> 18);
+            target[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+            target[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+            target[position++] = (byte) (0x80 | codePoint & 0x3F);
+        }
+        return position;
+    }
+
+    /** Значения полей обоих типов логов, собранные за один проход. */
+    private static final class Fields {
+
+        private int seen;
+
+        private String messageId;
+        private String timestamp;
+
+        private String id;
+        private String type;
+        private String methodName;
+        private Object[] args;
+        private String result;
+        private String error;
+        private String logLevel;
+
+        private String direction;
+        private String method;
+        private int statusCode;
+        private String url;
+        private String requestBody;
+        private String responseBody;
+        private Utf8Slice rawRequestBody;
+        private Utf8Slice rawResponseBody;
+
+        private AuditLogDto toAuditLog() {
+            AuditLogDto dto = new AuditLogDto();
+            dto.setMessageId(messageId);
+            dto.setId(id);
+            dto.setType(type);
+            dto.setMethodName(methodName);
+            dto.setArgs(args);
+            dto.setResult(result);
+            dto.setError(error);
+            dto.setLogLevel(logLevel);
+            dto.setTimestamp(timestamp);
+            return dto;
+        }
+
+        private HttpLogDto toHttpLog() {
+            HttpLogDto dto = new HttpLogDto();
+            dto.setMessageId(messageId);
+            dto.setDirection(direction);
+            dto.setMethod(method);
+            dto.setStatusCode(statusCode);
+            dto.setUrl(url);
+            dto.setRequestBody(requestBody);
+            dto.setResponseBody(responseBody);
+            dto.setRawRequestBody(rawRequestBody);
+            dto.setRawResponseBody(rawResponseBody);
+            dto.setTimestamp(timestamp);
+            return dto;
+        }
+
+    }
+
+}
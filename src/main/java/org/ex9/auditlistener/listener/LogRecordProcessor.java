@@ -0,0 +1,98 @@
+package org.ex9.auditlistener.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.service.AuditLogService;
+import org.ex9.auditlistener.service.HttpLogService;
+import org.ex9.auditlistener.spill.SpillLog;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Обработка одного сообщения с логом: разбор, определение типа и сохранение
+ * в соответствующем сервисе.
+ * <p>
+ * Используется listener'ами режимов {@code record} и {@code parallel} и listener'ом топиков повторов.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class LogRecordProcessor {
+
+    private final AuditLogService auditLogService;
+    private final HttpLogService httpLogService;
+    private final LogEventParser logEventParser;
+    private final IngestionMetrics ingestionMetrics;
+    private final SpillLog spillLog;
+
+    /**
+     * Разбирает сообщение и передаёт его на сохранение.
+     * <p>
+     * Если БД недоступна и включён {@link SpillLog}, сообщение дописывается в локальный журнал.
+     * </p>
+     *
+     * @param consumerRecord сообщение Kafka
+     * @throws UnparsableLogException если сообщение не удалось разобрать
+     * @throws RuntimeException        если сообщение не удалось сохранить
+     */
+    public void process(ConsumerRecord<String, byte[]> consumerRecord) {
+        long parseStart = ingestionMetrics.start();
+        LogDto logDto;
+        try {
+            logDto = logEventParser.parse(consumerRecord);
+        } catch (IOException | IllegalArgumentException e) {
+            ingestionMetrics.count(IngestionMetrics.Type.UNKNOWN, IngestionMetrics.Outcome.FAILED, 1);
+            log.error("Error parsing message from partition: {}, offset: {}",
+                    consumerRecord.partition(), consumerRecord.offset(), e);
+            throw new UnparsableLogException("Failed to parse audit message", e);
+        }
+        ingestionMetrics.record(IngestionMetrics.Stage.PARSE, parseStart);
+
+        if (spillLog.isDatabaseDown() && spillLog.spill(List.of(consumerRecord))) {
+            ingestionMetrics.count(typeOf(logDto), IngestionMetrics.Outcome.SPILLED, 1);
+            return;
+        }
+
+        IngestionMetrics.Type type = IngestionMetrics.Type.UNKNOWN;
+        try {
+            if (logDto instanceof HttpLogDto httpLogDto) {
+                type = IngestionMetrics.Type.HTTP;
+                httpLogService.saveHttpLog(httpLogDto, consumerRecord);
+                log.debug("HTTP log processed: method={}, url={}", httpLogDto.getMethod(), httpLogDto.getUrl());
+            } else if (logDto instanceof AuditLogDto auditLogDto) {
+                type = IngestionMetrics.Type.AUDIT;
+                auditLogService.saveAuditLog(auditLogDto, consumerRecord);
+                log.debug("Audit log processed: eventId={}", auditLogDto.getId());
+            }
+            else {
+                log.warn("Unknown log type received: {}", logDto.getClass().getSimpleName());
+            }
+        } catch (Exception e) {
+            if (spillLog.spill(List.of(consumerRecord), e)) {
+                ingestionMetrics.count(type, IngestionMetrics.Outcome.SPILLED, 1);
+                return;
+            }
+            ingestionMetrics.count(type, IngestionMetrics.Outcome.FAILED, 1);
+            log.error("Error processing message from partition: {}, offset: {}",
+                    consumerRecord.partition(), consumerRecord.offset(), e);
+            throw new RuntimeException("Failed to process audit message", e);
+        }
+    }
+
+    static IngestionMetrics.Type typeOf(LogDto logDto) {
+        if (logDto instanceof HttpLogDto) {
+            return IngestionMetrics.Type.HTTP;
+        }
+        return logDto instanceof AuditLogDto ? IngestionMetrics.Type.AUDIT : IngestionMetrics.Type.UNKNOWN;
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.ex9.auditlistener.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.kafka.annotation.KafkaListenerConfigurer;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.config.MethodKafkaListenerEndpoint;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Kafka Listener топиков повторов.
+ * <p>
+ * Для каждого топика повторов регистрируется отдельный контейнер, чтобы ожидание
+ * в топике с большой задержкой не задерживало топики с меньшей. Сообщение обрабатывается
+ * не раньше момента из заголовка {@link RetryTopics#DUE_AT_HEADER}; при новой ошибке
+ * обработчик контейнера перекладывает его в следующий топик повторов или в DLT.
+ * </p>
+ * <p>
+ * Работает во всех режимах {@code audit.kafka.mode}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class LogRetryKafkaListener implements KafkaListenerConfigurer {
+
+    private final LogRecordProcessor logRecordProcessor;
+    private final RetryTopics retryTopics;
+    private final BeanFactory beanFactory;
+
+    @Override
+    public void configureKafkaListeners(KafkaListenerEndpointRegistrar registrar) {
+        KafkaListenerContainerFactory<?> containerFactory =
+                beanFactory.getBean("retryKafkaListenerContainerFactory", KafkaListenerContainerFactory.class);
+        DefaultMessageHandlerMethodFactory messageHandlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        messageHandlerMethodFactory.setBeanFactory(beanFactory);
+        messageHandlerMethodFactory.afterPropertiesSet();
+
+        for (String topic : retryTopics.retryTopics()) {
+            MethodKafkaListenerEndpoint<String, byte[]> endpoint = new MethodKafkaListenerEndpoint<>();
+            endpoint.setId("audit-log-retry-listener-" + topic);
+            endpoint.setTopics(topic);
+            endpoint.setBean(this);
+            endpoint.setMethod(handleMethod());
+            endpoint.setMessageHandlerMethodFactory(messageHandlerMethodFactory);
+            registrar.registerEndpoint(endpoint, containerFactory);
+        }
+    }
+
+    /**
+     * Обрабатывает сообщение из топика повторов, если наступил момент повтора,
+     * иначе откладывает его до этого момента.
+     *
+     * @param consumerRecord сообщение Kafka
+     * @param acknowledgment подтверждение обработки
+     */
+    public void handle(ConsumerRecord<String, byte[]> consumerRecord, Acknowledgment acknowledgment) {
+        long wait = dueAt(consumerRecord) - System.currentTimeMillis();
+        if (wait > 0) {
+            acknowledgment.nack(Duration.ofMillis(wait));
+            return;
+        }
+
+        log.debug("Retrying message from topic: {}, partition: {}, offset: {}",
+                consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+        logRecordProcessor.process(consumerRecord);
+        acknowledgment.acknowledge();
+    }
+
+    private static long dueAt(ConsumerRecord<String, byte[]> consumerRecord) {
+        Header header = consumerRecord.headers().lastHeader(RetryTopics.DUE_AT_HEADER);
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid {} header in message from topic: {}, offset: {}",
+                    RetryTopics.DUE_AT_HEADER, consumerRecord.topic(), consumerRecord.offset());
+            return 0;
+        }
+    }
+
+    private static Method handleMethod() {
+        try {
+            return LogRetryKafkaListener.class.getMethod("handle", ConsumerRecord.class, Acknowledgment.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.ex9.auditlistener.listener;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.ex9.auditlistener.spill.SpillLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Kafka Listener для параллельной обработки логов с сохранением порядка.
+ * <p>
+ * Сообщения одного poll раскладываются по «дорожкам»: по ключу сообщения внутри партиции
+ * ({@code audit.kafka.parallel.ordering=key}) или по партиции целиком
+ * ({@code audit.kafka.parallel.ordering=partition}). Каждая дорожка обрабатывается
+ * последовательно в своём виртуальном потоке, дорожки — параллельно. Число одновременно
+ * сохраняемых сообщений ограничено {@code audit.kafka.parallel.max-in-flight}, чтобы
+ * не исчерпать пул соединений с БД.
+ * </p>
+ * <p>
+ * Каждое сообщение обрабатывается {@link LogRecordProcessor} в собственной транзакции БД. Смещения фиксируются для каждой
+ * партиции только до первого необработанного сообщения; при ошибке дорожка останавливается,
+ * а обработчик ошибок контейнера перекладывает проблемное сообщение в топик повторов
+ * ({@link RetryTopics}) и повторяет доставку следующих за ним. Повторно доставленные
+ * уже сохранённые сообщения отсекаются проверкой {@code messageId}. Если БД недоступна
+ * и включён {@link SpillLog}, сообщения дописываются в локальный журнал и считаются обработанными.
+ * </p>
+ * <p>
+ * Используется в режиме {@code audit.kafka.mode=parallel}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "audit.kafka.mode", havingValue = "parallel")
+public class ParallelAuditKafkaListener {
+
+    private final LogRecordProcessor logRecordProcessor;
+    private final boolean orderByKey;
+    private final Semaphore inFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ParallelAuditKafkaListener(LogRecordProcessor logRecordProcessor,
+                                      @Value("${audit.kafka.parallel.ordering:key}") String ordering,
+                                      @Value("${audit.kafka.parallel.max-in-flight:8}") int maxInFlight) {
+        this.logRecordProcessor = logRecordProcessor;
+        this.orderByKey = "key".equalsIgnoreCase(ordering);
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Обрабатывает пакет сообщений Kafka параллельно по дорожкам.
+     *
+     * @param records  сообщения одного poll
+     * @param consumer consumer контейнера (для фиксации смещений)
+     */
+    @KafkaListener(topics = "${audit.kafka.topic:audit-log}", containerFactory = "parallelKafkaListenerContainerFactory")
+    public void handleBatch(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        log.debug("Processing batch of {} messages in parallel", records.size());
+
+        AtomicReferenceArray<Exception> failures = new AtomicReferenceArray<>(records.size());
+        boolean[] completed = new boolean[records.size()];
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Integer> lane : lanes(records).values()) {
+            futures.add(executor.submit(() -> processLane(records, lane, completed, failures)));
+        }
+        awaitAll(futures);
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        Map<TopicPartition, Boolean> blocked = new HashMap<>();
+        int firstFailed = -1;
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> consumerRecord = records.get(i);
+            TopicPartition partition = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+            if (blocked.containsKey(partition)) {
+                continue;
+            }
+            if (completed[i]) {
+                offsets.put(partition, new OffsetAndMetadata(consumerRecord.offset() + 1));
+            } else {
+                blocked.put(partition, Boolean.TRUE);
+                if (firstFailed < 0) {
+                    firstFailed = i;
+                }
+            }
+        }
+
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+        if (firstFailed >= 0) {
+            ConsumerRecord<String, byte[]> failed = records.get(firstFailed);
+            throw new BatchListenerFailedException("Failed to process audit message from partition "
+                    + failed.partition() + ", offset " + failed.offset(), failures.get(firstFailed), firstFailed);
+        }
+    }
+
+    /**
+     * Группирует индексы сообщений по дорожкам с сохранением порядка внутри дорожки.
+     */
+    private Map<Object, List<Integer>> lanes(List<ConsumerRecord<String, byte[]>> records) {
+        Map<Object, List<Integer>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> consumerRecord = records.get(i);
+            TopicPartition partition = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+            Object lane = orderByKey && consumerRecord.key() != null
+                    ? List.of(partition, consumerRecord.key())
+                    : partition;
+            lanes.computeIfAbsent(lane, k -> new ArrayList<>()).add(i);
+        }
+        return lanes;
+    }
+
+    private void processLane(List<ConsumerRecord<String, byte[]>> records, List<Integer> lane,
+                             boolean[] completed, AtomicReferenceArray<Exception> failures) {
+        for (int index : lane) {
+            ConsumerRecord<String, byte[]> consumerRecord = records.get(index);
+            try {
+                inFlight.acquire();
+                try {
+                    logRecordProcessor.process(consumerRecord);
+                } finally {
+                    inFlight.release();
+                }
+                completed[index] = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.set(index, e);
+                return;
+            } catch (RuntimeException e) {
+                // ошибку уже учёл и записал в лог LogRecordProcessor
+                failures.set(index, e);
+                return;
+            }
+        }
+    }
+
+    private void awaitAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for processing lanes", e);
+            } catch (ExecutionException e) {
+                // processLane перехватывает ошибки сообщений сам; сюда попадают только сбои самой дорожки
+                throw new IllegalStateException("Processing lane failed", Objects.requireNonNullElse(e.getCause(), e));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.ex9.auditlistener.listener;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Топики неблокирующих повторов и dead-letter топик.
+ * <p>
+ * Сообщение, которое не удалось обработать, не задерживает свою партицию: оно перекладывается
+ * в следующий по порядку топик повторов {@code <topic>-retry-<n>}, а после последнего —
+ * в {@code <topic>-dlt}. Задержка перед обработкой в {@code n}-м топике равна
+ * {@code initial-delay * multiplier^n}, но не больше {@code max-delay}; момент, раньше которого
+ * сообщение не обрабатывается, передаётся в заголовке {@link #DUE_AT_HEADER}.
+ * </p>
+ * <p>
+ * Сообщения, которые не удалось разобрать ({@link UnparsableLogException}), повторять бессмысленно:
+ * они сразу попадают в DLT.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class RetryTopics {
+
+    /** Заголовок с моментом (epoch millis), раньше которого сообщение из топика повторов не обрабатывается. */
+    public static final String DUE_AT_HEADER = "audit-retry-due-at";
+
+    private final String topic;
+    private final List<String> retryTopics;
+    private final List<Duration> delays;
+    private final String deadLetterTopic;
+
+    public RetryTopics(@Value("${audit.kafka.topic:audit-log}") String topic,
+                       @Value("${audit.kafka.retry.attempts:3}") int attempts,
+                       @Value("${audit.kafka.retry.initial-delay:1s}") Duration initialDelay,
+                       @Value("${audit.kafka.retry.multiplier:5}") double multiplier,
+                       @Value("${audit.kafka.retry.max-delay:5m}") Duration maxDelay) {
+        this.topic = topic;
+        List<String> names = new ArrayList<>(attempts);
+        List<Duration> tierDelays = new ArrayList<>(attempts);
+        for (int n = 0; n < attempts; n++) {
+            long delay = (long) Math.min(initialDelay.toMillis() * Math.pow(multiplier, n), maxDelay.toMillis());
+            names.add(topic + "-retry-" + n);
+            tierDelays.add(Duration.ofMillis(delay));
+        }
+        this.retryTopics = Collections.unmodifiableList(names);
+        this.delays = Collections.unmodifiableList(tierDelays);
+        this.deadLetterTopic = topic + "-dlt";
+        log.info("Retry topics: {} with delays {}, dead-letter topic: {}", retryTopics, delays, deadLetterTopic);
+    }
+
+    /** Основной топик логов, в который возвращаются сообщения из DLT. */
+    public String topic() {
+        return topic;
+    }
+
+    /** Топики повторов в порядке возрастания задержки. */
+    public List<String> retryTopics() {
+        return retryTopics;
+    }
+
+    public String deadLetterTopic() {
+        return deadLetterTopic;
+    }
+
+    /**
+     * Определяет, куда переложить сообщение, которое не удалось обработать.
+     *
+     * @param consumerRecord сообщение
+     * @param exception      причина сбоя
+     * @return следующий топик повторов или DLT
+     */
+    public String destination(ConsumerRecord<?, ?> consumerRecord, Exception exception) {
+        if (isNotRetryable(exception)) {
+            return deadLetterTopic;
+        }
+        int next = retryTopics.indexOf(consumerRecord.topic()) + 1;
+        return next < retryTopics.size() ? retryTopics.get(next) : deadLetterTopic;
+    }
+
+    /**
+     * Задержка перед обработкой сообщений топика; для основного топика и DLT — нулевая.
+     */
+    public Duration delay(String topic) {
+        int index = retryTopics.indexOf(topic);
+        return index < 0 ? Duration.ZERO : delays.get(index);
+    }
+
+    private static boolean isNotRetryable(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnparsableLogException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.ex9.auditlistener.listener;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListenerConfigurer;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.config.MethodKafkaListenerEndpoint;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Kafka Listener с раздельными топиками Audit- и HTTP-логов.
+ * <p>
+ * Для каждого типа логов регистрируется свой пакетный контейнер со своей фабрикой
+ * ({@code auditTopicKafkaListenerContainerFactory}, {@code httpTopicKafkaListenerContainerFactory}),
+ * группой consumer'ов, числом потоков, размером пакета и обработчиком ошибок. Поэтому Audit-события
+ * не ждут в очереди за объёмным HTTP-трафиком, а отставание одного топика не задерживает другой.
+ * Audit-логи читаются группой {@code audit-log-group}, как и в остальных режимах, поэтому
+ * при переходе в этот режим чтение продолжается с зафиксированных смещений.
+ * </p>
+ * <p>
+ * Тип сообщения по-прежнему определяет {@link LogEventParser}, поэтому сообщение, отправленное
+ * не в тот топик, сохраняется в свою таблицу. Топики повторов и DLT общие для обоих типов.
+ * </p>
+ * <p>
+ * Используется в режиме {@code audit.kafka.mode=routed}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "audit.kafka.mode", havingValue = "routed")
+public class RoutedAuditKafkaListener implements KafkaListenerConfigurer {
+
+    static final String AUDIT_LISTENER_ID = "audit-log-audit-listener";
+    static final String HTTP_LISTENER_ID = "audit-log-http-listener";
+    static final String AUDIT_GROUP_ID = "audit-log-group";
+    static final String HTTP_GROUP_ID = "audit-log-http-group";
+
+    private final LogBatchProcessor logBatchProcessor;
+    private final BeanFactory beanFactory;
+    private final String auditTopic;
+    private final String httpTopic;
+
+    public RoutedAuditKafkaListener(LogBatchProcessor logBatchProcessor,
+                                    BeanFactory beanFactory,
+                                    @Value("${audit.kafka.routing.audit.topic:${audit.kafka.topic:audit-log}}")
+                                    String auditTopic,
+                                    @Value("${audit.kafka.routing.http.topic:${audit.kafka.topic:audit-log}-http}")
+                                    String httpTopic) {
+        if (auditTopic.equals(httpTopic)) {
+            throw new IllegalArgumentException("audit.kafka.routing audit and http topics must differ: " + auditTopic);
+        }
+        this.logBatchProcessor = logBatchProcessor;
+        this.beanFactory = beanFactory;
+        this.auditTopic = auditTopic;
+        this.httpTopic = httpTopic;
+    }
+
+    @Override
+    public void configureKafkaListeners(KafkaListenerEndpointRegistrar registrar) {
+        DefaultMessageHandlerMethodFactory messageHandlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        messageHandlerMethodFactory.setBeanFactory(beanFactory);
+        messageHandlerMethodFactory.afterPropertiesSet();
+
+        registrar.registerEndpoint(endpoint(AUDIT_LISTENER_ID, AUDIT_GROUP_ID, auditTopic, messageHandlerMethodFactory),
+                containerFactory("auditTopicKafkaListenerContainerFactory"));
+        registrar.registerEndpoint(endpoint(HTTP_LISTENER_ID, HTTP_GROUP_ID, httpTopic, messageHandlerMethodFactory),
+                containerFactory("httpTopicKafkaListenerContainerFactory"));
+        log.info("Routed listeners: audit logs from {}, HTTP logs from {}", auditTopic, httpTopic);
+    }
+
+    /**
+     * Обрабатывает пакет сообщений одного топика.
+     * <p>
+     * Сообщения, которые не удалось разобрать или сохранить, перекладываются в DLT или топик
+     * повторов ({@link LogBatchProcessor#process(List)}) в транзакции Kafka контейнера
+     * вместе с фиксацией смещений пакета.
+     * </p>
+     *
+     * @param records сообщения Kafka
+     */
+    public void handleBatch(List<ConsumerRecord<String, byte[]>> records) {
+        log.debug("Processing batch of {} messages from topic {}", records.size(),
+                records.isEmpty() ? null : records.getFirst().topic());
+        logBatchProcessor.process(records);
+    }
+
+    private MethodKafkaListenerEndpoint<String, byte[]> endpoint(String id, String groupId, String topic,
+                                                                 DefaultMessageHandlerMethodFactory factory) {
+        MethodKafkaListenerEndpoint<String, byte[]> endpoint = new MethodKafkaListenerEndpoint<>();
+        endpoint.setId(id);
+        endpoint.setGroupId(groupId);
+        endpoint.setTopics(topic);
+        endpoint.setBean(this);
+        endpoint.setMethod(handleMethod());
+        endpoint.setMessageHandlerMethodFactory(factory);
+        return endpoint;
+    }
+
+    private KafkaListenerContainerFactory<?> containerFactory(String name) {
+        return beanFactory.getBean(name, KafkaListenerContainerFactory.class);
+    }
+
+    private static Method handleMethod() {
+        try {
+            return RoutedAuditKafkaListener.class.getMethod("handleBatch", List.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
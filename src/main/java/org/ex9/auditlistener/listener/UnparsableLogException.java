@@ -0,0 +1,14 @@
+package org.ex9.auditlistener.listener;
+
+/**
+ * Сообщение не удалось разобрать: это не JSON или тип лога не определяется.
+ * Повторная обработка такого сообщения не имеет смысла.
+ * @author Краковцев Артём
+ */
+public class UnparsableLogException extends RuntimeException {
+
+    public UnparsableLogException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.ex9.auditlistener.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.batching.AdaptiveBatchController;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Публикует текущие решения {@link AdaptiveBatchController}: размер пакета, интервал накопления,
+ * сглаженную задержку записи и число изменений размера с тегом {@code direction}.
+ * @author Краковцев Артём
+ */
+@Component
+@RequiredArgsConstructor
+public class AdaptiveBatchMetrics implements MeterBinder {
+
+    private final AdaptiveBatchController adaptiveBatchController;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("audit.adaptive.batch.size", adaptiveBatchController, AdaptiveBatchController::batchSize)
+                .description("Current write batch size")
+                .register(registry);
+        TimeGauge.builder("audit.adaptive.flush.interval", adaptiveBatchController, TimeUnit.MILLISECONDS,
+                        AdaptiveBatchController::flushIntervalMs)
+                .description("Current time to accumulate a batch")
+                .register(registry);
+        TimeGauge.builder("audit.adaptive.latency", adaptiveBatchController, TimeUnit.MILLISECONDS,
+                        AdaptiveBatchController::latencyMs)
+                .description("Smoothed batch write latency")
+                .register(registry);
+        FunctionCounter.builder("audit.adaptive.adjustments", adaptiveBatchController, AdaptiveBatchController::increases)
+                .tag("direction", "increase")
+                .register(registry);
+        FunctionCounter.builder("audit.adaptive.adjustments", adaptiveBatchController, AdaptiveBatchController::decreases)
+                .tag("direction", "decrease")
+                .register(registry);
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.ex9.auditlistener.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.dedup.MessageDeduplicator;
+import org.ex9.auditlistener.dedup.MessageIdFilter;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Публикует статистику фильтров {@link MessageDeduplicator} с тегом {@code type}
+ * ({@code audit}, {@code http}).
+ * @author Краковцев Артём
+ */
+@Component
+@RequiredArgsConstructor
+public class DedupMetrics implements MeterBinder {
+
+    private final MessageDeduplicator messageDeduplicator;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "audit", MessageDeduplicator::auditStats);
+        bind(registry, "http", MessageDeduplicator::httpStats);
+    }
+
+    /**
+     * Состояние метрик — сам {@link MessageDeduplicator}: Micrometer хранит его по слабой ссылке,
+     * поэтому передавать лямбду-поставщик нельзя.
+     */
+    private void bind(MeterRegistry registry, String type, Function<MessageDeduplicator, MessageIdFilter.Stats> stats) {
+        counter(registry, "audit.dedup.checks", type, stats, MessageIdFilter.Stats::checks);
+        counter(registry, "audit.dedup.duplicates", type, stats, MessageIdFilter.Stats::duplicates);
+        Gauge.builder("audit.dedup.recent.size", messageDeduplicator, d -> stats.apply(d).size())
+                .description("Message ids held in the cache of recently saved ids")
+                .tag("type", type)
+                .register(registry);
+    }
+
+    private void counter(MeterRegistry registry, String name, String type,
+                         Function<MessageDeduplicator, MessageIdFilter.Stats> stats,
+                         ToLongFunction<MessageIdFilter.Stats> value) {
+        FunctionCounter.builder(name, messageDeduplicator, d -> value.applyAsLong(stats.apply(d)))
+                .tag("type", type)
+                .register(registry);
+    }
+
+}
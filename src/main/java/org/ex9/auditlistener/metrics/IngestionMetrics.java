@@ -0,0 +1,198 @@
+package org.ex9.auditlistener.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики конвейера приёма логов.
+ * <p>
+ * Публикует:
+ * <ul>
+ *     <li>{@code audit.ingest.stage} — длительность этапов обработки с тегом {@code stage}:
+ *     {@code parse} (десериализация вместе с определением типа), {@code dedup}, {@code map},
+ *     {@code write} и {@code commit};</li>
+ *     <li>{@code audit.ingest.messages} — число сообщений с тегами {@code type}
+ *     ({@code audit}, {@code http}, {@code unknown}) и {@code outcome}
+ *     ({@code saved}, {@code duplicate}, {@code spilled}, {@code failed});</li>
+ *     <li>{@code audit.ingest.lag} — гистограмма задержки от {@code timestamp} события
+ *     до фиксации транзакции, в которой оно сохранено;</li>
+ *     <li>{@code audit.ingest.buffer} — число сообщений в буфере записи режима {@code buffered};</li>
+ *     <li>{@code audit.ingest.spill} — объём локального журнала сообщений, ожидающих переноса в БД, в байтах.</li>
+ * </ul>
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+public class IngestionMetrics {
+
+    /** Этапы обработки сообщения. */
+    public enum Stage {
+        PARSE, DEDUP, MAP, WRITE, COMMIT
+    }
+
+    /** Тип сообщения. */
+    public enum Type {
+        AUDIT, HTTP, UNKNOWN
+    }
+
+    /** Результат обработки сообщения. */
+    public enum Outcome {
+        SAVED, DUPLICATE, SPILLED, FAILED
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Type, Map<Outcome, Counter>> messageCounters = new EnumMap<>(Type.class);
+    private final Timer lagTimer;
+
+    public IngestionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.clock = meterRegistry.config().clock();
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("audit.ingest.stage")
+                    .description("Duration of an ingestion pipeline stage")
+                    .tag("stage", tagValue(stage))
+                    .register(meterRegistry));
+        }
+        for (Type type : Type.values()) {
+            Map<Outcome, Counter> counters = new EnumMap<>(Outcome.class);
+            for (Outcome outcome : Outcome.values()) {
+                counters.put(outcome, Counter.builder("audit.ingest.messages")
+                        .description("Number of ingested log messages")
+                        .tag("type", tagValue(type))
+                        .tag("outcome", tagValue(outcome))
+                        .register(meterRegistry));
+            }
+            messageCounters.put(type, counters);
+        }
+        this.lagTimer = Timer.builder("audit.ingest.lag")
+                .description("Delay between the event timestamp and the commit of its database transaction")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает отметку времени начала этапа для {@link #record(Stage, long)}.
+     */
+    public long start() {
+        return clock.monotonicTime();
+    }
+
+    /**
+     * Фиксирует длительность этапа, начатого в момент {@code startNanos}.
+     */
+    public void record(Stage stage, long startNanos) {
+        stageTimers.get(stage).record(clock.monotonicTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Увеличивает счётчик сообщений указанного типа и результата.
+     */
+    public void count(Type type, Outcome outcome, int messages) {
+        if (messages > 0) {
+            messageCounters.get(type).get(outcome).increment(messages);
+        }
+    }
+
+    /**
+     * Измеряет фиксацию текущей транзакции, а после неё учитывает сохранённые события:
+     * увеличивает счётчики {@code saved} и фиксирует задержку сохранения.
+     * <p>
+     * Вне транзакции события учитываются сразу.
+     * </p>
+     *
+     * @param auditSaved      число сохранённых Audit-логов
+     * @param httpSaved       число сохранённых HTTP-логов
+     * @param eventTimestamps {@code timestamp} записанных событий
+     */
+    public void trackCommit(int auditSaved, int httpSaved, Collection<OffsetDateTime> eventTimestamps) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recordSaved(auditSaved, httpSaved, eventTimestamps);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            private long commitStart = -1;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitStart = start();
+            }
+
+            @Override
+            public void afterCommit() {
+                if (commitStart >= 0) {
+                    record(Stage.COMMIT, commitStart);
+                }
+                recordSaved(auditSaved, httpSaved, eventTimestamps);
+            }
+        });
+    }
+
+    /**
+     * То же, что {@link #trackCommit(int, int, Collection)}, для одного события.
+     */
+    public void trackCommit(Type type, OffsetDateTime eventTimestamp) {
+        trackCommit(type == Type.AUDIT ? 1 : 0, type == Type.HTTP ? 1 : 0,
+                Collections.singletonList(eventTimestamp));
+    }
+
+    private void recordSaved(int auditSaved, int httpSaved, Collection<OffsetDateTime> eventTimestamps) {
+        count(Type.AUDIT, Outcome.SAVED, auditSaved);
+        count(Type.HTTP, Outcome.SAVED, httpSaved);
+        OffsetDateTime now = OffsetDateTime.now();
+        for (OffsetDateTime timestamp : eventTimestamps) {
+            if (timestamp != null) {
+                Duration lag = Duration.between(timestamp, now);
+                lagTimer.record(lag.isNegative() ? Duration.ZERO : lag); // часы продюсера могут спешить
+            }
+        }
+    }
+
+    /**
+     * Публикует размер буфера записи.
+     *
+     * @param buffer буфер; метрика не удерживает его от сборки мусора
+     */
+    public void gaugeBuffer(Collection<?> buffer) {
+        Gauge.builder("audit.ingest.buffer", buffer, Collection::size)
+                .description("Number of messages waiting in the write-behind buffer")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Публикует объём локального журнала недоставленных в БД сообщений.
+     *
+     * @param state объект, из которого читается значение
+     * @param bytes объём журнала в байтах
+     */
+    public <T> void gaugeSpill(T state, ToDoubleFunction<T> bytes) {
+        Gauge.builder("audit.ingest.spill", state, bytes)
+                .description("Size of the local spill log waiting to be replayed into the database")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase();
+    }
+
+}
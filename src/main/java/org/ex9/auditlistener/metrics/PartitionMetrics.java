@@ -0,0 +1,40 @@
+package org.ex9.auditlistener.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.service.PartitionMaintenanceService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Публикует состояние {@link PartitionMaintenanceService} с тегом {@code table}: число строк
+ * в секции по умолчанию и число неудачных запусков обслуживания. Рост любого из них означает,
+ * что строки копятся вне диапазонных секций и не удаляются по сроку хранения.
+ * @author Краковцев Артём
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "audit.partitioning.enabled", havingValue = "true", matchIfMissing = true)
+public class PartitionMetrics implements MeterBinder {
+
+    private final PartitionMaintenanceService partitionMaintenanceService;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String table : partitionMaintenanceService.tables()) {
+            Gauge.builder("audit.partitions.default.rows", partitionMaintenanceService, s -> s.defaultRows(table))
+                    .description("Rows in the default partition as of the last maintenance run")
+                    .tag("table", table)
+                    .register(registry);
+            FunctionCounter.builder("audit.partitions.maintenance.failures", partitionMaintenanceService,
+                            s -> s.failures(table))
+                    .description("Partition maintenance runs that failed")
+                    .tag("table", table)
+                    .register(registry);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.ex9.auditlistener.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.span.AuditSpan;
+import org.ex9.auditlistener.span.SpanAssembler;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Публикует статистику {@link SpanAssembler}: записанные вызовы с тегом {@code outcome},
+ * отброшенные события и число событий, ожидающих пару.
+ * @author Краковцев Артём
+ */
+@Component
+@RequiredArgsConstructor
+public class SpanMetrics implements MeterBinder {
+
+    private final SpanAssembler spanAssembler;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (AuditSpan.Outcome outcome : AuditSpan.Outcome.values()) {
+            FunctionCounter.builder("audit.spans.written", spanAssembler, s -> s.written(outcome))
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        FunctionCounter.builder("audit.spans.unmatched", spanAssembler, SpanAssembler::unmatched)
+                .description("END/ERROR events without a START within the timeout")
+                .register(registry);
+        FunctionCounter.builder("audit.spans.dropped", spanAssembler, SpanAssembler::dropped)
+                .description("Completed spans dropped while the database was unavailable")
+                .register(registry);
+        Gauge.builder("audit.spans.pending", spanAssembler, SpanAssembler::pending)
+                .description("Events waiting for their pair")
+                .register(registry);
+    }
+
+}
@@ -5,23 +5,48 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.ex9.auditlistener.dictionary.LogDictionary;
+import org.ex9.auditlistener.repository.JpaInsertResults;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.SQLInsert;
 
-import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 
 /**
  * JPA-сущность для хранения Audit-логов в базе данных.
+ * <p>
+ * Вставка через JPA пропускает повторы по {@code message_id} и координатам Kafka
+ * ({@code ON CONFLICT DO NOTHING}) вместо ошибки.
+ * </p>
+ * <p>
+ * Тип события, имя метода и уровень логирования хранятся ссылками на словарь
+ * {@code log_dictionary}: перед записью их заполняет {@link LogDictionary}, а при чтении
+ * строковые значения подставляет функция БД {@code log_term}.
+ * </p>
  * @author Краковцев Артём
  */
 @Entity
 @Table(name = "audit_logs")
+// порядок столбцов — тот, в котором Hibernate передаёт параметры (атрибуты по алфавиту, id последним);
+// соответствие столбцов проверяет JpaLogBatchWriterTest, SELECT вместо VALUES — см. JpaLogBatchWriter
+@SQLInsert(sql = "INSERT INTO audit_logs (args, error, audit_id, type_id, kafka_offset, kafka_partition, kafka_topic, "
+        + "log_level_id, message_id, method_name_id, result, timestamp, id) "
+        + "SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? ON CONFLICT DO NOTHING",
+        verify = JpaInsertResults.class)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class AuditLogEntity {
 
+    /**
+     * Значения берутся из последовательности блоками по {@code allocationSize}
+     * (оптимизатор {@code pooled-lo}): один {@code nextval} на блок, что позволяет Hibernate
+     * группировать вставки в JDBC-пакеты.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_logs_id_seq")
+    @SequenceGenerator(name = "audit_logs_id_seq", sequenceName = "audit_logs_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "message_id", nullable = false)
@@ -30,12 +55,20 @@ public class AuditLogEntity {
     @Column(name = "audit_id", nullable = false)
     private String eventId;
 
-    @Column(name = "type", nullable = false, length = 50)
+    /** Тип события; хранится ссылкой на словарь в {@code type_id}. */
+    @Formula("log_term(type_id)")
     private String eventType;
 
-    @Column(name = "method_name", nullable = false, length = 500)
+    @Column(name = "type_id", nullable = false)
+    private Integer eventTypeId;
+
+    /** Имя метода; хранится ссылкой на словарь в {@code method_name_id}. */
+    @Formula("log_term(method_name_id)")
     private String methodName;
 
+    @Column(name = "method_name_id", nullable = false)
+    private Integer methodNameId;
+
     @Column(name = "args", columnDefinition = "TEXT")
     private String args;
 
@@ -45,11 +78,15 @@ public class AuditLogEntity {
     @Column(name = "error", columnDefinition = "TEXT")
     private String error;
 
-    @Column(name = "log_level", length = 20)
+    /** Уровень логирования; хранится ссылкой на словарь в {@code log_level_id}. */
+    @Formula("log_term(log_level_id)")
     private String logLevel;
 
+    @Column(name = "log_level_id")
+    private Integer logLevelId;
+
     @Column(name = "timestamp", nullable = false)
-    private LocalDateTime timestamp;
+    private OffsetDateTime timestamp;
 
     @Column(name = "kafka_topic", nullable = false, length = 255)
     private String kafkaTopic;
@@ -5,49 +5,114 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-
-import java.time.LocalDateTime;
+import org.ex9.auditlistener.codec.HttpBodyCodec;
+import org.ex9.auditlistener.codec.SearchTerms;
+import org.ex9.auditlistener.dictionary.LogDictionary;
+import org.ex9.auditlistener.dictionary.UrlTemplate;
+import org.ex9.auditlistener.repository.JpaInsertResults;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.SQLInsert;
+import org.hibernate.type.SqlTypes;
+
+import java.time.OffsetDateTime;
 
 /**
  * JPA-сущность для хранения HTTP-логов в базе данных.
+ * <p>
+ * Вставка через JPA пропускает повторы по {@code message_id} и координатам Kafka
+ * ({@code ON CONFLICT DO NOTHING}) вместо ошибки.
+ * </p>
+ * <p>
+ * Направление, HTTP-метод и шаблон URL хранятся ссылками на словарь {@code log_dictionary}:
+ * перед записью их заполняет {@link LogDictionary}, а при чтении строковые значения
+ * подставляют функции БД {@code log_term} и {@code log_url}.
+ * </p>
  * @author Краковцев Артём
  */
 @Entity
 @Table(name = "http_logs")
+// порядок столбцов — тот, в котором Hibernate передаёт параметры (атрибуты по алфавиту, id последним);
+// соответствие столбцов проверяет JpaLogBatchWriterTest, SELECT вместо VALUES — см. JpaLogBatchWriter
+@SQLInsert(sql = "INSERT INTO http_logs (direction_id, kafka_offset, kafka_partition, kafka_topic, message_id, method_id, "
+        + "request_body, request_body_data, response_body, response_body_data, search_terms, status_code, timestamp, "
+        + "url_params, url_query, url_template_id, id) "
+        + "SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?::text[], ?, ?, ? ON CONFLICT DO NOTHING",
+        verify = JpaInsertResults.class)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class HttpLogEntity {
 
+    /**
+     * Значения берутся из последовательности блоками по {@code allocationSize}
+     * (оптимизатор {@code pooled-lo}): один {@code nextval} на блок, что позволяет Hibernate
+     * группировать вставки в JDBC-пакеты.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "http_logs_id_seq")
+    @SequenceGenerator(name = "http_logs_id_seq", sequenceName = "http_logs_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "message_id", nullable = false)
     private String messageId;
 
     @Column(name = "timestamp", nullable = false)
-    private LocalDateTime timestamp;
+    private OffsetDateTime timestamp;
 
-    @Column(name = "direction", nullable = false, length = 50)
+    /** Направление; хранится ссылкой на словарь в {@code direction_id}. */
+    @Formula("log_term(direction_id)")
     private String direction;
 
-    @Column(name = "method", nullable = false, length = 10)
+    @Column(name = "direction_id", nullable = false)
+    private Integer directionId;
+
+    /** HTTP-метод; хранится ссылкой на словарь в {@code method_id}. */
+    @Formula("log_term(method_id)")
     private String method;
 
+    @Column(name = "method_id", nullable = false)
+    private Integer methodId;
+
     @Column(name = "status_code", nullable = false)
     private Integer statusCode;
 
-    @Column(name = "url", nullable = false, columnDefinition = "TEXT")
+    /** URL; хранится шаблоном пути, параметрами пути и строкой запроса, см. {@link UrlTemplate}. */
+    @Formula("log_url(url_template_id, url_params, url_query)")
     private String url;
 
+    @Column(name = "url_template_id", nullable = false)
+    private Integer urlTemplateId;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "url_params", columnDefinition = "text[]")
+    private String[] urlParams;
+
+    @Column(name = "url_query", columnDefinition = "TEXT")
+    private String urlQuery;
+
     @Column(name = "request_body", columnDefinition = "TEXT")
     private String requestBody;
 
     @Column(name = "response_body", columnDefinition = "TEXT")
     private String responseBody;
 
+    /** Сжатое тело запроса с маркером кодека, см. {@link HttpBodyCodec}. */
+    @Column(name = "request_body_data")
+    private byte[] requestBodyData;
+
+    /** Сжатое тело ответа с маркером кодека, см. {@link HttpBodyCodec}. */
+    @Column(name = "response_body_data")
+    private byte[] responseBodyData;
+
+    /**
+     * Слова сжатых тел для полнотекстового поиска, см. {@link SearchTerms}. Из них и текстовых тел
+     * БД строит столбец {@code search_vector}.
+     */
+    @Column(name = "search_terms", columnDefinition = "TEXT")
+    private String searchTerms;
+
     @Column(name = "kafka_topic", nullable = false, length = 255)
     private String kafkaTopic;
 
@@ -57,4 +122,30 @@ public class HttpLogEntity {
     @Column(name = "kafka_offset", nullable = false)
     private Long kafkaOffset;
 
+    /** Размер тела запроса в байтах до обрезки и сжатия; не сохраняется. */
+    @Transient
+    private int requestSize;
+
+    /** Размер тела ответа в байтах до обрезки и сжатия; не сохраняется. */
+    @Transient
+    private int responseSize;
+
+    /**
+     * Возвращает тело запроса независимо от того, хранится оно в текстовом или сжатом виде.
+     *
+     * @return тело запроса или {@code null}
+     */
+    public String decodeRequestBody() {
+        return HttpBodyCodec.decode(requestBody, requestBodyData);
+    }
+
+    /**
+     * Возвращает тело ответа независимо от того, хранится оно в текстовом или сжатом виде.
+     *
+     * @return тело ответа или {@code null}
+     */
+    public String decodeResponseBody() {
+        return HttpBodyCodec.decode(responseBody, responseBodyData);
+    }
+
 }
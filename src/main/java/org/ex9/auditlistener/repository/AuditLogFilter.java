@@ -0,0 +1,17 @@
+package org.ex9.auditlistener.repository;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Условия выборки Audit-логов. Незаданные ({@code null}) условия не применяются.
+ *
+ * @param from       начало интервала по {@code timestamp}, включительно
+ * @param to         конец интервала по {@code timestamp}, не включительно
+ * @param eventId    корреляционный идентификатор события
+ * @param methodName полное имя метода
+ * @param logLevel   уровень логирования
+ * @author Краковцев Артём
+ */
+public record AuditLogFilter(OffsetDateTime from, OffsetDateTime to, String eventId, String methodName,
+                             String logLevel) {
+}
@@ -0,0 +1,23 @@
+package org.ex9.auditlistener.repository;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+
+import java.util.Optional;
+
+/**
+ * Вставка Audit-лога без предварительной проверки на повтор.
+ * @author Краковцев Артём
+ */
+public interface AuditLogInsertRepository {
+
+    /**
+     * Вставляет лог одним {@code INSERT ... ON CONFLICT DO NOTHING RETURNING id}.
+     * Повтор (совпадение по {@code message_id} или координатам Kafka) не вызывает ошибку
+     * и не прерывает транзакцию.
+     *
+     * @param entity лог для сохранения
+     * @return идентификатор вставленной строки или пустое значение, если лог уже сохранён
+     */
+    Optional<Long> insertIfAbsent(AuditLogEntity entity);
+
+}
@@ -0,0 +1,27 @@
+package org.ex9.auditlistener.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Optional;
+
+/**
+ * Реализация {@link AuditLogInsertRepository} через {@link JdbcTemplate}.
+ * @author Краковцев Артём
+ */
+@RequiredArgsConstructor
+class AuditLogInsertRepositoryImpl implements AuditLogInsertRepository {
+
+    private static final String INSERT_SQL = LogColumns.insertSql("audit_logs", LogColumns.AUDIT, 1)
+            .append(" ON CONFLICT DO NOTHING RETURNING id").toString();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<Long> insertIfAbsent(AuditLogEntity entity) {
+        return Optional.ofNullable(jdbcTemplate.query(INSERT_SQL,
+                rs -> rs.next() ? rs.getLong(1) : null, LogColumns.values(entity)));
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.ex9.auditlistener.repository;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+
+import java.util.List;
+
+/**
+ * Выборка Audit-логов с фильтрами и keyset-пагинацией, полнотекстовый поиск.
+ * @author Краковцев Артём
+ */
+public interface AuditLogQueryRepository {
+
+    /**
+     * Возвращает страницу Audit-логов от новых к старым.
+     *
+     * @param filter условия выборки
+     * @param after  позиция, после которой начинается страница, или {@code null} для первой страницы
+     * @param limit  максимальное число записей
+     * @return записи страницы
+     */
+    List<AuditLogEntity> findPage(AuditLogFilter filter, LogCursor after, int limit);
+
+    /**
+     * Ищет Audit-логов по аргументам, результату и ошибке метода.
+     *
+     * @param filter строка поиска и интервал
+     * @param limit  максимальное число записей
+     * @return найденные записи по убыванию релевантности
+     */
+    List<LogSearchHit<AuditLogEntity>> search(LogSearchFilter filter, int limit);
+
+}
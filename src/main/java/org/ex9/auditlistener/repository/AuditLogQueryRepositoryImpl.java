@@ -0,0 +1,67 @@
+package org.ex9.auditlistener.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.dictionary.LogDictionary;
+import org.ex9.auditlistener.model.AuditLogEntity;
+
+import java.util.List;
+
+/**
+ * Реализация {@link AuditLogQueryRepository} нативным запросом через {@link KeysetQuery}.
+ * <p>
+ * Имя метода и уровень логирования фильтруются по ссылкам на {@link LogDictionary}:
+ * значения, которых нет в словаре, не встречаются и в логах.
+ * </p>
+ * @author Краковцев Артём
+ */
+@RequiredArgsConstructor
+class AuditLogQueryRepositoryImpl implements AuditLogQueryRepository {
+
+    /** Атрибуты {@code @Formula} {@link AuditLogEntity}. */
+    private static final String[] TERMS = {
+            "log_term(type_id) AS \"eventType\"",
+            "log_term(method_name_id) AS \"methodName\"",
+            "log_term(log_level_id) AS \"logLevel\""
+    };
+
+    private final LogDictionary logDictionary;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AuditLogEntity> findPage(AuditLogFilter filter, LogCursor after, int limit) {
+        Integer methodNameId = null;
+        if (filter.methodName() != null) {
+            methodNameId = logDictionary.find(LogDictionary.Kind.METHOD_NAME, filter.methodName());
+            if (methodNameId == null) {
+                return List.of();
+            }
+        }
+        Integer logLevelId = null;
+        if (filter.logLevel() != null) {
+            logLevelId = logDictionary.find(LogDictionary.Kind.LOG_LEVEL, filter.logLevel());
+            if (logLevelId == null) {
+                return List.of();
+            }
+        }
+        return new KeysetQuery("audit_logs", LogColumns.AUDIT, TERMS)
+                .between(filter.from(), filter.to())
+                .equalTo("audit_id", filter.eventId())
+                .equalTo("method_name_id", methodNameId)
+                .equalTo("log_level_id", logLevelId)
+                .after(after)
+                .list(entityManager, AuditLogEntity.class, limit);
+    }
+
+    @Override
+    public List<LogSearchHit<AuditLogEntity>> search(LogSearchFilter filter, int limit) {
+        return new KeysetQuery("audit_logs", LogColumns.AUDIT, TERMS)
+                .between(filter.from(), filter.to())
+                .matches(filter.text())
+                .ranked(entityManager, AuditLogEntity.class, limit);
+    }
+
+}
@@ -1,15 +1,25 @@
 package org.ex9.auditlistener.repository;
 
 import org.ex9.auditlistener.model.AuditLogEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 /**
  * Репозиторий для работы с Audit-логами.
  * @author Краковцев Артём
  */
-public interface AuditLogRepository extends JpaRepository<AuditLogEntity, Long> {
+public interface AuditLogRepository extends JpaRepository<AuditLogEntity, Long>, AuditLogQueryRepository,
+        AuditLogInsertRepository {
 
     boolean existsByKafkaTopicAndKafkaPartitionAndKafkaOffset(String topic, int partition, long offset);
-    boolean existsByMessageId(String messageId);
+
+    /**
+     * Возвращает {@code messageId} последних сохранённых логов (для прогрева фильтра дубликатов).
+     */
+    @Query("select a.messageId from AuditLogEntity a order by a.id desc")
+    List<String> findRecentMessageIds(Limit limit);
 
 }
@@ -0,0 +1,56 @@
+package org.ex9.auditlistener.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.span.AuditSpan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Пакетная запись вызовов методов в {@code audit_spans}.
+ * <p>
+ * Каждая порция сохраняется одним многострочным {@code INSERT ... ON CONFLICT DO NOTHING}:
+ * вызов, собранный повторно из заново доставленных событий, пропускается.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Repository
+@RequiredArgsConstructor
+public class AuditSpanWriter {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String[] COLUMNS = {
+            "audit_id", "method_name", "start_time", "end_time", "duration_us", "outcome", "error"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Сохраняет вызовы.
+     *
+     * @return число сохранённых строк
+     */
+    public int insert(List<AuditSpan> spans) {
+        int inserted = 0;
+        for (int from = 0; from < spans.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<AuditSpan> chunk = spans.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, spans.size()));
+            Object[] args = new Object[chunk.size() * COLUMNS.length];
+            int i = 0;
+            for (AuditSpan span : chunk) {
+                args[i++] = span.eventId();
+                args[i++] = span.methodName();
+                args[i++] = span.startTime();
+                args[i++] = span.endTime();
+                args[i++] = span.durationUs();
+                args[i++] = span.outcome().name();
+                args[i++] = span.error();
+            }
+            inserted += jdbcTemplate.update(LogColumns.insertSql("audit_spans", COLUMNS, chunk.size())
+                    .append(" ON CONFLICT DO NOTHING").toString(), args);
+        }
+        return inserted;
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.ex9.auditlistener.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Пакетная запись логов через {@code COPY ... FROM STDIN (FORMAT binary)}.
+ * <p>
+ * Строки потоково передаются через {@code CopyManager} PgJDBC во временную staging-таблицу
+ * сессии, а затем переносятся в целевую таблицу одним
+ * {@code INSERT ... SELECT ... ON CONFLICT DO NOTHING RETURNING message_id}, поэтому уникальные
+ * ограничения по {@code message_id} и координатам Kafka по-прежнему отсекают дубликаты.
+ * Staging-таблица создаётся один раз на соединение и очищается при фиксации транзакции.
+ * Столбцы и значения строк берутся из {@link LogColumns}, как и в {@link JdbcLogBatchWriter}.
+ * </p>
+ * <p>
+ * Используется при {@code audit.persistence.engine=copy}. Требует активной транзакции.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "audit.persistence.engine", havingValue = "copy")
+public class CopyLogBatchWriter implements LogBatchWriter {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<AuditLogEntity> insertAuditLogs(List<AuditLogEntity> entities) {
+        return copy("audit_logs", LogColumns.AUDIT, entities, LogColumns::values, AuditLogEntity::getMessageId);
+    }
+
+    @Override
+    public List<HttpLogEntity> insertHttpLogs(List<HttpLogEntity> entities) {
+        return copy("http_logs", LogColumns.HTTP, entities, LogColumns::values, HttpLogEntity::getMessageId);
+    }
+
+    private <T> List<T> copy(String table, String[] columns, List<T> entities,
+                             Function<T, Object[]> values, Function<T, String> messageId) {
+        String staging = table + "_staging";
+        String columnList = String.join(", ", columns);
+
+        Set<String> inserted = jdbcTemplate.execute((ConnectionCallback<Set<String>>) connection -> {
+            if (connection.getAutoCommit()) {
+                throw new IllegalStateException("COPY batch writer requires an active transaction");
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + staging + " ON COMMIT DELETE ROWS AS "
+                        + "SELECT " + columnList + " FROM " + table + " WITH NO DATA");
+                statement.execute("TRUNCATE " + staging);
+            }
+
+            streamRows(connection, "COPY " + staging + " (" + columnList + ") FROM STDIN (FORMAT binary)",
+                    entities, values);
+
+            Set<String> messageIds = new HashSet<>(entities.size());
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("INSERT INTO " + table + " (" + columnList + ") "
+                         + "SELECT " + columnList + " FROM " + staging
+                         + " ON CONFLICT DO NOTHING RETURNING message_id")) {
+                while (resultSet.next()) {
+                    messageIds.add(resultSet.getString(1));
+                }
+            }
+            return messageIds;
+        });
+        return LogColumns.inserted(entities, messageId, inserted == null ? Set.of() : inserted);
+    }
+
+    private <T> void streamRows(Connection connection, String copySql,
+                                List<T> entities, Function<T, Object[]> values) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        try (PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(
+                new PGCopyOutputStream(pgConnection, copySql, COPY_BUFFER_SIZE))) {
+            for (T entity : entities) {
+                encoder.row(values.apply(entity));
+            }
+        } catch (IOException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new UncheckedIOException("Failed to stream rows into " + copySql, e);
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package org.ex9.auditlistener.repository;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Условия выборки HTTP-логов. Незаданные ({@code null}) условия не применяются.
+ *
+ * @param from       начало интервала по {@code timestamp}, включительно
+ * @param to         конец интервала по {@code timestamp}, не включительно
+ * @param urlPrefix  начало URL запроса
+ * @param statusCode код статуса ответа
+ * @author Краковцев Артём
+ */
+public record HttpLogFilter(OffsetDateTime from, OffsetDateTime to, String urlPrefix, Integer statusCode) {
+}
@@ -0,0 +1,27 @@
+package org.ex9.auditlistener.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Optional;
+
+/**
+ * Реализация {@link HttpLogInsertRepository} через {@link JdbcTemplate}.
+ * @author Краковцев Артём
+ */
+@RequiredArgsConstructor
+class HttpLogInsertRepositoryImpl implements HttpLogInsertRepository {
+
+    private static final String INSERT_SQL = LogColumns.insertSql("http_logs", LogColumns.HTTP, 1)
+            .append(" ON CONFLICT DO NOTHING RETURNING id").toString();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<Long> insertIfAbsent(HttpLogEntity entity) {
+        return Optional.ofNullable(jdbcTemplate.query(INSERT_SQL,
+                rs -> rs.next() ? rs.getLong(1) : null, LogColumns.values(entity)));
+    }
+
+}
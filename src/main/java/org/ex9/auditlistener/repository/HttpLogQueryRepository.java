@@ -0,0 +1,32 @@
+package org.ex9.auditlistener.repository;
+
+import org.ex9.auditlistener.model.HttpLogEntity;
+
+import java.util.List;
+
+/**
+ * Выборка HTTP-логов с фильтрами и keyset-пагинацией, полнотекстовый поиск.
+ * @author Краковцев Артём
+ */
+public interface HttpLogQueryRepository {
+
+    /**
+     * Возвращает страницу HTTP-логов от новых к старым.
+     *
+     * @param filter условия выборки
+     * @param after  позиция, после которой начинается страница, или {@code null} для первой страницы
+     * @param limit  максимальное число записей
+     * @return записи страницы
+     */
+    List<HttpLogEntity> findPage(HttpLogFilter filter, LogCursor after, int limit);
+
+    /**
+     * Ищет HTTP-логов по телам запроса и ответа.
+     *
+     * @param filter строка поиска и интервал
+     * @param limit  максимальное число записей
+     * @return найденные записи по убыванию релевантности
+     */
+    List<LogSearchHit<HttpLogEntity>> search(LogSearchFilter filter, int limit);
+
+}
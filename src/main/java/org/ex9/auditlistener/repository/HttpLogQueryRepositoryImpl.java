@@ -0,0 +1,43 @@
+package org.ex9.auditlistener.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.ex9.auditlistener.model.HttpLogEntity;
+
+import java.util.List;
+
+/**
+ * Реализация {@link HttpLogQueryRepository} нативным запросом через {@link KeysetQuery}.
+ * @author Краковцев Артём
+ */
+class HttpLogQueryRepositoryImpl implements HttpLogQueryRepository {
+
+    /** Атрибуты {@code @Formula} {@link HttpLogEntity}. */
+    private static final String[] TERMS = {
+            "log_term(direction_id) AS \"direction\"",
+            "log_term(method_id) AS \"method\"",
+            "log_url(url_template_id, url_params, url_query) AS \"url\""
+    };
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<HttpLogEntity> findPage(HttpLogFilter filter, LogCursor after, int limit) {
+        return new KeysetQuery("http_logs", LogColumns.HTTP, TERMS)
+                .between(filter.from(), filter.to())
+                .urlStartsWith(filter.urlPrefix())
+                .equalTo("status_code", filter.statusCode())
+                .after(after)
+                .list(entityManager, HttpLogEntity.class, limit);
+    }
+
+    @Override
+    public List<LogSearchHit<HttpLogEntity>> search(LogSearchFilter filter, int limit) {
+        return new KeysetQuery("http_logs", LogColumns.HTTP, TERMS)
+                .between(filter.from(), filter.to())
+                .matches(filter.text())
+                .ranked(entityManager, HttpLogEntity.class, limit);
+    }
+
+}
@@ -1,18 +1,27 @@
 package org.ex9.auditlistener.repository;
 
 import org.ex9.auditlistener.model.HttpLogEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 /**
  * Репозиторий для работы с HTTP-логами.
  * @author Краковцев Артём
  */
 @Repository
-public interface HttpLogRepository extends JpaRepository<HttpLogEntity, Long> {
+public interface HttpLogRepository extends JpaRepository<HttpLogEntity, Long>, HttpLogQueryRepository,
+        HttpLogInsertRepository {
 
     boolean existsByKafkaTopicAndKafkaPartitionAndKafkaOffset(String topic, int partition, long offset);
 
-    boolean existsByMessageId(String messageId);
+    /**
+     * Возвращает {@code messageId} последних сохранённых логов (для прогрева фильтра дубликатов).
+     */
+    @Query("select h.messageId from HttpLogEntity h order by h.id desc")
+    List<String> findRecentMessageIds(Limit limit);
 
 }
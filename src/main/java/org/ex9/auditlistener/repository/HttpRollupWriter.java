@@ -0,0 +1,82 @@
+package org.ex9.auditlistener.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.HdrHistogram.Histogram;
+import org.ex9.auditlistener.rollup.HttpRollup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Пакетная запись агрегатов HTTP-логов в {@code http_log_rollups}.
+ * <p>
+ * Вместе со счётчиками сохраняются перцентили размера тела ответа и обе гистограммы
+ * в сжатом формате HdrHistogram ({@link Histogram#decodeFromCompressedByteBuffer}),
+ * чтобы перцентили нескольких строк можно было получить объединением гистограмм.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Repository
+@RequiredArgsConstructor
+public class HttpRollupWriter {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String[] COLUMNS = {
+            "bucket_start", "bucket_seconds", "method", "route", "requests",
+            "status_1xx", "status_2xx", "status_3xx", "status_4xx", "status_5xx", "status_other",
+            "request_bytes", "response_bytes",
+            "response_bytes_p50", "response_bytes_p95", "response_bytes_p99", "response_bytes_max",
+            "request_bytes_histogram", "response_bytes_histogram"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Сохраняет агрегаты.
+     *
+     * @return число сохранённых строк
+     */
+    public int insert(List<HttpRollup> rollups) {
+        int inserted = 0;
+        for (int from = 0; from < rollups.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<HttpRollup> chunk = rollups.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, rollups.size()));
+            Object[] args = new Object[chunk.size() * COLUMNS.length];
+            int i = 0;
+            for (HttpRollup rollup : chunk) {
+                args[i++] = rollup.bucketStart();
+                args[i++] = rollup.bucketSeconds();
+                args[i++] = rollup.method();
+                args[i++] = rollup.route();
+                args[i++] = rollup.requests();
+                args[i++] = rollup.status1xx();
+                args[i++] = rollup.status2xx();
+                args[i++] = rollup.status3xx();
+                args[i++] = rollup.status4xx();
+                args[i++] = rollup.status5xx();
+                args[i++] = rollup.statusOther();
+                args[i++] = rollup.requestBytes();
+                args[i++] = rollup.responseBytes();
+                args[i++] = rollup.responseSizes().getValueAtPercentile(50);
+                args[i++] = rollup.responseSizes().getValueAtPercentile(95);
+                args[i++] = rollup.responseSizes().getValueAtPercentile(99);
+                args[i++] = rollup.responseSizes().getMaxValue();
+                args[i++] = encode(rollup.requestSizes());
+                args[i++] = encode(rollup.responseSizes());
+            }
+            inserted += jdbcTemplate.update(LogColumns.insertSql("http_log_rollups", COLUMNS, chunk.size()).toString(),
+                    args);
+        }
+        return inserted;
+    }
+
+    private static byte[] encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Arrays.copyOf(buffer.array(), length);
+    }
+
+}
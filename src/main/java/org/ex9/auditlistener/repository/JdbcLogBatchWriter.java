@@ -0,0 +1,66 @@
+package org.ex9.auditlistener.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Пакетная запись логов через JDBC.
+ * <p>
+ * Каждая порция логов сохраняется одним многострочным {@code INSERT ... ON CONFLICT DO NOTHING}.
+ * Дубликаты по {@code message_id} и координатам сообщения Kafka отбрасываются уникальными
+ * ограничениями таблиц, не прерывая транзакцию. Вставленные строки определяются
+ * по {@code RETURNING message_id}.
+ * </p>
+ * <p>
+ * Используется при {@code audit.persistence.engine=jdbc} (по умолчанию).
+ * </p>
+ * @author Краковцев Артём
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "audit.persistence.engine", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcLogBatchWriter implements LogBatchWriter {
+
+    /** Ограничение на число строк в одном выражении (PostgreSQL допускает не более 65535 параметров). */
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<AuditLogEntity> insertAuditLogs(List<AuditLogEntity> entities) {
+        return insert("audit_logs", LogColumns.AUDIT, entities, LogColumns::values, AuditLogEntity::getMessageId);
+    }
+
+    @Override
+    public List<HttpLogEntity> insertHttpLogs(List<HttpLogEntity> entities) {
+        return insert("http_logs", LogColumns.HTTP, entities, LogColumns::values, HttpLogEntity::getMessageId);
+    }
+
+    private <T> List<T> insert(String table, String[] columns, List<T> entities,
+                               Function<T, Object[]> values, Function<T, String> messageId) {
+        Set<String> inserted = new HashSet<>(entities.size());
+        for (int from = 0; from < entities.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<T> chunk = entities.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, entities.size()));
+            Object[] args = new Object[chunk.size() * columns.length];
+            int i = 0;
+            for (T entity : chunk) {
+                Object[] row = values.apply(entity);
+                System.arraycopy(row, 0, args, i, row.length);
+                i += row.length;
+            }
+            inserted.addAll(jdbcTemplate.queryForList(LogColumns.insertSql(table, columns, chunk.size())
+                    .append(" ON CONFLICT DO NOTHING RETURNING message_id").toString(), String.class, args));
+        }
+        return LogColumns.inserted(entities, messageId, inserted);
+    }
+
+}
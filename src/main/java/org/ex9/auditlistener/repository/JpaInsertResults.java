@@ -0,0 +1,49 @@
+package org.ex9.auditlistener.repository;
+
+import org.hibernate.jdbc.Expectation;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Результаты {@code INSERT} сущностей логов, выполненных Hibernate.
+ * <p>
+ * Объявляется проверкой в {@code @SQLInsert} сущностей: Hibernate передаёт сюда число строк,
+ * вставленных каждым {@code INSERT}, в порядке выполнения. Пока в потоке идёт запись
+ * {@link JpaLogBatchWriter}, результаты собираются, чтобы отличить вставленные сущности
+ * от пропущенных {@code ON CONFLICT DO NOTHING}; вне записи они не проверяются.
+ * </p>
+ * @author Краковцев Артём
+ */
+public class JpaInsertResults implements Expectation {
+
+    private static final ThreadLocal<List<Integer>> ROW_COUNTS = new ThreadLocal<>();
+
+    /**
+     * Начинает сбор результатов в текущем потоке.
+     */
+    static void start() {
+        ROW_COUNTS.set(new ArrayList<>());
+    }
+
+    /**
+     * Завершает сбор результатов в текущем потоке.
+     *
+     * @return число вставленных строк каждого {@code INSERT} с начала сбора
+     */
+    static List<Integer> finish() {
+        List<Integer> rowCounts = ROW_COUNTS.get();
+        ROW_COUNTS.remove();
+        return rowCounts == null ? List.of() : rowCounts;
+    }
+
+    @Override
+    public void verifyOutcome(int rowCount, PreparedStatement statement, int batchPosition, String sql) {
+        List<Integer> rowCounts = ROW_COUNTS.get();
+        if (rowCounts != null) {
+            rowCounts.add(rowCount);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.ex9.auditlistener.repository;
+
+import jakarta.persistence.EntityManager;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетная запись логов через JPA.
+ * <p>
+ * Сущности сохраняются {@link EntityManager#persist}, и Hibernate отправляет их JDBC-пакетами
+ * по {@code hibernate.jdbc.batch_size}. Идентификаторы выдаются блоками (pooled-lo), поэтому
+ * вставка не требует отдельного обращения к БД за ключом. Сами {@code INSERT} объявлены
+ * в сущностях с {@code ON CONFLICT DO NOTHING}: дубликаты молча пропускаются.
+ * </p>
+ * <p>
+ * Вставленные сущности определяются по результатам их {@code INSERT}, которые собирает
+ * {@link JpaInsertResults}. Вставки в сущностях записаны как {@code INSERT ... SELECT}, а не
+ * {@code VALUES}: такие пакеты PgJDBC с {@code reWriteBatchedInserts} не переписывает
+ * в многострочные и сообщает результат каждой строки.
+ * </p>
+ * <p>
+ * Используется при {@code audit.persistence.engine=jpa}. Требует активной транзакции.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Repository
+@ConditionalOnProperty(name = "audit.persistence.engine", havingValue = "jpa")
+public class JpaLogBatchWriter implements LogBatchWriter {
+
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    public JpaLogBatchWriter(EntityManager entityManager,
+                             @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public List<AuditLogEntity> insertAuditLogs(List<AuditLogEntity> entities) {
+        return persist(entities);
+    }
+
+    @Override
+    public List<HttpLogEntity> insertHttpLogs(List<HttpLogEntity> entities) {
+        return persist(entities);
+    }
+
+    private <T> List<T> persist(List<T> entities) {
+        List<Integer> rowCounts;
+        JpaInsertResults.start();
+        try {
+            for (int i = 0; i < entities.size(); i++) {
+                entityManager.persist(entities.get(i));
+                if ((i + 1) % batchSize == 0) {
+                    flushAndClear();
+                }
+            }
+            flushAndClear();
+        } finally {
+            rowCounts = JpaInsertResults.finish();
+        }
+
+        if (rowCounts.size() != entities.size()) {
+            throw new IllegalStateException("Expected " + entities.size() + " insert results, got " + rowCounts.size());
+        }
+        List<T> inserted = new ArrayList<>(entities.size());
+        for (int i = 0; i < entities.size(); i++) {
+            int rowCount = rowCounts.get(i);
+            if (rowCount == Statement.SUCCESS_NO_INFO) {
+                throw new IllegalStateException("JDBC driver did not report insert results");
+            }
+            if (rowCount > 0) {
+                inserted.add(entities.get(i));
+            }
+        }
+        return inserted;
+    }
+
+    /** Отправляет накопленные вставки и освобождает контекст, чтобы он не рос с размером пакета. */
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+}
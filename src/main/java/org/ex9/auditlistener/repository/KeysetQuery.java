@@ -0,0 +1,200 @@
+package org.ex9.auditlistener.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.ex9.auditlistener.dictionary.LogDictionary;
+import org.ex9.auditlistener.dictionary.UrlTemplate;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Построитель нативного запроса страницы логов с keyset-пагинацией по {@code (timestamp, id)}.
+ * <p>
+ * Записи упорядочены от новых к старым. Продолжение выдачи задаётся сравнением строк
+ * {@code (timestamp, id) < (:timestamp, :id)}, которое PostgreSQL выполняет поиском по
+ * индексу {@code (…, timestamp, id)}, поэтому стоимость страницы не зависит от её номера.
+ * Границы интервала по {@code timestamp} дополнительно отсекают лишние секции таблицы.
+ * </p>
+ * <p>
+ * Полнотекстовый поиск ({@link #matches(String)}) выдаёт записи по убыванию релевантности
+ * ({@link #ranked(EntityManager, Class, int)}) без продолжения выдачи.
+ * </p>
+ * @author Краковцев Артём
+ */
+final class KeysetQuery {
+
+    /** Начало значения параметра URL: числа, UUID или шестнадцатеричной строки. */
+    private static final Pattern IDENTIFIER_PREFIX = Pattern.compile("[0-9a-fA-F-]+");
+
+    /** Запрос поиска из текста пользователя: слова, фразы в кавычках, {@code OR} и {@code -}исключение. */
+    private static final String SEARCH_QUERY = "websearch_to_tsquery('simple', :searchText)";
+
+    private final String table;
+    private final String[] columns;
+    private final String[] computedColumns;
+    private final StringBuilder where = new StringBuilder();
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    /**
+     * @param table           таблица логов
+     * @param columns         столбцы сущности, кроме {@code id}; остальные, например {@code search_vector},
+     *                        не читаются
+     * @param computedColumns выражения атрибутов {@code @Formula} вида {@code expr AS "attribute"}:
+     *                        в нативном запросе Hibernate читает их из столбцов с именами атрибутов
+     */
+    KeysetQuery(String table, String[] columns, String... computedColumns) {
+        this.table = table;
+        this.columns = columns;
+        this.computedColumns = computedColumns;
+    }
+
+    KeysetQuery equalTo(String column, Object value) {
+        if (value != null) {
+            condition(column + " = :" + column);
+            parameters.put(column, value);
+        }
+        return this;
+    }
+
+    /**
+     * Условие «URL начинается с {@code prefix}» над URL, разбитым на шаблон пути, параметры
+     * и строку запроса ({@link UrlTemplate}). Префикс разбивается по тем же правилам: шаблон
+     * ищется по началу среди шаблонов словаря, параметры пути сравниваются на равенство,
+     * строка запроса — по началу при точном совпадении шаблона. Оборванный последний сегмент
+     * пути сопоставляется и с началом сегмента шаблона, и с началом значения параметра.
+     */
+    KeysetQuery urlStartsWith(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return this;
+        }
+        UrlTemplate.Parts parts = UrlTemplate.split(prefix);
+        if (parts.query() != null || prefix.endsWith("/")) {
+            condition(urlTemplateLike("urlTemplate"));
+            parameters.put("urlTemplate", escapeLike(parts.template()) + (parts.query() == null ? "%" : ""));
+            urlParamsEqualTo(parts.params());
+            if (parts.query() != null) {
+                condition("url_query LIKE :urlQuery");
+                parameters.put("urlQuery", escapeLike(parts.query()) + "%");
+            }
+            return this;
+        }
+
+        int segmentStart = prefix.lastIndexOf('/') + 1;
+        UrlTemplate.Parts head = UrlTemplate.split(prefix.substring(0, segmentStart));
+        String segment = prefix.substring(segmentStart);
+        urlParamsEqualTo(head.params());
+        parameters.put("urlTemplate", escapeLike(head.template() + segment) + "%");
+        if (!IDENTIFIER_PREFIX.matcher(segment).matches()) {
+            condition(urlTemplateLike("urlTemplate"));
+            return this;
+        }
+        int param = head.params() == null ? 1 : head.params().length + 1;
+        condition("(" + urlTemplateLike("urlTemplate") + " OR " + urlTemplateLike("urlParamTemplate")
+                + " AND url_params[" + param + "] LIKE :urlParamPrefix)");
+        parameters.put("urlParamTemplate", escapeLike(head.template()) + "{%");
+        parameters.put("urlParamPrefix", escapeLike(segment) + "%");
+        return this;
+    }
+
+    private void urlParamsEqualTo(String[] params) {
+        if (params == null) {
+            return;
+        }
+        for (int i = 0; i < params.length; i++) {
+            condition("url_params[" + (i + 1) + "] = :urlParam" + (i + 1));
+            parameters.put("urlParam" + (i + 1), params[i]);
+        }
+    }
+
+    private static String urlTemplateLike(String parameter) {
+        return "url_template_id IN (SELECT id FROM log_dictionary WHERE kind = '"
+                + LogDictionary.Kind.URL_TEMPLATE.key() + "' AND value LIKE :" + parameter + ")";
+    }
+
+    KeysetQuery between(OffsetDateTime from, OffsetDateTime to) {
+        if (from != null) {
+            condition("timestamp >= :fromTimestamp");
+            parameters.put("fromTimestamp", from);
+        }
+        if (to != null) {
+            condition("timestamp < :toTimestamp");
+            parameters.put("toTimestamp", to);
+        }
+        return this;
+    }
+
+    /**
+     * Условие полнотекстового поиска по столбцу {@code search_vector} (GIN-индекс).
+     */
+    KeysetQuery matches(String text) {
+        condition("search_vector @@ " + SEARCH_QUERY);
+        parameters.put("searchText", text);
+        return this;
+    }
+
+    KeysetQuery after(LogCursor cursor) {
+        if (cursor != null) {
+            condition("(timestamp, id) < (:cursorTimestamp, :cursorId)");
+            parameters.put("cursorTimestamp", cursor.timestamp());
+            parameters.put("cursorId", cursor.id());
+        }
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> List<T> list(EntityManager entityManager, Class<T> entityClass, int limit) {
+        String sql = select() + " FROM " + table + where + " ORDER BY timestamp DESC, id DESC LIMIT :limit";
+        Query query = entityManager.createNativeQuery(sql, entityClass);
+        parameters.forEach(query::setParameter);
+        query.setParameter("limit", limit);
+        return query.getResultList();
+    }
+
+    /**
+     * Записи, найденные {@link #matches(String)}, по убыванию релевантности {@code ts_rank_cd},
+     * при равной релевантности — от новых к старым.
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<LogSearchHit<T>> ranked(EntityManager entityManager, Class<T> entityClass, int limit) {
+        if (!parameters.containsKey("searchText")) {
+            throw new IllegalStateException("Ranked query requires a search condition");
+        }
+        String sql = select() + ", ts_rank_cd(search_vector, " + SEARCH_QUERY + ") AS search_rank FROM " + table
+                + where + " ORDER BY search_rank DESC, timestamp DESC, id DESC LIMIT :limit";
+        NativeQuery<Object[]> query = entityManager.createNativeQuery(sql).unwrap(NativeQuery.class)
+                .addEntity(entityClass)
+                .addScalar("search_rank", StandardBasicTypes.DOUBLE);
+        parameters.forEach(query::setParameter);
+        query.setParameter("limit", limit);
+        return query.getResultList().stream()
+                .map(row -> new LogSearchHit<>(entityClass.cast(row[0]), (Double) row[1]))
+                .toList();
+    }
+
+    private String select() {
+        StringBuilder select = new StringBuilder("SELECT id");
+        for (String column : columns) {
+            select.append(", ").append(column);
+        }
+        for (String column : computedColumns) {
+            select.append(", ").append(column);
+        }
+        return select.toString();
+    }
+
+    private void condition(String condition) {
+        where.append(where.isEmpty() ? " WHERE " : " AND ").append(condition);
+    }
+
+    /** Экранирует спецсимволы LIKE; обратная косая черта — экранирующий символ PostgreSQL по умолчанию. */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.ex9.auditlistener.repository;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+
+import java.util.List;
+
+/**
+ * Пакетная запись логов в БД.
+ * <p>
+ * Реализация выбирается свойством {@code audit.persistence.engine}:
+ * {@code jdbc} — {@link JdbcLogBatchWriter}, {@code copy} — {@link CopyLogBatchWriter},
+ * {@code jpa} — {@link JpaLogBatchWriter}.
+ * Повторные сообщения (совпадение по {@code message_id} или координатам Kafka)
+ * должны молча пропускаться. {@code message_id} внутри одного вызова должны быть уникальны.
+ * </p>
+ * @author Краковцев Артём
+ */
+public interface LogBatchWriter {
+
+    /**
+     * Сохраняет Audit-логи.
+     *
+     * @param entities логи для сохранения
+     * @return фактически вставленные логи (без дубликатов) в порядке {@code entities}
+     */
+    List<AuditLogEntity> insertAuditLogs(List<AuditLogEntity> entities);
+
+    /**
+     * Сохраняет HTTP-логи.
+     *
+     * @param entities логи для сохранения
+     * @return фактически вставленные логи (без дубликатов) в порядке {@code entities}
+     */
+    List<HttpLogEntity> insertHttpLogs(List<HttpLogEntity> entities);
+
+}
@@ -0,0 +1,97 @@
+package org.ex9.auditlistener.repository;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Столбцы таблиц логов и значения сущностей в том же порядке — для JDBC-вставок.
+ * Ссылки на словарь должны быть заполнены заранее ({@link org.ex9.auditlistener.dictionary.LogDictionary}).
+ * @author Краковцев Артём
+ */
+final class LogColumns {
+
+    static final String[] AUDIT = {
+            "message_id", "audit_id", "type_id", "method_name_id", "args", "result", "error", "log_level_id",
+            "timestamp", "kafka_topic", "kafka_partition", "kafka_offset"
+    };
+
+    static final String[] HTTP = {
+            "message_id", "timestamp", "direction_id", "method_id", "status_code", "url_template_id", "url_params",
+            "url_query", "request_body", "response_body", "request_body_data", "response_body_data",
+            "search_terms", "kafka_topic", "kafka_partition", "kafka_offset"
+    };
+
+    private LogColumns() {
+    }
+
+    static Object[] values(AuditLogEntity entity) {
+        return new Object[]{
+                entity.getMessageId(),
+                entity.getEventId(),
+                entity.getEventTypeId(),
+                entity.getMethodNameId(),
+                entity.getArgs(),
+                entity.getResult(),
+                entity.getError(),
+                entity.getLogLevelId(),
+                entity.getTimestamp(),
+                entity.getKafkaTopic(),
+                entity.getKafkaPartition(),
+                entity.getKafkaOffset()
+        };
+    }
+
+    static Object[] values(HttpLogEntity entity) {
+        return new Object[]{
+                entity.getMessageId(),
+                entity.getTimestamp(),
+                entity.getDirectionId(),
+                entity.getMethodId(),
+                entity.getStatusCode(),
+                entity.getUrlTemplateId(),
+                entity.getUrlParams(),
+                entity.getUrlQuery(),
+                entity.getRequestBody(),
+                entity.getResponseBody(),
+                entity.getRequestBodyData(),
+                entity.getResponseBodyData(),
+                entity.getSearchTerms(),
+                entity.getKafkaTopic(),
+                entity.getKafkaPartition(),
+                entity.getKafkaOffset()
+        };
+    }
+
+    /**
+     * Отбирает из {@code entities} вставленные логи по {@code message_id}, возвращённым БД.
+     */
+    static <T> List<T> inserted(List<T> entities, Function<T, String> messageId, Set<String> insertedIds) {
+        if (insertedIds.size() == entities.size()) {
+            return entities;
+        }
+        return entities.stream().filter(entity -> insertedIds.contains(messageId.apply(entity))).toList();
+    }
+
+    /**
+     * Строит {@code INSERT INTO table (columns) VALUES (?, ...), ...} на {@code rows} строк.
+     */
+    static StringBuilder insertSql(String table, String[] columns, int rows) {
+        String placeholders = "(" + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+        StringBuilder sql = new StringBuilder(64 + rows * (placeholders.length() + 2))
+                .append("INSERT INTO ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sql.append(", ");
+            }
+            sql.append(placeholders);
+        }
+        return sql;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.ex9.auditlistener.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция в выдаче логов для keyset-пагинации: ключ {@code (timestamp, id)} последней
+ * записи страницы. Следующая страница начинается строго после неё.
+ * <p>
+ * Клиенту передаётся в непрозрачном виде ({@link #encode()}).
+ * </p>
+ *
+ * @param timestamp время последней записи страницы
+ * @param id        идентификатор последней записи страницы
+ * @author Краковцев Артём
+ */
+public record LogCursor(OffsetDateTime timestamp, long id) {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Кодирует позицию в строку для передачи клиенту.
+     */
+    public String encode() {
+        String value = timestamp.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Восстанавливает позицию из строки, полученной от клиента.
+     *
+     * @param cursor значение {@link #encode()}
+     * @return позиция в выдаче
+     * @throws IllegalArgumentException если строка не является корректным курсором
+     */
+    public static LogCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new LogCursor(OffsetDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+}
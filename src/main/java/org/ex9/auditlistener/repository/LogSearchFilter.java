@@ -0,0 +1,15 @@
+package org.ex9.auditlistener.repository;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Условия полнотекстового поиска логов.
+ *
+ * @param text строка поиска в синтаксисе {@code websearch_to_tsquery}: слова, фразы в кавычках,
+ *             {@code OR} и исключение {@code -слово}
+ * @param from начало интервала по {@code timestamp}, включительно
+ * @param to   конец интервала по {@code timestamp}, не включительно, или {@code null}
+ * @author Краковцев Артём
+ */
+public record LogSearchFilter(String text, OffsetDateTime from, OffsetDateTime to) {
+}
@@ -0,0 +1,22 @@
+package org.ex9.auditlistener.repository;
+
+import java.util.function.Function;
+
+/**
+ * Запись, найденная полнотекстовым поиском.
+ *
+ * @param item запись
+ * @param rank релевантность {@code ts_rank_cd}: чем больше, тем ближе и чаще встречаются слова запроса
+ * @param <T>  тип записи
+ * @author Краковцев Артём
+ */
+public record LogSearchHit<T>(T item, double rank) {
+
+    /**
+     * Преобразует запись, сохраняя релевантность.
+     */
+    public <R> LogSearchHit<R> map(Function<? super T, ? extends R> mapper) {
+        return new LogSearchHit<>(mapper.apply(item), rank);
+    }
+
+}
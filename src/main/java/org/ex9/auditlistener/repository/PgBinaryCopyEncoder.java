@@ -0,0 +1,146 @@
+package org.ex9.auditlistener.repository;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Кодирует строки в двоичный формат {@code COPY ... (FORMAT binary)} PostgreSQL.
+ * <p>
+ * Поддерживает только типы, используемые в таблицах логов: {@code text}, {@code text[]},
+ * {@code bytea}, {@code int4}, {@code int8} и {@code timestamptz}. Тип поля строки
+ * определяется по Java-типу значения ({@link #row(Object[])}), поэтому строки кодируются
+ * из тех же {@link LogColumns#values}, что и JDBC-вставки.
+ * </p>
+ * @author Краковцев Артём
+ */
+class PgBinaryCopyEncoder implements AutoCloseable {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int TEXT_OID = 25;
+    private static final OffsetDateTime PG_EPOCH = OffsetDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private final DataOutputStream out;
+
+    PgBinaryCopyEncoder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write(SIGNATURE);
+        this.out.writeInt(0); // флаги
+        this.out.writeInt(0); // длина расширения заголовка
+    }
+
+    void startRow(int fieldCount) throws IOException {
+        out.writeShort(fieldCount);
+    }
+
+    /** Строка из значений столбцов по порядку. */
+    void row(Object[] values) throws IOException {
+        startRow(values.length);
+        for (Object value : values) {
+            value(value);
+        }
+    }
+
+    /**
+     * Поле по Java-типу значения: {@link String} — {@code text}, {@code String[]} — {@code text[]},
+     * {@code byte[]} — {@code bytea}, {@link Integer} — {@code int4}, {@link Long} — {@code int8},
+     * {@link OffsetDateTime} — {@code timestamptz}, {@code null} — {@code NULL}.
+     *
+     * @throws IllegalArgumentException если тип значения не поддерживается
+     */
+    void value(Object value) throws IOException {
+        switch (value) {
+            case null -> out.writeInt(-1);
+            case String text -> text(text);
+            case String[] array -> textArray(array);
+            case byte[] bytes -> bytea(bytes);
+            case Integer number -> int4(number);
+            case Long number -> int8(number);
+            case OffsetDateTime timestamp -> timestamp(timestamp);
+            default -> throw new IllegalArgumentException("Unsupported COPY value type: " + value.getClass());
+        }
+    }
+
+    void text(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Одномерный {@code text[]} без {@code NULL}-элементов. */
+    void textArray(String[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[][] elements = new byte[value.length][];
+        int size = 20;
+        for (int i = 0; i < value.length; i++) {
+            elements[i] = value[i].getBytes(StandardCharsets.UTF_8);
+            size += 4 + elements[i].length;
+        }
+        out.writeInt(size);
+        out.writeInt(1); // число измерений
+        out.writeInt(0); // флаг NULL-элементов
+        out.writeInt(TEXT_OID);
+        out.writeInt(value.length);
+        out.writeInt(1); // нижняя граница
+        for (byte[] element : elements) {
+            out.writeInt(element.length);
+            out.write(element);
+        }
+    }
+
+    void bytea(byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    void int4(Integer value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    void int8(Long value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    /** {@code timestamp with time zone}: микросекунды от 2000-01-01 00:00 UTC. */
+    void timestamp(OffsetDateTime value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(PG_EPOCH, value));
+    }
+
+    /** Пишет завершающий маркер и закрывает поток, отправляя данные COPY серверу. */
+    @Override
+    public void close() throws IOException {
+        out.writeShort(-1);
+        out.close();
+    }
+
+}
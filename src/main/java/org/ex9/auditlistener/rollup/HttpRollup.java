@@ -0,0 +1,36 @@
+package org.ex9.auditlistener.rollup;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Агрегат HTTP-логов одного окна времени по методу и нормализованному URL.
+ * <p>
+ * Счётчики аддитивны: за одно окно может быть несколько строк (от разных экземпляров
+ * или от событий, опоздавших после записи окна), и их нужно суммировать. Перцентили
+ * таких строк объединяются через гистограммы, а не усреднением.
+ * </p>
+ *
+ * @param bucketStart   начало окна (UTC)
+ * @param bucketSeconds длина окна в секундах
+ * @param method        HTTP-метод
+ * @param route         нормализованный URL ({@link UrlNormalizer})
+ * @param requests      число запросов
+ * @param status1xx     число ответов 1xx
+ * @param status2xx     число ответов 2xx
+ * @param status3xx     число ответов 3xx
+ * @param status4xx     число ответов 4xx
+ * @param status5xx     число ответов 5xx
+ * @param statusOther   число ответов с кодом вне диапазона 100–599
+ * @param requestBytes  суммарный размер тел запросов
+ * @param responseBytes суммарный размер тел ответов
+ * @param requestSizes  распределение размеров тел запросов
+ * @param responseSizes распределение размеров тел ответов
+ * @author Краковцев Артём
+ */
+public record HttpRollup(OffsetDateTime bucketStart, int bucketSeconds, String method, String route,
+                         long requests, long status1xx, long status2xx, long status3xx, long status4xx,
+                         long status5xx, long statusOther, long requestBytes, long responseBytes,
+                         Histogram requestSizes, Histogram responseSizes) {
+}
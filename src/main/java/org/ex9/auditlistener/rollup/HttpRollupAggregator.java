@@ -0,0 +1,220 @@
+package org.ex9.auditlistener.rollup;
+
+import lombok.extern.log4j.Log4j2;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.repository.HttpRollupWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Агрегаты HTTP-логов в реальном времени: число запросов, разбивка по классам статусов
+ * и гистограммы размеров тел по окнам времени, HTTP-методу и нормализованному URL.
+ * <p>
+ * Сохранённые HTTP-логи передаются в {@link #accept(Collection)} после фиксации транзакции
+ * и раскладываются по окнам {@code audit.http-rollup.window} по времени события.
+ * Запись не блокируется: счётчики — {@link LongAdder}, гистограммы — {@link ConcurrentHistogram}.
+ * Число маршрутов в памяти ограничено {@code audit.http-rollup.max-routes}, сверх него
+ * запросы учитываются под маршрутом {@value #OTHER_ROUTE}.
+ * </p>
+ * <p>
+ * Окно остаётся открытым для опоздавших событий ещё {@code audit.http-rollup.grace}, затем
+ * снимается с учёта и при следующем {@link #flush()} записывается в {@code http_log_rollups}:
+ * задержка на один цикл даёт завершиться записям, начатым до снятия окна. Событие, пришедшее
+ * после этого, открывает окно заново и даёт ещё одну строку — строки одного окна суммируются.
+ * </p>
+ * <p>
+ * Отключается свойством {@code audit.http-rollup.enabled=false}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class HttpRollupAggregator {
+
+    /** Маршрут для запросов сверх {@code audit.http-rollup.max-routes}. */
+    public static final String OTHER_ROUTE = "{other}";
+
+    /** Точность гистограмм — два значащих разряда (1%). */
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private record Key(long bucketStart, String method, String route) {
+    }
+
+    /** Счётчики одного окна и маршрута. */
+    private static final class Stats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder[] statuses = {new LongAdder(), new LongAdder(), new LongAdder(),
+                new LongAdder(), new LongAdder(), new LongAdder()};
+        final LongAdder requestBytes = new LongAdder();
+        final LongAdder responseBytes = new LongAdder();
+        final Histogram requestSizes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+        final Histogram responseSizes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+
+        void record(HttpLogEntity httpLog) {
+            requests.increment();
+            int statusClass = httpLog.getStatusCode() == null ? 0 : httpLog.getStatusCode() / 100;
+            statuses[statusClass >= 1 && statusClass <= 5 ? statusClass - 1 : 5].increment();
+            requestBytes.add(httpLog.getRequestSize());
+            responseBytes.add(httpLog.getResponseSize());
+            requestSizes.recordValue(httpLog.getRequestSize());
+            responseSizes.recordValue(httpLog.getResponseSize());
+        }
+    }
+
+    private final HttpRollupWriter httpRollupWriter;
+    private final boolean enabled;
+    private final long windowSeconds;
+    private final long graceSeconds;
+    private final int maxRoutes;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<Key, Stats> live = new ConcurrentHashMap<>();
+    private volatile List<Map.Entry<Key, Stats>> retired = List.of();
+    private final List<HttpRollup> unwritten = new ArrayList<>();
+
+    @Autowired
+    public HttpRollupAggregator(HttpRollupWriter httpRollupWriter,
+                                @Value("${audit.http-rollup.enabled:true}") boolean enabled,
+                                @Value("${audit.http-rollup.window:1m}") Duration window,
+                                @Value("${audit.http-rollup.grace:2m}") Duration grace,
+                                @Value("${audit.http-rollup.max-routes:1000}") int maxRoutes) {
+        this(httpRollupWriter, enabled, window, grace, maxRoutes, Clock.systemUTC());
+    }
+
+    HttpRollupAggregator(HttpRollupWriter httpRollupWriter, boolean enabled, Duration window, Duration grace,
+                         int maxRoutes, Clock clock) {
+        if (window.toSeconds() < 1) {
+            throw new IllegalArgumentException("audit.http-rollup.window must be at least 1s");
+        }
+        this.httpRollupWriter = httpRollupWriter;
+        this.enabled = enabled;
+        this.windowSeconds = window.toSeconds();
+        this.graceSeconds = grace.toSeconds();
+        this.maxRoutes = maxRoutes;
+        this.clock = clock;
+    }
+
+    /**
+     * Учитывает сохранённые HTTP-логи после фиксации текущей транзакции.
+     * <p>
+     * Вне транзакции логи учитываются сразу.
+     * </p>
+     */
+    public void accept(Collection<HttpLogEntity> httpLogs) {
+        if (!enabled || httpLogs.isEmpty()) {
+            return;
+        }
+        List<HttpLogEntity> saved = List.copyOf(httpLogs);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            saved.forEach(this::record);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                saved.forEach(HttpRollupAggregator.this::record);
+            }
+        });
+    }
+
+    private void record(HttpLogEntity httpLog) {
+        long second = httpLog.getTimestamp().toEpochSecond();
+        long bucketStart = second - Math.floorMod(second, windowSeconds);
+        Key key = new Key(bucketStart, httpLog.getMethod(), UrlNormalizer.normalize(httpLog.getUrl()));
+        Stats stats = live.get(key);
+        if (stats == null) {
+            if (live.size() >= maxRoutes) {
+                key = new Key(bucketStart, httpLog.getMethod(), OTHER_ROUTE);
+            }
+            stats = live.computeIfAbsent(key, k -> new Stats());
+        }
+        stats.record(httpLog);
+    }
+
+    /**
+     * Записывает окна, снятые с учёта в прошлый раз, и снимает окна, время которых вышло.
+     */
+    @Scheduled(fixedDelayString = "${audit.http-rollup.flush-interval:10s}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        for (Map.Entry<Key, Stats> entry : retired) {
+            unwritten.add(toRollup(entry.getKey(), entry.getValue()));
+        }
+        if (!unwritten.isEmpty()) {
+            try {
+                httpRollupWriter.insert(List.copyOf(unwritten));
+                unwritten.clear();
+            } catch (RuntimeException e) {
+                log.error("Failed to write {} HTTP log rollups, will retry", unwritten.size(), e);
+                if (unwritten.size() > maxRoutes) {
+                    log.warn("Dropping {} oldest HTTP log rollups", unwritten.size() - maxRoutes);
+                    unwritten.subList(0, unwritten.size() - maxRoutes).clear();
+                }
+            }
+        }
+
+        long closedBefore = clock.instant().getEpochSecond() - windowSeconds - graceSeconds;
+        List<Map.Entry<Key, Stats>> closed = new ArrayList<>();
+        for (Map.Entry<Key, Stats> entry : live.entrySet()) {
+            if (entry.getKey().bucketStart() <= closedBefore && live.remove(entry.getKey(), entry.getValue())) {
+                closed.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        retired = closed;
+    }
+
+    /**
+     * Возвращает агрегаты окон, ещё не записанных в {@code http_log_rollups},
+     * от новых окон к старым, внутри окна — по убыванию числа запросов.
+     *
+     * @param method HTTP-метод или {@code null} для всех
+     * @param route  нормализованный URL или {@code null} для всех
+     */
+    public List<HttpRollup> snapshot(String method, String route) {
+        List<HttpRollup> rollups = new ArrayList<>();
+        for (Map.Entry<Key, Stats> entry : retired) {
+            addIfMatches(rollups, entry.getKey(), entry.getValue(), method, route);
+        }
+        live.forEach((key, stats) -> addIfMatches(rollups, key, stats, method, route));
+        rollups.sort(Comparator.comparing(HttpRollup::bucketStart).reversed()
+                .thenComparing(Comparator.comparingLong(HttpRollup::requests).reversed()));
+        return rollups;
+    }
+
+    private void addIfMatches(List<HttpRollup> rollups, Key key, Stats stats, String method, String route) {
+        if ((method == null || method.equalsIgnoreCase(key.method())) && (route == null || route.equals(key.route()))) {
+            rollups.add(toRollup(key, stats));
+        }
+    }
+
+    private HttpRollup toRollup(Key key, Stats stats) {
+        return new HttpRollup(OffsetDateTime.ofInstant(Instant.ofEpochSecond(key.bucketStart()), ZoneOffset.UTC),
+                (int) windowSeconds, key.method(), key.route(), stats.requests.sum(),
+                stats.statuses[0].sum(), stats.statuses[1].sum(), stats.statuses[2].sum(),
+                stats.statuses[3].sum(), stats.statuses[4].sum(), stats.statuses[5].sum(),
+                stats.requestBytes.sum(), stats.responseBytes.sum(),
+                stats.requestSizes.copy(), stats.responseSizes.copy());
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.ex9.auditlistener.rollup;
+
+import org.ex9.auditlistener.dictionary.UrlSegment;
+
+/**
+ * Приведение URL запроса к шаблону маршрута для группировки.
+ * <p>
+ * Отбрасываются схема, хост, строка запроса и фрагмент; сегменты пути, похожие
+ * на идентификаторы, заменяются заполнителями по тем же правилам, что и в шаблонах URL
+ * ({@link UrlSegment}). Например,
+ * {@code https://host/api/users/42/orders?page=2} становится {@code /api/users/{id}/orders}.
+ * </p>
+ * @author Краковцев Артём
+ */
+public final class UrlNormalizer {
+
+    /** Максимальная длина маршрута; более длинный обрезается. */
+    static final int MAX_LENGTH = 200;
+
+    private UrlNormalizer() {
+    }
+
+    /**
+     * Возвращает шаблон маршрута для URL.
+     *
+     * @param url URL запроса, абсолютный или относительный
+     * @return маршрут, начинающийся с {@code /}
+     */
+    public static String normalize(String url) {
+        if (url == null || url.isEmpty()) {
+            return "/";
+        }
+        int start = 0;
+        int scheme = url.charAt(0) == '/' ? -1 : url.indexOf("://");
+        if (scheme >= 0) {
+            int path = url.indexOf('/', scheme + 3);
+            if (path < 0) {
+                return "/";
+            }
+            start = path;
+        }
+        int end = url.length();
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        StringBuilder route = new StringBuilder(Math.min(end - start + 1, MAX_LENGTH));
+        int segment = start;
+        while (segment < end) {
+            int next = url.indexOf('/', segment);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+            if (next > segment) {
+                String placeholder = UrlSegment.placeholder(url, segment, next);
+                route.append('/').append(placeholder == null ? url.subSequence(segment, next) : placeholder);
+            }
+            segment = next + 1;
+        }
+        if (route.isEmpty()) {
+            return "/";
+        }
+        return route.length() > MAX_LENGTH ? route.substring(0, MAX_LENGTH) : route.toString();
+    }
+
+}
@@ -3,17 +3,21 @@ package org.ex9.auditlistener.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.ex9.auditlistener.dedup.MessageDeduplicator;
+import org.ex9.auditlistener.dictionary.LogDictionary;
 import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
 import org.ex9.auditlistener.model.AuditLogEntity;
 import org.ex9.auditlistener.repository.AuditLogRepository;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.ex9.auditlistener.span.SpanAssembler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Сервис для обработки и сохранения Audit-логов.
@@ -25,71 +29,97 @@ import java.util.Arrays;
 public class AuditLogService {
 
     private final AuditLogRepository auditLogRepository;
+    private final MessageDeduplicator messageDeduplicator;
+    private final IngestionMetrics ingestionMetrics;
+    private final TimestampParser timestampParser;
+    private final SpanAssembler spanAssembler;
+    private final LogDictionary logDictionary;
 
     /**
      * Сохраняет Audit-лог в базе данных.
      * <p>
-     * Перед сохранением проверяет, что сообщение с указанным {@code messageId}
-     * ещё не обрабатывалось. Если запись уже существует, лог не сохраняется.
+     * Недавно сохранённые сообщения отбрасываются по кэшу {@link MessageDeduplicator}
+     * без обращения к БД. Остальные вставляются одним {@code INSERT ... ON CONFLICT DO NOTHING}:
+     * повтор по {@code messageId} или координатам Kafka определяется по результату вставки,
+     * а не по исключению, и не откатывает транзакцию. Повторяющиеся значения перед вставкой
+     * заменяются ссылками на {@link LogDictionary}. Сохранённый лог после фиксации
+     * передаётся в {@link SpanAssembler}.
      * </p>
      *
      * @param auditLogDto   DTO с данными события
      * @param consumerRecord исходное сообщение Kafka, из которого получены данные
      */
     @Transactional
-    public void saveAuditLog(AuditLogDto auditLogDto, ConsumerRecord<String, String> consumerRecord) {
+    public void saveAuditLog(AuditLogDto auditLogDto, ConsumerRecord<?, ?> consumerRecord) {
         log.debug("Processing audit log: eventId={}, type={}", auditLogDto.getId(), auditLogDto.getType());
 
-        String topic = consumerRecord.topic();
-        int partition = consumerRecord.partition();
-        long offset = consumerRecord.offset();
+        if (Objects.isNull(auditLogDto.getMessageId())) {
+            log.warn("Message without messageId skipped: offset={}", consumerRecord.offset());
+            ingestionMetrics.count(IngestionMetrics.Type.AUDIT, IngestionMetrics.Outcome.FAILED, 1);
+            return;
+        }
 
-        if (auditLogRepository.existsByMessageId(auditLogDto.getMessageId())) {
+        long dedupStart = ingestionMetrics.start();
+        boolean duplicate = messageDeduplicator.isRecentAudit(auditLogDto.getMessageId());
+        ingestionMetrics.record(IngestionMetrics.Stage.DEDUP, dedupStart);
+        if (duplicate) {
             log.warn("Kafka message already processed: messageId={}", auditLogDto.getMessageId());
+            ingestionMetrics.count(IngestionMetrics.Type.AUDIT, IngestionMetrics.Outcome.DUPLICATE, 1);
             return;
         }
 
         try {
-            AuditLogEntity entity = AuditLogEntity.builder()
-                    .messageId(auditLogDto.getMessageId())
-                    .eventId(auditLogDto.getId())
-                    .eventType(auditLogDto.getType())
-                    .methodName(auditLogDto.getMethodName())
-                    .args(Arrays.toString(auditLogDto.getArgs()))
-                    .result(auditLogDto.getResult())
-                    .error(auditLogDto.getError())
-                    .logLevel(auditLogDto.getLogLevel())
-                    .timestamp(parseTimestamp(auditLogDto.getTimestamp()))
-                    .kafkaPartition(partition)
-                    .kafkaOffset(offset)
-                    .kafkaTopic(topic)
-                    .build();
+            long mapStart = ingestionMetrics.start();
+            AuditLogEntity entity = toEntity(auditLogDto, consumerRecord);
+            ingestionMetrics.record(IngestionMetrics.Stage.MAP, mapStart);
+
+            long writeStart = ingestionMetrics.start();
+            logDictionary.encodeAuditLogs(List.of(entity));
+            Optional<Long> id = auditLogRepository.insertIfAbsent(entity);
+            ingestionMetrics.record(IngestionMetrics.Stage.WRITE, writeStart);
 
-            auditLogRepository.save(entity);
-            log.info("Audit log saved successfully: eventId={}", auditLogDto.getId());
+            if (id.isEmpty()) {
+                log.debug("Kafka message already saved: messageId={}, offset={}",
+                        entity.getMessageId(), entity.getKafkaOffset());
+                ingestionMetrics.count(IngestionMetrics.Type.AUDIT, IngestionMetrics.Outcome.DUPLICATE, 1);
+                return;
+            }
+            entity.setId(id.get());
+
+            messageDeduplicator.markAuditSaved(List.of(entity.getMessageId()));
+            spanAssembler.accept(List.of(entity));
+            ingestionMetrics.trackCommit(IngestionMetrics.Type.AUDIT, entity.getTimestamp());
+            log.debug("Audit log saved successfully: eventId={}", auditLogDto.getId());
 
-        } catch (DataIntegrityViolationException e) {
-            log.debug("Duplicate key on save (race condition), treating as already processed: offset={}", offset);
         } catch (Exception e) {
             log.error("Error saving audit log: eventId={}", auditLogDto.getId(), e);
             throw new RuntimeException("Failed to save audit log", e);
         }
     }
 
-    private LocalDateTime parseTimestamp(String timestamp) {
-        if (timestamp == null) {
-            return LocalDateTime.now();
-        }
-        try {
-            return LocalDateTime.parse(timestamp);
-        } catch (DateTimeParseException e) {
-            try {
-                return LocalDateTime.parse(timestamp, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-            } catch (DateTimeParseException ex) {
-                log.warn("Error parsing timestamp: {}, using current time", timestamp, ex);
-                return LocalDateTime.now();
-            }
-        }
+    /**
+     * Преобразует DTO события в JPA-сущность, дополняя её координатами сообщения Kafka.
+     * Время события приводится к UTC; отсутствующее или некорректное заменяется временем сообщения.
+     *
+     * @param auditLogDto    DTO с данными события
+     * @param consumerRecord исходное сообщение Kafka
+     * @return сущность, готовая к сохранению
+     */
+    public AuditLogEntity toEntity(AuditLogDto auditLogDto, ConsumerRecord<?, ?> consumerRecord) {
+        return AuditLogEntity.builder()
+                .messageId(auditLogDto.getMessageId())
+                .eventId(auditLogDto.getId())
+                .eventType(auditLogDto.getType())
+                .methodName(auditLogDto.getMethodName())
+                .args(Arrays.toString(auditLogDto.getArgs()))
+                .result(auditLogDto.getResult())
+                .error(auditLogDto.getError())
+                .logLevel(auditLogDto.getLogLevel())
+                .timestamp(timestampParser.parse(auditLogDto.getTimestamp(), consumerRecord.timestamp()))
+                .kafkaPartition(consumerRecord.partition())
+                .kafkaOffset(consumerRecord.offset())
+                .kafkaTopic(consumerRecord.topic())
+                .build();
     }
 
 }
@@ -0,0 +1,119 @@
+package org.ex9.auditlistener.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.ex9.auditlistener.format.WireFormat;
+import org.ex9.auditlistener.listener.RetryTopics;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Возврат сообщений из DLT в основной топик логов.
+ * <p>
+ * Сообщения читаются группой {@value #GROUP_ID} от её последнего зафиксированного смещения
+ * до конца DLT на момент вызова и публикуются в основной топик с исходными ключом, значением
+ * и заголовком формата сообщения.
+ * Публикация и фиксация смещений в DLT выполняются в одной транзакции Kafka, поэтому
+ * повторный вызов не возвращает сообщение дважды.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class DeadLetterReplayService {
+
+    static final String GROUP_ID = "audit-log-dlt-replay-group";
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final RetryTopics retryTopics;
+
+    /**
+     * Возвращает в основной топик до {@code limit} сообщений из DLT.
+     *
+     * @param limit максимальное число сообщений
+     * @return число возвращённых сообщений
+     */
+    public synchronized int replay(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        Properties props = new Properties();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, limit);
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(GROUP_ID, null, null, props)) {
+            List<TopicPartition> partitions = consumer.partitionsFor(retryTopics.deadLetterTopic()).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            int replayed = 0;
+            while (replayed < limit && !reachedEnd(consumer, endOffsets)) {
+                List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+                for (ConsumerRecord<String, byte[]> consumerRecord : consumer.poll(POLL_TIMEOUT)) {
+                    if (replayed + records.size() < limit) {
+                        records.add(consumerRecord);
+                    }
+                }
+                if (!records.isEmpty()) {
+                    send(consumer, records);
+                    replayed += records.size();
+                }
+            }
+
+            log.info("Replayed {} messages from {} to {}", replayed, retryTopics.deadLetterTopic(), retryTopics.topic());
+            return replayed;
+        }
+    }
+
+    private void send(Consumer<String, byte[]> consumer, List<ConsumerRecord<String, byte[]>> records) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        kafkaTemplate.executeInTransaction(operations -> {
+            for (ConsumerRecord<String, byte[]> consumerRecord : records) {
+                operations.send(replay(consumerRecord));
+                offsets.put(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
+                        new OffsetAndMetadata(consumerRecord.offset() + 1));
+            }
+            operations.sendOffsetsToTransaction(offsets, consumer.groupMetadata());
+            return null;
+        });
+        // следующий poll продолжит с первого не возвращённого сообщения
+        offsets.forEach((partition, offset) -> consumer.seek(partition, offset.offset()));
+    }
+
+    /** Сообщение для основного топика; из заголовков сохраняется только формат ({@link WireFormat}). */
+    private ProducerRecord<String, byte[]> replay(ConsumerRecord<String, byte[]> consumerRecord) {
+        ProducerRecord<String, byte[]> producerRecord =
+                new ProducerRecord<>(retryTopics.topic(), consumerRecord.key(), consumerRecord.value());
+        Header contentType = WireFormat.header(consumerRecord.headers());
+        if (contentType != null) {
+            producerRecord.headers().add(contentType);
+        }
+        return producerRecord;
+    }
+
+    private static boolean reachedEnd(Consumer<String, byte[]> consumer, Map<TopicPartition, Long> endOffsets) {
+        return endOffsets.entrySet().stream()
+                .allMatch(end -> consumer.position(end.getKey()) >= end.getValue());
+    }
+
+}
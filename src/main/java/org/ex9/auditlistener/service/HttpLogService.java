@@ -3,16 +3,23 @@ package org.ex9.auditlistener.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.codec.HttpBodyCodec;
+import org.ex9.auditlistener.codec.SearchTerms;
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.ex9.auditlistener.codec.Utf8Slice;
+import org.ex9.auditlistener.dedup.MessageDeduplicator;
+import org.ex9.auditlistener.dictionary.LogDictionary;
 import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
 import org.ex9.auditlistener.model.HttpLogEntity;
 import org.ex9.auditlistener.repository.HttpLogRepository;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.ex9.auditlistener.rollup.HttpRollupAggregator;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Сервис для обработки и сохранения HTTP-логов.
@@ -24,72 +31,116 @@ import java.time.format.DateTimeParseException;
 public class HttpLogService {
 
     private final HttpLogRepository httpLogRepository;
+    private final MessageDeduplicator messageDeduplicator;
+    private final IngestionMetrics ingestionMetrics;
+    private final HttpBodyCodec httpBodyCodec;
+    private final TimestampParser timestampParser;
+    private final HttpRollupAggregator httpRollupAggregator;
+    private final LogDictionary logDictionary;
 
     /**
      * Сохраняет http-лог в базе данных.
      * <p>
-     * Перед сохранением проверяет, что сообщение с указанным {@code messageId}
-     * ещё не обрабатывалось. Если запись уже существует, лог не сохраняется.
+     * Недавно сохранённые сообщения отбрасываются по кэшу {@link MessageDeduplicator}
+     * без обращения к БД. Остальные вставляются одним {@code INSERT ... ON CONFLICT DO NOTHING}:
+     * повтор по {@code messageId} или координатам Kafka определяется по результату вставки,
+     * а не по исключению, и не откатывает транзакцию. Повторяющиеся значения и шаблон URL
+     * перед вставкой заменяются ссылками на {@link LogDictionary}. Сохранённый лог после фиксации
+     * учитывается в агрегатах {@link HttpRollupAggregator}.
      * </p>
      *
      * @param httpLogDto   DTO с данными события
      * @param consumerRecord исходное сообщение Kafka, из которого получены данные
      */
     @Transactional
-    public void saveHttpLog(HttpLogDto httpLogDto, ConsumerRecord<String, String> consumerRecord) {
+    public void saveHttpLog(HttpLogDto httpLogDto, ConsumerRecord<?, ?> consumerRecord) {
         log.debug("Processing HTTP log: method={}, url={}, status={}",
                 httpLogDto.getMethod(), httpLogDto.getUrl(), httpLogDto.getStatusCode());
 
-        String topic = consumerRecord.topic();
-        int partition = consumerRecord.partition();
-        long offset = consumerRecord.offset();
+        if (Objects.isNull(httpLogDto.getMessageId())) {
+            log.warn("Message without messageId skipped: offset={}", consumerRecord.offset());
+            ingestionMetrics.count(IngestionMetrics.Type.HTTP, IngestionMetrics.Outcome.FAILED, 1);
+            return;
+        }
 
-        if (httpLogRepository.existsByMessageId(httpLogDto.getMessageId())) {
+        long dedupStart = ingestionMetrics.start();
+        boolean duplicate = messageDeduplicator.isRecentHttp(httpLogDto.getMessageId());
+        ingestionMetrics.record(IngestionMetrics.Stage.DEDUP, dedupStart);
+        if (duplicate) {
             log.warn("Kafka message already processed: messageId={}", httpLogDto.getMessageId());
+            ingestionMetrics.count(IngestionMetrics.Type.HTTP, IngestionMetrics.Outcome.DUPLICATE, 1);
             return;
         }
 
         try {
-            var time = parseTimestamp(httpLogDto.getTimestamp());
-            HttpLogEntity entity = HttpLogEntity.builder()
-                    .messageId(httpLogDto.getMessageId())
-                    .timestamp(time)
-                    .direction(httpLogDto.getDirection())
-                    .method(httpLogDto.getMethod())
-                    .statusCode(httpLogDto.getStatusCode())
-                    .url(httpLogDto.getUrl())
-                    .requestBody(httpLogDto.getRequestBody())
-                    .responseBody(httpLogDto.getResponseBody())
-                    .kafkaPartition(partition)
-                    .kafkaOffset(offset)
-                    .kafkaTopic(topic)
-                    .build();
+            long mapStart = ingestionMetrics.start();
+            HttpLogEntity entity = toEntity(httpLogDto, consumerRecord);
+            ingestionMetrics.record(IngestionMetrics.Stage.MAP, mapStart);
+
+            long writeStart = ingestionMetrics.start();
+            logDictionary.encodeHttpLogs(List.of(entity));
+            Optional<Long> id = httpLogRepository.insertIfAbsent(entity);
+            ingestionMetrics.record(IngestionMetrics.Stage.WRITE, writeStart);
 
-            httpLogRepository.save(entity);
-            log.info("HTTP log saved successfully: method={}, url={}", httpLogDto.getMethod(), httpLogDto.getUrl());
+            if (id.isEmpty()) {
+                log.debug("Kafka message already saved: messageId={}, offset={}",
+                        entity.getMessageId(), entity.getKafkaOffset());
+                ingestionMetrics.count(IngestionMetrics.Type.HTTP, IngestionMetrics.Outcome.DUPLICATE, 1);
+                return;
+            }
+            entity.setId(id.get());
+
+            messageDeduplicator.markHttpSaved(List.of(entity.getMessageId()));
+            httpRollupAggregator.accept(List.of(entity));
+            ingestionMetrics.trackCommit(IngestionMetrics.Type.HTTP, entity.getTimestamp());
+            log.debug("HTTP log saved successfully: method={}, url={}", httpLogDto.getMethod(), httpLogDto.getUrl());
 
-        } catch (DataIntegrityViolationException e) {
-            log.debug("Duplicate key on save (race condition), treating as already processed: offset={}", offset);
         } catch (Exception e) {
             log.error("Error saving HTTP log: method={}, url={}", httpLogDto.getMethod(), httpLogDto.getUrl(), e);
             throw new RuntimeException("Failed to save HTTP log", e);
         }
     }
 
-    private LocalDateTime parseTimestamp(String timestamp) {
-        if (timestamp == null) {
-            return LocalDateTime.now();
-        }
-        try {
-            return LocalDateTime.parse(timestamp);
-        } catch (DateTimeParseException e) {
-            try {
-                return LocalDateTime.parse(timestamp, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-            } catch (DateTimeParseException ex) {
-                log.warn("Error parsing timestamp: {}, using current time", timestamp, ex);
-                return LocalDateTime.now();
-            }
-        }
+    /**
+     * Преобразует DTO HTTP-события в JPA-сущность, дополняя её координатами сообщения Kafka.
+     * Время события приводится к UTC; отсутствующее или некорректное заменяется временем сообщения.
+     * Тела запроса и ответа подготавливаются {@link HttpBodyCodec} (обрезка и сжатие);
+     * тела, переданные парсером в UTF-8, сжимаются без декодирования в строку. Слова сжатых тел
+     * сохраняются для полнотекстового поиска.
+     *
+     * @param httpLogDto     DTO с данными события
+     * @param consumerRecord исходное сообщение Kafka
+     * @return сущность, готовая к сохранению
+     */
+    public HttpLogEntity toEntity(HttpLogDto httpLogDto, ConsumerRecord<?, ?> consumerRecord) {
+        HttpBodyCodec.Encoded requestBody = httpLogDto.getRawRequestBody() != null
+                ? httpBodyCodec.encode(httpLogDto.getRawRequestBody())
+                : httpBodyCodec.encode(httpLogDto.getRequestBody());
+        HttpBodyCodec.Encoded responseBody = httpLogDto.getRawResponseBody() != null
+                ? httpBodyCodec.encode(httpLogDto.getRawResponseBody())
+                : httpBodyCodec.encode(httpLogDto.getResponseBody());
+        return HttpLogEntity.builder()
+                .messageId(httpLogDto.getMessageId())
+                .timestamp(timestampParser.parse(httpLogDto.getTimestamp(), consumerRecord.timestamp()))
+                .direction(httpLogDto.getDirection())
+                .method(httpLogDto.getMethod())
+                .statusCode(httpLogDto.getStatusCode())
+                .url(httpLogDto.getUrl())
+                .requestBody(requestBody.text())
+                .requestBodyData(requestBody.data())
+                .responseBody(responseBody.text())
+                .responseBodyData(responseBody.data())
+                .searchTerms(SearchTerms.join(requestBody.terms(), responseBody.terms()))
+                .requestSize(httpLogDto.getRawRequestBody() != null
+                        ? httpLogDto.getRawRequestBody().length()
+                        : Utf8Slice.encodedLength(httpLogDto.getRequestBody()))
+                .responseSize(httpLogDto.getRawResponseBody() != null
+                        ? httpLogDto.getRawResponseBody().length()
+                        : Utf8Slice.encodedLength(httpLogDto.getResponseBody()))
+                .kafkaPartition(consumerRecord.partition())
+                .kafkaOffset(consumerRecord.offset())
+                .kafkaTopic(consumerRecord.topic())
+                .build();
     }
 
 }
@@ -0,0 +1,110 @@
+package org.ex9.auditlistener.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.ex9.auditlistener.dedup.MessageDeduplicator;
+import org.ex9.auditlistener.dictionary.LogDictionary;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.repository.LogBatchWriter;
+import org.ex9.auditlistener.rollup.HttpRollupAggregator;
+import org.ex9.auditlistener.span.SpanAssembler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Сервис пакетного сохранения логов.
+ * <p>
+ * Используется пакетным listener'ом: все логи, полученные за один poll,
+ * сохраняются в одной транзакции через {@link LogBatchWriter} — одной операцией записи на таблицу.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class LogBatchService {
+
+    private final LogBatchWriter logBatchWriter;
+    private final MessageDeduplicator messageDeduplicator;
+    private final IngestionMetrics ingestionMetrics;
+    private final SpanAssembler spanAssembler;
+    private final HttpRollupAggregator httpRollupAggregator;
+    private final LogDictionary logDictionary;
+
+    /**
+     * Сохраняет пакет Audit- и HTTP-логов.
+     * <p>
+     * Повторы {@code messageId} внутри пакета и недавно сохранённые сообщения (кэш
+     * {@link MessageDeduplicator}) отбрасываются до записи, остальные повторы (совпадение
+     * по {@code messageId} или по координатам Kafka) пропускаются на уровне БД. Логи без
+     * {@code messageId} не сохраняются. Повторяющиеся значения перед записью заменяются ссылками
+     * на {@link LogDictionary}. Только фактически вставленные Audit-логи после фиксации передаются
+     * в {@link SpanAssembler}, HTTP-логи — в {@link HttpRollupAggregator}, как и при записи
+     * по одному сообщению.
+     * </p>
+     *
+     * @param auditLogs Audit-логи пакета
+     * @param httpLogs  HTTP-логи пакета
+     */
+    @Transactional
+    public void saveBatch(List<AuditLogEntity> auditLogs, List<HttpLogEntity> httpLogs) {
+        long dedupStart = ingestionMetrics.start();
+        Set<String> auditIds = new HashSet<>(auditLogs.size());
+        List<AuditLogEntity> auditToSave = auditLogs.stream()
+                .filter(entity -> hasMessageId(entity.getMessageId(), entity.getKafkaOffset()))
+                .filter(entity -> auditIds.add(entity.getMessageId()))
+                .filter(entity -> !messageDeduplicator.isRecentAudit(entity.getMessageId()))
+                .toList();
+        Set<String> httpIds = new HashSet<>(httpLogs.size());
+        List<HttpLogEntity> httpToSave = httpLogs.stream()
+                .filter(entity -> hasMessageId(entity.getMessageId(), entity.getKafkaOffset()))
+                .filter(entity -> httpIds.add(entity.getMessageId()))
+                .filter(entity -> !messageDeduplicator.isRecentHttp(entity.getMessageId()))
+                .toList();
+        ingestionMetrics.record(IngestionMetrics.Stage.DEDUP, dedupStart);
+
+        long writeStart = ingestionMetrics.start();
+        logDictionary.encodeAuditLogs(auditToSave);
+        logDictionary.encodeHttpLogs(httpToSave);
+        List<AuditLogEntity> auditSaved =
+                auditToSave.isEmpty() ? List.of() : logBatchWriter.insertAuditLogs(auditToSave);
+        List<HttpLogEntity> httpSaved =
+                httpToSave.isEmpty() ? List.of() : logBatchWriter.insertHttpLogs(httpToSave);
+        ingestionMetrics.record(IngestionMetrics.Stage.WRITE, writeStart);
+
+        messageDeduplicator.markAuditSaved(auditSaved.stream().map(AuditLogEntity::getMessageId).toList());
+        messageDeduplicator.markHttpSaved(httpSaved.stream().map(HttpLogEntity::getMessageId).toList());
+        spanAssembler.accept(auditSaved);
+        httpRollupAggregator.accept(httpSaved);
+
+        List<OffsetDateTime> timestamps = new ArrayList<>(auditSaved.size() + httpSaved.size());
+        auditSaved.forEach(entity -> timestamps.add(entity.getTimestamp()));
+        httpSaved.forEach(entity -> timestamps.add(entity.getTimestamp()));
+        ingestionMetrics.trackCommit(auditSaved.size(), httpSaved.size(), timestamps);
+        ingestionMetrics.count(IngestionMetrics.Type.AUDIT, IngestionMetrics.Outcome.DUPLICATE,
+                auditLogs.size() - auditSaved.size());
+        ingestionMetrics.count(IngestionMetrics.Type.HTTP, IngestionMetrics.Outcome.DUPLICATE,
+                httpLogs.size() - httpSaved.size());
+
+        log.debug("Batch saved: audit {}/{}, http {}/{} (the rest are duplicates)",
+                auditSaved.size(), auditLogs.size(), httpSaved.size(), httpLogs.size());
+    }
+
+    private boolean hasMessageId(String messageId, Long offset) {
+        if (Objects.isNull(messageId)) {
+            log.warn("Message without messageId skipped: offset={}", offset);
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.ex9.auditlistener.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница выдачи логов.
+ *
+ * @param items      записи страницы, от новых к старым
+ * @param nextCursor курсор следующей страницы или {@code null}, если записей больше нет
+ * @param <T>        тип записи
+ * @author Краковцев Артём
+ */
+public record LogPage<T>(List<T> items, String nextCursor) {
+
+    /**
+     * Преобразует записи страницы, сохраняя курсор.
+     */
+    public <R> LogPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new LogPage<>(items.stream().<R>map(mapper).toList(), nextCursor);
+    }
+
+}
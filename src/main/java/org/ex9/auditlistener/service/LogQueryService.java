@@ -0,0 +1,148 @@
+package org.ex9.auditlistener.service;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.repository.AuditLogFilter;
+import org.ex9.auditlistener.repository.AuditLogRepository;
+import org.ex9.auditlistener.repository.HttpLogFilter;
+import org.ex9.auditlistener.repository.HttpLogRepository;
+import org.ex9.auditlistener.repository.LogCursor;
+import org.ex9.auditlistener.repository.LogSearchFilter;
+import org.ex9.auditlistener.repository.LogSearchHit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Сервис постраничного чтения сохранённых логов.
+ * <p>
+ * Страницы строятся keyset-пагинацией по {@code (timestamp, id)}: клиент получает курсор
+ * последней записи и передаёт его для получения следующей страницы. В отличие от
+ * {@code OFFSET}, стоимость страницы не зависит от её удалённости от начала выдачи.
+ * </p>
+ * <p>
+ * Полнотекстовый поиск всегда ограничен интервалом времени: без заданного начала ищется за
+ * последние {@code audit.query.search-window}, поэтому GIN-индексы просматриваются только
+ * в секциях этого интервала.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+public class LogQueryService {
+
+    private final AuditLogRepository auditLogRepository;
+    private final HttpLogRepository httpLogRepository;
+    private final int maxLimit;
+    private final Duration searchWindow;
+
+    public LogQueryService(AuditLogRepository auditLogRepository,
+                           HttpLogRepository httpLogRepository,
+                           @Value("${audit.query.max-limit:500}") int maxLimit,
+                           @Value("${audit.query.search-window:30d}") Duration searchWindow) {
+        this.auditLogRepository = auditLogRepository;
+        this.httpLogRepository = httpLogRepository;
+        this.maxLimit = maxLimit;
+        this.searchWindow = searchWindow;
+    }
+
+    /**
+     * Возвращает страницу Audit-логов.
+     *
+     * @param filter условия выборки
+     * @param cursor курсор из предыдущей страницы или {@code null}
+     * @param limit  размер страницы, не больше {@code audit.query.max-limit}
+     * @throws IllegalArgumentException если курсор или размер страницы некорректны
+     */
+    @Transactional(readOnly = true)
+    public LogPage<AuditLogEntity> findAuditLogs(AuditLogFilter filter, String cursor, int limit) {
+        int pageSize = pageSize(limit);
+        List<AuditLogEntity> rows = auditLogRepository.findPage(filter, decode(cursor), pageSize + 1);
+        return page(rows, pageSize, entity -> new LogCursor(entity.getTimestamp(), entity.getId()));
+    }
+
+    /**
+     * Возвращает страницу HTTP-логов.
+     *
+     * @param filter условия выборки
+     * @param cursor курсор из предыдущей страницы или {@code null}
+     * @param limit  размер страницы, не больше {@code audit.query.max-limit}
+     * @throws IllegalArgumentException если курсор или размер страницы некорректны
+     */
+    @Transactional(readOnly = true)
+    public LogPage<HttpLogEntity> findHttpLogs(HttpLogFilter filter, String cursor, int limit) {
+        int pageSize = pageSize(limit);
+        List<HttpLogEntity> rows = httpLogRepository.findPage(filter, decode(cursor), pageSize + 1);
+        return page(rows, pageSize, entity -> new LogCursor(entity.getTimestamp(), entity.getId()));
+    }
+
+    /**
+     * Ищет Audit-логи по аргументам, результату и ошибке метода.
+     *
+     * @param text  строка поиска
+     * @param from  начало интервала или {@code null} — {@code audit.query.search-window} до его конца
+     * @param to    конец интервала или {@code null} — текущий момент
+     * @param limit максимальное число записей, не больше {@code audit.query.max-limit}
+     * @return найденные записи по убыванию релевантности
+     * @throws IllegalArgumentException если строка поиска пуста или размер выдачи некорректен
+     */
+    @Transactional(readOnly = true)
+    public List<LogSearchHit<AuditLogEntity>> searchAuditLogs(String text, OffsetDateTime from, OffsetDateTime to,
+                                                              int limit) {
+        return auditLogRepository.search(searchFilter(text, from, to), pageSize(limit));
+    }
+
+    /**
+     * Ищет HTTP-логи по телам запроса и ответа.
+     *
+     * @param text  строка поиска
+     * @param from  начало интервала или {@code null} — {@code audit.query.search-window} до его конца
+     * @param to    конец интервала или {@code null} — текущий момент
+     * @param limit максимальное число записей, не больше {@code audit.query.max-limit}
+     * @return найденные записи по убыванию релевантности
+     * @throws IllegalArgumentException если строка поиска пуста или размер выдачи некорректен
+     */
+    @Transactional(readOnly = true)
+    public List<LogSearchHit<HttpLogEntity>> searchHttpLogs(String text, OffsetDateTime from, OffsetDateTime to,
+                                                            int limit) {
+        return httpLogRepository.search(searchFilter(text, from, to), pageSize(limit));
+    }
+
+    private LogSearchFilter searchFilter(String text, OffsetDateTime from, OffsetDateTime to) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("search text must not be empty");
+        }
+        if (from == null) {
+            from = (to != null ? to : OffsetDateTime.now(ZoneOffset.UTC)).minus(searchWindow);
+        }
+        return new LogSearchFilter(text, from, to);
+    }
+
+    private int pageSize(int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        return limit;
+    }
+
+    private static LogCursor decode(String cursor) {
+        return cursor == null || cursor.isBlank() ? null : LogCursor.decode(cursor);
+    }
+
+    /**
+     * Запрошено на одну запись больше размера страницы: её наличие означает, что есть следующая страница.
+     */
+    private static <T> LogPage<T> page(List<T> rows, int pageSize, Function<T, LogCursor> cursorOf) {
+        if (rows.size() <= pageSize) {
+            return new LogPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new LogPage<>(List.copyOf(items), cursorOf.apply(items.get(pageSize - 1)).encode());
+    }
+
+}
@@ -0,0 +1,334 @@
+package org.ex9.auditlistener.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обслуживание секций таблиц логов.
+ * <p>
+ * Таблицы {@code audit_logs} и {@code http_logs} секционированы по {@code timestamp},
+ * таблица {@code audit_spans} — по {@code start_time}.
+ * Сервис заранее создаёт секции на {@code audit.partitioning.premake} периодов вперёд
+ * (день или месяц, {@code audit.partitioning.granularity}) и отключает либо удаляет
+ * секции, целиком вышедшие за срок хранения {@code audit.partitioning.retention}.
+ * Удаление старых данных сводится к операции над метаданными вместо массового DELETE;
+ * вместе с секциями из {@code log_message_ids} удаляются ключи дедупликации их строк.
+ * Границы периодов отсчитываются в UTC.
+ * </p>
+ * <p>
+ * Строки, попавшие в секцию по умолчанию (например, со временем события далеко в будущем),
+ * не дают создать секцию своего периода. Такие строки переносятся в новую секцию в одной
+ * транзакции: секция по умолчанию отключается, создаётся новая секция, строки перемещаются,
+ * и секция по умолчанию подключается обратно. На время переноса запись в таблицу блокируется.
+ * Число строк в секциях по умолчанию и число неудачных запусков обслуживания публикует
+ * {@link org.ex9.auditlistener.metrics.PartitionMetrics}.
+ * </p>
+ * <p>
+ * Запускается при старте приложения и по расписанию {@code audit.partitioning.cron}.
+ * Таблицы, не являющиеся секционированными (например, созданные Hibernate в тестах), пропускаются.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "audit.partitioning.enabled", havingValue = "true", matchIfMissing = true)
+public class PartitionMaintenanceService {
+
+    private static final List<LogTable> TABLES = List.of(
+            new LogTable("audit_logs", "timestamp", "audit"),
+            new LogTable("http_logs", "timestamp", "http"),
+            new LogTable("audit_spans", "start_time", null));
+
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+    private static final DateTimeFormatter DAILY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTHLY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /** Период секционирования. */
+    public enum Granularity {
+        DAILY, MONTHLY
+    }
+
+    /** Действие над секцией, вышедшей за срок хранения. */
+    public enum ExpiredAction {
+        DETACH, DROP
+    }
+
+    /**
+     * Секционированная таблица, её ключ секционирования и тип её ключей в {@code log_message_ids}
+     * ({@code null}, если таблица не дедуплицируется).
+     */
+    private record LogTable(String name, String partitionKey, String messageIdType) {
+
+        String inRange() {
+            return " WHERE " + partitionKey + " >= ? AND " + partitionKey + " < ?";
+        }
+
+    }
+
+    /** Секция и её границы; {@code null} означает MINVALUE/MAXVALUE. */
+    private record Partition(String name, OffsetDateTime from, OffsetDateTime to) {
+
+        boolean overlaps(OffsetDateTime otherFrom, OffsetDateTime otherTo) {
+            return (from == null || from.isBefore(otherTo)) && (to == null || to.isAfter(otherFrom));
+        }
+
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TimestampParser timestampParser;
+    private final Granularity granularity;
+    private final int premake;
+    private final Duration retention;
+    private final ExpiredAction expiredAction;
+
+    private final Map<String, AtomicLong> defaultRows = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       TimestampParser timestampParser,
+                                       @Value("${audit.partitioning.granularity:daily}") Granularity granularity,
+                                       @Value("${audit.partitioning.premake:7}") int premake,
+                                       @Value("${audit.partitioning.retention:90d}") Duration retention,
+                                       @Value("${audit.partitioning.expired-action:drop}") ExpiredAction expiredAction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.timestampParser = timestampParser;
+        this.granularity = granularity;
+        this.premake = premake;
+        this.retention = retention;
+        this.expiredAction = expiredAction;
+        for (LogTable table : TABLES) {
+            defaultRows.put(table.name(), new AtomicLong());
+            failures.put(table.name(), new AtomicLong());
+        }
+    }
+
+    /**
+     * Создаёт недостающие секции при старте, до начала приёма сообщений.
+     */
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+
+    /**
+     * Создаёт будущие секции и обрабатывает устаревшие для всех таблиц логов.
+     */
+    @Scheduled(cron = "${audit.partitioning.cron:0 15 * * * *}")
+    public void maintain() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        for (LogTable table : TABLES) {
+            try {
+                if (!isPartitioned(table.name())) {
+                    log.debug("Table {} is not partitioned, maintenance skipped", table.name());
+                    continue;
+                }
+                createFuturePartitions(table, now);
+                expirePartitions(table, now.minus(retention));
+                countDefaultRows(table);
+            } catch (DataAccessException e) {
+                failures.get(table.name()).incrementAndGet();
+                log.error("Partition maintenance failed for table {}", table.name(), e);
+            }
+        }
+    }
+
+    /**
+     * Возвращает имена обслуживаемых таблиц.
+     */
+    public List<String> tables() {
+        return TABLES.stream().map(LogTable::name).toList();
+    }
+
+    /**
+     * Возвращает число строк в секции по умолчанию на момент последнего обслуживания таблицы.
+     */
+    public long defaultRows(String table) {
+        return defaultRows.get(table).get();
+    }
+
+    /**
+     * Возвращает число запусков обслуживания таблицы, завершившихся ошибкой.
+     */
+    public long failures(String table) {
+        return failures.get(table).get();
+    }
+
+    private void createFuturePartitions(LogTable table, OffsetDateTime now) {
+        List<Partition> existing = partitions(table.name());
+        OffsetDateTime from = periodStart(now);
+        for (int i = 0; i <= premake; i++) {
+            OffsetDateTime to = nextPeriod(from);
+            OffsetDateTime periodFrom = from;
+            if (existing.stream().noneMatch(p -> p.overlaps(periodFrom, to))) {
+                String name = table.name() + "_p" + (granularity == Granularity.DAILY
+                        ? DAILY_SUFFIX.format(from)
+                        : MONTHLY_SUFFIX.format(from));
+                transactionTemplate.executeWithoutResult(status -> createPartition(table, name, periodFrom, to));
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Создаёт секцию, перенося в неё строки её периода из секции по умолчанию.
+     */
+    private void createPartition(LogTable table, String name, OffsetDateTime from, OffsetDateTime to) {
+        String bounds = " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+        String defaultPartition = defaultPartition(table.name());
+        Long misplaced = defaultPartition == null ? Long.valueOf(0) : jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM " + defaultPartition + table.inRange(), Long.class, from, to);
+        if (misplaced == null || misplaced == 0) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + table.name() + bounds);
+            log.info("Partition created: {} [{}, {})", name, from, to);
+            return;
+        }
+        // ключи дедупликации переносимых строк уже заняты, триггер не должен их отбрасывать
+        jdbcTemplate.execute("SET LOCAL audit.partition_move = 'on'");
+        jdbcTemplate.execute("ALTER TABLE " + table.name() + " DETACH PARTITION " + defaultPartition);
+        jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + table.name() + bounds);
+        String columns = String.join(", ", insertableColumns(table.name()));
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + defaultPartition + table.inRange()
+                        + " RETURNING " + columns + ") INSERT INTO " + name + " (" + columns + ") SELECT " + columns
+                        + " FROM moved",
+                from, to);
+        jdbcTemplate.execute("ALTER TABLE " + table.name() + " ATTACH PARTITION " + defaultPartition + " DEFAULT");
+        log.warn("Partition created: {} [{}, {}), {} rows moved from {}", name, from, to, moved, defaultPartition);
+    }
+
+    private void expirePartitions(LogTable table, OffsetDateTime threshold) {
+        OffsetDateTime expiredBefore = null;
+        for (Partition partition : partitions(table.name())) {
+            if (partition.to() == null || partition.to().isAfter(threshold)) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table.name() + " DETACH PARTITION " + partition.name());
+            if (expiredAction == ExpiredAction.DROP) {
+                jdbcTemplate.execute("DROP TABLE " + partition.name());
+                log.info("Expired partition dropped: {} (data before {})", partition.name(), partition.to());
+            } else {
+                log.info("Expired partition detached: {} (data before {})", partition.name(), partition.to());
+            }
+            if (expiredBefore == null || partition.to().isAfter(expiredBefore)) {
+                expiredBefore = partition.to();
+            }
+        }
+        if (expiredBefore != null && table.messageIdType() != null) {
+            int purged = jdbcTemplate.update("DELETE FROM log_message_ids WHERE log_type = ? AND logged_at < ?",
+                    table.messageIdType(), expiredBefore);
+            log.info("Message ids purged: {} {} ids logged before {}", purged, table.messageIdType(), expiredBefore);
+        }
+    }
+
+    private void countDefaultRows(LogTable table) {
+        String defaultPartition = defaultPartition(table.name());
+        Long rows = defaultPartition == null
+                ? Long.valueOf(0)
+                : jdbcTemplate.queryForObject("SELECT count(*) FROM " + defaultPartition, Long.class);
+        defaultRows.get(table.name()).set(rows == null ? 0 : rows);
+        if (rows != null && rows > 0) {
+            log.warn("Default partition {} holds {} rows outside of range partitions", defaultPartition, rows);
+        }
+    }
+
+    private boolean isPartitioned(String table) {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(?))",
+                Boolean.class, table);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    /**
+     * Возвращает диапазонные секции таблицы (секция по умолчанию не включается).
+     */
+    private List<Partition> partitions(String table) {
+        return jdbcTemplate.query("""
+                        SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+                        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = to_regclass(?)
+                        """,
+                        (rs, rowNum) -> {
+                            Matcher matcher = RANGE_BOUND.matcher(rs.getString(2));
+                            if (!matcher.find()) {
+                                return null;
+                            }
+                            return new Partition(rs.getString(1), bound(matcher.group(1)), bound(matcher.group(2)));
+                        },
+                        table)
+                .stream()
+                .filter(p -> p != null)
+                .toList();
+    }
+
+    /**
+     * Возвращает имя секции по умолчанию или {@code null}, если её нет.
+     */
+    private String defaultPartition(String table) {
+        List<String> names = jdbcTemplate.queryForList("""
+                        SELECT c.relname
+                        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = to_regclass(?) AND pg_get_expr(c.relpartbound, c.oid) = 'DEFAULT'
+                        """,
+                String.class, table);
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    /**
+     * Возвращает столбцы таблицы, кроме генерируемых: их значения при вставке не задаются.
+     */
+    private List<String> insertableColumns(String table) {
+        return jdbcTemplate.queryForList("""
+                        SELECT quote_ident(attname)
+                        FROM pg_attribute
+                        WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped AND attgenerated = ''
+                        ORDER BY attnum
+                        """,
+                String.class, table);
+    }
+
+    private OffsetDateTime bound(String value) {
+        if ("MINVALUE".equals(value) || "MAXVALUE".equals(value)) {
+            return null;
+        }
+        // значение timestamptz выводится в часовом поясе сессии, например '2025-01-01 03:00:00+03'
+        OffsetDateTime bound = timestampParser.parse(value.replace("'", ""));
+        if (bound == null) {
+            throw new IllegalStateException("Unexpected partition bound: " + value);
+        }
+        return bound;
+    }
+
+    private OffsetDateTime periodStart(OffsetDateTime time) {
+        LocalDate date = time.toLocalDate();
+        LocalDate start = granularity == Granularity.DAILY ? date : date.withDayOfMonth(1);
+        return start.atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+
+    private OffsetDateTime nextPeriod(OffsetDateTime periodStart) {
+        return granularity == Granularity.DAILY ? periodStart.plusDays(1) : periodStart.plusMonths(1);
+    }
+
+}
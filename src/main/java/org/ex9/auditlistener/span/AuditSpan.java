@@ -0,0 +1,30 @@
+package org.ex9.auditlistener.span;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Вызов метода, собранный из событий START и END/ERROR одного {@code audit_id}.
+ *
+ * @param eventId    идентификатор вызова ({@code audit_id})
+ * @param methodName имя метода
+ * @param startTime  время события START
+ * @param endTime    время события END/ERROR, {@code null} для незавершённого вызова
+ * @param durationUs длительность в микросекундах, {@code null} для незавершённого вызова
+ * @param outcome    результат вызова
+ * @param error      текст ошибки события ERROR
+ * @author Краковцев Артём
+ */
+public record AuditSpan(String eventId, String methodName, OffsetDateTime startTime, OffsetDateTime endTime,
+                        Long durationUs, Outcome outcome, String error) {
+
+    /** Результат вызова. */
+    public enum Outcome {
+        /** Вызов завершился событием END. */
+        OK,
+        /** Вызов завершился событием ERROR. */
+        ERROR,
+        /** Событие END/ERROR не пришло за {@code audit.spans.timeout}. */
+        TIMEOUT
+    }
+
+}
@@ -0,0 +1,236 @@
+package org.ex9.auditlistener.span;
+
+import lombok.extern.log4j.Log4j2;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.repository.AuditSpanWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Сборка вызовов методов ({@link AuditSpan}) из событий START и END/ERROR с одним {@code audit_id}.
+ * <p>
+ * Сохранённые Audit-логи передаются в {@link #accept(Collection)} после фиксации транзакции.
+ * Событие, для которого ещё нет пары, ждёт её в памяти; порядок прихода START и END/ERROR
+ * не важен. Готовые вызовы копятся и раз в {@code audit.spans.flush-interval} пишутся
+ * пакетом в {@code audit_spans}.
+ * </p>
+ * <p>
+ * Ожидание ограничено сроком {@code audit.spans.timeout} и числом {@code audit.spans.max-pending}
+ * событий: START без пары записывается как {@link AuditSpan.Outcome#TIMEOUT}, END/ERROR
+ * без пары отбрасывается. Ожидающие события не переживают перезапуск, а пара собирается
+ * только в пределах одного экземпляра, поэтому события одного вызова должны приходить
+ * в одну партицию (например, с {@code audit_id} в ключе сообщения).
+ * </p>
+ * <p>
+ * Отключается свойством {@code audit.spans.enabled=false}.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class SpanAssembler {
+
+    private static final String START = "START";
+    private static final String END = "END";
+    private static final String ERROR = "ERROR";
+
+    /** Событие, ожидающее пару. */
+    private record Pending(boolean start, boolean failed, String methodName, OffsetDateTime timestamp,
+                           String error, long receivedAt) {
+    }
+
+    private final AuditSpanWriter auditSpanWriter;
+    private final boolean enabled;
+    private final long timeoutNanos;
+    private final int maxPending;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final Deque<AuditSpan> completed = new ArrayDeque<>();
+    private final Map<AuditSpan.Outcome, AtomicLong> written = new EnumMap<>(AuditSpan.Outcome.class);
+    private final AtomicLong unmatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Autowired
+    public SpanAssembler(AuditSpanWriter auditSpanWriter,
+                         @Value("${audit.spans.enabled:true}") boolean enabled,
+                         @Value("${audit.spans.timeout:5m}") Duration timeout,
+                         @Value("${audit.spans.max-pending:100000}") int maxPending) {
+        this(auditSpanWriter, enabled, timeout, maxPending, System::nanoTime);
+    }
+
+    SpanAssembler(AuditSpanWriter auditSpanWriter, boolean enabled, Duration timeout, int maxPending,
+                  LongSupplier clock) {
+        this.auditSpanWriter = auditSpanWriter;
+        this.enabled = enabled;
+        this.timeoutNanos = timeout.toNanos();
+        this.maxPending = maxPending;
+        this.clock = clock;
+        for (AuditSpan.Outcome outcome : AuditSpan.Outcome.values()) {
+            written.put(outcome, new AtomicLong());
+        }
+    }
+
+    /**
+     * Принимает сохранённые Audit-логи после фиксации текущей транзакции.
+     * <p>
+     * Вне транзакции логи принимаются сразу.
+     * </p>
+     */
+    public void accept(Collection<AuditLogEntity> auditLogs) {
+        if (!enabled || auditLogs.isEmpty()) {
+            return;
+        }
+        List<AuditLogEntity> events = List.copyOf(auditLogs);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pair(events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pair(events);
+            }
+        });
+    }
+
+    private void pair(List<AuditLogEntity> events) {
+        long now = clock.getAsLong();
+        synchronized (this) {
+            for (AuditLogEntity event : events) {
+                String type = event.getEventType();
+                boolean start = START.equalsIgnoreCase(type);
+                if (event.getEventId() == null || !start && !END.equalsIgnoreCase(type) && !ERROR.equalsIgnoreCase(type)) {
+                    continue;
+                }
+                Pending current = new Pending(start, ERROR.equalsIgnoreCase(type), event.getMethodName(),
+                        event.getTimestamp(), event.getError(), now);
+                Pending other = pending.get(event.getEventId());
+                if (other == null) {
+                    pending.put(event.getEventId(), current);
+                } else if (other.start() != start) {
+                    pending.remove(event.getEventId());
+                    completed.add(start ? span(event.getEventId(), current, other) : span(event.getEventId(), other, current));
+                }
+                // повторно доставленное событие, пара которого ещё не пришла, пропускается
+            }
+            Iterator<Map.Entry<String, Pending>> eldest = pending.entrySet().iterator();
+            while (pending.size() > maxPending) {
+                Map.Entry<String, Pending> entry = eldest.next();
+                eldest.remove();
+                expire(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Завершает просроченные ожидания и записывает готовые вызовы.
+     */
+    @Scheduled(fixedDelayString = "${audit.spans.flush-interval:1s}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        List<AuditSpan> spans;
+        long now = clock.getAsLong();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Pending>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Pending> entry = iterator.next();
+                if (now - entry.getValue().receivedAt() < timeoutNanos) {
+                    break;
+                }
+                iterator.remove();
+                expire(entry.getKey(), entry.getValue());
+            }
+            if (completed.isEmpty()) {
+                return;
+            }
+            spans = new ArrayList<>(completed);
+            completed.clear();
+        }
+
+        try {
+            auditSpanWriter.insert(spans);
+            spans.forEach(span -> written.get(span.outcome()).incrementAndGet());
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} audit spans, will retry", spans.size(), e);
+            synchronized (this) {
+                for (int i = spans.size() - 1; i >= 0; i--) {
+                    completed.addFirst(spans.get(i));
+                }
+                // пока БД недоступна, храним не больше max-pending готовых вызовов
+                while (completed.size() > maxPending) {
+                    completed.pollLast();
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void expire(String eventId, Pending expired) {
+        if (expired.start()) {
+            completed.add(new AuditSpan(eventId, expired.methodName(), expired.timestamp(), null, null,
+                    AuditSpan.Outcome.TIMEOUT, null));
+        } else {
+            unmatched.incrementAndGet();
+            log.debug("No START event for audit_id={}, end event dropped", eventId);
+        }
+    }
+
+    private static AuditSpan span(String eventId, Pending start, Pending end) {
+        Long durationUs = start.timestamp() == null || end.timestamp() == null
+                ? null
+                : start.timestamp().until(end.timestamp(), ChronoUnit.MICROS);
+        return new AuditSpan(eventId, start.methodName(), start.timestamp(), end.timestamp(), durationUs,
+                end.failed() ? AuditSpan.Outcome.ERROR : AuditSpan.Outcome.OK, end.error());
+    }
+
+    /**
+     * Число вызовов каждого результата, записанных в {@code audit_spans}.
+     */
+    public long written(AuditSpan.Outcome outcome) {
+        return written.get(outcome).get();
+    }
+
+    /**
+     * Число событий END/ERROR, для которых не пришёл START.
+     */
+    public long unmatched() {
+        return unmatched.get();
+    }
+
+    /**
+     * Число готовых вызовов, отброшенных из-за переполнения при недоступности БД.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Число событий, ожидающих пару.
+     */
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+}
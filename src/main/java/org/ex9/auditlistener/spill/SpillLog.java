@@ -0,0 +1,487 @@
+package org.ex9.auditlistener.spill;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Локальный журнал сообщений, которые не удалось сохранить из-за недоступности БД.
+ * <p>
+ * Сообщения Kafka дописываются в сегменты {@code spill-<номер>.log} каталога
+ * {@code audit.spill.directory} вместе с координатами, временем и заголовками; каждая запись
+ * снабжена длиной и контрольной суммой CRC32C. Дозапись завершается {@code fsync}, поэтому
+ * после возврата из {@link #spill(List)} смещения сообщений можно фиксировать в Kafka.
+ * Сегмент закрывается, когда достигает {@code audit.spill.segment-size}.
+ * </p>
+ * <p>
+ * После первой ошибки доступа к БД журнал считает её недоступной ({@link #isDatabaseDown()}),
+ * и listener'ы пишут сразу в журнал, не дожидаясь таймаута соединения. {@link SpillReplayer}
+ * возвращает этот признак, когда БД снова отвечает, и переносит сегменты в таблицы логов.
+ * </p>
+ * <p>
+ * Отключается свойством {@code audit.spill.enabled=false} (по умолчанию): тогда сообщения
+ * при недоступности БД, как и прочие ошибки записи, уходят в топики повторов.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Component
+@Log4j2
+public class SpillLog {
+
+    private static final int MAGIC = 0x41534C47;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int ENTRY_HEADER_SIZE = 8;
+    private static final int MIN_PAYLOAD_SIZE = 8 + 8 + 1 + 4 + 2 + 4 + 4 + 4;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".log";
+
+    /** Результат чтения части сегмента. */
+    public enum Status {
+        /** В сегменте есть ещё записи. */
+        MORE,
+        /** Сегмент прочитан до конца. */
+        END,
+        /** Последняя запись дописана не полностью: процесс прервался во время дозаписи. */
+        TRUNCATED,
+        /** Запись повреждена: не совпала контрольная сумма или длина. */
+        CORRUPT
+    }
+
+    /**
+     * Часть сегмента.
+     *
+     * @param records      прочитанные сообщения
+     * @param nextPosition позиция следующей записи
+     * @param status       есть ли в сегменте следующие записи
+     */
+    public record Chunk(List<ConsumerRecord<String, byte[]>> records, long nextPosition, Status status) {
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentSize;
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel active;
+    private long activeSequence;
+    private long nextSequence;
+    private volatile boolean databaseDown;
+
+    public SpillLog(IngestionMetrics ingestionMetrics,
+                    @Value("${audit.spill.enabled:false}") boolean enabled,
+                    @Value("${audit.spill.directory:spill}") Path directory,
+                    @Value("${audit.spill.segment-size:64MB}") DataSize segmentSize) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = segmentSize.toBytes();
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    long sequence = sequence(file);
+                    if (sequence >= 0) {
+                        segments.put(sequence, file);
+                        pendingBytes.addAndGet(file.toFile().length());
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open spill directory " + directory, e);
+        }
+        nextSequence = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        if (!segments.isEmpty()) {
+            log.info("Found {} spill segments ({} bytes) to replay in {}",
+                    segments.size(), pendingBytes.get(), directory);
+        }
+        ingestionMetrics.gaugeSpill(pendingBytes, AtomicLong::get);
+    }
+
+    /**
+     * Проверяет, включён ли журнал.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Проверяет, считается ли БД недоступной: тогда сообщения следует сразу дописывать в журнал.
+     */
+    public boolean isDatabaseDown() {
+        return enabled && databaseDown;
+    }
+
+    /**
+     * Снимает признак недоступности БД.
+     */
+    public void markDatabaseUp() {
+        if (databaseDown) {
+            databaseDown = false;
+            log.info("Database is available again, spilling stopped");
+        }
+    }
+
+    /**
+     * Дописывает сообщения в журнал, если запись в БД не удалась из-за её недоступности.
+     *
+     * @param records сообщения, которые не удалось сохранить
+     * @param cause   ошибка сохранения
+     * @return {@code true}, если сообщения записаны в журнал; {@code false}, если журнал отключён,
+     * ошибка не связана с доступностью БД или журнал не удалось дописать
+     */
+    public boolean spill(List<ConsumerRecord<String, byte[]>> records, Exception cause) {
+        if (!enabled || !isDatabaseUnavailable(cause)) {
+            return false;
+        }
+        if (!databaseDown) {
+            databaseDown = true;
+            log.warn("Database is unavailable, spilling messages to {}", directory, cause);
+        }
+        return spill(records);
+    }
+
+    /**
+     * Дописывает сообщения в журнал и сбрасывает их на диск.
+     *
+     * @param records сообщения
+     * @return {@code true}, если сообщения записаны в журнал; {@code false}, если журнал отключён
+     * или его не удалось дописать
+     */
+    public boolean spill(List<ConsumerRecord<String, byte[]>> records) {
+        if (!enabled) {
+            return false;
+        }
+        if (records.isEmpty()) {
+            return true;
+        }
+        try {
+            append(records);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to spill {} messages to {}", records.size(), directory, e);
+            return false;
+        }
+    }
+
+    private synchronized void append(List<ConsumerRecord<String, byte[]>> records) throws IOException {
+        if (active != null && active.size() >= segmentSize) {
+            closeActive();
+        }
+        if (active == null) {
+            openActive();
+        }
+
+        List<byte[]> topics = new ArrayList<>(records.size());
+        int size = 0;
+        for (ConsumerRecord<String, byte[]> consumerRecord : records) {
+            byte[] topic = consumerRecord.topic().getBytes(StandardCharsets.UTF_8);
+            topics.add(topic);
+            size += ENTRY_HEADER_SIZE + payloadSize(consumerRecord, topic);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < records.size(); i++) {
+            int start = buffer.position();
+            buffer.position(start + ENTRY_HEADER_SIZE);
+            writePayload(buffer, records.get(i), topics.get(i));
+            int length = buffer.position() - start - ENTRY_HEADER_SIZE;
+            crc.reset();
+            crc.update(buffer.slice(start + ENTRY_HEADER_SIZE, length));
+            buffer.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+        }
+        buffer.flip();
+
+        long position = active.position();
+        try {
+            while (buffer.hasRemaining()) {
+                active.write(buffer);
+            }
+            active.force(false);
+        } catch (IOException e) {
+            // недописанный хвост не должен остаться перед следующими записями
+            active.truncate(position);
+            throw e;
+        }
+        pendingBytes.addAndGet(size);
+    }
+
+    /**
+     * Закрывает текущий сегмент и возвращает все закрытые сегменты в порядке записи.
+     */
+    public synchronized List<Path> seal() throws IOException {
+        closeActive();
+        return new ArrayList<>(segments.values());
+    }
+
+    /**
+     * Проверяет, есть ли в журнале сообщения, ещё не перенесённые в БД.
+     */
+    public boolean hasPending() {
+        return pendingBytes.get() > 0;
+    }
+
+    /**
+     * Читает не более {@code maxRecords} сообщений закрытого сегмента.
+     *
+     * @param segment    сегмент из {@link #seal()}
+     * @param position   позиция первой записи, {@code 0} — начало сегмента
+     * @param maxRecords максимальное число сообщений
+     */
+    public Chunk read(Path segment, long position, int maxRecords) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(position)), READ_BUFFER_SIZE));
+            if (position == 0) {
+                if (size < FILE_HEADER_SIZE) {
+                    return new Chunk(records, 0, Status.TRUNCATED);
+                }
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return new Chunk(records, 0, Status.CORRUPT);
+                }
+                position = FILE_HEADER_SIZE;
+            }
+            CRC32C checksum = new CRC32C();
+            while (records.size() < maxRecords) {
+                long remaining = size - position;
+                if (remaining == 0) {
+                    return new Chunk(records, position, Status.END);
+                }
+                if (remaining < ENTRY_HEADER_SIZE) {
+                    return new Chunk(records, position, Status.TRUNCATED);
+                }
+                int length = in.readInt();
+                int expected = in.readInt();
+                if (length < MIN_PAYLOAD_SIZE) {
+                    return new Chunk(records, position, Status.CORRUPT);
+                }
+                if (length > remaining - ENTRY_HEADER_SIZE) {
+                    return new Chunk(records, position, Status.TRUNCATED);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != expected) {
+                    return new Chunk(records, position, Status.CORRUPT);
+                }
+                records.add(readPayload(ByteBuffer.wrap(payload)));
+                position += ENTRY_HEADER_SIZE + length;
+            }
+            return new Chunk(records, position, position == size ? Status.END : Status.MORE);
+        }
+    }
+
+    /**
+     * Удаляет перенесённый в БД сегмент.
+     */
+    public synchronized void delete(Path segment) throws IOException {
+        long length = segment.toFile().length();
+        Files.deleteIfExists(segment);
+        forget(segment, length);
+    }
+
+    /**
+     * Убирает повреждённый сегмент из журнала, оставляя его на диске с расширением {@code .corrupt}.
+     */
+    public synchronized void quarantine(Path segment) throws IOException {
+        long length = segment.toFile().length();
+        Files.move(segment, segment.resolveSibling(segment.getFileName() + ".corrupt"),
+                StandardCopyOption.REPLACE_EXISTING);
+        forget(segment, length);
+    }
+
+    private void forget(Path segment, long length) {
+        long sequence = sequence(segment);
+        if (segments.remove(sequence) != null) {
+            pendingBytes.addAndGet(-length);
+        }
+    }
+
+    private void openActive() throws IOException {
+        activeSequence = nextSequence++;
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, activeSequence, SUFFIX));
+        active = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        active.write(ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip());
+        segments.put(activeSequence, file);
+        pendingBytes.addAndGet(FILE_HEADER_SIZE);
+    }
+
+    private void closeActive() throws IOException {
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент.
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        closeActive();
+    }
+
+    /**
+     * Проверяет, вызвана ли ошибка недоступностью БД (нет соединения, БД останавливается,
+     * не хватает ресурсов), а не содержимым сообщений.
+     * <p>
+     * Учитываются только сбои соединения и сервера: ошибки отдельного запроса (взаимоблокировка,
+     * тайм-аут запроса, ожидание блокировки) при работающей БД недоступностью не считаются.
+     * </p>
+     */
+    public static boolean isDatabaseUnavailable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CannotCreateTransactionException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof RecoverableDataAccessException) {
+                return true;
+            }
+            // 08 — ошибки соединения, 53 — нехватка ресурсов, 57P — остановка сервера
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                String state = sqlException.getSQLState();
+                if (state.startsWith("08") || state.startsWith("53") || state.startsWith("57P")) {
+                    return true;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static int payloadSize(ConsumerRecord<String, byte[]> consumerRecord, byte[] topic) {
+        int size = MIN_PAYLOAD_SIZE + topic.length;
+        if (consumerRecord.key() != null) {
+            size += consumerRecord.key().getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (consumerRecord.value() != null) {
+            size += consumerRecord.value().length;
+        }
+        for (Header header : consumerRecord.headers()) {
+            size += 2 + header.key().getBytes(StandardCharsets.UTF_8).length + 4;
+            if (header.value() != null) {
+                size += header.value().length;
+            }
+        }
+        return size;
+    }
+
+    private static void writePayload(ByteBuffer buffer, ConsumerRecord<String, byte[]> consumerRecord, byte[] topic) {
+        buffer.putLong(consumerRecord.offset())
+                .putLong(consumerRecord.timestamp())
+                .put((byte) consumerRecord.timestampType().id)
+                .putInt(consumerRecord.partition())
+                .putShort((short) topic.length)
+                .put(topic);
+        putBytes(buffer, consumerRecord.key() == null ? null : consumerRecord.key().getBytes(StandardCharsets.UTF_8));
+        putBytes(buffer, consumerRecord.value());
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int count = 0;
+        for (Header header : consumerRecord.headers()) {
+            byte[] key = header.key().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) key.length).put(key);
+            putBytes(buffer, header.value());
+            count++;
+        }
+        buffer.putInt(countPosition, count);
+    }
+
+    private static ConsumerRecord<String, byte[]> readPayload(ByteBuffer buffer) {
+        long offset = buffer.getLong();
+        long timestamp = buffer.getLong();
+        TimestampType timestampType = timestampType(buffer.get());
+        int partition = buffer.getInt();
+        String topic = new String(getBytes(buffer, buffer.getShort()), StandardCharsets.UTF_8);
+        byte[] keyBytes = getBytes(buffer, buffer.getInt());
+        byte[] value = getBytes(buffer, buffer.getInt());
+        RecordHeaders headers = new RecordHeaders();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            String key = new String(getBytes(buffer, buffer.getShort()), StandardCharsets.UTF_8);
+            headers.add(key, getBytes(buffer, buffer.getInt()));
+        }
+        String key = keyBytes == null ? null : new String(keyBytes, StandardCharsets.UTF_8);
+        return new ConsumerRecord<>(topic, partition, offset, timestamp, timestampType,
+                keyBytes == null ? -1 : keyBytes.length, value == null ? -1 : value.length,
+                key, value, headers, Optional.empty());
+    }
+
+    private static TimestampType timestampType(byte id) {
+        for (TimestampType type : TimestampType.values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        return TimestampType.NO_TIMESTAMP_TYPE;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static long sequence(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name, PREFIX.length(), name.length() - SUFFIX.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.ex9.auditlistener.spill;
+
+import lombok.extern.log4j.Log4j2;
+import org.ex9.auditlistener.listener.LogBatchProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Перенос сообщений из {@link SpillLog} в таблицы логов.
+ * <p>
+ * Каждые {@code audit.spill.replay-interval} проверяет соединение с БД и, если она доступна,
+ * снимает признак её недоступности, после чего listener'ы снова пишут в БД, а журнал
+ * переносится по сегментам пакетами по {@code audit.spill.replay-batch-size} сообщений через
+ * {@link LogBatchProcessor#replay}. Повторы (сообщение уже сохранено или сохранено частично
+ * перед сбоем) отсекаются проверкой {@code messageId}. Перенесённый сегмент удаляется,
+ * повреждённый — переименовывается в {@code .corrupt} и остаётся для разбора.
+ * </p>
+ * <p>
+ * Если БД снова стала недоступна, перенос прерывается и продолжается с того же места
+ * при следующем запуске.
+ * </p>
+ * @author Краковцев Артём
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "audit.spill.enabled", havingValue = "true")
+public class SpillReplayer {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final SpillLog spillLog;
+    private final LogBatchProcessor logBatchProcessor;
+    private final DataSource dataSource;
+    private final int batchSize;
+
+    private Path segment;
+    private long position;
+
+    public SpillReplayer(SpillLog spillLog,
+                         LogBatchProcessor logBatchProcessor,
+                         DataSource dataSource,
+                         @Value("${audit.spill.replay-batch-size:500}") int batchSize) {
+        this.spillLog = spillLog;
+        this.logBatchProcessor = logBatchProcessor;
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Переносит журнал в БД, если она доступна.
+     */
+    @Scheduled(initialDelayString = "${audit.spill.replay-interval:5s}",
+            fixedDelayString = "${audit.spill.replay-interval:5s}")
+    public void replay() {
+        if ((!spillLog.hasPending() && !spillLog.isDatabaseDown()) || !isDatabaseAvailable()) {
+            return;
+        }
+        spillLog.markDatabaseUp();
+        try {
+            for (Path sealed : spillLog.seal()) {
+                if (!replay(sealed)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read spill log", e);
+        }
+    }
+
+    private boolean replay(Path sealed) throws IOException {
+        if (!sealed.equals(segment)) {
+            segment = sealed;
+            position = 0;
+        }
+        long replayed = 0;
+        SpillLog.Chunk chunk;
+        do {
+            chunk = spillLog.read(segment, position, batchSize);
+            if (!chunk.records().isEmpty()) {
+                try {
+                    logBatchProcessor.replay(chunk.records());
+                } catch (RuntimeException e) {
+                    log.warn("Spill replay of {} interrupted at position {}, will resume later", segment, position, e);
+                    return false;
+                }
+                replayed += chunk.records().size();
+            }
+            position = chunk.nextPosition();
+        } while (chunk.status() == SpillLog.Status.MORE);
+
+        switch (chunk.status()) {
+            case CORRUPT -> {
+                log.error("Spill segment {} is corrupted at position {}, {} messages before it replayed; "
+                        + "the rest is kept as .corrupt", segment, position, replayed);
+                spillLog.quarantine(segment);
+            }
+            case TRUNCATED -> {
+                // запись, прерванная сбоем, не подтверждалась в Kafka и будет доставлена повторно
+                log.warn("Spill segment {} ends with an incomplete record at position {}", segment, position);
+                spillLog.delete(segment);
+            }
+            default -> spillLog.delete(segment);
+        }
+        log.info("Replayed {} spilled messages from {}", replayed, segment);
+        segment = null;
+        return true;
+    }
+
+    private boolean isDatabaseAvailable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            log.debug("Database is still unavailable: {}", e.getMessage());
+            return false;
+        }
+    }
+
+}
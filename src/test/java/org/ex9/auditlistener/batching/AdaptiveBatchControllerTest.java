@@ -0,0 +1,94 @@
+package org.ex9.auditlistener.batching;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBatchControllerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    @Test
+    void record_fullFastBatches_shouldIncreaseAdditivelyUpToMax() {
+        AdaptiveBatchController controller = controller(true, 500);
+
+        controller.record(500, FAST, 0, true);
+        assertEquals(550, controller.batchSize());
+
+        for (int i = 0; i < 100; i++) {
+            controller.record(controller.batchSize(), FAST, 0, true);
+        }
+        assertEquals(1000, controller.batchSize());
+        assertEquals(10, controller.increases());
+    }
+
+    @Test
+    void record_slowOrFailedBatch_shouldDecreaseMultiplicativelyDownToMin() {
+        AdaptiveBatchController controller = controller(true, 800);
+
+        controller.record(800, SLOW, 0, true);
+        assertEquals(400, controller.batchSize());
+
+        controller.record(400, FAST, 0, false);
+        assertEquals(200, controller.batchSize());
+
+        for (int i = 0; i < 10; i++) {
+            controller.record(controller.batchSize(), SLOW, 0, true);
+        }
+        assertEquals(100, controller.batchSize());
+        assertEquals(3, controller.decreases());
+    }
+
+    @Test
+    void record_smoothedLatency_shouldIgnoreSingleSpikeAfterFastBatches() {
+        AdaptiveBatchController controller = controller(true, 500);
+        controller.record(100, FAST, 0, true);
+        controller.record(100, FAST, 0, true);
+
+        controller.record(100, TimeUnit.MILLISECONDS.toNanos(400), 0, true);
+
+        assertEquals(500, controller.batchSize());
+        assertEquals(155, controller.latencyMs(), 1);
+    }
+
+    @Test
+    void record_flushInterval_shouldGrowWhenIdleAndHalveUnderBacklog() {
+        AdaptiveBatchController controller = controller(true, 500);
+
+        for (int i = 0; i < 30; i++) {
+            controller.record(10, FAST, 0, true);
+        }
+        assertEquals(200, controller.flushIntervalMs());
+
+        controller.record(500, FAST, 5000, true);
+        assertEquals(100, controller.flushIntervalMs());
+    }
+
+    @Test
+    void record_disabled_shouldKeepInitialSettings() {
+        AdaptiveBatchController controller = controller(false, 500);
+
+        controller.record(500, SLOW, 5000, false);
+
+        assertEquals(500, controller.batchSize());
+        assertEquals(0, controller.flushIntervalMs());
+    }
+
+    @Test
+    void constructor_invalidBounds_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchController(true, 500, 0, 1000, 50, 0.5,
+                Duration.ofMillis(200), Duration.ZERO, Duration.ofMillis(200), Duration.ofMillis(20)));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchController(true, 500, 100, 1000, 50, 1.5,
+                Duration.ofMillis(200), Duration.ZERO, Duration.ofMillis(200), Duration.ofMillis(20)));
+    }
+
+    private static AdaptiveBatchController controller(boolean enabled, int initialBatchSize) {
+        return new AdaptiveBatchController(enabled, initialBatchSize, 100, 1000, 50, 0.5,
+                Duration.ofMillis(200), Duration.ZERO, Duration.ofMillis(200), Duration.ofMillis(20));
+    }
+
+}
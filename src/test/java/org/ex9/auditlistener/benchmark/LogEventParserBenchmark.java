@@ -0,0 +1,149 @@
+package org.ex9.auditlistener.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.avro.AvroMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.ex9.auditlistener.format.FileSchemaRegistry;
+import org.ex9.auditlistener.format.WireFormat;
+import org.ex9.auditlistener.listener.LogEventParser;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение потокового {@link LogEventParser} с прежним разбором через
+ * {@code readTree} + {@code readValue}, а также разбора из байт сообщения с разбором
+ * из строки, декодированной {@code StringDeserializer}, и разбора двоичных форматов
+ * {@link WireFormat}. Запуск с профилировщиком {@code gc} показывает выделение памяти
+ * на сообщение ({@code gc.alloc.rate.norm}); размеры сообщения в каждом формате выводятся
+ * при подготовке.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogEventParserBenchmark {
+
+    @Param({"audit", "http", "http-large"})
+    public String type;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FileSchemaRegistry schemaRegistry =
+            new FileSchemaRegistry(new DefaultResourceLoader(), "classpath:avro/");
+    private final LogEventParser parser = new LogEventParser(objectMapper, schemaRegistry);
+
+    private String message;
+    private byte[] bytes;
+    private ConsumerRecord<String, byte[]> smile;
+    private ConsumerRecord<String, byte[]> cbor;
+    private ConsumerRecord<String, byte[]> avro;
+
+    @Setup
+    public void setUp() throws Exception {
+        Object dto = switch (type) {
+            case "audit" -> AuditLogDto.builder()
+                    .messageId("5b0c1a3e-6f6e-4a55-9d0d-2f0c2a3b4c5d")
+                    .id("0f8fad5b-d9cb-469f-a165-70867728950e")
+                    .type("END")
+                    .methodName("org.example.orders.OrderService.createOrder")
+                    .args(new Object[]{"customer-42", 3, "EXPRESS"})
+                    .result("Order{id=1001, status=CREATED}")
+                    .logLevel("INFO")
+                    .build();
+            case "http-large" -> HttpLogDto.builder()
+                    .messageId("5b0c1a3e-6f6e-4a55-9d0d-2f0c2a3b4c5d")
+                    .direction("Incoming")
+                    .method("POST")
+                    .statusCode(201)
+                    .url("/api/orders?customer=42")
+                    .requestBody("{\"items\":[" + "{\"sku\":\"A-1\",\"qty\":2},".repeat(400) + "{}]}")
+                    .responseBody("<html><body>" + "<p>заказ оформлен</p>".repeat(300) + "</body></html>")
+                    .build();
+            default -> HttpLogDto.builder()
+                    .messageId("5b0c1a3e-6f6e-4a55-9d0d-2f0c2a3b4c5d")
+                    .direction("Incoming")
+                    .method("POST")
+                    .statusCode(201)
+                    .url("/api/orders?customer=42")
+                    .requestBody("{\"items\":[{\"sku\":\"A-1\",\"qty\":2},{\"sku\":\"B-7\",\"qty\":1}]}")
+                    .responseBody("{\"id\":1001,\"status\":\"CREATED\"}")
+                    .build();
+        };
+        message = objectMapper.writeValueAsString(dto);
+        bytes = objectMapper.writeValueAsBytes(dto);
+        smile = record(WireFormat.SMILE, new SmileMapper().writeValueAsBytes(dto));
+        cbor = record(WireFormat.CBOR, new CBORMapper().writeValueAsBytes(dto));
+        int schemaId = dto instanceof AuditLogDto ? 1 : 2;
+        byte[] avroRecord = new AvroMapper().writer(schemaRegistry.schema(schemaId)).writeValueAsBytes(dto);
+        avro = record(WireFormat.AVRO, ByteBuffer.allocate(5 + avroRecord.length)
+                .put((byte) 0).putInt(schemaId).put(avroRecord).array());
+        System.out.printf("%n%s message size: json=%d, smile=%d, cbor=%d, avro=%d bytes%n", type,
+                bytes.length, smile.value().length, cbor.value().length, avro.value().length);
+    }
+
+    @Benchmark
+    public LogDto streaming() throws Exception {
+        return parser.parse(message);
+    }
+
+    /** Разбор из байт с декодированием тел, как при сохранении в текстовые колонки. */
+    @Benchmark
+    public LogDto streamingBytes() throws Exception {
+        LogDto logDto = parser.parse(bytes);
+        if (logDto instanceof HttpLogDto httpLogDto) {
+            httpLogDto.getRequestBody();
+            httpLogDto.getResponseBody();
+        }
+        return logDto;
+    }
+
+    /** Разбор из байт, включая декодирование строки, которое выполнял {@code StringDeserializer}. */
+    @Benchmark
+    public LogDto decodeThenStreaming() throws Exception {
+        return parser.parse(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public LogDto smile() throws Exception {
+        return parser.parse(smile);
+    }
+
+    @Benchmark
+    public LogDto cbor() throws Exception {
+        return parser.parse(cbor);
+    }
+
+    @Benchmark
+    public LogDto avro() throws Exception {
+        return parser.parse(avro);
+    }
+
+    @Benchmark
+    public LogDto treeThenBind() throws Exception {
+        JsonNode jsonNode = objectMapper.readTree(message);
+        if (jsonNode.has("id") && jsonNode.has("methodName") && jsonNode.has("logLevel")) {
+            return objectMapper.readValue(message, AuditLogDto.class);
+        } else if (jsonNode.has("direction") && jsonNode.has("method") && jsonNode.has("statusCode")) {
+            return objectMapper.readValue(message, HttpLogDto.class);
+        }
+        throw new IllegalArgumentException("Cannot parse log type from message: " + message);
+    }
+
+    private static ConsumerRecord<String, byte[]> record(WireFormat format, byte[] value) {
+        ConsumerRecord<String, byte[]> consumerRecord = new ConsumerRecord<>("audit-log", 0, 0, null, value);
+        consumerRecord.headers().add(WireFormat.HEADER, format.contentType().getBytes(StandardCharsets.UTF_8));
+        return consumerRecord;
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.ex9.auditlistener.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.codec.HttpBodyCodec;
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.ex9.auditlistener.format.FileSchemaRegistry;
+import org.ex9.auditlistener.listener.LogEventParser;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.service.AuditLogService;
+import org.ex9.auditlistener.service.HttpLogService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячий путь до записи в БД: разбор сообщения и преобразование DTO в сущность
+ * ({@link AuditLogService#toEntity}, {@link HttpLogService#toEntity}), включая разбор
+ * {@code timestamp}, {@code Arrays.toString(args)} и подготовку тел HTTP.
+ * <p>
+ * Каждый вызов обрабатывает {@value #BATCH} сообщений из смеси с распределением
+ * размеров {@link Payloads.Profile}; время приводится к одному сообщению.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogMappingBenchmark {
+
+    static final int BATCH = 1024;
+
+    @Param({"SMALL", "REALISTIC", "LARGE"})
+    public Payloads.Profile profile;
+
+    @Param({"text", "compressed"})
+    public String bodyStorage;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LogEventParser parser = new LogEventParser(objectMapper,
+            new FileSchemaRegistry(new DefaultResourceLoader(), "classpath:avro/"));
+    private final TimestampParser timestampParser = new TimestampParser(ZoneOffset.UTC);
+
+    private AuditLogService auditLogService;
+    private HttpLogService httpLogService;
+    private List<LogDto> logs;
+    private List<ConsumerRecord<String, byte[]>> records;
+    private List<String> timestamps;
+    private List<Object[]> args;
+
+    @Setup
+    public void setUp() {
+        IngestionMetrics metrics = new IngestionMetrics(new SimpleMeterRegistry());
+        auditLogService = new AuditLogService(null, null, metrics, timestampParser, null, null);
+        httpLogService = new HttpLogService(null, null, metrics,
+                new HttpBodyCodec(bodyStorage, 1024, 3, 0), timestampParser, null, null);
+
+        Payloads payloads = new Payloads(42, profile, objectMapper);
+        logs = payloads.logs(BATCH, 0.5);
+        List<String> json = payloads.json(logs);
+        records = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            records.add(Payloads.record(json.get(i).getBytes(StandardCharsets.UTF_8), i));
+        }
+        timestamps = logs.stream()
+                .map(log -> log instanceof AuditLogDto audit ? audit.getTimestamp() : ((HttpLogDto) log).getTimestamp())
+                .toList();
+        args = logs.stream()
+                .filter(AuditLogDto.class::isInstance)
+                .map(log -> ((AuditLogDto) log).getArgs())
+                .toList();
+    }
+
+    /** Разбор JSON и преобразование в сущность — всё, что listener делает до записи. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseAndMap(Blackhole blackhole) throws Exception {
+        for (ConsumerRecord<String, byte[]> consumerRecord : records) {
+            LogDto logDto = parser.parse(consumerRecord.value());
+            blackhole.consume(map(logDto, consumerRecord));
+        }
+    }
+
+    /** Только преобразование уже разобранных DTO в сущности. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void map(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(map(logs.get(i), records.get(i)));
+        }
+    }
+
+    /** Разбор {@code timestamp}, как его выполняют сервисы. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseTimestamp(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(timestampParser.parse(timestamp));
+        }
+    }
+
+    /** Строковое представление аргументов всех Audit-логов пакета (время на пакет). */
+    @Benchmark
+    public void argsToString(Blackhole blackhole) {
+        for (Object[] methodArgs : args) {
+            blackhole.consume(Arrays.toString(methodArgs));
+        }
+    }
+
+    private Object map(LogDto logDto, ConsumerRecord<String, byte[]> consumerRecord) {
+        if (logDto instanceof AuditLogDto auditLogDto) {
+            return auditLogService.toEntity(auditLogDto, consumerRecord);
+        }
+        return httpLogService.toEntity((HttpLogDto) logDto, consumerRecord);
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.ex9.auditlistener.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.ex9.auditlistener.codec.HttpBodyCodec;
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.ex9.auditlistener.dictionary.LogDictionary;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.repository.CopyLogBatchWriter;
+import org.ex9.auditlistener.repository.JdbcLogBatchWriter;
+import org.ex9.auditlistener.repository.JpaLogBatchWriter;
+import org.ex9.auditlistener.repository.LogBatchWriter;
+import org.ex9.auditlistener.service.AuditLogService;
+import org.ex9.auditlistener.service.HttpLogService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись логов в PostgreSQL разными способами.
+ * <ul>
+ *     <li>{@code row} — каждая запись в собственной транзакции, как в режиме {@code record};</li>
+ *     <li>{@code jdbc} — многострочный {@code INSERT} ({@link JdbcLogBatchWriter});</li>
+ *     <li>{@code copy} — {@code COPY (FORMAT binary)} ({@link CopyLogBatchWriter});</li>
+ *     <li>{@code jpa} — {@code persist} с JDBC-пакетами Hibernate ({@link JpaLogBatchWriter}).</li>
+ * </ul>
+ * <p>
+ * По умолчанию поднимает PostgreSQL в Testcontainers. Чтобы использовать уже запущенную базу,
+ * задайте переменные окружения {@code BENCHMARK_JDBC_URL}, {@code BENCHMARK_JDBC_USER}
+ * и {@code BENCHMARK_JDBC_PASSWORD}: таблицы логов в ней будут очищаться.
+ * Время приводится к одной записи.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LogWriteBenchmark {
+
+    private static final int BATCH = 500;
+    private static final int JPA_BATCH_SIZE = 50;
+
+    @Param({"row", "jdbc", "copy", "jpa"})
+    public String writer;
+
+    @Param({"SMALL", "REALISTIC"})
+    public Payloads.Profile profile;
+
+    private PostgreSQLContainer<?> postgres;
+    private EntityManagerFactory entityManagerFactory;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private LogBatchWriter logBatchWriter;
+
+    private List<AuditLogEntity> auditLogs;
+    private List<HttpLogEntity> httpLogs;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUpDatabase() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        String url = System.getenv("BENCHMARK_JDBC_URL");
+        if (url == null) {
+            postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16"));
+            postgres.start();
+            dataSource.setUrl(postgres.getJdbcUrl());
+            dataSource.setUsername(postgres.getUsername());
+            dataSource.setPassword(postgres.getPassword());
+        } else {
+            dataSource.setUrl(url);
+            dataSource.setUsername(System.getenv("BENCHMARK_JDBC_USER"));
+            dataSource.setPassword(System.getenv("BENCHMARK_JDBC_PASSWORD"));
+        }
+        // как spring.datasource.hikari.data-source-properties в application.yaml
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("reWriteBatchedInserts", "true");
+        dataSource.setConnectionProperties(connectionProperties);
+
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new Liquibase("db/changelog/db.changelog-master.yaml", new ClassLoaderResourceAccessor(), database)
+                    .update("");
+        }
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        if ("jpa".equals(writer)) {
+            entityManagerFactory = entityManagerFactory(dataSource);
+            transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+            logBatchWriter = new JpaLogBatchWriter(
+                    SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory), JPA_BATCH_SIZE);
+        } else {
+            transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            logBatchWriter = "copy".equals(writer) ? new CopyLogBatchWriter(jdbcTemplate) : new JdbcLogBatchWriter(jdbcTemplate);
+        }
+
+        IngestionMetrics metrics = new IngestionMetrics(new SimpleMeterRegistry());
+        TimestampParser timestampParser = new TimestampParser(ZoneOffset.UTC);
+        AuditLogService auditLogService = new AuditLogService(null, null, metrics, timestampParser, null, null);
+        HttpLogService httpLogService = new HttpLogService(null, null, metrics,
+                new HttpBodyCodec("text", 1024, 3, 0), timestampParser, null, null);
+
+        auditLogs = new ArrayList<>();
+        httpLogs = new ArrayList<>();
+        List<LogDto> logs = new Payloads(42, profile, new ObjectMapper()).logs(BATCH, 0.5);
+        for (int i = 0; i < logs.size(); i++) {
+            if (logs.get(i) instanceof AuditLogDto auditLogDto) {
+                auditLogs.add(auditLogService.toEntity(auditLogDto, Payloads.record(null, i)));
+            } else {
+                httpLogs.add(httpLogService.toEntity((HttpLogDto) logs.get(i), Payloads.record(null, i)));
+            }
+        }
+        LogDictionary logDictionary = new LogDictionary(jdbcTemplate, 100_000);
+        logDictionary.encodeAuditLogs(auditLogs);
+        logDictionary.encodeHttpLogs(httpLogs);
+    }
+
+    /**
+     * Выдаёт записям пакета новые {@code messageId} и смещения, чтобы не срабатывал {@code ON CONFLICT},
+     * и сбрасывает идентификаторы, выданные при прошлой записи через JPA.
+     */
+    @Setup(Level.Invocation)
+    public void renumber() {
+        for (AuditLogEntity entity : auditLogs) {
+            long offset = sequence++;
+            entity.setId(null);
+            entity.setMessageId("a-" + offset);
+            entity.setKafkaOffset(offset);
+        }
+        for (HttpLogEntity entity : httpLogs) {
+            long offset = sequence++;
+            entity.setId(null);
+            entity.setMessageId("h-" + offset);
+            entity.setKafkaOffset(offset);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE audit_logs, http_logs");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownDatabase() {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    private static EntityManagerFactory entityManagerFactory(DataSource dataSource) {
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("org.ex9.auditlistener.model");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.jdbc.batch_size", JPA_BATCH_SIZE,
+                "hibernate.order_inserts", true,
+                "hibernate.id.optimizer.pooled.preferred", "pooled-lo"));
+        factoryBean.afterPropertiesSet();
+        return factoryBean.getObject();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int write() {
+        if ("row".equals(writer)) {
+            int inserted = 0;
+            for (AuditLogEntity entity : auditLogs) {
+                inserted += transactionTemplate.execute(status -> logBatchWriter.insertAuditLogs(List.of(entity)).size());
+            }
+            for (HttpLogEntity entity : httpLogs) {
+                inserted += transactionTemplate.execute(status -> logBatchWriter.insertHttpLogs(List.of(entity)).size());
+            }
+            return inserted;
+        }
+        return transactionTemplate.execute(status ->
+                logBatchWriter.insertAuditLogs(auditLogs).size() + logBatchWriter.insertHttpLogs(httpLogs).size());
+    }
+
+}
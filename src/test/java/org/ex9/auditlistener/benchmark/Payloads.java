@@ -0,0 +1,184 @@
+package org.ex9.auditlistener.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Генератор сообщений для бенчмарков с реалистичным распределением размеров.
+ * <p>
+ * Размеры тел HTTP и результатов методов распределены логнормально: большинство
+ * сообщений небольшие, но встречается «длинный хвост» в десятки и сотни килобайт.
+ * Генерация детерминирована ({@code seed}), поэтому замеры воспроизводимы.
+ * </p>
+ */
+public final class Payloads {
+
+    /** Профиль размеров сообщений. */
+    public enum Profile {
+        /** Медиана ~100 байт, без хвоста. */
+        SMALL(100, 0.3),
+        /** Медиана ~600 байт, хвост до сотен килобайт. */
+        REALISTIC(600, 1.4),
+        /** Медиана ~16 КБ. */
+        LARGE(16 * 1024, 0.8);
+
+        private final int median;
+        private final double sigma;
+
+        Profile(int median, double sigma) {
+            this.median = median;
+            this.sigma = sigma;
+        }
+    }
+
+    private static final int MAX_SIZE = 512 * 1024;
+    private static final String[] METHODS = {"GET", "GET", "GET", "POST", "POST", "PUT", "DELETE"};
+    private static final String[] LEVELS = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+    private static final String[] WORDS = {"order", "customer", "status", "item", "price", "quantity",
+            "адрес", "доставка", "comment", "created", "updated", "id"};
+
+    private final Random random;
+    private final Profile profile;
+    private final ObjectMapper objectMapper;
+
+    public Payloads(long seed, Profile profile, ObjectMapper objectMapper) {
+        this.random = new Random(seed);
+        this.profile = profile;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Создаёт смесь Audit- и HTTP-логов в заданной пропорции.
+     *
+     * @param count      число сообщений
+     * @param httpShare  доля HTTP-логов, от 0 до 1
+     */
+    public List<LogDto> logs(int count, double httpShare) {
+        List<LogDto> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            logs.add(random.nextDouble() < httpShare ? httpLog() : auditLog());
+        }
+        return logs;
+    }
+
+    /**
+     * Сериализует DTO в JSON так же, как это делает продюсер.
+     */
+    public List<String> json(List<LogDto> logs) {
+        List<String> messages = new ArrayList<>(logs.size());
+        try {
+            for (LogDto logDto : logs) {
+                messages.add(objectMapper.writeValueAsString(logDto));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        return messages;
+    }
+
+    /**
+     * Оборачивает сообщение в {@link ConsumerRecord} с последовательными смещениями.
+     */
+    public static ConsumerRecord<String, byte[]> record(byte[] value, long offset) {
+        return new ConsumerRecord<>("audit-log", (int) (offset % 3), offset, null, value);
+    }
+
+    public AuditLogDto auditLog() {
+        String type = switch (random.nextInt(3)) {
+            case 0 -> "START";
+            case 1 -> "END";
+            default -> "ERROR";
+        };
+        Object[] args = null;
+        if ("START".equals(type)) {
+            args = new Object[random.nextInt(5)];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = switch (random.nextInt(3)) {
+                    case 0 -> random.nextInt(100_000);
+                    case 1 -> uuid();
+                    default -> text(size() / 4);
+                };
+            }
+        }
+        return AuditLogDto.builder()
+                .messageId(uuid())
+                .id(uuid())
+                .type(type)
+                .methodName("org.example." + word() + ".Service." + word() + "Handler")
+                .args(args)
+                .result("END".equals(type) ? text(size()) : null)
+                .error("ERROR".equals(type) ? "java.lang.IllegalStateException: " + text(size() / 2) : null)
+                .logLevel(LEVELS[random.nextInt(LEVELS.length)])
+                .timestamp(timestamp())
+                .build();
+    }
+
+    public HttpLogDto httpLog() {
+        String method = METHODS[random.nextInt(METHODS.length)];
+        return HttpLogDto.builder()
+                .messageId(uuid())
+                .timestamp(timestamp())
+                .direction(random.nextBoolean() ? "Incoming" : "Outgoing")
+                .method(method)
+                .statusCode(random.nextInt(10) == 0 ? 500 : 200)
+                .url("/api/" + word() + "/" + random.nextInt(10_000) + "?" + word() + "=" + word())
+                .requestBody("GET".equals(method) || "DELETE".equals(method) ? null : json(size()))
+                .responseBody(json(size()))
+                .build();
+    }
+
+    private int size() {
+        double size = profile.median * Math.exp(profile.sigma * random.nextGaussian());
+        return (int) Math.min(MAX_SIZE, Math.max(2, size));
+    }
+
+    private String timestamp() {
+        // как у продюсера: LocalDateTime.toString() с микросекундами или наносекундами
+        return LocalDateTime.of(2025, 1, 1, 0, 0)
+                .plusNanos(random.nextLong(365L * 24 * 3600 * 1_000_000_000L))
+                .toString();
+    }
+
+    private String json(int size) {
+        StringBuilder json = new StringBuilder(size + 32).append('{');
+        while (json.length() < size) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(word()).append(json.length()).append("\":");
+            if (random.nextBoolean()) {
+                json.append(random.nextInt(1_000_000));
+            } else {
+                json.append('"').append(word()).append(' ').append(word()).append('"');
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    private String text(int size) {
+        StringBuilder text = new StringBuilder(size + 16);
+        while (text.length() < size) {
+            text.append(word()).append(' ');
+        }
+        return text.toString();
+    }
+
+    private String uuid() {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.ex9.auditlistener.benchmark;
+
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение {@link TimestampParser} с прежним разбором {@code timestamp} в сервисах:
+ * {@code LocalDateTime.parse}, при ошибке повторный разбор и {@code LocalDateTime.now()}.
+ * <p>
+ * Каждый вызов разбирает {@value #BATCH} значений одного вида ({@link #input}); время приводится
+ * к одному значению. Прежний разбор значений со смещением, миллисекунд и мусора заканчивается
+ * исключениями (и неверным временем). Журналирование некорректных значений в обоих вариантах
+ * не измеряется. Запуск с профилировщиком {@code gc} показывает выделение памяти на значение.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimestampParserBenchmark {
+
+    static final int BATCH = 1024;
+
+    /**
+     * local — {@code LocalDateTime.toString()} в пределах одного дня, как у продюсера;
+     * local-random-day — то же за случайные дни года; offset — ISO со смещением;
+     * epoch-millis — миллисекунды от эпохи Unix; malformed — нераспознаваемые значения.
+     */
+    @Param({"local", "local-random-day", "offset", "epoch-millis", "malformed"})
+    public String input;
+
+    private final TimestampParser parser = new TimestampParser(ZoneOffset.UTC);
+
+    private List<String> timestamps;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDateTime day = LocalDateTime.of(2025, 1, 1, 0, 0);
+        timestamps = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            LocalDateTime time = day.plusNanos(random.nextLong(24L * 3600 * 1_000_000_000L));
+            timestamps.add(switch (input) {
+                case "local" -> time.toString();
+                case "local-random-day" -> time.plusDays(random.nextInt(365)).toString();
+                case "offset" -> time.atOffset(ZoneOffset.ofHours(3)).toString();
+                case "epoch-millis" -> Long.toString(time.toInstant(ZoneOffset.UTC).toEpochMilli());
+                case "malformed" -> "not a timestamp " + i;
+                default -> throw new IllegalArgumentException(input);
+            });
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void legacy(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(legacyParse(timestamp));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parser(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(parser.parse(timestamp));
+        }
+    }
+
+    /** Прежний {@code parseTimestamp} сервисов без журналирования ошибки. */
+    private static LocalDateTime legacyParse(String timestamp) {
+        if (timestamp == null) {
+            return LocalDateTime.now();
+        }
+        try {
+            return LocalDateTime.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(timestamp, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            } catch (DateTimeParseException ex) {
+                return LocalDateTime.now();
+            }
+        }
+    }
+
+}
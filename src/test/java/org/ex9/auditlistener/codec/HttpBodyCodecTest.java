@@ -0,0 +1,76 @@
+package org.ex9.auditlistener.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpBodyCodecTest {
+
+    private static final String LARGE_BODY = "{\"items\":[" + "{\"name\":\"позиция\",\"qty\":1},".repeat(200) + "{}]}";
+
+    @Test
+    void encode_shouldCompressLargeBodyAndDecodeBack() {
+        HttpBodyCodec codec = new HttpBodyCodec("compressed", 1024, 3, 0);
+
+        HttpBodyCodec.Encoded encoded = codec.encode(LARGE_BODY);
+
+        assertNull(encoded.text());
+        assertEquals(HttpBodyCodec.ZSTD, encoded.data()[0]);
+        assertTrue(encoded.data().length < LARGE_BODY.length() / 4);
+        assertEquals(LARGE_BODY, HttpBodyCodec.decode(encoded.text(), encoded.data()));
+        assertTrue(encoded.terms().contains("позиция"));
+    }
+
+    @Test
+    void encodeUtf8_shouldMatchStringEncoding() {
+        HttpBodyCodec codec = new HttpBodyCodec("compressed", 1024, 3, 0);
+        byte[] message = ("prefix:" + LARGE_BODY + ":suffix").getBytes(StandardCharsets.UTF_8);
+        int length = LARGE_BODY.getBytes(StandardCharsets.UTF_8).length;
+
+        HttpBodyCodec.Encoded encoded = codec.encode(new Utf8Slice(message, 7, length));
+
+        assertNull(encoded.text());
+        assertArrayEquals(codec.encode(LARGE_BODY).data(), encoded.data());
+        assertEquals(codec.encode(LARGE_BODY).terms(), encoded.terms());
+        assertEquals("{\"ok\":true}", codec.encode(new Utf8Slice("{\"ok\":true}".getBytes(StandardCharsets.UTF_8), 0, 11)).text());
+        assertNull(codec.encode((Utf8Slice) null).text());
+    }
+
+    @Test
+    void encode_shouldKeepSmallBodyAsText() {
+        HttpBodyCodec codec = new HttpBodyCodec("compressed", 1024, 3, 0);
+
+        HttpBodyCodec.Encoded encoded = codec.encode("{\"ok\":true}");
+
+        assertEquals("{\"ok\":true}", encoded.text());
+        assertNull(encoded.data());
+        assertNull(codec.encode((String) null).text());
+    }
+
+    @Test
+    void encode_shouldNotCompressInTextMode() {
+        HttpBodyCodec codec = new HttpBodyCodec("text", 1024, 3, 0);
+
+        HttpBodyCodec.Encoded encoded = codec.encode(LARGE_BODY);
+
+        assertEquals(LARGE_BODY, encoded.text());
+        assertNull(encoded.data());
+    }
+
+    @Test
+    void encode_shouldTruncateToMaxLength() {
+        HttpBodyCodec codec = new HttpBodyCodec("text", 1024, 3, 10);
+
+        HttpBodyCodec.Encoded encoded = codec.encode("0123456789abcdef");
+
+        assertEquals("0123456789" + HttpBodyCodec.TRUNCATION_MARKER, encoded.text());
+    }
+
+    @Test
+    void decode_shouldRejectUnknownMarker() {
+        assertThrows(IllegalStateException.class, () -> HttpBodyCodec.decode(null, new byte[]{42, 1, 2}));
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.ex9.auditlistener.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTermsTest {
+
+    @Test
+    void of_shouldKeepDistinctWordsInFirstOccurrenceOrder() {
+        String body = "{\"user\":\"alice@example.com\",\"items\":[{\"sku\":\"A-1\"},{\"sku\":\"B-2\"}],\"note\":\"срочно доставить\"}";
+
+        assertEquals("user : alice@example.com items sku A-1 B-2 note срочно доставить", SearchTerms.of(body));
+        assertNull(SearchTerms.of("  {}[] "));
+        assertNull(SearchTerms.of((String) null));
+    }
+
+    @Test
+    void ofUtf8_shouldMatchStringVersion() {
+        String body = "{\"адрес\":\"Москва, ул. Тверская\",\"id\":\"3f2b8c1e-9d4a\"}";
+        byte[] message = ("xx" + body + "yy").getBytes(StandardCharsets.UTF_8);
+
+        Utf8Slice slice = new Utf8Slice(message, 2, body.getBytes(StandardCharsets.UTF_8).length);
+
+        assertEquals(SearchTerms.of(body), SearchTerms.of(slice));
+    }
+
+    @Test
+    void of_longBody_shouldBeLimited() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; body.length() < 2 * SearchTerms.MAX_LENGTH; i++) {
+            body.append("word").append(i).append(' ');
+        }
+
+        String terms = SearchTerms.of(body.toString());
+
+        assertTrue(terms.length() <= SearchTerms.MAX_LENGTH);
+        assertTrue(terms.startsWith("word0 word1 "));
+    }
+
+    @Test
+    void join_shouldSkipMissingTerms() {
+        assertEquals("a b", SearchTerms.join("a", "b"));
+        assertEquals("b", SearchTerms.join(null, "b"));
+        assertNull(SearchTerms.join(null, null));
+    }
+
+}
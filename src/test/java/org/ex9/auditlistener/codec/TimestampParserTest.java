@@ -0,0 +1,83 @@
+package org.ex9.auditlistener.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimestampParserTest {
+
+    private final TimestampParser parser = new TimestampParser(ZoneOffset.UTC);
+
+    @Test
+    void parse_shouldAcceptIsoWithAndWithoutOffset() {
+        assertEquals(utc("2025-01-01T10:00:00Z"), parser.parse("2025-01-01T10:00"));
+        assertEquals(utc("2025-01-01T10:00:00.123456Z"), parser.parse("2025-01-01T10:00:00.123456"));
+        assertEquals(utc("2025-01-01T10:00:00.123456789Z"), parser.parse("2025-01-01 10:00:00.123456789"));
+        assertEquals(utc("2025-01-01T10:00:00Z"), parser.parse("2025-01-01T10:00:00Z"));
+        assertEquals(utc("2025-01-01T07:00:00.5Z"), parser.parse("2025-01-01T10:00:00.5+03:00"));
+        assertEquals(utc("2024-12-31T23:30:00Z"), parser.parse("2025-01-01T02:00:00+0230"));
+        assertEquals(utc("2025-01-01T13:00:00Z"), parser.parse("2025-01-01T10:00:00-03"));
+        assertEquals(utc("2024-02-29T00:00:00Z"), parser.parse("2024-02-29T00:00:00"));
+    }
+
+    @Test
+    void parse_shouldAcceptEpochMillis() {
+        assertEquals(utc("2025-01-01T10:00:00.123Z"), parser.parse("1735725600123"));
+        assertEquals(utc("1969-12-31T23:59:59.999Z"), parser.parse("-1"));
+    }
+
+    @Test
+    void parse_shouldReturnUtc() {
+        OffsetDateTime parsed = parser.parse("2025-06-01T10:00:00+03:00");
+
+        assertEquals(ZoneOffset.UTC, parsed.getOffset());
+        assertEquals(7, parsed.getHour());
+    }
+
+    @Test
+    void parse_invalid_shouldReturnNull() {
+        for (String value : new String[]{"", "not a timestamp", "2025-13-01T10:00:00", "2025-02-29T10:00:00",
+                "2025-01-01", "2025-01-01T24:00:00", "2025-01-01T10:60", "2025-01-01T10:00:00.",
+                "2025-01-01T10:00:00.1234567891", "2025-01-01T10:00:00+03:", "2025-01-01T10:00:00+19:00",
+                "2025-01-01T10:00:00[Europe/Moscow]", "20x5-01-01T10:00:00", "12a4", "-"}) {
+            assertNull(parser.parse(value), value);
+        }
+        assertNull(parser.parse(null));
+    }
+
+    @Test
+    void parse_shouldNotReuseCachedDateForAnotherDay() {
+        assertEquals(utc("2025-01-01T10:00:00Z"), parser.parse("2025-01-01T10:00:00"));
+        assertEquals(utc("2025-01-02T10:00:00Z"), parser.parse("2025-01-02T10:00:00"));
+        assertNull(parser.parse("2025-01-02X10:00:00"));
+        assertEquals(utc("2025-01-02T11:00:00Z"), parser.parse("2025-01-02T11:00:00"));
+    }
+
+    @Test
+    void parse_withoutOffset_shouldUseDefaultZone() {
+        TimestampParser moscow = new TimestampParser(ZoneId.of("Europe/Moscow"));
+        TimestampParser berlin = new TimestampParser(ZoneId.of("Europe/Berlin"));
+
+        assertEquals(utc("2025-01-01T07:00:00Z"), moscow.parse("2025-01-01T10:00:00"));
+        assertEquals(utc("2025-01-01T09:00:00Z"), berlin.parse("2025-01-01T10:00:00"));
+        assertEquals(utc("2025-07-01T08:00:00Z"), berlin.parse("2025-07-01T10:00:00"));
+        assertEquals(utc("2025-07-01T10:00:00Z"), berlin.parse("2025-07-01T10:00:00Z"));
+    }
+
+    @Test
+    void parse_withFallback_shouldUseFallbackForMissingOrInvalid() {
+        assertEquals(utc("2025-01-01T10:00:00.123Z"), parser.parse(null, 1735725600123L));
+        assertEquals(utc("2025-01-01T10:00:00.123Z"), parser.parse("garbage", 1735725600123L));
+        assertEquals(utc("2025-01-01T10:00:00Z"), parser.parse("2025-01-01T10:00:00", 1735725600123L));
+        assertNotNull(parser.parse(null, -1));
+    }
+
+    private static OffsetDateTime utc(String value) {
+        return OffsetDateTime.parse(value);
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.ex9.auditlistener.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdFilterTest {
+
+    @Test
+    void isRecent_shouldFindOnlyPutIds() {
+        MessageIdFilter filter = new MessageIdFilter(10);
+
+        assertFalse(filter.isRecent("a"));
+        filter.put("a");
+        assertTrue(filter.isRecent("a"));
+        assertFalse(filter.isRecent("b"));
+    }
+
+    @Test
+    void put_overCapacity_shouldEvictLeastRecentlyPutId() {
+        MessageIdFilter filter = new MessageIdFilter(2);
+        filter.put("a");
+        filter.put("b");
+        filter.put("a");
+        filter.put("c");
+
+        assertTrue(filter.isRecent("a"));
+        assertFalse(filter.isRecent("b"));
+        assertTrue(filter.isRecent("c"));
+        assertEquals(2, filter.stats().size());
+    }
+
+    @Test
+    void stats_shouldCountChecksAndDuplicates() {
+        MessageIdFilter filter = new MessageIdFilter(10);
+        filter.put("a");
+
+        filter.isRecent("a");
+        filter.isRecent("a");
+        filter.isRecent("b");
+
+        assertEquals(new MessageIdFilter.Stats(3, 2, 1), filter.stats());
+    }
+
+}
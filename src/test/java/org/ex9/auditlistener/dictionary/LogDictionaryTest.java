@@ -0,0 +1,145 @@
+package org.ex9.auditlistener.dictionary;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LogDictionaryTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private LogDictionary logDictionary;
+
+    /** Содержимое log_dictionary: вид и значение → идентификатор. */
+    private final Map<String, Integer> rows = new HashMap<>();
+    private int inserts;
+
+    @BeforeEach
+    void setUp() {
+        logDictionary = new LogDictionary(jdbcTemplate, 100);
+        lenient().doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            boolean insert = sql.startsWith("INSERT");
+            String kind = invocation.getArgument(insert ? 2 : 3);
+            String[] values = invocation.getArgument(insert ? 3 : 2);
+            if (insert) {
+                inserts++;
+            }
+            for (String value : values) {
+                String key = kind + ":" + value;
+                if (insert && rows.containsKey(key)) {
+                    continue;
+                }
+                if (insert) {
+                    rows.put(key, rows.size() + 1);
+                } else if (!rows.containsKey(key)) {
+                    continue;
+                }
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(value);
+                when(rs.getInt(2)).thenReturn(rows.get(key));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+    }
+
+    @Test
+    void encodeAuditLogs_shouldInsertNewValuesOnceAndReuseCache() {
+        rows.put("log_level:INFO", 100);
+        AuditLogEntity first = auditLog("START", "UserService.find", "INFO");
+        AuditLogEntity second = auditLog("END", "UserService.find", null);
+
+        logDictionary.encodeAuditLogs(List.of(first, second));
+
+        assertEquals(100, first.getLogLevelId());
+        assertNull(second.getLogLevelId());
+        assertEquals(first.getMethodNameId(), second.getMethodNameId());
+        assertNotEquals(first.getEventTypeId(), second.getEventTypeId());
+        assertEquals(2, inserts);
+
+        clearInvocations(jdbcTemplate);
+        AuditLogEntity third = auditLog("END", "UserService.find", "INFO");
+        logDictionary.encodeAuditLogs(List.of(third));
+
+        assertEquals(second.getEventTypeId(), third.getEventTypeId());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void encodeHttpLogs_shouldStoreUrlTemplateParamsAndQuery() {
+        HttpLogEntity first = httpLog("/api/users/42/orders?page=2");
+        HttpLogEntity second = httpLog("/api/users/7/orders");
+
+        logDictionary.encodeHttpLogs(List.of(first, second));
+
+        assertEquals(first.getUrlTemplateId(), second.getUrlTemplateId());
+        assertEquals(rows.get("url_template:/api/users/{id}/orders"), first.getUrlTemplateId());
+        assertArrayEquals(new String[]{"42"}, first.getUrlParams());
+        assertEquals("?page=2", first.getUrlQuery());
+        assertNull(second.getUrlQuery());
+        assertEquals(rows.get("http_method:GET"), first.getMethodId());
+        assertEquals(rows.get("direction:IN"), first.getDirectionId());
+    }
+
+    @Test
+    void find_unknownValue_shouldReturnNullWithoutInsert() {
+        rows.put("method_name:A.b", 5);
+
+        assertEquals(5, logDictionary.find(LogDictionary.Kind.METHOD_NAME, "A.b"));
+        assertNull(logDictionary.find(LogDictionary.Kind.METHOD_NAME, "A.c"));
+        assertEquals(0, inserts);
+    }
+
+    @Test
+    void urlTemplate_shouldSplitIdentifiersAndJoinLosslessly() {
+        UrlTemplate.Parts parts = UrlTemplate.split(
+                "https://host/files/3f2b8c1e-9d4a-4b7e-8f00-1a2b3c4d5e6f/deadbeefcafebabe0123/v2#top");
+        assertEquals("https://host/files/{uuid}/{hex}/v2", parts.template());
+        assertArrayEquals(new String[]{"3f2b8c1e-9d4a-4b7e-8f00-1a2b3c4d5e6f", "deadbeefcafebabe0123"}, parts.params());
+        assertEquals("#top", parts.query());
+        assertNull(UrlTemplate.split("/a/{id}/1").params());
+
+        for (String url : List.of("", "/", "/api//42/", "/{id}/7?x={id}", "/redirect?to=http://x/1",
+                "https://host/api/users/42/orders?page=2", "/files/deadbeef")) {
+            UrlTemplate.Parts split = UrlTemplate.split(url);
+            assertEquals(url, UrlTemplate.join(split.template(), split.params(), split.query()));
+        }
+    }
+
+    private static AuditLogEntity auditLog(String type, String methodName, String logLevel) {
+        return AuditLogEntity.builder()
+                .eventType(type)
+                .methodName(methodName)
+                .logLevel(logLevel)
+                .build();
+    }
+
+    private static HttpLogEntity httpLog(String url) {
+        return HttpLogEntity.builder()
+                .method("GET")
+                .direction("IN")
+                .url(url)
+                .build();
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.ex9.auditlistener.dictionary;
+
+import org.ex9.auditlistener.rollup.UrlNormalizer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlSegmentTest {
+
+    @Test
+    void placeholder_shouldClassifyIdentifierSegments() {
+        assertEquals(UrlSegment.ID, placeholder("42"));
+        assertEquals(UrlSegment.UUID, placeholder("3f2b8c1e-9d4a-4b7e-8f00-1A2B3C4D5E6F"));
+        assertEquals(UrlSegment.HEX, placeholder("deadbeefcafebabe"));
+    }
+
+    @Test
+    void placeholder_shouldKeepOrdinarySegments() {
+        assertNull(placeholder(""));
+        assertNull(placeholder("orders"));
+        assertNull(placeholder("deadbeefcafebab"));
+        assertNull(placeholder("3f2b8c1e-9d4a-4b7e-8f00-1a2b3c4d5e6g"));
+        assertNull(placeholder("3f2b8c1e9d4a-4b7e-8f00-1a2b3c4d5e6f0"));
+        // только ASCII, как в log_url_split
+        assertNull(placeholder("４２"));
+    }
+
+    @Test
+    void placeholder_shouldClassifyOnlyGivenRange() {
+        assertEquals(UrlSegment.ID, UrlSegment.placeholder("/users/42/orders", 7, 9));
+        assertNull(UrlSegment.placeholder("/users/42/orders", 10, 16));
+    }
+
+    @Test
+    void urlTemplateAndNormalizer_shouldProduceSameRoute() {
+        String url = "/api/users/42/files/deadbeefcafebabe0123/3f2b8c1e-9d4a-4b7e-8f00-1a2b3c4d5e6f";
+
+        assertEquals(UrlTemplate.split(url).template(), UrlNormalizer.normalize(url));
+    }
+
+    private static String placeholder(String segment) {
+        return UrlSegment.placeholder(segment, 0, segment.length());
+    }
+
+}
@@ -0,0 +1,214 @@
+package org.ex9.auditlistener.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.batching.AdaptiveBatchController;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.format.SchemaRegistry;
+import org.ex9.auditlistener.format.WireFormat;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.service.AuditLogService;
+import org.ex9.auditlistener.service.HttpLogService;
+import org.ex9.auditlistener.service.LogBatchService;
+import org.ex9.auditlistener.spill.SpillLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditBatchKafkaListenerTest {
+
+    @Mock
+    private AuditLogService auditLogService;
+    @Mock
+    private HttpLogService httpLogService;
+    @Mock
+    private LogBatchService logBatchService;
+    @Mock
+    private DeadLetterPublishingRecoverer deadLetterPublishingRecoverer;
+    @Mock
+    private SpillLog spillLog;
+    @Mock
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+    @Mock
+    private SchemaRegistry schemaRegistry;
+
+    private AuditBatchKafkaListener listener;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        listener = new AuditBatchKafkaListener(new LogBatchProcessor(auditLogService, httpLogService, logBatchService,
+                new LogEventParser(objectMapper, schemaRegistry), new IngestionMetrics(new SimpleMeterRegistry()),
+                deadLetterPublishingRecoverer, spillLog), new AdaptiveBatchController(true, 500, 50, 2000, 50, 0.5,
+                Duration.ofMillis(200), Duration.ZERO, Duration.ofMillis(500), Duration.ofMillis(20)),
+                kafkaListenerEndpointRegistry);
+    }
+
+    @Test
+    void handleBatch_shouldSplitByTypeAndSaveOnce() throws Exception {
+        AuditLogDto auditLogDto = AuditLogDto.builder()
+                .messageId("m-1")
+                .id("123")
+                .type("START")
+                .methodName("Test.method")
+                .logLevel("INFO")
+                .build();
+        HttpLogDto httpLogDto = HttpLogDto.builder()
+                .messageId("m-2")
+                .direction("IN")
+                .method("GET")
+                .statusCode(200)
+                .url("/test")
+                .build();
+        ConsumerRecord<String, byte[]> auditRecord =
+                new ConsumerRecord<>("topic", 0, 0, "key", objectMapper.writeValueAsBytes(auditLogDto));
+        ConsumerRecord<String, byte[]> httpRecord =
+                new ConsumerRecord<>("topic", 0, 1, "key", objectMapper.writeValueAsBytes(httpLogDto));
+
+        AuditLogEntity auditEntity = AuditLogEntity.builder().messageId("m-1").build();
+        HttpLogEntity httpEntity = HttpLogEntity.builder().messageId("m-2").build();
+        when(auditLogService.toEntity(auditLogDto, auditRecord)).thenReturn(auditEntity);
+        when(httpLogService.toEntity(httpLogDto, httpRecord)).thenReturn(httpEntity);
+
+        listener.handleBatch(List.of(auditRecord, httpRecord));
+
+        verify(logBatchService).saveBatch(List.of(auditEntity), List.of(httpEntity));
+        verifyNoInteractions(deadLetterPublishingRecoverer);
+    }
+
+    @Test
+    void handleBatch_invalidMessage_shouldSendItToDeadLetterAndSaveRest() throws Exception {
+        HttpLogDto httpLogDto = HttpLogDto.builder()
+                .messageId("m-1")
+                .direction("IN")
+                .method("GET")
+                .statusCode(200)
+                .url("/test")
+                .build();
+        ConsumerRecord<String, byte[]> invalidRecord =
+                new ConsumerRecord<>("topic", 0, 0, "key", "{invalid-json}".getBytes(StandardCharsets.UTF_8));
+        ConsumerRecord<String, byte[]> httpRecord =
+                new ConsumerRecord<>("topic", 0, 1, "key", objectMapper.writeValueAsBytes(httpLogDto));
+        HttpLogEntity httpEntity = HttpLogEntity.builder().messageId("m-1").build();
+        when(httpLogService.toEntity(httpLogDto, httpRecord)).thenReturn(httpEntity);
+
+        listener.handleBatch(List.of(invalidRecord, httpRecord));
+
+        verify(deadLetterPublishingRecoverer).accept(eq(invalidRecord), isA(UnparsableLogException.class));
+        verify(logBatchService).saveBatch(List.of(), List.of(httpEntity));
+        verifyNoMoreInteractions(deadLetterPublishingRecoverer);
+    }
+
+    @Test
+    void handleBatch_schemaRegistryUnavailable_shouldSendMessageToRetryAndSaveRest() throws Exception {
+        HttpLogDto httpLogDto = HttpLogDto.builder()
+                .messageId("m-1")
+                .direction("IN")
+                .method("GET")
+                .statusCode(200)
+                .url("/test")
+                .build();
+        // заголовок Avro: нулевой байт и идентификатор схемы 7
+        ConsumerRecord<String, byte[]> avroRecord =
+                new ConsumerRecord<>("topic", 0, 0, "key", new byte[]{0, 0, 0, 0, 7, 2});
+        avroRecord.headers().add(WireFormat.HEADER, WireFormat.AVRO.contentType().getBytes(StandardCharsets.UTF_8));
+        ConsumerRecord<String, byte[]> httpRecord =
+                new ConsumerRecord<>("topic", 0, 1, "key", objectMapper.writeValueAsBytes(httpLogDto));
+        HttpLogEntity httpEntity = HttpLogEntity.builder().messageId("m-1").build();
+        IllegalStateException failure = new IllegalStateException("Schema registry is unavailable");
+        when(schemaRegistry.schema(7)).thenThrow(failure);
+        when(httpLogService.toEntity(httpLogDto, httpRecord)).thenReturn(httpEntity);
+
+        listener.handleBatch(List.of(avroRecord, httpRecord));
+
+        // исходное исключение, а не UnparsableLogException: сообщение уходит в топик повторов, а не в DLT
+        verify(deadLetterPublishingRecoverer).accept(avroRecord, failure);
+        verify(logBatchService).saveBatch(List.of(), List.of(httpEntity));
+        verifyNoMoreInteractions(deadLetterPublishingRecoverer);
+    }
+
+    @Test
+    void handleBatch_saveFailure_shouldSendParsedMessagesToRetry() throws Exception {
+        AuditLogDto auditLogDto = AuditLogDto.builder()
+                .messageId("m-1")
+                .id("123")
+                .type("START")
+                .methodName("Test.method")
+                .logLevel("INFO")
+                .build();
+        ConsumerRecord<String, byte[]> first =
+                new ConsumerRecord<>("topic", 0, 0, "key", objectMapper.writeValueAsBytes(auditLogDto));
+        ConsumerRecord<String, byte[]> second =
+                new ConsumerRecord<>("topic", 0, 1, "key", objectMapper.writeValueAsBytes(auditLogDto));
+        when(auditLogService.toEntity(eq(auditLogDto), any())).thenReturn(AuditLogEntity.builder().build());
+        RuntimeException failure = new RuntimeException("db down");
+        doThrow(failure).when(logBatchService).saveBatch(any(), any());
+
+        listener.handleBatch(List.of(first, second));
+
+        verify(deadLetterPublishingRecoverer).accept(first, failure);
+        verify(deadLetterPublishingRecoverer).accept(second, failure);
+    }
+
+    @Test
+    void handleBatch_databaseUnavailable_shouldSpillInsteadOfRetry() throws Exception {
+        AuditLogDto auditLogDto = AuditLogDto.builder()
+                .messageId("m-1")
+                .id("123")
+                .type("START")
+                .methodName("Test.method")
+                .logLevel("INFO")
+                .build();
+        ConsumerRecord<String, byte[]> auditRecord =
+                new ConsumerRecord<>("topic", 0, 0, "key", objectMapper.writeValueAsBytes(auditLogDto));
+        when(auditLogService.toEntity(auditLogDto, auditRecord)).thenReturn(AuditLogEntity.builder().build());
+        CannotCreateTransactionException failure = new CannotCreateTransactionException("connection refused");
+        doThrow(failure).when(logBatchService).saveBatch(any(), any());
+        when(spillLog.spill(List.of(auditRecord), failure)).thenReturn(true);
+
+        listener.handleBatch(List.of(auditRecord));
+
+        verifyNoInteractions(deadLetterPublishingRecoverer);
+    }
+
+    @Test
+    void handleBatch_databaseDown_shouldSpillWithoutSaving() throws Exception {
+        AuditLogDto auditLogDto = AuditLogDto.builder()
+                .messageId("m-1")
+                .id("123")
+                .type("START")
+                .methodName("Test.method")
+                .logLevel("INFO")
+                .build();
+        ConsumerRecord<String, byte[]> auditRecord =
+                new ConsumerRecord<>("topic", 0, 0, "key", objectMapper.writeValueAsBytes(auditLogDto));
+        when(auditLogService.toEntity(auditLogDto, auditRecord)).thenReturn(AuditLogEntity.builder().build());
+        when(spillLog.isDatabaseDown()).thenReturn(true);
+        when(spillLog.spill(List.of(auditRecord))).thenReturn(true);
+
+        listener.handleBatch(List.of(auditRecord));
+
+        verifyNoInteractions(logBatchService, deadLetterPublishingRecoverer);
+    }
+
+}
@@ -1,17 +1,30 @@
 package org.ex9.auditlistener.listener;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.ex9.auditlistener.event.AuditLogDto;
 import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.format.SchemaRegistry;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
 import org.ex9.auditlistener.service.AuditLogService;
 import org.ex9.auditlistener.service.HttpLogService;
+import org.ex9.auditlistener.spill.SpillLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
@@ -23,6 +36,10 @@ class AuditKafkaListenerTest {
     private AuditLogService auditLogService;
     @Mock
     private HttpLogService httpLogService;
+    @Mock
+    private SpillLog spillLog;
+    @Mock
+    private SchemaRegistry schemaRegistry;
 
     @InjectMocks
     private AuditKafkaListener listener;
@@ -31,7 +48,8 @@ class AuditKafkaListenerTest {
 
     @BeforeEach
     void setUp() {
-        listener = new AuditKafkaListener(auditLogService, httpLogService, objectMapper);
+        listener = new AuditKafkaListener(new LogRecordProcessor(auditLogService, httpLogService,
+                new LogEventParser(objectMapper, schemaRegistry), new IngestionMetrics(new SimpleMeterRegistry()), spillLog));
     }
 
     @Test
@@ -42,8 +60,8 @@ class AuditKafkaListenerTest {
                 .methodName("Test.method")
                 .build();
         String message = objectMapper.writeValueAsString(auditLogDto);
-        ConsumerRecord<String, String> record =
-                new ConsumerRecord<>("topic", 0, 0, "key", message);
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("topic", 0, 0, "key", message.getBytes(StandardCharsets.UTF_8));
 
         listener.handle(record);
 
@@ -60,8 +78,8 @@ class AuditKafkaListenerTest {
                 .url("/test")
                 .build();
         String message = objectMapper.writeValueAsString(httpLogDto);
-        ConsumerRecord<String, String> record =
-                new ConsumerRecord<>("topic", 0, 0, "key", message);
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("topic", 0, 0, "key", message.getBytes(StandardCharsets.UTF_8));
 
         listener.handle(record);
 
@@ -72,10 +90,10 @@ class AuditKafkaListenerTest {
     @Test
     void handleInvalidJson_shouldThrowException() {
         String invalidJson = "{invalid-json}";
-        ConsumerRecord<String, String> record =
-                new ConsumerRecord<>("topic", 0, 0, "key", invalidJson);
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("topic", 0, 0, "key", invalidJson.getBytes(StandardCharsets.UTF_8));
 
-        assertThrows(RuntimeException.class, () -> listener.handle(record));
+        assertThrows(UnparsableLogException.class, () -> listener.handle(record));
 
         verifyNoInteractions(auditLogService, httpLogService);
     }
@@ -83,11 +101,41 @@ class AuditKafkaListenerTest {
     @Test
     void handleUnknownMessageType_shouldThrowException() {
         String unknownMessage = "{\"unknownField\":\"value\"}";
-        ConsumerRecord<String, String> record =
-                new ConsumerRecord<>("topic", 0, 0, "key", unknownMessage);
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("topic", 0, 0, "key", unknownMessage.getBytes(StandardCharsets.UTF_8));
 
         assertThrows(RuntimeException.class, () -> listener.handle(record));
 
         verifyNoInteractions(auditLogService, httpLogService);
     }
+
+    @Test
+    void handle_transactionCannotBeOpened_shouldSpillRecord() throws Exception {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any()))
+                .thenThrow(new CannotCreateTransactionException("Connection refused"));
+        when(spillLog.spill(anyList(), any(Exception.class))).thenReturn(true);
+        AuditKafkaListener transactionalListener = transactional(new AuditKafkaListener(new LogRecordProcessor(
+                transactional(auditLogService, transactionManager), transactional(httpLogService, transactionManager),
+                new LogEventParser(objectMapper, schemaRegistry), new IngestionMetrics(new SimpleMeterRegistry()),
+                spillLog)), transactionManager);
+        String message = objectMapper.writeValueAsString(AuditLogDto.builder().id("123").type("START").build());
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("topic", 0, 0, "key", message.getBytes(StandardCharsets.UTF_8));
+
+        transactionalListener.handle(record);
+
+        verify(spillLog).spill(eq(List.of(record)), isA(CannotCreateTransactionException.class));
+        verifyNoInteractions(auditLogService);
+    }
+
+    // прокси с обработкой @Transactional, как у бина в контексте Spring
+    @SuppressWarnings("unchecked")
+    private static <T> T transactional(T target, PlatformTransactionManager transactionManager) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager,
+                new AnnotationTransactionAttributeSource()));
+        return (T) proxyFactory.getProxy();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package org.ex9.auditlistener.listener;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.batching.AdaptiveBatchController;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BufferedAuditKafkaListenerTest {
+
+    private static final AdaptiveBatchController STATIC_BATCHES = new AdaptiveBatchController(false, 500, 50, 2000,
+            50, 0.5, Duration.ofMillis(200), Duration.ZERO, Duration.ofMillis(500), Duration.ofMillis(20));
+
+    @Mock
+    private LogBatchProcessor logBatchProcessor;
+    @Mock
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+    @Mock
+    private MessageListenerContainer container;
+    @Mock
+    private Acknowledgment firstAcknowledgment;
+    @Mock
+    private Acknowledgment secondAcknowledgment;
+
+    private BufferedAuditKafkaListener listener;
+
+    @AfterEach
+    void tearDown() {
+        if (listener != null) {
+            listener.shutdown();
+        }
+    }
+
+    @Test
+    void handleBatch_shouldAcknowledgePollsInOrderAfterFlush() {
+        listener = listener(100, 50, 10, 3);
+
+        listener.handleBatch(records(0, 5), firstAcknowledgment);
+        listener.handleBatch(records(5, 4), secondAcknowledgment);
+        verify(logBatchProcessor, never()).process(anyList());
+        verifyNoInteractions(firstAcknowledgment, secondAcknowledgment);
+
+        listener.start();
+
+        InOrder inOrder = inOrder(firstAcknowledgment, secondAcknowledgment);
+        inOrder.verify(firstAcknowledgment, timeout(1000)).acknowledge();
+        inOrder.verify(secondAcknowledgment, timeout(1000)).acknowledge();
+        verify(logBatchProcessor, times(3)).process(anyList());
+    }
+
+    @Test
+    void handleBatch_aboveHighWatermark_shouldPauseUntilLowWatermark() {
+        when(kafkaListenerEndpointRegistry.getListenerContainer(BufferedAuditKafkaListener.LISTENER_ID))
+                .thenReturn(container);
+        listener = listener(8, 2, 10, 3);
+
+        listener.handleBatch(records(0, 10), firstAcknowledgment);
+
+        verify(container).pause();
+        verify(container, never()).resume();
+
+        listener.start();
+
+        verify(container, timeout(1000)).resume();
+        verify(firstAcknowledgment, timeout(1000)).acknowledge();
+    }
+
+    @Test
+    void handleBatch_flushFailure_shouldRetryBeforeAcknowledging() {
+        when(logBatchProcessor.process(anyList())).thenThrow(new IllegalStateException("kafka down")).thenReturn(true);
+        listener = listener(100, 50, 10, 10);
+
+        listener.handleBatch(records(0, 3), firstAcknowledgment);
+        listener.start();
+
+        verify(firstAcknowledgment, timeout(1000)).acknowledge();
+        verify(logBatchProcessor, times(2)).process(anyList());
+    }
+
+    @Test
+    void constructor_invalidWatermarks_shouldThrow() {
+        IngestionMetrics metrics = new IngestionMetrics(new SimpleMeterRegistry());
+
+        assertThrows(IllegalArgumentException.class, () -> new BufferedAuditKafkaListener(logBatchProcessor,
+                STATIC_BATCHES, kafkaListenerEndpointRegistry, metrics, 100, 10, 10, 10, 1, 10, 1, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new BufferedAuditKafkaListener(logBatchProcessor,
+                STATIC_BATCHES, kafkaListenerEndpointRegistry, metrics, 100, 95, 10, 10, 1, 10, 1, Duration.ZERO));
+        // три consumer'а могут добавить по poll после верхней границы: 50 + 3 * 20 > 100
+        assertThrows(IllegalArgumentException.class, () -> new BufferedAuditKafkaListener(logBatchProcessor,
+                STATIC_BATCHES, kafkaListenerEndpointRegistry, metrics, 100, 50, 10, 20, 3, 10, 1, Duration.ZERO));
+    }
+
+    private BufferedAuditKafkaListener listener(int highWatermark, int lowWatermark, int maxPollRecords,
+                                                int flushSize) {
+        return new BufferedAuditKafkaListener(logBatchProcessor, STATIC_BATCHES, kafkaListenerEndpointRegistry,
+                new IngestionMetrics(new SimpleMeterRegistry()), highWatermark + maxPollRecords,
+                highWatermark, lowWatermark, maxPollRecords, 1, flushSize, 1, Duration.ofMillis(10));
+    }
+
+    private static List<ConsumerRecord<String, byte[]>> records(int offset, int count) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>(count);
+        for (int i = offset; i < offset + count; i++) {
+            records.add(new ConsumerRecord<>("topic", 0, i, null, "{}".getBytes(StandardCharsets.UTF_8)));
+        }
+        return records;
+    }
+
+}
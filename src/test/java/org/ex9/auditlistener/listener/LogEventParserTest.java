@@ -0,0 +1,204 @@
+package org.ex9.auditlistener.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.avro.AvroMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.ex9.auditlistener.format.FileSchemaRegistry;
+import org.ex9.auditlistener.format.WireFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogEventParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FileSchemaRegistry schemaRegistry = new FileSchemaRegistry(new DefaultResourceLoader(), "classpath:avro/");
+    private final LogEventParser parser = new LogEventParser(objectMapper, schemaRegistry);
+
+    private static final AuditLogDto AUDIT_LOG = AuditLogDto.builder()
+            .messageId("m-5")
+            .id("123")
+            .type("END")
+            .methodName("Test.method")
+            .args(new Object[]{"a", 1, true, null})
+            .result("ok")
+            .logLevel("INFO")
+            .timestamp("2025-01-01T10:00:00")
+            .build();
+
+    private static final HttpLogDto HTTP_LOG = HttpLogDto.builder()
+            .messageId("m-6")
+            .direction("Incoming")
+            .method("POST")
+            .statusCode(201)
+            .url("/api")
+            .requestBody("{\"items\":[1,2]}")
+            .responseBody("тело ответа \uD83D\uDE00")
+            .timestamp("2025-01-01T10:00:00")
+            .build();
+
+    @Test
+    void parse_auditLog_shouldMatchDatabind() throws Exception {
+        AuditLogDto expected = AuditLogDto.builder()
+                .messageId("m-1")
+                .id("123")
+                .type("END")
+                .methodName("Test.method")
+                .args(new Object[]{"a", 1, true})
+                .result("ok")
+                .logLevel("INFO")
+                .timestamp("2025-01-01T10:00:00")
+                .build();
+
+        LogDto actual = parser.parse(objectMapper.writeValueAsString(expected));
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void parse_httpLog_shouldDetectTypeRegardlessOfFieldOrder() throws Exception {
+        String message = """
+                {"url":"/api","requestBody":"{}","unknown":{"nested":[1,2]},
+                 "statusCode":201,"method":"POST","messageId":"m-2","direction":"Incoming"}
+                """;
+
+        LogDto actual = parser.parse(message);
+
+        HttpLogDto http = assertInstanceOf(HttpLogDto.class, actual);
+        assertEquals("m-2", http.getMessageId());
+        assertEquals("POST", http.getMethod());
+        assertEquals(201, http.getStatusCode());
+        assertEquals("/api", http.getUrl());
+        assertEquals("{}", http.getRequestBody());
+        assertNull(http.getTimestamp());
+    }
+
+    @Test
+    void parse_bytes_shouldPassBodiesAsUtf8() throws Exception {
+        HttpLogDto expected = HttpLogDto.builder()
+                .messageId("m-3")
+                .direction("Incoming")
+                .method("POST")
+                .statusCode(200)
+                .url("/api")
+                .requestBody("тело запроса")
+                .responseBody("{\"quoted\":\"va\\lue\"}\n\t\u0001 \uD83D\uDE00 é")
+                .timestamp("2025-01-01T10:00:00")
+                .build();
+        byte[] message = objectMapper.writeValueAsBytes(expected);
+
+        LogDto actual = parser.parse(message);
+
+        HttpLogDto http = assertInstanceOf(HttpLogDto.class, actual);
+        // тело без escape-последовательностей — фрагмент самого сообщения
+        assertSame(message, http.getRawRequestBody().array());
+        assertNotNull(http.getRawResponseBody());
+        assertEquals(expected, http);
+        assertEquals("тело запроса", http.getRequestBody());
+    }
+
+    @Test
+    void parse_bytes_shouldUnescapeUnicodeEscapes() throws Exception {
+        byte[] message = """
+                {"direction":"IN","method":"GET","statusCode":200,"url":"/",
+                 "requestBody":"\\u0442\\u0435\\u043b\\u043e \\ud83d\\ude00 \\/ \\ud83d"}
+                """.getBytes(StandardCharsets.UTF_8);
+
+        HttpLogDto http = assertInstanceOf(HttpLogDto.class, parser.parse(message));
+
+        assertEquals("тело \uD83D\uDE00 / ?", http.getRequestBody());
+    }
+
+    @Test
+    void parse_unknownType_shouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("{\"method\":\"GET\"}"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse("[1, 2]"));
+    }
+
+    @Test
+    void parse_invalidValues_shouldThrowJsonProcessingException() {
+        assertThrows(JsonProcessingException.class, () -> parser.parse("{invalid-json}"));
+        assertThrows(JsonProcessingException.class,
+                () -> parser.parse("{\"id\":{\"x\":1},\"methodName\":\"m\",\"logLevel\":\"INFO\"}"));
+    }
+
+    @Test
+    void parse_invalidStatusCode_shouldThrowIllegalArgument() throws Exception {
+        String template = "{\"direction\":\"IN\",\"method\":\"GET\",\"url\":\"/\",\"statusCode\":%s}";
+
+        for (String statusCode : List.of("\"abc\"", "200.5", "4000000000", "null", "true", "{\"code\":200}")) {
+            assertThrows(IllegalArgumentException.class, () -> parser.parse(template.formatted(statusCode)), statusCode);
+            assertThrows(IllegalArgumentException.class,
+                    () -> parser.parse(template.formatted(statusCode).getBytes(StandardCharsets.UTF_8)), statusCode);
+        }
+        assertEquals(404, ((HttpLogDto) parser.parse(template.formatted("\"404\""))).getStatusCode());
+    }
+
+    @Test
+    void parse_recordWithoutContentType_shouldReadJson() throws Exception {
+        LogDto actual = parser.parse(record(objectMapper.writeValueAsBytes(HTTP_LOG), null));
+
+        assertEquals(HTTP_LOG, actual);
+    }
+
+    @Test
+    void parse_smileAndCbor_shouldDecodeStraightToDto() throws Exception {
+        SmileMapper smile = new SmileMapper();
+        CBORMapper cbor = new CBORMapper();
+
+        assertEquals(AUDIT_LOG, parser.parse(record(smile.writeValueAsBytes(AUDIT_LOG), "application/x-jackson-smile")));
+        assertEquals(HTTP_LOG, parser.parse(record(smile.writeValueAsBytes(HTTP_LOG), "application/x-jackson-smile")));
+        assertEquals(AUDIT_LOG, parser.parse(record(cbor.writeValueAsBytes(AUDIT_LOG), "application/cbor")));
+        assertEquals(HTTP_LOG, parser.parse(record(cbor.writeValueAsBytes(HTTP_LOG), "\"application/cbor\"")));
+    }
+
+    @Test
+    void parse_avro_shouldReadWithSchemaFromRegistry() throws Exception {
+        assertEquals(AUDIT_LOG, parser.parse(record(avro(1, AUDIT_LOG), "application/vnd.apache.avro+binary")));
+        assertEquals(HTTP_LOG, parser.parse(record(avro(2, HTTP_LOG), "avro/binary")));
+    }
+
+    @Test
+    void parse_avroWithUnknownSchemaOrWithoutHeader_shouldThrowIllegalArgument() throws Exception {
+        byte[] unknownSchema = avro(1, AUDIT_LOG);
+        unknownSchema[4] = 99;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(record(unknownSchema, "application/vnd.apache.avro+binary")));
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(record(new byte[]{1, 2}, "application/vnd.apache.avro+binary")));
+    }
+
+    @Test
+    void parse_unsupportedContentType_shouldThrowIllegalArgument() {
+        assertEquals(WireFormat.JSON, WireFormat.fromContentType("application/json; charset=UTF-8"));
+        assertEquals(WireFormat.JSON, WireFormat.fromContentType("application/vnd.audit.v1+json"));
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(record("{}".getBytes(StandardCharsets.UTF_8), "application/xml")));
+    }
+
+    private byte[] avro(int schemaId, LogDto log) throws Exception {
+        AvroMapper avroMapper = new AvroMapper();
+        byte[] record = avroMapper.writer(schemaRegistry.schema(schemaId)).writeValueAsBytes(log);
+        return ByteBuffer.allocate(5 + record.length).put((byte) 0).putInt(schemaId).put(record).array();
+    }
+
+    private static ConsumerRecord<String, byte[]> record(byte[] value, String contentType) {
+        ConsumerRecord<String, byte[]> consumerRecord = new ConsumerRecord<>("topic", 0, 0, "key", value);
+        if (contentType != null) {
+            consumerRecord.headers().add(WireFormat.HEADER, contentType.getBytes(StandardCharsets.UTF_8));
+        }
+        return consumerRecord;
+    }
+}
@@ -0,0 +1,183 @@
+package org.ex9.auditlistener.listener;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.ex9.auditlistener.config.KafkaConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpoint;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.mock.MockProducerFactory;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LogRetryKafkaListenerTest {
+
+    private final RetryTopics retryTopics =
+            new RetryTopics("audit-log", 3, Duration.ofSeconds(1), 5, Duration.ofMinutes(5));
+
+    @Mock
+    private LogRecordProcessor logRecordProcessor;
+    @Mock
+    private BeanFactory beanFactory;
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private final List<MockProducer<String, byte[]>> producers = new ArrayList<>();
+
+    private LogRetryKafkaListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new LogRetryKafkaListener(logRecordProcessor, retryTopics, beanFactory);
+    }
+
+    @Test
+    void configureKafkaListeners_shouldRegisterEndpointPerRetryTopic() {
+        KafkaListenerContainerFactory<?> factory = mock(KafkaListenerContainerFactory.class);
+        KafkaListenerEndpointRegistrar registrar = mock(KafkaListenerEndpointRegistrar.class);
+        when(beanFactory.getBean("retryKafkaListenerContainerFactory", KafkaListenerContainerFactory.class))
+                .thenReturn(factory);
+
+        listener.configureKafkaListeners(registrar);
+
+        ArgumentCaptor<KafkaListenerEndpoint> endpoints = ArgumentCaptor.forClass(KafkaListenerEndpoint.class);
+        verify(registrar, times(3)).registerEndpoint(endpoints.capture(), eq(factory));
+        assertEquals(List.of("audit-log-retry-0", "audit-log-retry-1", "audit-log-retry-2"),
+                endpoints.getAllValues().stream().flatMap(e -> e.getTopics().stream()).toList());
+    }
+
+    @Test
+    void handle_beforeDueTime_shouldNackUntilDueWithoutProcessing() {
+        ConsumerRecord<String, byte[]> consumerRecord =
+                retryRecord("audit-log-retry-1", Long.toString(System.currentTimeMillis() + 5_000));
+
+        listener.handle(consumerRecord, acknowledgment);
+
+        ArgumentCaptor<Duration> sleep = ArgumentCaptor.forClass(Duration.class);
+        verify(acknowledgment).nack(sleep.capture());
+        assertTrue(sleep.getValue().toMillis() > 4_000 && sleep.getValue().toMillis() <= 5_000, sleep.getValue().toString());
+        verify(acknowledgment, never()).acknowledge();
+        verifyNoInteractions(logRecordProcessor);
+    }
+
+    @Test
+    void handle_dueTimePassed_shouldProcessAndAcknowledge() {
+        ConsumerRecord<String, byte[]> consumerRecord =
+                retryRecord("audit-log-retry-1", Long.toString(System.currentTimeMillis() - 1));
+
+        listener.handle(consumerRecord, acknowledgment);
+
+        verify(logRecordProcessor).process(consumerRecord);
+        verify(acknowledgment).acknowledge();
+        verify(acknowledgment, never()).nack(any(Duration.class));
+    }
+
+    @Test
+    void handle_missingOrInvalidDueHeader_shouldProcessImmediately() {
+        ConsumerRecord<String, byte[]> missing = retryRecord("audit-log-retry-0", null);
+        ConsumerRecord<String, byte[]> invalid = retryRecord("audit-log-retry-0", "soon");
+
+        listener.handle(missing, acknowledgment);
+        listener.handle(invalid, acknowledgment);
+
+        verify(logRecordProcessor).process(missing);
+        verify(logRecordProcessor).process(invalid);
+        verify(acknowledgment, times(2)).acknowledge();
+    }
+
+    @Test
+    void handle_processingFails_shouldNotAcknowledge() {
+        ConsumerRecord<String, byte[]> consumerRecord = retryRecord("audit-log-retry-0", null);
+        doThrow(new IllegalStateException("db down")).when(logRecordProcessor).process(consumerRecord);
+
+        assertThrows(IllegalStateException.class, () -> listener.handle(consumerRecord, acknowledgment));
+
+        verifyNoInteractions(acknowledgment);
+    }
+
+    @Test
+    void recoverer_shouldMoveFailedMessageThroughTiersIntoDeadLetterTopic() {
+        DeadLetterPublishingRecoverer recoverer = recoverer();
+        RuntimeException failure = new IllegalStateException("db down");
+
+        long before = System.currentTimeMillis();
+        recoverer.accept(retryRecord("audit-log", null), failure);
+        recoverer.accept(retryRecord("audit-log-retry-0", null), failure);
+        recoverer.accept(retryRecord("audit-log-retry-1", null), failure);
+        recoverer.accept(retryRecord("audit-log-retry-2", null), failure);
+        long after = System.currentTimeMillis();
+
+        List<ProducerRecord<String, byte[]>> published = published();
+        assertEquals(List.of("audit-log-retry-0", "audit-log-retry-1", "audit-log-retry-2", "audit-log-dlt"),
+                published.stream().map(ProducerRecord::topic).toList());
+        long[] delays = {1_000, 5_000, 25_000, 0};
+        for (int i = 0; i < delays.length; i++) {
+            ProducerRecord<String, byte[]> producerRecord = published.get(i);
+            long dueAt = Long.parseLong(header(producerRecord, RetryTopics.DUE_AT_HEADER));
+            assertTrue(dueAt >= before + delays[i] && dueAt <= after + delays[i], producerRecord.topic());
+            assertEquals("key", producerRecord.key());
+            assertArrayEquals("{}".getBytes(StandardCharsets.UTF_8), producerRecord.value());
+        }
+    }
+
+    @Test
+    void recoverer_unparsableMessage_shouldSkipRetryTiers() {
+        recoverer().accept(retryRecord("audit-log", null), new UnparsableLogException("bad json", null));
+
+        assertEquals(List.of("audit-log-dlt"), published().stream().map(ProducerRecord::topic).toList());
+    }
+
+    // нетранзакционный шаблон закрывает producer после каждой отправки, поэтому каждый раз выдаётся новый
+    private DeadLetterPublishingRecoverer recoverer() {
+        return new KafkaConfig(new SimpleMeterRegistry(), retryTopics, null)
+                .deadLetterPublishingRecoverer(new MockProducerFactory<>(() -> {
+                    MockProducer<String, byte[]> producer =
+                            new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+                    producers.add(producer);
+                    return producer;
+                }));
+    }
+
+    private List<ProducerRecord<String, byte[]>> published() {
+        return producers.stream().flatMap(producer -> producer.history().stream()).toList();
+    }
+
+    private static ConsumerRecord<String, byte[]> retryRecord(String topic, String dueAt) {
+        ConsumerRecord<String, byte[]> consumerRecord =
+                new ConsumerRecord<>(topic, 0, 7, "key", "{}".getBytes(StandardCharsets.UTF_8));
+        if (dueAt != null) {
+            consumerRecord.headers().add(RetryTopics.DUE_AT_HEADER, dueAt.getBytes(StandardCharsets.UTF_8));
+        }
+        return consumerRecord;
+    }
+
+    private static String header(ProducerRecord<String, byte[]> producerRecord, String name) {
+        Header header = producerRecord.headers().lastHeader(name);
+        assertNotNull(header, name);
+        return new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+}
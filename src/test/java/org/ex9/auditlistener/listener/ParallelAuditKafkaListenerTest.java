@@ -0,0 +1,128 @@
+package org.ex9.auditlistener.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.format.SchemaRegistry;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.service.AuditLogService;
+import org.ex9.auditlistener.service.HttpLogService;
+import org.ex9.auditlistener.spill.SpillLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ParallelAuditKafkaListenerTest {
+
+    @Mock
+    private AuditLogService auditLogService;
+    @Mock
+    private HttpLogService httpLogService;
+    @Mock
+    private Consumer<?, ?> consumer;
+    @Mock
+    private SpillLog spillLog;
+    @Mock
+    private SchemaRegistry schemaRegistry;
+
+    private ParallelAuditKafkaListener listener;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        listener = new ParallelAuditKafkaListener(new LogRecordProcessor(auditLogService, httpLogService,
+                new LogEventParser(objectMapper, schemaRegistry), new IngestionMetrics(new SimpleMeterRegistry()), spillLog),
+                "key", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listener.shutdown();
+    }
+
+    @Test
+    void handleBatch_allProcessed_shouldCommitEveryPartition() throws Exception {
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, 0, "a", "/a0"),
+                record(0, 1, "b", "/b1"),
+                record(1, 5, "a", "/a5"));
+
+        listener.handleBatch(records, consumer);
+
+        verify(httpLogService, times(3)).saveHttpLog(any(), any());
+        verify(consumer).commitSync(Map.of(
+                new TopicPartition("topic", 0), new OffsetAndMetadata(2),
+                new TopicPartition("topic", 1), new OffsetAndMetadata(6)));
+    }
+
+    @Test
+    void handleBatch_failure_shouldCommitOnlyUpToFirstUnprocessedOffset() throws Exception {
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, 0, "a", "/a0"),
+                record(0, 1, "b", "/fail"),
+                record(0, 2, "a", "/a2"),
+                record(0, 3, "b", "/b3"),
+                record(1, 7, "c", "/c7"));
+        // lenient: остальные дорожки вызывают метод с другими аргументами из своих потоков
+        lenient().doThrow(new IllegalStateException("db down"))
+                .when(httpLogService).saveHttpLog(argThat(dto -> "/fail".equals(dto.getUrl())), any());
+
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class,
+                () -> listener.handleBatch(records, consumer));
+
+        assertEquals(1, e.getIndex());
+        // дорожка "b" остановилась на ошибке, дорожка "a" продолжила работу
+        verify(httpLogService, never()).saveHttpLog(argThat(dto -> "/b3".equals(dto.getUrl())), any());
+        verify(httpLogService).saveHttpLog(argThat(dto -> "/a2".equals(dto.getUrl())), any());
+        verify(consumer).commitSync(Map.of(
+                new TopicPartition("topic", 0), new OffsetAndMetadata(1),
+                new TopicPartition("topic", 1), new OffsetAndMetadata(8)));
+    }
+
+    @Test
+    void handleBatch_unparsableMessage_shouldFailWithUnparsableLogException() throws Exception {
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(0, 0, "a", "/a0"),
+                new ConsumerRecord<>("topic", 0, 1, "a", "{invalid-json}".getBytes(StandardCharsets.UTF_8)));
+
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class,
+                () -> listener.handleBatch(records, consumer));
+
+        // по UnparsableLogException RetryTopics отправляет сообщение сразу в DLT, минуя топики повторов
+        assertEquals(1, e.getIndex());
+        assertInstanceOf(UnparsableLogException.class, e.getCause());
+        verify(consumer).commitSync(Map.of(new TopicPartition("topic", 0), new OffsetAndMetadata(1)));
+    }
+
+    private ConsumerRecord<String, byte[]> record(int partition, long offset, String key, String url) throws Exception {
+        HttpLogDto httpLogDto = HttpLogDto.builder()
+                .messageId(url)
+                .direction("IN")
+                .method("GET")
+                .statusCode(200)
+                .url(url)
+                .build();
+        return new ConsumerRecord<>("topic", partition, offset, key, objectMapper.writeValueAsBytes(httpLogDto));
+    }
+}
@@ -0,0 +1,46 @@
+package org.ex9.auditlistener.listener;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryTopicsTest {
+
+    private final RetryTopics retryTopics =
+            new RetryTopics("audit-log", 3, Duration.ofSeconds(1), 5, Duration.ofSeconds(10));
+
+    @Test
+    void retryTopics_shouldGrowDelayExponentiallyUpToMax() {
+        assertEquals(List.of("audit-log-retry-0", "audit-log-retry-1", "audit-log-retry-2"), retryTopics.retryTopics());
+        assertEquals(Duration.ofSeconds(1), retryTopics.delay("audit-log-retry-0"));
+        assertEquals(Duration.ofSeconds(5), retryTopics.delay("audit-log-retry-1"));
+        assertEquals(Duration.ofSeconds(10), retryTopics.delay("audit-log-retry-2"));
+        assertEquals(Duration.ZERO, retryTopics.delay("audit-log"));
+    }
+
+    @Test
+    void destination_shouldMoveToNextTierThenDeadLetter() {
+        RuntimeException failure = new RuntimeException("db down");
+
+        assertEquals("audit-log-retry-0", retryTopics.destination(record("audit-log"), failure));
+        assertEquals("audit-log-retry-1", retryTopics.destination(record("audit-log-retry-0"), failure));
+        assertEquals("audit-log-retry-2", retryTopics.destination(record("audit-log-retry-1"), failure));
+        assertEquals("audit-log-dlt", retryTopics.destination(record("audit-log-retry-2"), failure));
+    }
+
+    @Test
+    void destination_unparsableMessage_shouldGoStraightToDeadLetter() {
+        RuntimeException failure = new RuntimeException("listener failed",
+                new UnparsableLogException("Failed to parse audit message", null));
+
+        assertEquals("audit-log-dlt", retryTopics.destination(record("audit-log"), failure));
+    }
+
+    private static ConsumerRecord<String, String> record(String topic) {
+        return new ConsumerRecord<>(topic, 0, 0, "key", "{}");
+    }
+}
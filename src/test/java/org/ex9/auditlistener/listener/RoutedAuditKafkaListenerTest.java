@@ -0,0 +1,83 @@
+package org.ex9.auditlistener.listener;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpoint;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoutedAuditKafkaListenerTest {
+
+    @Mock
+    private LogBatchProcessor logBatchProcessor;
+    @Mock
+    private BeanFactory beanFactory;
+    @Mock
+    private KafkaListenerEndpointRegistrar registrar;
+    @Mock
+    private KafkaListenerContainerFactory<?> auditFactory;
+    @Mock
+    private KafkaListenerContainerFactory<?> httpFactory;
+
+    private RoutedAuditKafkaListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new RoutedAuditKafkaListener(logBatchProcessor, beanFactory, "audit-log", "audit-log-http");
+    }
+
+    @Test
+    void configureKafkaListeners_shouldRegisterEndpointPerTypeWithOwnFactoryAndGroup() {
+        when(beanFactory.getBean("auditTopicKafkaListenerContainerFactory", KafkaListenerContainerFactory.class))
+                .thenReturn(auditFactory);
+        when(beanFactory.getBean("httpTopicKafkaListenerContainerFactory", KafkaListenerContainerFactory.class))
+                .thenReturn(httpFactory);
+
+        listener.configureKafkaListeners(registrar);
+
+        ArgumentCaptor<KafkaListenerEndpoint> audit = ArgumentCaptor.forClass(KafkaListenerEndpoint.class);
+        ArgumentCaptor<KafkaListenerEndpoint> http = ArgumentCaptor.forClass(KafkaListenerEndpoint.class);
+        verify(registrar).registerEndpoint(audit.capture(), eq(auditFactory));
+        verify(registrar).registerEndpoint(http.capture(), eq(httpFactory));
+        verifyNoMoreInteractions(registrar);
+
+        assertEquals(RoutedAuditKafkaListener.AUDIT_LISTENER_ID, audit.getValue().getId());
+        assertEquals("audit-log-group", audit.getValue().getGroupId());
+        assertIterableEquals(List.of("audit-log"), audit.getValue().getTopics());
+        assertEquals(RoutedAuditKafkaListener.HTTP_LISTENER_ID, http.getValue().getId());
+        assertEquals("audit-log-http-group", http.getValue().getGroupId());
+        assertIterableEquals(List.of("audit-log-http"), http.getValue().getTopics());
+    }
+
+    @Test
+    void handleBatch_shouldProcessRecordsOfOneTopicAsBatch() {
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                new ConsumerRecord<>("audit-log-http", 0, 0, "key", "{}".getBytes(StandardCharsets.UTF_8)),
+                new ConsumerRecord<>("audit-log-http", 0, 1, "key", "{}".getBytes(StandardCharsets.UTF_8)));
+
+        listener.handleBatch(records);
+
+        verify(logBatchProcessor).process(records);
+    }
+
+    @Test
+    void constructor_sameTopicForBothTypes_shouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RoutedAuditKafkaListener(logBatchProcessor, beanFactory, "audit-log", "audit-log"));
+    }
+
+}
@@ -0,0 +1,231 @@
+package org.ex9.auditlistener.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.ex9.auditlistener.benchmark.Payloads;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный и соак-тест конвейера приёма логов на EmbeddedKafka и PostgreSQL.
+ * <p>
+ * Запуск: {@code mvn -Pload-test test}. Параметры задаются системными свойствами:
+ * <ul>
+ *     <li>{@code load.duration} — длительность отправки, по умолчанию {@code 1m};</li>
+ *     <li>{@code load.rate} — целевая скорость, сообщений в секунду, по умолчанию {@code 1000};</li>
+ *     <li>{@code load.http-share}, {@code load.duplicate-share}, {@code load.malformed-share} —
+ *     доли HTTP-логов, дубликатов и некорректного JSON;</li>
+ *     <li>{@code load.profile} — профиль размеров сообщений {@link Payloads.Profile};</li>
+ *     <li>{@code load.drain-timeout} — сколько ждать записи всех сообщений после отправки;</li>
+ *     <li>{@code load.min-throughput}, {@code load.max-p99} — пороги, при нарушении которых
+ *     тест падает; по умолчанию не проверяются.</li>
+ * </ul>
+ * Настройки приложения, например {@code audit.kafka.mode} или {@code audit.persistence.engine},
+ * передаются так же. PostgreSQL поднимается в Testcontainers либо берётся из переменных окружения
+ * {@code LOAD_TEST_JDBC_URL}, {@code LOAD_TEST_JDBC_USER} и {@code LOAD_TEST_JDBC_PASSWORD};
+ * данные в ней не очищаются.
+ * </p>
+ * <p>
+ * Отчёт — пропускная способность от начала отправки до записи последнего сообщения, p50/p99
+ * задержки от отправки до фиксации транзакции ({@code audit.ingest.lag}), куча и сборки мусора —
+ * пишется в лог и в {@code target/load-test-report.json}.
+ * </p>
+ */
+@Tag("load")
+@SpringBootTest
+@EmbeddedKafka(
+        partitions = 3,
+        brokerProperties = {
+                "transaction.state.log.replication.factor=1",
+                "transaction.state.log.min.isr=1"
+        },
+        topics = "${audit.kafka.topic:audit-log}",
+        bootstrapServersProperty = "spring.kafka.bootstrap-servers"
+)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@Log4j2
+class IngestLoadTest {
+
+    private static final Path REPORT = Path.of("target", "load-test-report.json");
+    private static final double[] PERCENTILES = {0.5, 0.99};
+
+    /**
+     * Считает перцентили задержки на стороне приложения за всё время теста,
+     * а не за скользящее окно по умолчанию.
+     */
+    @TestConfiguration
+    static class LagPercentiles {
+
+        @Bean
+        MeterFilter lagPercentilesFilter() {
+            return new MeterFilter() {
+                @Override
+                public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                    if (!"audit.ingest.lag".equals(id.getName())) {
+                        return config;
+                    }
+                    return DistributionStatisticConfig.builder()
+                            .percentiles(PERCENTILES)
+                            .expiry(Duration.ofDays(1))
+                            .bufferLength(1)
+                            .build()
+                            .merge(config);
+                }
+            };
+        }
+    }
+
+    private static PostgreSQLContainer<?> postgres;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        String url = System.getenv("LOAD_TEST_JDBC_URL");
+        if (url != null) {
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.username", () -> System.getenv("LOAD_TEST_JDBC_USER"));
+            registry.add("spring.datasource.password", () -> System.getenv("LOAD_TEST_JDBC_PASSWORD"));
+            return;
+        }
+        postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16"));
+        postgres.start();
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @AfterAll
+    static void stopPostgres() {
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${audit.kafka.topic:audit-log}")
+    private String topic;
+
+    @Value("${audit.kafka.mode:record}")
+    private String mode;
+
+    @Test
+    void ingest_sustainedLoad_shouldSaveEveryUniqueMessageOnce() throws Exception {
+        Duration duration = DurationStyle.detectAndParse(System.getProperty("load.duration", "1m"));
+        int rate = Integer.getInteger("load.rate", 1000);
+        Duration drainTimeout = DurationStyle.detectAndParse(System.getProperty("load.drain-timeout", "2m"));
+        LoadGenerator generator = new LoadGenerator(kafkaTemplate(), topic, objectMapper,
+                Payloads.Profile.valueOf(System.getProperty("load.profile", "REALISTIC")),
+                Long.getLong("load.seed", 42),
+                share("load.http-share", 0.5), share("load.duplicate-share", 0.05),
+                share("load.malformed-share", 0.01));
+
+        double savedBefore = outcome("saved");
+        double duplicatesBefore = outcome("duplicate");
+        double failedBefore = outcome("failed");
+        log.info("Load test: mode={}, rate={}/s, duration={}", mode, rate, duration);
+
+        LoadGenerator.Sent sent;
+        long start = System.nanoTime();
+        try (JvmSampler jvm = new JvmSampler()) {
+            jvm.start();
+            sent = generator.run(rate, duration);
+            await().atMost(drainTimeout)
+                    .pollInterval(Duration.ofMillis(200))
+                    .until(() -> outcome("saved") - savedBefore >= sent.unique());
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            JvmSampler.Summary summary = jvm.stop();
+
+            long saved = (long) (outcome("saved") - savedBefore);
+            HistogramSnapshot lag = meterRegistry.get("audit.ingest.lag").timer().takeSnapshot();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("mode", mode);
+            report.put("targetRate", rate);
+            report.put("offeredRate", sent.total() / (sent.elapsed().toNanos() / 1e9));
+            report.put("sent", sent);
+            report.put("saved", saved);
+            report.put("duplicatesDropped", (long) (outcome("duplicate") - duplicatesBefore));
+            report.put("failed", (long) (outcome("failed") - failedBefore));
+            report.put("throughput", saved / elapsedSeconds);
+            report.put("latencyP50Ms", lag.percentileValues()[0].value(TimeUnit.MILLISECONDS));
+            report.put("latencyP99Ms", lag.percentileValues()[1].value(TimeUnit.MILLISECONDS));
+            report.put("latencyMaxMs", lag.max(TimeUnit.MILLISECONDS));
+            report.put("jvm", summary);
+            String json = objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, json);
+            log.info("Load test report:\n{}", json);
+
+            assertEquals(sent.unique(), saved, "every unique message must be saved exactly once");
+            double minThroughput = Double.parseDouble(System.getProperty("load.min-throughput", "0"));
+            assertTrue((double) report.get("throughput") >= minThroughput,
+                    "throughput below load.min-throughput=" + minThroughput);
+            String maxP99 = System.getProperty("load.max-p99", "");
+            if (!maxP99.isBlank()) {
+                long limit = DurationStyle.detectAndParse(maxP99).toMillis();
+                assertTrue((double) report.get("latencyP99Ms") <= limit, "p99 latency above load.max-p99=" + maxP99);
+            }
+        }
+    }
+
+    private KafkaTemplate<String, String> kafkaTemplate() {
+        Map<String, Object> props = KafkaTestUtils.producerProps(embeddedKafka);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props));
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.find("audit.ingest.messages").tag("outcome", outcome).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private static double share(String property, double defaultValue) {
+        return Double.parseDouble(System.getProperty(property, String.valueOf(defaultValue)));
+    }
+
+}
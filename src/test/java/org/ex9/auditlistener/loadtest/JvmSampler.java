@@ -0,0 +1,77 @@
+package org.ex9.auditlistener.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раз в секунду снимает занятую кучу и считает сборки мусора за время нагрузки.
+ * <p>
+ * Рост кучи в соак-тесте виден по {@code heapAfterGcStart}/{@code heapAfterGcEnd}: обе
+ * величины снимаются после явной сборки мусора, поэтому не зависят от момента замера.
+ * </p>
+ */
+final class JvmSampler implements AutoCloseable {
+
+    /** Итог наблюдения. */
+    record Summary(long heapAfterGcStartMb, long heapAfterGcEndMb, long heapPeakMb, long heapMaxMb,
+                   Map<String, Long> gcCounts, Map<String, Long> gcTimeMs) {
+    }
+
+    private static final long MB = 1024 * 1024;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-test-jvm-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, long[]> gcStart = new LinkedHashMap<>();
+
+    private long heapAfterGcStart;
+    private volatile long heapPeak;
+
+    void start() {
+        heapAfterGcStart = heapAfterGc();
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcStart.put(collector.getName(), new long[]{collector.getCollectionCount(), collector.getCollectionTime()});
+        }
+        scheduler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    Summary stop() {
+        scheduler.shutdownNow();
+        sample();
+        Map<String, Long> gcCounts = new LinkedHashMap<>();
+        Map<String, Long> gcTime = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean collector : collectors) {
+            long[] start = gcStart.getOrDefault(collector.getName(), new long[2]);
+            gcCounts.put(collector.getName(), collector.getCollectionCount() - start[0]);
+            gcTime.put(collector.getName(), collector.getCollectionTime() - start[1]);
+        }
+        return new Summary(heapAfterGcStart / MB, heapAfterGc() / MB, heapPeak / MB,
+                memory.getHeapMemoryUsage().getMax() / MB, gcCounts, gcTime);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        heapPeak = Math.max(heapPeak, memory.getHeapMemoryUsage().getUsed());
+    }
+
+    private long heapAfterGc() {
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+}
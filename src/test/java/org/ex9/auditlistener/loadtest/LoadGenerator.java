@@ -0,0 +1,161 @@
+package org.ex9.auditlistener.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.ex9.auditlistener.benchmark.Payloads;
+import org.ex9.auditlistener.event.AuditLogDto;
+import org.ex9.auditlistener.event.HttpLogDto;
+import org.ex9.auditlistener.event.LogDto;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Отправляет в Kafka смесь Audit- и HTTP-логов с заданной скоростью.
+ * <p>
+ * Сообщения строятся {@link Payloads}, но получают случайный {@code messageId} и время отправки
+ * в {@code timestamp}: так метрика {@code audit.ingest.lag} измеряет задержку от отправки
+ * до фиксации транзакции. Заданная доля сообщений повторяет одно из недавно отправленных
+ * (дубликаты), ещё одна доля — некорректный JSON.
+ * </p>
+ * <p>
+ * Скорость выдерживается по расписанию: если отправка отстала, следующие сообщения уходят
+ * без пауз, пока отставание не будет наверстано.
+ * </p>
+ */
+final class LoadGenerator {
+
+    /** Результат отправки. */
+    record Sent(long audit, long http, long duplicates, long malformed, Duration elapsed) {
+
+        long total() {
+            return audit + http + duplicates + malformed;
+        }
+
+        /** Число сообщений, которые должны быть сохранены. */
+        long unique() {
+            return audit + http;
+        }
+    }
+
+    private static final int RECENT = 1024;
+    private static final int MAX_IN_FLIGHT = 10_000;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final String topic;
+    private final ObjectMapper objectMapper;
+    private final Payloads payloads;
+    private final Random random;
+    private final double httpShare;
+    private final double duplicateShare;
+    private final double malformedShare;
+
+    private final List<String> recent = new ArrayList<>(RECENT);
+
+    LoadGenerator(KafkaTemplate<String, String> kafkaTemplate, String topic, ObjectMapper objectMapper,
+                  Payloads.Profile profile, long seed,
+                  double httpShare, double duplicateShare, double malformedShare) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.topic = topic;
+        this.objectMapper = objectMapper;
+        this.payloads = new Payloads(seed, profile, objectMapper);
+        this.random = new Random(seed);
+        this.httpShare = httpShare;
+        this.duplicateShare = duplicateShare;
+        this.malformedShare = malformedShare;
+    }
+
+    /**
+     * Отправляет сообщения со скоростью {@code rate} в секунду в течение {@code duration}
+     * и ждёт подтверждения брокером.
+     */
+    Sent run(int rate, Duration duration) throws Exception {
+        long audit = 0;
+        long http = 0;
+        long duplicates = 0;
+        long malformed = 0;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String message;
+            double dice = random.nextDouble();
+            if (dice < malformedShare) {
+                message = "{\"messageId\":\"" + UUID.randomUUID() + "\",\"type\": broken";
+                malformed++;
+            } else if (dice < malformedShare + duplicateShare && !recent.isEmpty()) {
+                message = recent.get(random.nextInt(recent.size()));
+                duplicates++;
+            } else {
+                LogDto log = random.nextDouble() < httpShare ? httpLog() : auditLog();
+                message = json(log);
+                remember(message);
+                if (log instanceof HttpLogDto) {
+                    http++;
+                } else {
+                    audit++;
+                }
+            }
+            inFlight.add(kafkaTemplate.send(topic, message));
+            if (inFlight.size() >= MAX_IN_FLIGHT) {
+                awaitAll(inFlight);
+            }
+        }
+        awaitAll(inFlight);
+        return new Sent(audit, http, duplicates, malformed, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private AuditLogDto auditLog() {
+        AuditLogDto log = payloads.auditLog();
+        log.setMessageId(UUID.randomUUID().toString());
+        log.setTimestamp(Instant.now().toString());
+        return log;
+    }
+
+    private HttpLogDto httpLog() {
+        HttpLogDto log = payloads.httpLog();
+        log.setMessageId(UUID.randomUUID().toString());
+        log.setTimestamp(Instant.now().toString());
+        return log;
+    }
+
+    private void remember(String message) {
+        if (recent.size() < RECENT) {
+            recent.add(message);
+        } else {
+            recent.set(random.nextInt(RECENT), message);
+        }
+    }
+
+    private String json(LogDto log) {
+        try {
+            return objectMapper.writeValueAsString(log);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitAll(List<CompletableFuture<?>> futures) throws Exception {
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(1, TimeUnit.MINUTES);
+        futures.clear();
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.ex9.auditlistener.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngestionMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IngestionMetrics metrics = new IngestionMetrics(registry);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void trackCommit_shouldCountSavedMessagesOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        OffsetDateTime now = OffsetDateTime.now();
+        metrics.trackCommit(2, 1, List.of(now.minusSeconds(5), now, now));
+
+        assertEquals(0, savedCount("audit"));
+        assertEquals(0, registry.get("audit.ingest.lag").timer().count());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.beforeCommit(false));
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(2, savedCount("audit"));
+        assertEquals(1, savedCount("http"));
+        assertEquals(3, registry.get("audit.ingest.lag").timer().count());
+        assertEquals(1, registry.get("audit.ingest.stage").tag("stage", "commit").timer().count());
+    }
+
+    @Test
+    void trackCommit_shouldCountImmediatelyWithoutTransaction() {
+        metrics.trackCommit(IngestionMetrics.Type.HTTP, OffsetDateTime.now());
+
+        assertEquals(1, savedCount("http"));
+        assertEquals(1, registry.get("audit.ingest.lag").timer().count());
+    }
+
+    @Test
+    void record_shouldTimeStage() {
+        metrics.record(IngestionMetrics.Stage.PARSE, metrics.start());
+
+        assertEquals(1, registry.get("audit.ingest.stage").tag("stage", "parse").timer().count());
+    }
+
+    private double savedCount(String type) {
+        return registry.get("audit.ingest.messages").tag("type", type).tag("outcome", "saved").counter().count();
+    }
+
+}
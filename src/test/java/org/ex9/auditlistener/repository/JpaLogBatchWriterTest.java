@@ -0,0 +1,246 @@
+package org.ex9.auditlistener.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import liquibase.integration.spring.SpringLiquibase;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Array;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// PostgreSQL берётся из TEST_JDBC_URL (TEST_JDBC_USER, TEST_JDBC_PASSWORD) или из Testcontainers,
+// без них тесты пропускаются; каждый тест работает в отдельной схеме
+@EnabledIf("databaseAvailable")
+class JpaLogBatchWriterTest {
+
+    private static final int BATCH_SIZE = 3;
+    private static final OffsetDateTime TIMESTAMP = OffsetDateTime.of(2025, 3, 4, 5, 6, 7, 0, ZoneOffset.UTC);
+
+    private static PostgreSQLContainer<?> postgres;
+
+    private final String schema = "jpa_writer_test_" + UUID.randomUUID().toString().replace("-", "");
+
+    private JdbcTemplate jdbcTemplate;
+    private EntityManagerFactory entityManagerFactory;
+    private TransactionTemplate transactionTemplate;
+    private JpaLogBatchWriter writer;
+    private int[] terms;
+
+    static boolean databaseAvailable() {
+        return System.getenv("TEST_JDBC_URL") != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String url = System.getenv("TEST_JDBC_URL");
+        String user = System.getenv("TEST_JDBC_USER");
+        String password = System.getenv("TEST_JDBC_PASSWORD");
+        if (url == null) {
+            if (postgres == null) {
+                postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16"));
+                postgres.start();
+            }
+            url = postgres.getJdbcUrl();
+            user = postgres.getUsername();
+            password = postgres.getPassword();
+        }
+        new JdbcTemplate(new DriverManagerDataSource(url, user == null ? "postgres" : user, password))
+                .execute("CREATE SCHEMA " + schema);
+        // reWriteBatchedInserts — как spring.datasource.hikari.data-source-properties в application.yaml
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema + "&reWriteBatchedInserts=true",
+                user == null ? "postgres" : user, password);
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setDefaultSchema(schema);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan("org.ex9.auditlistener.model");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.jdbc.batch_size", BATCH_SIZE,
+                "hibernate.order_inserts", true,
+                "hibernate.id.optimizer.pooled.preferred", "pooled-lo",
+                "hibernate.timezone.default_storage", "NORMALIZE_UTC"));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+        writer = new JpaLogBatchWriter(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory),
+                BATCH_SIZE);
+        // разные ссылки на словарь для каждого столбца, чтобы перестановка столбцов была заметна
+        terms = IntStream.range(0, 3).map(i -> jdbcTemplate.queryForObject(
+                "INSERT INTO log_dictionary (kind, value) VALUES ('test', ?) RETURNING id", Integer.class, "t" + i))
+                .toArray();
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManagerFactory.close();
+        jdbcTemplate.execute("DROP SCHEMA " + schema + " CASCADE");
+    }
+
+    @AfterAll
+    static void stopContainer() {
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Test
+    void insertAuditLogs_shouldStoreEveryColumn() {
+        AuditLogEntity entity = AuditLogEntity.builder()
+                .messageId("m-audit")
+                .eventId("event-1")
+                .eventTypeId(terms[0])
+                .methodNameId(terms[1])
+                .args("[\"arg\"]")
+                .result("result")
+                .error("error")
+                .logLevelId(terms[2])
+                .timestamp(TIMESTAMP)
+                .kafkaTopic("topic-a")
+                .kafkaPartition(7)
+                .kafkaOffset(42L)
+                .build();
+
+        assertEquals(List.of(entity), transactionTemplate.execute(status -> writer.insertAuditLogs(List.of(entity))));
+
+        assertStored("audit_logs", LogColumns.AUDIT, LogColumns.values(entity), "m-audit");
+    }
+
+    @Test
+    void insertHttpLogs_shouldStoreEveryColumn() {
+        HttpLogEntity entity = HttpLogEntity.builder()
+                .messageId("m-http")
+                .timestamp(TIMESTAMP)
+                .directionId(terms[0])
+                .methodId(terms[1])
+                .statusCode(404)
+                .urlTemplateId(terms[2])
+                .urlParams(new String[]{"42", "abc"})
+                .urlQuery("?page=2")
+                .requestBody("request")
+                .responseBody("response")
+                .requestBodyData(new byte[]{1, 2})
+                .responseBodyData(new byte[]{3, 4, 5})
+                .searchTerms("terms")
+                .kafkaTopic("topic-h")
+                .kafkaPartition(3)
+                .kafkaOffset(99L)
+                .build();
+
+        assertEquals(List.of(entity), transactionTemplate.execute(status -> writer.insertHttpLogs(List.of(entity))));
+
+        assertStored("http_logs", LogColumns.HTTP, LogColumns.values(entity), "m-http");
+    }
+
+    @Test
+    void insertAuditLogs_duplicates_shouldReturnOnlyInsertedRows() {
+        transactionTemplate.execute(status -> writer.insertAuditLogs(List.of(audit("m-1", 1), audit("m-2", 2))));
+
+        // несколько JDBC-пакетов: повторы по message_id и по координатам Kafka вперемешку с новыми
+        List<AuditLogEntity> entities = List.of(audit("m-1", 11), audit("m-3", 3), audit("m-4", 4),
+                audit("m-2", 12), audit("m-5", 5), audit("m-6", 1), audit("m-7", 7));
+        List<AuditLogEntity> inserted = transactionTemplate.execute(status -> writer.insertAuditLogs(entities));
+
+        assertEquals(List.of("m-3", "m-4", "m-5", "m-7"), inserted.stream().map(AuditLogEntity::getMessageId).toList());
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT count(*) FROM audit_logs", Integer.class));
+    }
+
+    @Test
+    void insertHttpLogs_duplicates_shouldReturnOnlyInsertedRows() {
+        transactionTemplate.execute(status -> writer.insertHttpLogs(List.of(http("m-1", 1))));
+
+        List<HttpLogEntity> inserted = transactionTemplate.execute(status ->
+                writer.insertHttpLogs(List.of(http("m-1", 2), http("m-2", 3))));
+
+        assertEquals(List.of("m-2"), inserted.stream().map(HttpLogEntity::getMessageId).toList());
+    }
+
+    private void assertStored(String table, String[] columns, Object[] expected, String messageId) {
+        AtomicInteger rows = new AtomicInteger();
+        jdbcTemplate.query("SELECT " + String.join(", ", columns) + " FROM " + table + " WHERE message_id = ?", rs -> {
+            rows.incrementAndGet();
+            for (int i = 0; i < columns.length; i++) {
+                Object actual = expected[i] instanceof OffsetDateTime
+                        ? rs.getObject(i + 1, OffsetDateTime.class)
+                        : rs.getObject(i + 1);
+                assertEquals(comparable(expected[i]), comparable(actual), table + "." + columns[i]);
+            }
+        }, messageId);
+        assertEquals(1, rows.get(), table);
+    }
+
+    private static Object comparable(Object value) throws java.sql.SQLException {
+        return switch (value) {
+            case OffsetDateTime timestamp -> timestamp.toInstant();
+            case Array array -> Arrays.asList((Object[]) array.getArray());
+            case Object[] array -> Arrays.asList(array);
+            case byte[] bytes -> HexFormat.of().formatHex(bytes);
+            case Number number -> number.longValue();
+            case null, default -> value;
+        };
+    }
+
+    private AuditLogEntity audit(String messageId, long offset) {
+        return AuditLogEntity.builder()
+                .messageId(messageId)
+                .eventId(messageId)
+                .eventTypeId(terms[0])
+                .methodNameId(terms[1])
+                .logLevelId(terms[2])
+                .timestamp(TIMESTAMP)
+                .kafkaTopic("topic")
+                .kafkaPartition(0)
+                .kafkaOffset(offset)
+                .build();
+    }
+
+    private HttpLogEntity http(String messageId, long offset) {
+        return HttpLogEntity.builder()
+                .messageId(messageId)
+                .timestamp(TIMESTAMP)
+                .directionId(terms[0])
+                .methodId(terms[1])
+                .statusCode(200)
+                .urlTemplateId(terms[2])
+                .kafkaTopic("topic")
+                .kafkaPartition(0)
+                .kafkaOffset(offset)
+                .build();
+    }
+
+}
@@ -0,0 +1,200 @@
+package org.ex9.auditlistener.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.hibernate.query.NativeQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KeysetQueryTest {
+
+    private static final String URL_TEMPLATE_LIKE =
+            "url_template_id IN (SELECT id FROM log_dictionary WHERE kind = 'url_template' AND value LIKE :";
+
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private Query query;
+
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(query.setParameter(anyString(), any())).thenAnswer(invocation -> {
+            parameters.put(invocation.getArgument(0), invocation.getArgument(1));
+            return query;
+        });
+    }
+
+    @Test
+    void list_withoutConditions_shouldSelectColumnsOrderedByKey() {
+        String sql = list(new KeysetQuery("http_logs", new String[]{"message_id", "timestamp"}, "log_term(x) AS \"x\""));
+
+        assertEquals("SELECT id, message_id, timestamp, log_term(x) AS \"x\" FROM http_logs"
+                + " ORDER BY timestamp DESC, id DESC LIMIT :limit", sql);
+        assertEquals(Map.of("limit", 20), parameters);
+    }
+
+    @Test
+    void equalTo_shouldAddConditionOnlyForNonNullValue() {
+        String sql = list(query().equalTo("status_code", 404).equalTo("audit_id", null));
+
+        assertEquals(" WHERE status_code = :status_code", where(sql));
+        assertEquals(Map.of("status_code", 404, "limit", 20), parameters);
+    }
+
+    @Test
+    void between_shouldBoundTimestampInclusiveFromExclusiveTo() {
+        OffsetDateTime from = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        OffsetDateTime to = from.plusDays(1);
+
+        assertEquals(" WHERE timestamp >= :fromTimestamp AND timestamp < :toTimestamp",
+                where(list(query().between(from, to))));
+        assertEquals(from, parameters.get("fromTimestamp"));
+        assertEquals(to, parameters.get("toTimestamp"));
+
+        parameters.clear();
+        assertEquals(" WHERE timestamp < :toTimestamp", where(list(query().between(null, to))));
+        assertFalse(parameters.containsKey("fromTimestamp"));
+    }
+
+    @Test
+    void after_shouldContinueStrictlyBeforeCursorRow() {
+        OffsetDateTime timestamp = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+        String sql = list(query().between(null, timestamp.plusDays(1)).after(new LogCursor(timestamp, 42)));
+
+        assertEquals(" WHERE timestamp < :toTimestamp AND (timestamp, id) < (:cursorTimestamp, :cursorId)", where(sql));
+        assertEquals(timestamp, parameters.get("cursorTimestamp"));
+        assertEquals(42L, parameters.get("cursorId"));
+        assertEquals("", where(list(query().after(null))));
+    }
+
+    @Test
+    void urlStartsWith_emptyPrefix_shouldAddNoCondition() {
+        assertEquals("", where(list(query().urlStartsWith(null).urlStartsWith(""))));
+    }
+
+    @Test
+    void urlStartsWith_completeSegments_shouldMatchTemplatePrefixAndParams() {
+        String sql = list(query().urlStartsWith("/api/users/42/"));
+
+        assertEquals(" WHERE " + URL_TEMPLATE_LIKE + "urlTemplate) AND url_params[1] = :urlParam1", where(sql));
+        assertEquals("/api/users/{id}/%", parameters.get("urlTemplate"));
+        assertEquals("42", parameters.get("urlParam1"));
+    }
+
+    @Test
+    void urlStartsWith_queryString_shouldMatchExactTemplateAndQueryPrefix() {
+        String sql = list(query().urlStartsWith("/api/users/42/orders?page=1_0"));
+
+        assertEquals(" WHERE " + URL_TEMPLATE_LIKE + "urlTemplate) AND url_params[1] = :urlParam1"
+                + " AND url_query LIKE :urlQuery", where(sql));
+        assertEquals("/api/users/{id}/orders", parameters.get("urlTemplate"));
+        assertEquals("?page=1\\_0%", parameters.get("urlQuery"));
+    }
+
+    @Test
+    void urlStartsWith_partialWordSegment_shouldMatchTemplatePrefixOnly() {
+        String sql = list(query().urlStartsWith("/api/users/42/ord_"));
+
+        assertEquals(" WHERE url_params[1] = :urlParam1 AND " + URL_TEMPLATE_LIKE + "urlTemplate)", where(sql));
+        assertEquals("/api/users/{id}/ord\\_%", parameters.get("urlTemplate"));
+        assertFalse(parameters.containsKey("urlParamPrefix"));
+    }
+
+    @Test
+    void urlStartsWith_partialIdentifierSegment_shouldMatchTemplateOrParamPrefix() {
+        String sql = list(query().urlStartsWith("/api/users/42/orders/ab"));
+
+        assertEquals(" WHERE url_params[1] = :urlParam1 AND (" + URL_TEMPLATE_LIKE + "urlTemplate) OR "
+                + URL_TEMPLATE_LIKE + "urlParamTemplate) AND url_params[2] LIKE :urlParamPrefix)", where(sql));
+        assertEquals("/api/users/{id}/orders/ab%", parameters.get("urlTemplate"));
+        assertEquals("/api/users/{id}/orders/{%", parameters.get("urlParamTemplate"));
+        assertEquals("ab%", parameters.get("urlParamPrefix"));
+    }
+
+    @Test
+    void urlStartsWith_partialIdentifierFirstParam_shouldCompareFirstParam() {
+        String sql = list(query().urlStartsWith("/api/users/4"));
+
+        assertTrue(where(sql).endsWith("url_params[1] LIKE :urlParamPrefix)"), sql);
+        assertEquals("/api/users/{%", parameters.get("urlParamTemplate"));
+        assertEquals("4%", parameters.get("urlParamPrefix"));
+    }
+
+    @Test
+    void urlStartsWith_prefixWithBrace_shouldMatchTemplateLiterallyWithoutParams() {
+        String sql = list(query().urlStartsWith("/api/users/{id}/"));
+
+        assertEquals(" WHERE " + URL_TEMPLATE_LIKE + "urlTemplate)", where(sql));
+        assertEquals("/api/users/{id}/%", parameters.get("urlTemplate"));
+        assertFalse(parameters.containsKey("urlParam1"));
+    }
+
+    @Test
+    void urlStartsWith_partialSegmentAfterBrace_shouldMatchTemplateLiterally() {
+        String sql = list(query().urlStartsWith("/api/{id}/42/ord"));
+
+        assertEquals(" WHERE " + URL_TEMPLATE_LIKE + "urlTemplate)", where(sql));
+        assertEquals("/api/{id}/42/ord%", parameters.get("urlTemplate"));
+    }
+
+    @Test
+    void ranked_shouldOrderByRelevanceThenKey() {
+        @SuppressWarnings("unchecked")
+        NativeQuery<Object[]> nativeQuery = mock(NativeQuery.class, RETURNS_SELF);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        when(query.unwrap(NativeQuery.class)).thenReturn(nativeQuery);
+
+        query().between(null, null).matches("timeout -retry").ranked(entityManager, HttpLogEntity.class, 5);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager).createNativeQuery(sql.capture());
+        assertEquals("SELECT id, message_id, ts_rank_cd(search_vector, websearch_to_tsquery('simple', :searchText))"
+                + " AS search_rank FROM http_logs WHERE search_vector @@ websearch_to_tsquery('simple', :searchText)"
+                + " ORDER BY search_rank DESC, timestamp DESC, id DESC LIMIT :limit", sql.getValue());
+        verify(nativeQuery).setParameter("searchText", "timeout -retry");
+        verify(nativeQuery).setParameter("limit", 5);
+    }
+
+    @Test
+    void ranked_withoutSearchCondition_shouldThrow() {
+        assertThrows(IllegalStateException.class,
+                () -> query().ranked(entityManager, HttpLogEntity.class, 5));
+        verifyNoInteractions(entityManager);
+    }
+
+    private static KeysetQuery query() {
+        return new KeysetQuery("http_logs", new String[]{"message_id"});
+    }
+
+    private String list(KeysetQuery keysetQuery) {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        clearInvocations(entityManager);
+        when(entityManager.createNativeQuery(sql.capture(), eq(HttpLogEntity.class))).thenReturn(query);
+        keysetQuery.list(entityManager, HttpLogEntity.class, 20);
+        return sql.getValue();
+    }
+
+    private static String where(String sql) {
+        int from = sql.indexOf(" FROM http_logs") + " FROM http_logs".length();
+        return sql.substring(from, sql.indexOf(" ORDER BY"));
+    }
+
+}
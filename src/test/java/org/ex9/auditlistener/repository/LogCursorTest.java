@@ -0,0 +1,60 @@
+package org.ex9.auditlistener.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogCursorTest {
+
+    @Test
+    void decode_encodedCursor_shouldRestoreTimestampAndId() {
+        LogCursor cursor = new LogCursor(OffsetDateTime.of(2025, 3, 1, 12, 30, 15, 123_456_000, ZoneOffset.ofHours(3)),
+                9_007_199_254_740_993L);
+
+        LogCursor decoded = LogCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void encode_shouldBeUrlSafeWithoutPadding() {
+        String encoded = new LogCursor(OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), 1).encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+    }
+
+    @Test
+    void decode_notBase64_shouldThrow() {
+        assertInvalid("not a cursor!");
+    }
+
+    @Test
+    void decode_withoutSeparator_shouldThrow() {
+        assertInvalid(encode("2025-01-01T00:00Z"));
+    }
+
+    @Test
+    void decode_invalidTimestamp_shouldThrow() {
+        assertInvalid(encode("yesterday|42"));
+    }
+
+    @Test
+    void decode_invalidId_shouldThrow() {
+        assertInvalid(encode("2025-01-01T00:00Z|forty-two"));
+    }
+
+    private static void assertInvalid(String cursor) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> LogCursor.decode(cursor));
+        assertEquals("Invalid cursor: " + cursor, e.getMessage());
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,188 @@
+package org.ex9.auditlistener.repository;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgBinaryCopyEncoderTest {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    @Test
+    void close_emptyCopy_shouldWriteHeaderAndTrailer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new PgBinaryCopyEncoder(bytes).close();
+
+        DataInputStream in = header(bytes);
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    void row_scalarTypes_shouldWriteLengthPrefixedFieldsAndNullMarkers() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(bytes)) {
+            encoder.row(new Object[]{"тест", null, 42, 7L, new byte[]{1, 2, 3}});
+        }
+
+        DataInputStream in = header(bytes);
+        assertEquals(5, in.readShort());
+        byte[] text = "тест".getBytes(StandardCharsets.UTF_8);
+        assertEquals(text.length, in.readInt());
+        assertArrayEquals(text, in.readNBytes(text.length));
+        assertEquals(-1, in.readInt());
+        assertEquals(4, in.readInt());
+        assertEquals(42, in.readInt());
+        assertEquals(8, in.readInt());
+        assertEquals(7L, in.readLong());
+        assertEquals(3, in.readInt());
+        assertArrayEquals(new byte[]{1, 2, 3}, in.readNBytes(3));
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    void timestamp_shouldWriteMicrosecondsSincePostgresEpochInUtc() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(bytes)) {
+            encoder.startRow(3);
+            encoder.timestamp(OffsetDateTime.of(2000, 1, 1, 0, 0, 1, 500_000, ZoneOffset.UTC));
+            encoder.timestamp(OffsetDateTime.of(1999, 12, 31, 23, 59, 59, 0, ZoneOffset.UTC));
+            encoder.timestamp(OffsetDateTime.of(2000, 1, 1, 3, 0, 0, 0, ZoneOffset.ofHours(3)));
+        }
+
+        DataInputStream in = header(bytes);
+        assertEquals(3, in.readShort());
+        for (long expected : new long[]{1_000_500, -1_000_000, 0}) {
+            assertEquals(8, in.readInt());
+            assertEquals(expected, in.readLong());
+        }
+    }
+
+    @Test
+    void textArray_shouldWriteOneDimensionalArrayOfText() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(bytes)) {
+            encoder.startRow(1);
+            encoder.textArray(new String[]{"42", "ab"});
+        }
+
+        DataInputStream in = header(bytes);
+        assertEquals(1, in.readShort());
+        assertEquals(20 + 2 * (4 + 2), in.readInt());
+        assertEquals(1, in.readInt());   // измерений
+        assertEquals(0, in.readInt());   // без NULL-элементов
+        assertEquals(25, in.readInt());  // OID text
+        assertEquals(2, in.readInt());   // длина
+        assertEquals(1, in.readInt());   // нижняя граница
+        assertEquals(2, in.readInt());
+        assertEquals("42", new String(in.readNBytes(2), StandardCharsets.UTF_8));
+        assertEquals(2, in.readInt());
+        assertEquals("ab", new String(in.readNBytes(2), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void value_unsupportedType_shouldThrow() throws IOException {
+        try (PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(new ByteArrayOutputStream())) {
+            assertThrows(IllegalArgumentException.class, () -> encoder.value(1.5));
+        }
+    }
+
+    @Test
+    void logColumns_valuesShouldFollowColumnOrderAndBeEncodable() throws IOException {
+        OffsetDateTime timestamp = OffsetDateTime.of(2025, 1, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+        AuditLogEntity audit = AuditLogEntity.builder()
+                .messageId("m-1").eventId("e-1").eventTypeId(1).methodNameId(2).args("[]").result("ok")
+                .error("err").logLevelId(3).timestamp(timestamp).kafkaTopic("t").kafkaPartition(4).kafkaOffset(5L)
+                .build();
+        HttpLogEntity http = HttpLogEntity.builder()
+                .messageId("m-2").timestamp(timestamp).directionId(1).methodId(2).statusCode(201).urlTemplateId(3)
+                .urlParams(new String[]{"42"}).urlQuery("q=1").requestBody("req").responseBody("resp")
+                .requestBodyData(new byte[]{1}).responseBodyData(new byte[]{2}).searchTerms("terms")
+                .kafkaTopic("t").kafkaPartition(4).kafkaOffset(5L)
+                .build();
+
+        Map<String, Object> expectedAudit = new LinkedHashMap<>();
+        expectedAudit.put("message_id", "m-1");
+        expectedAudit.put("audit_id", "e-1");
+        expectedAudit.put("type_id", 1);
+        expectedAudit.put("method_name_id", 2);
+        expectedAudit.put("args", "[]");
+        expectedAudit.put("result", "ok");
+        expectedAudit.put("error", "err");
+        expectedAudit.put("log_level_id", 3);
+        expectedAudit.put("timestamp", timestamp);
+        expectedAudit.put("kafka_topic", "t");
+        expectedAudit.put("kafka_partition", 4);
+        expectedAudit.put("kafka_offset", 5L);
+        assertColumns(expectedAudit, LogColumns.AUDIT, LogColumns.values(audit));
+
+        Map<String, Object> expectedHttp = new LinkedHashMap<>();
+        expectedHttp.put("message_id", "m-2");
+        expectedHttp.put("timestamp", timestamp);
+        expectedHttp.put("direction_id", 1);
+        expectedHttp.put("method_id", 2);
+        expectedHttp.put("status_code", 201);
+        expectedHttp.put("url_template_id", 3);
+        expectedHttp.put("url_params", List.of("42"));
+        expectedHttp.put("url_query", "q=1");
+        expectedHttp.put("request_body", "req");
+        expectedHttp.put("response_body", "resp");
+        expectedHttp.put("request_body_data", List.of((byte) 1));
+        expectedHttp.put("response_body_data", List.of((byte) 2));
+        expectedHttp.put("search_terms", "terms");
+        expectedHttp.put("kafka_topic", "t");
+        expectedHttp.put("kafka_partition", 4);
+        expectedHttp.put("kafka_offset", 5L);
+        assertColumns(expectedHttp, LogColumns.HTTP, LogColumns.values(http));
+
+        try (PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(new ByteArrayOutputStream())) {
+            encoder.row(LogColumns.values(audit));
+            encoder.row(LogColumns.values(http));
+            encoder.row(LogColumns.values(new AuditLogEntity()));
+            encoder.row(LogColumns.values(new HttpLogEntity()));
+        }
+    }
+
+    private static void assertColumns(Map<String, Object> expected, String[] columns, Object[] values) {
+        assertEquals(List.copyOf(expected.keySet()), List.of(columns));
+        assertEquals(columns.length, values.length);
+        Object[] actual = Arrays.stream(values).map(PgBinaryCopyEncoderTest::comparable).toArray();
+        assertArrayEquals(expected.values().toArray(), actual);
+    }
+
+    private static Object comparable(Object value) {
+        if (value instanceof String[] array) {
+            return List.of(array);
+        }
+        if (value instanceof byte[] array) {
+            Byte[] boxed = new Byte[array.length];
+            Arrays.setAll(boxed, i -> array[i]);
+            return List.of(boxed);
+        }
+        return value;
+    }
+
+    private static DataInputStream header(ByteArrayOutputStream bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertArrayEquals(SIGNATURE, in.readNBytes(SIGNATURE.length));
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+        return in;
+    }
+
+}
@@ -0,0 +1,145 @@
+package org.ex9.auditlistener.rollup;
+
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.repository.HttpRollupWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HttpRollupAggregatorTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Mock
+    private HttpRollupWriter httpRollupWriter;
+
+    private HttpRollupAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = aggregator(T0.plusSeconds(30), 3);
+    }
+
+    @Test
+    void accept_shouldAggregateByWindowMethodAndRoute() {
+        aggregator.accept(List.of(
+                httpLog(T0.plusSeconds(1), "GET", "https://host/api/users/42?x=1", 200, 100),
+                httpLog(T0.plusSeconds(59), "GET", "/api/users/7", 404, 300),
+                httpLog(T0.plusSeconds(61), "GET", "/api/users/8", 500, 1000),
+                httpLog(T0.plusSeconds(2), "POST", "/api/users", 201, 50)));
+
+        List<HttpRollup> rollups = aggregator.snapshot("get", null);
+
+        assertEquals(2, rollups.size());
+        HttpRollup latest = rollups.getFirst();
+        assertEquals(T0.plusMinutes(1), latest.bucketStart());
+        assertEquals(1, latest.status5xx());
+        HttpRollup first = rollups.get(1);
+        assertEquals(T0, first.bucketStart());
+        assertEquals(60, first.bucketSeconds());
+        assertEquals("/api/users/{id}", first.route());
+        assertEquals(2, first.requests());
+        assertEquals(1, first.status2xx());
+        assertEquals(1, first.status4xx());
+        assertEquals(400, first.responseBytes());
+        assertEquals(300, first.responseSizes().getMaxValue(), 3);
+        assertEquals(2, first.requestSizes().getTotalCount());
+    }
+
+    @Test
+    void accept_overMaxRoutes_shouldUseOtherRoute() {
+        aggregator.accept(List.of(
+                httpLog(T0, "GET", "/a", 200, 1),
+                httpLog(T0, "GET", "/b", 200, 1),
+                httpLog(T0, "GET", "/c", 200, 1),
+                httpLog(T0, "GET", "/d", 200, 1),
+                httpLog(T0, "GET", "/e", 200, 1),
+                httpLog(T0, "GET", "/a", 200, 1)));
+
+        List<HttpRollup> rollups = aggregator.snapshot(null, null);
+
+        assertEquals(4, rollups.size());
+        HttpRollup other = rollups.stream()
+                .filter(rollup -> rollup.route().equals(HttpRollupAggregator.OTHER_ROUTE))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(2, other.requests());
+    }
+
+    @Test
+    void flush_shouldWriteClosedWindowOnNextCycle() {
+        HttpRollupAggregator late = aggregator(T0.plusMinutes(4), 10);
+        late.accept(List.of(httpLog(T0, "GET", "/a", 200, 10), httpLog(T0.plusMinutes(3), "GET", "/a", 200, 10)));
+
+        late.flush();
+        verifyNoInteractions(httpRollupWriter);
+        assertEquals(2, late.snapshot(null, null).size());
+
+        late.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<HttpRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(httpRollupWriter).insert(captor.capture());
+        assertEquals(List.of(T0), captor.getValue().stream().map(HttpRollup::bucketStart).toList());
+        assertEquals(List.of(T0.plusMinutes(3)), late.snapshot(null, null).stream().map(HttpRollup::bucketStart).toList());
+    }
+
+    @Test
+    void flush_writeFailure_shouldRetry() {
+        when(httpRollupWriter.insert(anyList())).thenThrow(new DataAccessResourceFailureException("down")).thenReturn(1);
+        HttpRollupAggregator late = aggregator(T0.plusMinutes(4), 10);
+        late.accept(List.of(httpLog(T0, "GET", "/a", 200, 10)));
+
+        late.flush();
+        late.flush();
+        late.flush();
+
+        verify(httpRollupWriter, times(2)).insert(anyList());
+    }
+
+    @Test
+    void normalize_shouldReplaceIdentifiersAndDropQuery() {
+        assertEquals("/api/users/{id}/orders", UrlNormalizer.normalize("http://h:8080/api/users/42/orders?page=2"));
+        assertEquals("/api/orders/{uuid}", UrlNormalizer.normalize("/api/orders/3f2b8c1e-9d4a-4b7e-8f00-1a2b3c4d5e6f"));
+        assertEquals("/files/{hex}", UrlNormalizer.normalize("/files/deadbeefcafebabe0123#top"));
+        assertEquals("/redirect", UrlNormalizer.normalize("/redirect?to=http://x/y"));
+        assertEquals("/api/v1", UrlNormalizer.normalize("/api//v1/"));
+        assertEquals("/", UrlNormalizer.normalize("https://host"));
+        assertEquals("/", UrlNormalizer.normalize(null));
+    }
+
+    private HttpRollupAggregator aggregator(OffsetDateTime now, int maxRoutes) {
+        return new HttpRollupAggregator(httpRollupWriter, true, Duration.ofMinutes(1), Duration.ofMinutes(2),
+                maxRoutes, Clock.fixed(Instant.from(now), ZoneId.of("UTC")));
+    }
+
+    private static HttpLogEntity httpLog(OffsetDateTime timestamp, String method, String url, int status,
+                                         int responseSize) {
+        return HttpLogEntity.builder()
+                .timestamp(timestamp)
+                .method(method)
+                .url(url)
+                .statusCode(status)
+                .requestSize(responseSize / 2)
+                .responseSize(responseSize)
+                .build();
+    }
+
+}
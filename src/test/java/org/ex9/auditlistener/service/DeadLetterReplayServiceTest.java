@@ -0,0 +1,151 @@
+package org.ex9.auditlistener.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.ex9.auditlistener.listener.RetryTopics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeadLetterReplayServiceTest {
+
+    private static final String DLT = "audit-log-dlt";
+    private static final TopicPartition P0 = new TopicPartition(DLT, 0);
+    private static final TopicPartition P1 = new TopicPartition(DLT, 1);
+
+    @Mock
+    private ConsumerFactory<String, byte[]> consumerFactory;
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    @Mock
+    private KafkaOperations<String, byte[]> operations;
+
+    private final MockConsumer<String, byte[]> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    private final List<ProducerRecord<String, byte[]>> sent = new ArrayList<>();
+    private final Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+
+    private DeadLetterReplayService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RetryTopics retryTopics = new RetryTopics("audit-log", 1, Duration.ofSeconds(1), 5, Duration.ofMinutes(1));
+        service = new DeadLetterReplayService(consumerFactory, kafkaTemplate, retryTopics);
+
+        consumer.updatePartitions(DLT, List.of(
+                new PartitionInfo(DLT, 0, null, null, null),
+                new PartitionInfo(DLT, 1, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(P0, 0L, P1, 0L));
+        lenient().when(consumerFactory.createConsumer(eq(DeadLetterReplayService.GROUP_ID), isNull(), isNull(), any()))
+                .thenReturn(consumer);
+        lenient().when(kafkaTemplate.executeInTransaction(any())).thenAnswer(invocation ->
+                ((KafkaOperations.OperationsCallback<String, byte[], ?>) invocation.getArgument(0))
+                        .doInOperations(operations));
+        lenient().when(operations.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            return null;
+        });
+        lenient().doAnswer(invocation -> {
+            committed.putAll(invocation.getArgument(0));
+            return null;
+        }).when(operations).sendOffsetsToTransaction(anyMap(), any());
+    }
+
+    @Test
+    void replay_shouldRepublishToMainTopicKeepingOnlyFormatHeader() {
+        ConsumerRecord<String, byte[]> consumerRecord = record(P0, 0, "k");
+        consumerRecord.headers().add("content-type", "application/x-jackson-smile".getBytes(StandardCharsets.UTF_8));
+        consumerRecord.headers().add("kafka_dlt-exception-message", "db down".getBytes(StandardCharsets.UTF_8));
+        deadLetters(Map.of(P0, 1L, P1, 0L), consumerRecord);
+
+        assertEquals(1, service.replay(10));
+
+        ProducerRecord<String, byte[]> replayed = sent.get(0);
+        assertEquals("audit-log", replayed.topic());
+        assertEquals("k", replayed.key());
+        assertArrayEquals(consumerRecord.value(), replayed.value());
+        assertEquals(1, replayed.headers().toArray().length);
+        assertEquals("application/x-jackson-smile",
+                new String(replayed.headers().lastHeader("content-type").value(), StandardCharsets.UTF_8));
+        assertEquals(Map.of(P0, new OffsetAndMetadata(1)), committed);
+    }
+
+    @Test
+    void replay_shouldStopAtEndOffsetsOfAllPartitions() {
+        deadLetters(Map.of(P0, 2L, P1, 1L), record(P0, 0, "a"), record(P0, 1, "b"), record(P1, 0, "c"));
+
+        assertEquals(3, service.replay(10));
+
+        assertEquals(3, sent.size());
+        assertEquals(Map.of(P0, new OffsetAndMetadata(2), P1, new OffsetAndMetadata(1)), committed);
+    }
+
+    @Test
+    void replay_overLimit_shouldStopAtLimitAndCommitOnlyReplayed() {
+        deadLetters(Map.of(P0, 3L, P1, 0L), record(P0, 0, "a"), record(P0, 1, "b"), record(P0, 2, "c"));
+
+        assertEquals(2, service.replay(2));
+
+        assertEquals(List.of("a", "b"), sent.stream().map(ProducerRecord::key).toList());
+        assertEquals(Map.of(P0, new OffsetAndMetadata(2)), committed);
+    }
+
+    @Test
+    void replay_emptyDeadLetterTopic_shouldReturnWithoutPolling() {
+        consumer.updateEndOffsets(Map.of(P0, 0L, P1, 0L));
+        consumer.schedulePollTask(() -> fail("DLT is empty, poll is not expected"));
+
+        assertEquals(0, service.replay(10));
+
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void replay_nonPositiveLimit_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> service.replay(0));
+        verifyNoInteractions(consumerFactory);
+    }
+
+    @SafeVarargs
+    private void deadLetters(Map<TopicPartition, Long> endOffsets, ConsumerRecord<String, byte[]>... records) {
+        consumer.updateEndOffsets(endOffsets);
+        // записи можно добавить только в назначенные партиции, а назначает их сервис
+        consumer.schedulePollTask(() -> {
+            for (ConsumerRecord<String, byte[]> consumerRecord : records) {
+                consumer.addRecord(consumerRecord);
+            }
+        });
+    }
+
+    private static ConsumerRecord<String, byte[]> record(TopicPartition partition, long offset, String key) {
+        return new ConsumerRecord<>(partition.topic(), partition.partition(), offset, key,
+                ("{\"id\":\"" + key + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+
+}
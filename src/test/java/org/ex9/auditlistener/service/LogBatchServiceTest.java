@@ -0,0 +1,113 @@
+package org.ex9.auditlistener.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ex9.auditlistener.dedup.MessageDeduplicator;
+import org.ex9.auditlistener.dictionary.LogDictionary;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.model.HttpLogEntity;
+import org.ex9.auditlistener.repository.LogBatchWriter;
+import org.ex9.auditlistener.rollup.HttpRollupAggregator;
+import org.ex9.auditlistener.span.SpanAssembler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LogBatchServiceTest {
+
+    private static final OffsetDateTime TIMESTAMP = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Mock
+    private LogBatchWriter logBatchWriter;
+    @Mock
+    private MessageDeduplicator messageDeduplicator;
+    @Mock
+    private SpanAssembler spanAssembler;
+    @Mock
+    private HttpRollupAggregator httpRollupAggregator;
+    @Mock
+    private LogDictionary logDictionary;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LogBatchService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new LogBatchService(logBatchWriter, messageDeduplicator, new IngestionMetrics(meterRegistry),
+                spanAssembler, httpRollupAggregator, logDictionary);
+    }
+
+    @Test
+    void saveBatch_duplicateInBatch_shouldWriteFirstCopyOnly() {
+        HttpLogEntity first = http("m-1", 0);
+        HttpLogEntity copy = http("m-1", 1);
+        HttpLogEntity other = http("m-2", 2);
+        when(logBatchWriter.insertHttpLogs(List.of(first, other))).thenReturn(List.of(first, other));
+
+        service.saveBatch(List.of(), List.of(first, copy, other));
+
+        verify(logBatchWriter).insertHttpLogs(List.of(first, other));
+        verify(httpRollupAggregator).accept(List.of(first, other));
+        verify(messageDeduplicator, times(1)).isRecentHttp("m-1");
+        assertEquals(1, outcome("http", "duplicate"));
+    }
+
+    @Test
+    void saveBatch_rowsSkippedByDatabase_shouldNotReachRollupsSpansOrCache() {
+        AuditLogEntity auditSaved = audit("a-1", 0);
+        AuditLogEntity auditSkipped = audit("a-2", 1);
+        HttpLogEntity httpSaved = http("h-1", 2);
+        HttpLogEntity httpSkipped = http("h-2", 3);
+        when(logBatchWriter.insertAuditLogs(List.of(auditSaved, auditSkipped))).thenReturn(List.of(auditSaved));
+        when(logBatchWriter.insertHttpLogs(List.of(httpSaved, httpSkipped))).thenReturn(List.of(httpSaved));
+
+        service.saveBatch(List.of(auditSaved, auditSkipped), List.of(httpSaved, httpSkipped));
+
+        verify(spanAssembler).accept(List.of(auditSaved));
+        verify(httpRollupAggregator).accept(List.of(httpSaved));
+        verify(messageDeduplicator).markAuditSaved(List.of("a-1"));
+        verify(messageDeduplicator).markHttpSaved(List.of("h-1"));
+        assertEquals(1, outcome("audit", "saved"));
+        assertEquals(1, outcome("audit", "duplicate"));
+        assertEquals(1, outcome("http", "saved"));
+        assertEquals(1, outcome("http", "duplicate"));
+    }
+
+    @Test
+    void saveBatch_recentMessage_shouldNotBeWritten() {
+        HttpLogEntity recent = http("m-1", 0);
+        when(messageDeduplicator.isRecentHttp("m-1")).thenReturn(true);
+
+        service.saveBatch(List.of(), List.of(recent));
+
+        verifyNoInteractions(logBatchWriter);
+        verify(httpRollupAggregator).accept(List.of());
+        assertEquals(1, outcome("http", "duplicate"));
+    }
+
+    private double outcome(String type, String outcome) {
+        Counter counter = meterRegistry.find("audit.ingest.messages").tag("type", type).tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static AuditLogEntity audit(String messageId, long offset) {
+        return AuditLogEntity.builder().messageId(messageId).timestamp(TIMESTAMP).kafkaOffset(offset).build();
+    }
+
+    private static HttpLogEntity http(String messageId, long offset) {
+        return HttpLogEntity.builder().messageId(messageId).timestamp(TIMESTAMP).kafkaOffset(offset).build();
+    }
+
+}
@@ -0,0 +1,203 @@
+package org.ex9.auditlistener.service;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.ex9.auditlistener.codec.TimestampParser;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// PostgreSQL берётся из TEST_JDBC_URL (TEST_JDBC_USER, TEST_JDBC_PASSWORD) или из Testcontainers,
+// без них тесты пропускаются; каждый тест работает в отдельной схеме
+@EnabledIf("databaseAvailable")
+class PartitionMaintenanceServiceTest {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int PREMAKE = 2;
+
+    private static PostgreSQLContainer<?> postgres;
+
+    private final String schema = "partition_test_" + UUID.randomUUID().toString().replace("-", "");
+
+    private JdbcTemplate jdbcTemplate;
+    private PartitionMaintenanceService service;
+    private OffsetDateTime today;
+    private int termId;
+
+    static boolean databaseAvailable() {
+        return System.getenv("TEST_JDBC_URL") != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String url = System.getenv("TEST_JDBC_URL");
+        String user = System.getenv("TEST_JDBC_USER");
+        String password = System.getenv("TEST_JDBC_PASSWORD");
+        if (url == null) {
+            if (postgres == null) {
+                postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:16"));
+                postgres.start();
+            }
+            url = postgres.getJdbcUrl();
+            user = postgres.getUsername();
+            password = postgres.getPassword();
+        }
+        new JdbcTemplate(new DriverManagerDataSource(url, user == null ? "postgres" : user, password))
+                .execute("CREATE SCHEMA " + schema);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema,
+                user == null ? "postgres" : user, password);
+
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setDefaultSchema(schema);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // прежние таблицы подключены секциями до начала следующего месяца и перекрыли бы периоды тестов
+        for (String table : List.of("audit_logs", "http_logs")) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + table + "_legacy");
+            jdbcTemplate.execute("DROP TABLE " + table + "_legacy");
+        }
+        service = new PartitionMaintenanceService(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                new TimestampParser(ZoneId.of("UTC")), PartitionMaintenanceService.Granularity.DAILY, PREMAKE,
+                Duration.ofDays(90), PartitionMaintenanceService.ExpiredAction.DROP);
+        today = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS);
+        termId = jdbcTemplate.queryForObject(
+                "INSERT INTO log_dictionary (kind, value) VALUES ('test', 'test') RETURNING id", Integer.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA " + schema + " CASCADE");
+    }
+
+    @AfterAll
+    static void stopContainer() {
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Test
+    void insert_duplicateMessageIdWithOtherTimestamp_shouldBeSkipped() {
+        service.init();
+
+        assertEquals(1, insertAudit("m-1", today.plusHours(1)));
+        assertEquals(0, insertAudit("m-1", today.plusHours(2)));
+        assertEquals(1, insertHttp("m-1", today.plusHours(2)));
+        assertEquals(0, insertHttp("m-1", today.plusDays(1)));
+
+        assertEquals(1, count("audit_logs", "m-1"));
+        assertEquals(1, count("http_logs", "m-1"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM log_message_ids", Integer.class));
+    }
+
+    @Test
+    void init_shouldCreatePartitionsAhead() {
+        service.init();
+
+        for (String table : service.tables()) {
+            List<String> partitions = jdbcTemplate.queryForList("""
+                    SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                    WHERE i.inhparent = to_regclass(?)
+                    """, String.class, table);
+            for (int i = 0; i <= PREMAKE; i++) {
+                assertTrue(partitions.contains(table + "_p" + SUFFIX.format(today.plusDays(i))), table + " day " + i);
+            }
+            assertEquals(0, service.failures(table));
+        }
+    }
+
+    @Test
+    void maintain_rowsInDefaultPartition_shouldMoveThemIntoCreatedPartition() {
+        OffsetDateTime tomorrow = today.plusDays(1).plusHours(3);
+        insertAudit("m-moved", tomorrow);
+        insertHttp("m-moved", tomorrow);
+        insertAudit("m-far", today.plusDays(30));
+        jdbcTemplate.update("INSERT INTO audit_spans (audit_id, method_name, start_time, outcome) VALUES (?, ?, ?, ?)",
+                "span-1", "method", tomorrow, "SUCCESS");
+
+        service.init();
+
+        String suffix = "_p" + SUFFIX.format(tomorrow);
+        assertEquals("audit_logs" + suffix, partitionOf("audit_logs", "message_id", "m-moved"));
+        assertEquals("http_logs" + suffix, partitionOf("http_logs", "message_id", "m-moved"));
+        assertEquals("audit_spans" + suffix, partitionOf("audit_spans", "audit_id", "span-1"));
+        assertEquals("audit_logs_default", partitionOf("audit_logs", "message_id", "m-far"));
+        assertEquals(1, service.defaultRows("audit_logs"));
+        assertEquals(0, service.defaultRows("http_logs"));
+        assertEquals(0, service.failures("audit_logs"));
+        assertEquals(0, service.failures("http_logs"));
+        assertEquals(0, service.failures("audit_spans"));
+
+        // перенос не освобождает ключи дедупликации
+        assertEquals(0, insertAudit("m-moved", today));
+        assertEquals(1, count("audit_logs", "m-moved"));
+    }
+
+    @Test
+    void maintain_expiredPartition_shouldPurgeItsMessageIds() {
+        service.init();
+        OffsetDateTime expired = today.minusDays(200);
+        jdbcTemplate.execute("CREATE TABLE audit_logs_expired PARTITION OF audit_logs FOR VALUES FROM ('"
+                + expired + "') TO ('" + expired.plusDays(1) + "')");
+        insertAudit("m-old", expired.plusHours(1));
+        insertAudit("m-new", today.plusHours(1));
+
+        service.maintain();
+
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass('audit_logs_expired')::text", String.class));
+        assertEquals(List.of("m-new"), jdbcTemplate.queryForList(
+                "SELECT message_id FROM log_message_ids WHERE log_type = 'audit'", String.class));
+        assertEquals(1, insertAudit("m-old", today.plusHours(2)));
+    }
+
+    private int insertAudit(String messageId, OffsetDateTime timestamp) {
+        return jdbcTemplate.update("""
+                INSERT INTO audit_logs (message_id, audit_id, type_id, method_name_id, timestamp,
+                                        kafka_topic, kafka_partition, kafka_offset)
+                VALUES (?, ?, ?, ?, ?, 'audit-log', 0, 0)
+                """, messageId, messageId, termId, termId, timestamp);
+    }
+
+    private int insertHttp(String messageId, OffsetDateTime timestamp) {
+        return jdbcTemplate.update("""
+                INSERT INTO http_logs (message_id, method_id, url_template_id, timestamp,
+                                       kafka_topic, kafka_partition, kafka_offset)
+                VALUES (?, ?, ?, ?, 'audit-log', 0, 0)
+                """, messageId, termId, termId, timestamp);
+    }
+
+    private int count(String table, String messageId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table + " WHERE message_id = ?",
+                Integer.class, messageId);
+    }
+
+    private String partitionOf(String table, String column, String value) {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM " + table + " WHERE " + column
+                + " = ?", String.class, value);
+    }
+
+}
@@ -0,0 +1,148 @@
+package org.ex9.auditlistener.span;
+
+import org.ex9.auditlistener.model.AuditLogEntity;
+import org.ex9.auditlistener.repository.AuditSpanWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpanAssemblerTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Mock
+    private AuditSpanWriter auditSpanWriter;
+
+    private final AtomicLong clock = new AtomicLong();
+    private SpanAssembler spanAssembler;
+
+    @BeforeEach
+    void setUp() {
+        spanAssembler = new SpanAssembler(auditSpanWriter, true, Duration.ofSeconds(10), 3, clock::get);
+    }
+
+    @Test
+    void accept_startAndEnd_shouldWriteOkSpanWithDuration() {
+        spanAssembler.accept(List.of(event("e-1", "START", 0, null), event("e-1", "END", 1500, null)));
+        spanAssembler.flush();
+
+        AuditSpan span = written().getFirst();
+        assertEquals("e-1", span.eventId());
+        assertEquals("doWork", span.methodName());
+        assertEquals(AuditSpan.Outcome.OK, span.outcome());
+        assertEquals(1_500_000L, span.durationUs());
+        assertEquals(0, spanAssembler.pending());
+        assertEquals(1, spanAssembler.written(AuditSpan.Outcome.OK));
+    }
+
+    @Test
+    void accept_errorBeforeStart_shouldWriteErrorSpan() {
+        spanAssembler.accept(List.of(event("e-1", "error", 200, "boom")));
+        spanAssembler.accept(List.of(event("e-1", "start", 0, null)));
+        spanAssembler.flush();
+
+        AuditSpan span = written().getFirst();
+        assertEquals(AuditSpan.Outcome.ERROR, span.outcome());
+        assertEquals("boom", span.error());
+        assertEquals(T0, span.startTime());
+        assertEquals(200_000L, span.durationUs());
+    }
+
+    @Test
+    void accept_duplicateStart_shouldBeIgnored() {
+        spanAssembler.accept(List.of(event("e-1", "START", 0, null), event("e-1", "START", 0, null),
+                event("e-2", "START", 0, null), event("e-2", "END", 5, null)));
+        spanAssembler.flush();
+
+        assertEquals(1, written().size());
+        assertEquals(1, spanAssembler.pending());
+    }
+
+    @Test
+    void flush_afterTimeout_shouldWriteTimeoutSpanAndDropUnmatchedEnd() {
+        spanAssembler.accept(List.of(event("e-1", "START", 0, null), event("e-2", "END", 0, null)));
+        clock.set(Duration.ofSeconds(5).toNanos());
+        spanAssembler.accept(List.of(event("e-3", "START", 0, null)));
+
+        clock.set(Duration.ofSeconds(11).toNanos());
+        spanAssembler.flush();
+
+        AuditSpan span = written().getFirst();
+        assertEquals("e-1", span.eventId());
+        assertEquals(AuditSpan.Outcome.TIMEOUT, span.outcome());
+        assertNull(span.endTime());
+        assertNull(span.durationUs());
+        assertEquals(1, spanAssembler.unmatched());
+        assertEquals(1, spanAssembler.pending());
+    }
+
+    @Test
+    void accept_overMaxPending_shouldEvictEldest() {
+        spanAssembler.accept(List.of(event("e-1", "START", 0, null), event("e-2", "START", 0, null),
+                event("e-3", "START", 0, null), event("e-4", "START", 0, null)));
+        spanAssembler.flush();
+
+        AuditSpan span = written().getFirst();
+        assertEquals("e-1", span.eventId());
+        assertEquals(AuditSpan.Outcome.TIMEOUT, span.outcome());
+        assertEquals(3, spanAssembler.pending());
+    }
+
+    @Test
+    void flush_writeFailure_shouldKeepSpansForNextFlush() {
+        when(auditSpanWriter.insert(anyList())).thenThrow(new DataAccessResourceFailureException("down")).thenReturn(1);
+        spanAssembler.accept(List.of(event("e-1", "START", 0, null), event("e-1", "END", 10, null)));
+
+        spanAssembler.flush();
+        spanAssembler.flush();
+
+        verify(auditSpanWriter, times(2)).insert(List.of(new AuditSpan("e-1", "doWork", T0,
+                T0.plusNanos(10_000_000L), 10_000L, AuditSpan.Outcome.OK, null)));
+        assertEquals(1, spanAssembler.written(AuditSpan.Outcome.OK));
+    }
+
+    @Test
+    void disabled_shouldIgnoreEvents() {
+        SpanAssembler disabled = new SpanAssembler(auditSpanWriter, false, Duration.ofSeconds(10), 3, clock::get);
+
+        disabled.accept(List.of(event("e-1", "START", 0, null), event("e-1", "END", 10, null)));
+        disabled.flush();
+
+        verifyNoInteractions(auditSpanWriter);
+        assertEquals(0, disabled.pending());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<AuditSpan> written() {
+        ArgumentCaptor<List<AuditSpan>> captor = ArgumentCaptor.forClass(List.class);
+        verify(auditSpanWriter).insert(captor.capture());
+        return captor.getValue();
+    }
+
+    private static AuditLogEntity event(String eventId, String type, long millis, String error) {
+        return AuditLogEntity.builder()
+                .messageId(eventId + "-" + type)
+                .eventId(eventId)
+                .eventType(type)
+                .methodName("doWork")
+                .error(error)
+                .timestamp(T0.plusNanos(millis * 1_000_000L))
+                .build();
+    }
+
+}
@@ -0,0 +1,201 @@
+package org.ex9.auditlistener.spill;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.ex9.auditlistener.metrics.IngestionMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void spill_shouldReadBackRecordsWithCoordinatesAndHeaders() throws IOException {
+        SpillLog spillLog = spillLog(DataSize.ofMegabytes(1));
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("h", "v".getBytes(StandardCharsets.UTF_8));
+        ConsumerRecord<String, byte[]> first = new ConsumerRecord<>("audit-log", 2, 42, 1735725600123L,
+                TimestampType.CREATE_TIME, 1, 5, "k", bytes("{\"a\":\"тело\"}"), headers, Optional.empty());
+        ConsumerRecord<String, byte[]> second = new ConsumerRecord<>("audit-log-retry-0", 0, 7, null, bytes("{}"));
+
+        assertTrue(spillLog.spill(List.of(first, second)));
+        List<Path> segments = spillLog.seal();
+        SpillLog.Chunk chunk = spillLog.read(segments.getFirst(), 0, 10);
+
+        assertEquals(SpillLog.Status.END, chunk.status());
+        assertEquals(2, chunk.records().size());
+        ConsumerRecord<String, byte[]> read = chunk.records().getFirst();
+        assertEquals("audit-log", read.topic());
+        assertEquals(2, read.partition());
+        assertEquals(42, read.offset());
+        assertEquals(1735725600123L, read.timestamp());
+        assertEquals(TimestampType.CREATE_TIME, read.timestampType());
+        assertEquals("k", read.key());
+        assertArrayEquals(first.value(), read.value());
+        assertArrayEquals(bytes("v"), read.headers().lastHeader("h").value());
+        assertNull(chunk.records().get(1).key());
+        assertEquals("audit-log-retry-0", chunk.records().get(1).topic());
+    }
+
+    @Test
+    void read_shouldResumeFromPosition() throws IOException {
+        SpillLog spillLog = spillLog(DataSize.ofMegabytes(1));
+        spillLog.spill(records(0, 5));
+        Path segment = spillLog.seal().getFirst();
+
+        SpillLog.Chunk first = spillLog.read(segment, 0, 3);
+        SpillLog.Chunk second = spillLog.read(segment, first.nextPosition(), 3);
+
+        assertEquals(SpillLog.Status.MORE, first.status());
+        assertEquals(List.of(0L, 1L, 2L), offsets(first));
+        assertEquals(SpillLog.Status.END, second.status());
+        assertEquals(List.of(3L, 4L), offsets(second));
+    }
+
+    @Test
+    void spill_shouldRollSegmentsAndRecoverThemOnRestart() throws IOException {
+        SpillLog spillLog = spillLog(DataSize.ofBytes(50));
+        for (int i = 0; i < 3; i++) {
+            spillLog.spill(records(i, 1));
+        }
+        spillLog.close();
+
+        SpillLog reopened = spillLog(DataSize.ofBytes(50));
+        List<Path> segments = reopened.seal();
+
+        assertTrue(reopened.hasPending());
+        assertEquals(3, segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            assertEquals(List.of((long) i), offsets(reopened.read(segments.get(i), 0, 10)));
+            reopened.delete(segments.get(i));
+        }
+        assertFalse(reopened.hasPending());
+    }
+
+    @Test
+    void read_truncatedTail_shouldReturnCompleteRecords() throws IOException {
+        SpillLog spillLog = spillLog(DataSize.ofMegabytes(1));
+        spillLog.spill(records(0, 2));
+        Path segment = spillLog.seal().getFirst();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        SpillLog.Chunk chunk = spillLog.read(segment, 0, 10);
+
+        assertEquals(SpillLog.Status.TRUNCATED, chunk.status());
+        assertEquals(List.of(0L), offsets(chunk));
+    }
+
+    @Test
+    void read_checksumMismatch_shouldReportCorruptSegment() throws IOException {
+        SpillLog spillLog = spillLog(DataSize.ofMegabytes(1));
+        spillLog.spill(records(0, 2));
+        Path segment = spillLog.seal().getFirst();
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(20); // внутри первой записи: заголовок файла и записи занимают 16 байт
+            file.write(0x7f);
+        }
+
+        SpillLog.Chunk chunk = spillLog.read(segment, 0, 10);
+        spillLog.quarantine(segment);
+
+        assertEquals(SpillLog.Status.CORRUPT, chunk.status());
+        assertTrue(chunk.records().isEmpty());
+        assertTrue(Files.exists(segment.resolveSibling(segment.getFileName() + ".corrupt")));
+        assertFalse(spillLog.hasPending());
+    }
+
+    @Test
+    void spill_withCause_shouldSpillOnlyWhenDatabaseIsUnavailable() {
+        SpillLog spillLog = spillLog(DataSize.ofMegabytes(1));
+
+        assertFalse(spillLog.spill(records(0, 1), new DataIntegrityViolationException("duplicate")));
+        assertFalse(spillLog.isDatabaseDown());
+
+        assertTrue(spillLog.spill(records(0, 1), new CannotCreateTransactionException("no connection",
+                new CannotGetJdbcConnectionException("refused"))));
+        assertTrue(spillLog.isDatabaseDown());
+
+        spillLog.markDatabaseUp();
+        assertFalse(spillLog.isDatabaseDown());
+    }
+
+    @Test
+    void isDatabaseUnavailable_shouldCheckSqlState() {
+        assertTrue(SpillLog.isDatabaseUnavailable(new RuntimeException(new SQLException("down", "57P01"))));
+        assertTrue(SpillLog.isDatabaseUnavailable(new RuntimeException(new SQLException("refused", "08001"))));
+        assertFalse(SpillLog.isDatabaseUnavailable(new RuntimeException(new SQLException("dup", "23505"))));
+        assertFalse(SpillLog.isDatabaseUnavailable(new IllegalStateException("bad data")));
+    }
+
+    @Test
+    void isDatabaseUnavailable_statementFailures_shouldNotMarkDatabaseDown() {
+        SpillLog spillLog = spillLog(DataSize.ofMegabytes(1));
+
+        assertFalse(spillLog.spill(records(0, 1), new CannotAcquireLockException("deadlock",
+                new SQLException("deadlock detected", "40P01"))));
+        assertFalse(spillLog.spill(records(0, 1), new QueryTimeoutException("canceled",
+                new SQLException("canceling statement due to statement timeout", "57014"))));
+        assertFalse(spillLog.isDatabaseDown());
+        assertTrue(SpillLog.isDatabaseUnavailable(new DataAccessResourceFailureException("too many connections",
+                new SQLException("too many connections", "53300"))));
+        assertTrue(SpillLog.isDatabaseUnavailable(new RecoverableDataAccessException("reconnect")));
+    }
+
+    @Test
+    void disabled_shouldNotSpill() {
+        SpillLog spillLog = new SpillLog(new IngestionMetrics(new SimpleMeterRegistry()), false,
+                directory.resolve("disabled"), DataSize.ofMegabytes(1));
+
+        assertFalse(spillLog.spill(records(0, 1)));
+        assertFalse(spillLog.spill(records(0, 1), new CannotCreateTransactionException("no connection")));
+        assertFalse(spillLog.isDatabaseDown());
+        assertFalse(Files.exists(directory.resolve("disabled")));
+    }
+
+    private SpillLog spillLog(DataSize segmentSize) {
+        return new SpillLog(new IngestionMetrics(new SimpleMeterRegistry()), true, directory, segmentSize);
+    }
+
+    private static List<ConsumerRecord<String, byte[]>> records(int offset, int count) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>(count);
+        for (int i = offset; i < offset + count; i++) {
+            records.add(new ConsumerRecord<>("audit-log", 0, i, "key", bytes("{\"messageId\":\"m-" + i + "\"}")));
+        }
+        return records;
+    }
+
+    private static List<Long> offsets(SpillLog.Chunk chunk) {
+        return chunk.records().stream().map(ConsumerRecord::offset).toList();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}